@@ -5,6 +5,7 @@ import static unipi.aprile.filippo.hotelier.client.utils.HotelierClientUtils.CLI
 import java.io.File;
 import java.io.IOException;
 
+import unipi.aprile.filippo.hotelier.client.cache.HotelierClientHotelCache;
 import unipi.aprile.filippo.hotelier.client.cli.HotelierClientCLI;
 import unipi.aprile.filippo.hotelier.client.config.HotelierClientConfigManager;
 import unipi.aprile.filippo.hotelier.client.multicast.HotelierClientMulticastReciever;
@@ -44,6 +45,8 @@ public class HotelierClientMain {
 		try {
 			// ottengo i config del client
 			var clientConfig = HotelierClientConfigManager.getClientConfig();
+			// inizializzo la cache degli hotel prima dei thread di notifica che la invalidano
+			HotelierClientHotelCache.getInstance();
 			// inizializzo client rmi passando server address e rmiRemoteReference per recuperare stub server
 			var clientRmi = new HotelierClientRmi(clientConfig.getServerAddress(), clientConfig.getRmiRemoteReference(), clientConfig.getRmiPort());
 			// inizializzo reciever multicast passando mulitcast address e porta per ricevere notifiche Udp quando cambia primo hotel di qualsiasi rank locale
@@ -0,0 +1,133 @@
+package unipi.aprile.filippo.hotelier.client.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import unipi.aprile.filippo.hotelier.client.config.HotelierClientConfigManager;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+
+public class HotelierClientHotelCache {
+
+	/**
+	 * La classe singletone HotelierClientHotelCache mantiene i pacchetti di risposta dei comandi searchhotel
+	 * (HotelierPacketHotelResponse) e searchallhotels (HotelierPacketHotelListResponse), così che le ricerche ripetute
+	 * degli stessi hotel e delle stesse città non vengano inviate al server.
+	 * La cache è limitata a hotelCacheSize voci: quando è piena viene rimossa la voce utilizzata meno di recente (LRU,
+	 * LinkedHashMap ordinata per accesso). Ogni voce scade dopo hotelCacheTtl secondi, limitando così la durata di dati
+	 * non più aggiornati anche per i cambiamenti che il server non notifica (ad esempio le recensioni degli altri utenti).
+	 *
+	 * Le voci di una città vengono invalidate:
+	 * • alla notifica multicast del cambiamento della prima posizione del rank locale della città (HotelierClientMulticastReciever);
+	 * • alla callback Rmi del rank locale aggiornato di una città di interesse (HotelierClientRmiImpl);
+	 * • all' invio di una recensione per un hotel della città, così che il client veda subito la propria recensione;
+	 * Tutte le voci vengono invalidate al logout e al ripristino di una connessione persa (HotelierClientTcpHandler), in
+	 * quanto le notifiche multicast e Rmi non vengono ricevute senza login e possono andare perse durante la disconnessione.
+	 * Ogni invalidazione incrementa la generazione della cache: una risposta richiesta prima di un' invalidazione
+	 * non viene inserita, così che la cache non contenga mai dati precedenti all' ultima invalidazione.
+	 * Tutti i metodi sono sincronizzati, in quanto la cache è acceduta dal thread della CLI e dai thread delle notifiche.
+	 */
+
+	private static HotelierClientHotelCache instance = null;
+
+	public static HotelierClientHotelCache getInstance() {
+		if (instance == null) {
+			instance = new HotelierClientHotelCache();
+		}
+		return instance;
+	}
+
+	// numero massimo di voci (0 = cache disattivata)
+	private final int maxEntries;
+	// durata in nanosecondi di ogni voce
+	private final long ttl;
+	// mappa delle voci con chiave: comando e argomenti normalizzati, ordinata per accesso
+	private final LinkedHashMap<String, Entry> entries;
+	// generazione della cache, incrementata ad ogni invalidazione
+	private long generation;
+
+	private HotelierClientHotelCache() {
+		// ottengo dimensione e durata delle voci dai config
+		var clientConfig = HotelierClientConfigManager.getClientConfig();
+		maxEntries = clientConfig.getHotelCacheSize();
+		ttl = TimeUnit.SECONDS.toNanos(clientConfig.getHotelCacheTtl());
+		// inizializzo la mappa delle voci ordinata per accesso, rimuovendo la voce meno recente oltre maxEntries
+		entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	// restituisce la chiave della risposta del comando searchhotel con nome hotel e città passati
+	public static String getHotelKey(String hotelName, String city) {
+		return "searchhotel:" + normalize(city) + ":" + normalize(hotelName);
+	}
+
+	// restituisce la chiave della risposta del comando searchallhotels con città passata
+	public static String getHotelListKey(String city) {
+		return "searchallhotels:" + normalize(city);
+	}
+
+	// restituisce il pacchetto di risposta con chiave passata, null se assente o scaduto
+	public synchronized HotelierPacket get(String key) {
+
+		// ottengo la voce (aggiornandone l'ordine di accesso)
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		// controllo se la voce è scaduta e in tal caso la rimuovo
+		if (System.nanoTime() - entry.expireTime() >= 0) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.response();
+	}
+
+	// restituisce la generazione corrente, da ottenere prima di inviare la richiesta la cui risposta verrà inserita
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	// inserisce il pacchetto di risposta relativo alla città passata, solo se dalla generazione passata non è avvenuta alcuna invalidazione
+	public synchronized void put(String key, String city, HotelierPacket response, long requestGeneration) {
+
+		// controllo che la cache sia attiva e che nel frattempo non sia avvenuta alcuna invalidazione
+		if (maxEntries <= 0 || generation != requestGeneration) {
+			return;
+		}
+		entries.put(key, new Entry(normalize(city), response, System.nanoTime() + ttl));
+	}
+
+	// invalida le risposte relative alla città passata
+	public synchronized void invalidate(String city) {
+
+		// controllo che la città sia presente
+		if (city == null) {
+			return;
+		}
+		generation++;
+		// rimuovo le voci della città
+		String cityKey = normalize(city);
+		entries.values().removeIf(entry -> entry.city().equals(cityKey));
+	}
+
+	// invalida le risposte di tutte le città
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+	}
+
+	// restituisce la stringa passata normalizzata (minuscola)
+	private static String normalize(String value) {
+		return value.toLowerCase(Locale.ROOT);
+	}
+
+	// voce della cache: città normalizzata, pacchetto di risposta e istante di scadenza (System.nanoTime())
+	private record Entry(String city, HotelierPacket response, long expireTime) {
+	}
+
+}
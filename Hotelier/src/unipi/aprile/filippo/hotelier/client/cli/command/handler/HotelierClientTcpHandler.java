@@ -1,18 +1,15 @@
 package unipi.aprile.filippo.hotelier.client.cli.command.handler;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
+import unipi.aprile.filippo.hotelier.client.cache.HotelierClientHotelCache;
 import unipi.aprile.filippo.hotelier.client.cli.command.HotelierClientCommand;
 import unipi.aprile.filippo.hotelier.client.config.HotelierClientConfigManager;
+import unipi.aprile.filippo.hotelier.client.tcp.HotelierClientTcpTransport;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
 import unipi.aprile.filippo.hotelier.common.entities.rating.HotelierHotelRating;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
@@ -21,50 +18,84 @@ import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketBadgeR
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketErrorResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotel;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelList;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListChunk;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListPage;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogin;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLoginResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogout;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogoutResponse;
-import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketReview;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketReviewResponse;
 
 public class HotelierClientTcpHandler {
 	
 	/**
-	 * La classe HotelierClientTcpHandler gestisce i comandi TCP inviati dal client al server HotelierTCp tramite socket Tcp
-	 * nel seguente modo:
+	 * La classe HotelierClientTcpHandler gestisce i comandi TCP inviati dal client al server HotelierTCp tramite la connessione
+	 * Tcp non bloccante HotelierClientTcpTransport nel seguente modo:
 	 * 1. crea il pacchetto relativo al comando Tcp parsando i valori dagli argomenti di quest'ultimo;
 	 * 2. invia il pacchetto al sever HotelierTCp.
-	 * 3. si blocca attendo il pacchetto di risposta.
+	 * 3. si blocca attendo il future del pacchetto di risposta.
 	 * 4. recuper la risposta dal pacchetto ricevuto e la restituisce.
+	 * Le risposte dei comandi searchhotel e searchallhotels vengono mantenute nella cache del client (HotelierClientHotelCache):
+	 * se la risposta è presente in cache il comando viene gestito senza contattare il server. L'invio di una recensione
+	 * invalida le risposte della città dell' hotel recensito.
 	 * In caso di eccezzione segnala impossibilità di contattare serverTcp.
+	 * Se la risposta non arriva entro requestTimeout secondi la connessione viene chiusa e considerata persa. Una connessione
+	 * persa (timeout, errore o chiusura da parte del server) viene riaperta al comando successivo: la sessione sul server
+	 * non sopravvive alla connessione, quindi all' utente viene segnalato di effettuare nuovamente il login.
+	 * 
+	 * Tramite sendPipelined() è inoltre possibile inviare più pacchetti consecutivamente senza attendere le rispettive
+	 * risposte (pipelining): ogni pacchetto viene inviato con un requestID e le risposte ricevute vengono associate
+	 * alle richieste tramite quest' ultimo, così da pagare un unico round trip per l'intero insieme di richieste.
+	 * Gli strumenti che devono mantenere molte richieste in volo possono utilizzare direttamente la connessione (getTransport()),
+	 * la quale restituisce per ogni pacchetto inviato un CompletableFuture della risposta.
+	 * 
+	 * I pacchetti vengono serializzati nel formato indicato dai config del client (JSON o binario, vedi HotelierPacketCodec),
+	 * mentre i pacchetti di risposta vengono deserializzati nel formato indicato dal relativo header.
+	 * 
+	 * Se abilitata nei config, subito dopo la connessione viene concordata con il server la compressione dei pacchetti
+	 * (HotelierPacketCapabilities): da quel momento i pacchetti che superano la soglia indicata dal server vengono inviati
+	 * compressi e le risposte con il flag FLAG_COMPRESSED vengono decompresse.
 	 */
 	
 
-	// socket connessione Tcp
-	private Socket socket;
-	// outputStream associato alla socket
-	private OutputStream outputStream;
-	// inputStream associato alla socket
-	private InputStream inputStream;
-	// gson per serializzazione/deserializzazione pacchetti
-	private Gson gson;
+	// connessione Tcp non bloccante con il server
+	private HotelierClientTcpTransport transport;
+	// cache delle risposte searchhotel e searchallhotels
+	private HotelierClientHotelCache hotelCache;
 
 	public HotelierClientTcpHandler() throws Exception {
 
+		// apro la connessione Tcp con il server
+		transport = openTransport();
+		// recupero istanza della cache degli hotel
+		hotelCache = HotelierClientHotelCache.getInstance();
+	}
+
+	// restituisce una nuova connessione Tcp con address, porta, formato, attesa e dimensione massima delle risposte presenti nel file config,
+	// concordando la compressione se abilitata
+	private static HotelierClientTcpTransport openTransport() throws IOException {
+
 		// ottengo i config del client
 		var clientConfig = HotelierClientConfigManager.getClientConfig();
-		// creo la socket per connessione Tcp con address e porta presenti nel file config
-		this.socket = new Socket(clientConfig.getServerAddress(), clientConfig.getTcpPort());
-		// ottengo outputStream associata alla socket
-		outputStream = socket.getOutputStream();
-		// ottengo inputStream associata alla socket
-		inputStream = socket.getInputStream();
-		// instanzio un gson per serializzare/deserializzare i pacchetti
-		gson = new GsonBuilder().serializeNulls().create();
+		return new HotelierClientTcpTransport(clientConfig.getServerAddress(), clientConfig.getTcpPort(), clientConfig.getPacketCodec(),
+				clientConfig.isCompressionEnabled(), clientConfig.getRequestTimeout() * 1000L, clientConfig.getMaxFrameSize());
+	}
+
+	// riapre la connessione Tcp se è stata persa (timeout, errore o chiusura da parte del server)
+	private void reconnectIfClosed() throws IOException {
+
+		// controllo se la connessione è stata chiusa
+		if (!transport.isClosed()) {
+			return;
+		}
+		// apro una nuova connessione e segnalo all' utente che la sessione precedente è terminata
+		transport = openTransport();
+		// invalido tutte le risposte in cache, in quanto le notifiche del server potrebbero essere andate perse
+		hotelCache.invalidateAll();
+		System.out.println("\n[WARNING] Connessione con il server HotelierTcp ripristinata, effettuare nuovamente il login se necessario.");
 	}
 	
 	// gestisce comando Tcp e ne restiuisce la risposta
@@ -78,14 +109,32 @@ public class HotelierClientTcpHandler {
 			if (requestPacket != null) {
 
 				// pacchetto supportato
-				// invio il paccheto al server 
-				sendPacket(requestPacket);
-				// attendo il pacchetto di risposta
-				HotelierPacket responsePacket = recievePacket();
+				// riapro la connessione se persa, invalidando la cache prima di consultarla
+				reconnectIfClosed();
+				// ottengo la chiave della risposta nella cache, null se il comando non utilizza la cache
+				String cacheKey = getCacheKey(command);
+				// controllo se la risposta è presente in cache e in tal caso la restituisco senza contattare il server
+				HotelierPacket cachedPacket = cacheKey != null ? hotelCache.get(cacheKey) : null;
+				if (cachedPacket != null) {
+					return getResponse(cachedPacket);
+				}
+
+				// ottengo la generazione della cache prima dell' invio della richiesta
+				long cacheGeneration = hotelCache.getGeneration();
+				// invio il paccheto al server e attendo il pacchetto di risposta per al più requestTimeout secondi
+				HotelierPacket responsePacket = transport.await(transport.send(requestPacket));
+				// aggiorno la cache rispetto al comando e al pacchetto di risposta
+				updateCache(command, cacheKey, responsePacket, cacheGeneration);
 				// restituisco la risposta 
 				return getResponse(responsePacket);
 			}
 
+		} catch (SocketTimeoutException e) {
+
+			// risposta non arrivata in tempo: chiudo la connessione, che verrà riaperta al comando successivo
+			transport.close();
+			return "[ERRORE] Nessuna risposta dal server HotelierTcp, la connessione verrà riaperta al prossimo comando.";
+
 		} catch (IOException e) {
 
 			// in caso di eccezzione segnalo che non è possibile contattare il HotelierServerTcp
@@ -123,6 +172,44 @@ public class HotelierClientTcpHandler {
 		};
 	}
 
+	// restituisce la chiave nella cache della risposta del comando passato, null se il comando non utilizza la cache
+	private String getCacheKey(HotelierClientCommand command) {
+
+		// ottengo gli argomenti del comando passato
+		String[] commandArgs = command.getArguments();
+
+		// filtro rispetto al nome del comando
+		return switch (command.getName()) {
+			// searchhotel: chiave con nome hotel e città
+			case "searchhotel" -> HotelierClientHotelCache.getHotelKey(commandArgs[0], commandArgs[1]);
+			// searchallhotels: chiave con città
+			case "searchallhotels" -> HotelierClientHotelCache.getHotelListKey(commandArgs[0]);
+			// gli altri comandi non utilizzano la cache
+			default -> null;
+		};
+	}
+
+	// inserisce in cache il pacchetto di risposta del comando passato o invalida le risposte della città della recensione inviata
+	private void updateCache(HotelierClientCommand command, String cacheKey, HotelierPacket responsePacket, long cacheGeneration) {
+
+		// ottengo gli argomenti del comando passato
+		String[] commandArgs = command.getArguments();
+
+		// filtro rispetto all' instanza del pacchetto di risposta (le risposte di errore non vengono inserite)
+		switch (responsePacket) {
+			// hotel trovato: inserisco la risposta con la città dell' hotel
+			case HotelierPacketHotelResponse hotelPacket when cacheKey != null -> hotelCache.put(cacheKey, commandArgs[1], hotelPacket, cacheGeneration);
+			// hotel della città trovati: inserisco la risposta con la città
+			case HotelierPacketHotelListResponse hotelListPacket when cacheKey != null -> hotelCache.put(cacheKey, commandArgs[0], hotelListPacket, cacheGeneration);
+			// recensione inviata: invalido le risposte della città dell' hotel recensito
+			case HotelierPacketReviewResponse reviewPacket -> hotelCache.invalidate(commandArgs[1]);
+			// logout effettuato: invalido tutte le risposte, in quanto senza login non vengono più ricevute le notifiche
+			case HotelierPacketLogoutResponse logoutPacket -> hotelCache.invalidateAll();
+			default -> {
+			}
+		}
+	}
+
 	// restituisce pacchetto di login con parametri presenti negli argomenti del comando
 	private HotelierPacket createPacketLogin(String[] commandArgs) {
 
@@ -200,50 +287,28 @@ public class HotelierClientTcpHandler {
 		return packetBadge;
 	}
 
-	// serializza il pacchetto e lo invia al server tramite outputStream associato allas socket Tcp
-	private void sendPacket(HotelierPacket packet) throws IOException {
-
-		// ottengo id del pacchetto rispetto alla sua instanza
-		int packetId = HotelierPacketRegistry.getIDFromPacket(packet);
-		// serializzo il pacchetto in stringa json
-		String serializedPacket = gson.toJson(packet); // HotelierCommonUtils.serialize(packet);
-		// ottengo i bytes del pacchetto serializzato
-		byte[] packetBytes = serializedPacket.getBytes(StandardCharsets.UTF_8);
-		// alloco ByteBuffer per contenere bytes di lunghezza pacchetto serializzato + id + pacchetto serializzato
-		ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + packetBytes.length);
-		// inserisco lunghezza pacchetto serializzato nel buffer
-		buffer.putInt(packetBytes.length);
-		// inserisco id del paccheto nel buffer
-		buffer.putInt(packetId);
-		// inserisco pacchetto serializzato nel buffer
-		buffer.put(packetBytes);
-		// eseguo la scrittura del buffer convertito in array di byte su outputStream
-		outputStream.write(buffer.array());
-		// eseguo il flush di outputStream
-		outputStream.flush();
+	// invia i pacchetti passati consecutivamente senza attendere le risposte e restituisce i pacchetti di risposta nello stesso ordine
+	public List<HotelierPacket> sendPipelined(List<HotelierPacket> packets) throws IOException {
+
+		// riapro la connessione se persa
+		reconnectIfClosed();
+		// invio tutti i pacchetti senza attendere le risposte
+		List<CompletableFuture<HotelierPacket>> responseFutures = new ArrayList<>(packets.size());
+		for (HotelierPacket packet : packets) {
+			responseFutures.add(transport.send(packet));
+		}
+
+		// attendo tutti i pacchetti di risposta, ordinati come le richieste
+		List<HotelierPacket> responsePackets = new ArrayList<>(packets.size());
+		for (CompletableFuture<HotelierPacket> responseFuture : responseFutures) {
+			responsePackets.add(transport.await(responseFuture));
+		}
+		return responsePackets;
 	}
 
-	// restiusce il pacchetto di risposta deserializzato, ricevuto dal server tramite inputStream associato alla socket Tcp 
-	private HotelierPacket recievePacket() throws IOException {
-
-		// alloco array di byte per contenere lunghezza pacchetto serializzato + id
-		byte[] responseHeaderBytes = new byte[8];
-		// eseguo lettura dei bytes di lunghezza pacchetto di risposta e id da inputStream nell' array di byte
-		readAllBytes(responseHeaderBytes);
-		// eseguo il wrap dell' array di byte in un byteBuffer
-		ByteBuffer responseHeader = ByteBuffer.wrap(responseHeaderBytes);
-		// ottengo la lunghezza pacchetto di risposta dal buffer
-		int payloadSize = responseHeader.getInt();
-		// ottengo del id del pacchetto di risposta dal buffer
-		int packetID = responseHeader.getInt();
-		// alloco array di byte per contenere pacchetto di risposta
-		byte[] responsePayloadBytes = new byte[payloadSize];
-		// eseguo lettura dei bytes del pacchetto di risposta da inputStream nell' array di byte
-		readAllBytes(responsePayloadBytes);
-		// eseguo il wrap dell' array di byte in un byteBuffer
-		ByteBuffer responsePayload = ByteBuffer.wrap(responsePayloadBytes);
-		// restituisco pacchetto di risposta deserializzato
-		return HotelierPacketRegistry.getPacketFromID(packetID, responsePayload);
+	// restituisce la connessione Tcp non bloccante con il server
+	public HotelierClientTcpTransport getTransport() {
+		return transport;
 	}
 
 	// restituisce risposta contenuta nel pacchetto di risposta, null se pacchetto non è supportato
@@ -255,6 +320,8 @@ public class HotelierClientTcpHandler {
 			case HotelierPacketLogoutResponse logoutPacket -> logoutPacket.getResponse();
 			case HotelierPacketHotelResponse hotelPacket -> hotelPacket.getHotel().toString();
 			case HotelierPacketHotelListResponse hotelListPacket -> formatHotelList(hotelListPacket.getHotels());
+			case HotelierPacketHotelListPage hotelListPagePacket -> formatHotelList(hotelListPagePacket.getHotels());
+			case HotelierPacketHotelListChunk hotelListChunkPacket -> formatHotelList(hotelListChunkPacket.getHotels());
 			case HotelierPacketReviewResponse reviewPacket -> reviewPacket.getResponse();
 			case HotelierPacketBadgeResponse badgePacket -> badgePacket.getBadge().toString();
 			case HotelierPacketErrorResponse errorPacket -> errorPacket.getResponse();
@@ -262,28 +329,6 @@ public class HotelierClientTcpHandler {
 		};
 	}
 
-	// assicura la lettura di tutti i byte richiesti da inputStream tenendo conto che il server utilizza NIO (non bloccante) quindi potrebbero avvenire scritture parziali
-	private void readAllBytes(byte[] byteArray) throws IOException {
-
-		// inizializzo numero byte letti a 0
-		int totalBytesRead = 0;
-
-		// itero fino a che non ho letto tutti i byte richiesti
-		while (totalBytesRead < byteArray.length) {
-			// eseguo la lettura dei byte rimanenti (lunghezza array byte - numero byte letti) in byteArray con offset numero byte letti
-			int bytesRead = inputStream.read(byteArray, totalBytesRead, byteArray.length - totalBytesRead);
-			// controllo se la socket è stata chiusa lato server (end of stream reached)
-			if (bytesRead == -1) {
-				// end of stream reached
-				// lancio eccezzione IO per segnalere che non è possibile comunicare col HotelierServer Tcp
-				throw new IOException();
-			}
-
-			// aggiorno numero byte letti sommando quelli letti 
-			totalBytesRead += bytesRead;
-		}
-	}
-	
 	// formatta lista di hotel correttamente per la stampa
 	private String formatHotelList(List<HotelierHotel> hotels) {
 
@@ -300,16 +345,7 @@ public class HotelierClientTcpHandler {
 
 	// effettua la chiusura delle risorse aperte per la comunicazione Tcp
 	public void close() {
-		
-		try {
-			if (!socket.isClosed()) {
-				
-				inputStream.close();
-				outputStream.close();
-				socket.close();
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		// chiudo la connessione, rilasciando la memoria nativa dei compressori
+		transport.close();
 	}
 }
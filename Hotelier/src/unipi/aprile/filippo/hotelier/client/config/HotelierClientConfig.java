@@ -1,5 +1,7 @@
 package unipi.aprile.filippo.hotelier.client.config;
 
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+
 public class HotelierClientConfig {
 	
 	/**
@@ -10,6 +12,12 @@ public class HotelierClientConfig {
 	 * • serverAddress, indirizzo HotelierServer utilizzato dalle socket
 	 * • rmiRemoteReference, nome per reperire stub server dal registro rmi
 	 * • mcastAddress, indirizzo ip socket multicast
+	 * • packetCodec, formato di serializzazione dei pacchetti Tcp (JSON o BINARY)
+	 * • compressionEnabled, richiede al server la compressione dei pacchetti Tcp di grandi dimensioni
+	 * • hotelCacheSize, numero massimo di risposte searchhotel/searchallhotels mantenute nella cache del client (0 = disattivata)
+	 * • hotelCacheTtl, durata in secondi delle risposte nella cache del client
+	 * • requestTimeout, secondi di attesa della risposta a un comando Tcp oltre i quali la connessione viene considerata persa
+	 * • maxFrameSize, dimensione massima in byte di un pacchetto di risposta (anche decompresso), oltre la quale la connessione viene chiusa
 	 */
 
     private final int tcpPort;
@@ -18,14 +26,28 @@ public class HotelierClientConfig {
     private final String serverAddress;
     private final String rmiRemoteReference;
     private final String mcastAddress;
+    private final HotelierPacketCodec packetCodec;
+    private final boolean compressionEnabled;
+    private final int hotelCacheSize;
+    private final int hotelCacheTtl;
+    private final int requestTimeout;
+    private final int maxFrameSize;
 
-    public HotelierClientConfig(int tcpPort, int rmiPort, int mcastPort, String serverAddress, String rmiRemoteReference, String mcastAddress) {
+    public HotelierClientConfig(int tcpPort, int rmiPort, int mcastPort, String serverAddress, String rmiRemoteReference, String mcastAddress,
+            HotelierPacketCodec packetCodec, boolean compressionEnabled, int hotelCacheSize, int hotelCacheTtl, int requestTimeout,
+            int maxFrameSize) {
         this.tcpPort = tcpPort;
         this.rmiPort = rmiPort;
         this.mcastPort = mcastPort;
         this.serverAddress = serverAddress;
         this.rmiRemoteReference = rmiRemoteReference;
         this.mcastAddress = mcastAddress;
+        this.packetCodec = packetCodec;
+        this.compressionEnabled = compressionEnabled;
+        this.hotelCacheSize = hotelCacheSize;
+        this.hotelCacheTtl = hotelCacheTtl;
+        this.requestTimeout = requestTimeout;
+        this.maxFrameSize = maxFrameSize;
     }
 
     public int getTcpPort() {
@@ -51,4 +73,32 @@ public class HotelierClientConfig {
     public String getMcastAddress() {
         return mcastAddress;
     }
+
+    // restituisce il formato di serializzazione dei pacchetti, se non specificato JSON
+    public HotelierPacketCodec getPacketCodec() {
+        return packetCodec != null ? packetCodec : HotelierPacketCodec.JSON;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public int getHotelCacheSize() {
+        return hotelCacheSize;
+    }
+
+    // restituisce la durata in secondi delle risposte nella cache, se non specificata 30
+    public int getHotelCacheTtl() {
+        return hotelCacheTtl > 0 ? hotelCacheTtl : 30;
+    }
+
+    // restituisce i secondi di attesa della risposta a un comando Tcp, se non specificati 30
+    public int getRequestTimeout() {
+        return requestTimeout > 0 ? requestTimeout : 30;
+    }
+
+    // restituisce la dimensione massima in byte di un pacchetto di risposta, se non specificata 16 MiB
+    public int getMaxFrameSize() {
+        return maxFrameSize > 0 ? maxFrameSize : 16 * 1024 * 1024;
+    }
 }
\ No newline at end of file
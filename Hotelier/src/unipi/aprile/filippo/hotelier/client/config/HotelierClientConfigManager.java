@@ -5,6 +5,7 @@ import static unipi.aprile.filippo.hotelier.client.utils.HotelierClientUtils.CLI
 import java.io.File;
 import java.io.IOException;
 
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
 import unipi.aprile.filippo.hotelier.common.utils.HotelierCommonUtils;
 
 public class HotelierClientConfigManager {
@@ -14,7 +15,8 @@ public class HotelierClientConfigManager {
 	// crea un file json config client di default e lo serializza su disco 
 	public static void createDefaultConfig() {
 		try {
-			clientConfiguration = new HotelierClientConfig(4316, 1099, 49152, "localhost", "HOTELIER-SERVICE", "230.0.0.0");
+			clientConfiguration = new HotelierClientConfig(4316, 1099, 49152, "localhost", "HOTELIER-SERVICE", "230.0.0.0", HotelierPacketCodec.JSON, false, 256, 30, 30,
+					16 * 1024 * 1024);
 			var configJSON = HotelierCommonUtils.serialize(clientConfiguration);
 			HotelierCommonUtils.writeFile(configJSON, new File(CLIENT_CONFIG_PATH_JSON));
 		} catch (IOException exception) {
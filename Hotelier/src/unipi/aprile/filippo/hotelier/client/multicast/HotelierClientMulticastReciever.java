@@ -5,13 +5,17 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.MulticastSocket;
 
+import unipi.aprile.filippo.hotelier.client.cache.HotelierClientHotelCache;
+import unipi.aprile.filippo.hotelier.common.network.multicast.HotelierMulticastNotification;
+
 public class HotelierClientMulticastReciever implements Runnable {
 	
 	/**
 	 * La classe HotelierClientMulticastReciever avvia un thread per la ricezione delle notifiche riguardanti i cambiamenti 
 	 * di qualsiasi prima posizione dei rank locali.
 	 * Utilizza una MulticastSocket con porta e indirizzo specificati nel file config e si mette in attesa di pacchetti UDP.
-	 * Alla ricezione di un pacchetto UDp, lo converte in stringa e lo stampa.
+	 * Alla ricezione di un pacchetto UDp, lo decodifica (HotelierMulticastNotification) e ne stampa il messaggio, invalidando
+	 * nella cache del client (HotelierClientHotelCache) le risposte della città indicata dalla notifica.
 	 * La join e leave dal gruppo multicast vengono eseguite dal client rispettivamente a seguito di un comando di login e di uno di logout.
 	 * Infine, in caso di comando exit, la socket viene chiusa.
 	 */
@@ -72,10 +76,15 @@ public class HotelierClientMulticastReciever implements Runnable {
 				socket.receive(packet);
 				
 				// notifica ricevuta
-				// converto i byte ricevuti in una stringa risposta
-				String response = new String(packet.getData(), 0, packet.getLength());
-				// stampo la rispota
-				System.out.println("[NOTIFICA] " + response + "\n");
+				// decodifico i byte ricevuti, ignorando pacchetti non validi
+				HotelierMulticastNotification notification = HotelierMulticastNotification.decode(packet.getData(), packet.getLength());
+				if (notification == null) {
+					continue;
+				}
+				// invalido le risposte in cache della città la cui prima posizione è cambiata
+				HotelierClientHotelCache.getInstance().invalidate(notification.getCity());
+				// stampo il messaggio della notifica
+				System.out.println("[NOTIFICA] " + notification.getMessage() + "\n");
 				// eseguo il flush di system out
 				System.out.flush();
 			}
@@ -5,10 +5,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import com.google.gson.GsonBuilder;
-
+import unipi.aprile.filippo.hotelier.client.cache.HotelierClientHotelCache;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketJsonCodec;
 import unipi.aprile.filippo.hotelier.common.network.rmi.HotelierClientInterface;
 
 public class HotelierClientRmiImpl implements HotelierClientInterface {
@@ -19,7 +19,8 @@ public class HotelierClientRmiImpl implements HotelierClientInterface {
 	 * • chiave: città; 
 	 * • valore: la lista degli hotel ordinati per rank locale. 
 	 * A seguito della ricezione di una callback, deserializza il rank locale ricevuto e aggiorna la entry corrispondente 
-	 * della mappa con la nuova lista di hotel ordinati per rank locale. 
+	 * della mappa con la nuova lista di hotel ordinati per rank locale, invalidando nella cache del client (HotelierClientHotelCache)
+	 * le risposte della relativa città. 
 	 * La classe utilizza la sincronizzazione per garantire la coerenza dei dati quando accede/modifica la mappa dei rank locali.
 	 */
 
@@ -35,10 +36,8 @@ public class HotelierClientRmiImpl implements HotelierClientInterface {
 	@Override
 	public synchronized void notifyInterest(String serializedLocalRank) throws RemoteException {
 		
-		// instanzio un gson per deserializzare il local rank
-		var gson = new GsonBuilder().serializeNulls().create();
-		// deserializzo il local rank
-		var localRank = gson.fromJson(serializedLocalRank, HotelierLocalRank.class);
+		// deserializzo il local rank tramite il codec JSON condiviso
+		var localRank = HotelierPacketJsonCodec.fromJson(serializedLocalRank, HotelierLocalRank.class);
 		// ottengo città del local rank
 		var city = localRank.getCity();
 		// ottengo lista hotel ordinate del local rank
@@ -48,6 +47,8 @@ public class HotelierClientRmiImpl implements HotelierClientInterface {
 		synchronized (localRankMap) {
 			localRankMap.put(city, hotels);
 		}
+		// invalido le risposte in cache della città
+		HotelierClientHotelCache.getInstance().invalidate(city);
 	}
 	
 	// restituisco la mappa dei local rank
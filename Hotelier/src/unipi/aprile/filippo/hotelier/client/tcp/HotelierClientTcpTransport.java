@@ -0,0 +1,514 @@
+package unipi.aprile.filippo.hotelier.client.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCompressor;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketCapabilities;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketCapabilitiesResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHeader;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListChunk;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+
+public class HotelierClientTcpTransport implements Runnable {
+
+	/**
+	 * La classe HotelierClientTcpTransport gestisce la connessione Tcp del client con HotelierServer tramite un SocketChannel
+	 * non bloccante e un thread di I/O dedicato, il quale esegue un Selector su cui è registrato il solo canale della connessione.
+	 * Ogni pacchetto viene inviato tramite send(), che restituisce subito un CompletableFuture completato con il pacchetto
+	 * di risposta: le richieste possono quindi essere inviate da più thread e senza attendere le risposte precedenti
+	 * (pipelining), così che un solo processo possa mantenere molte richieste in volo sulla stessa connessione.
+	 *
+	 * Il funzionamento è il seguente:
+	 * • send() assegna alla richiesta un requestID, registra il future nella mappa delle richieste in volo, serializza il messaggio
+	 *   (comprimendolo se concordato) e lo inserisce nella coda di scrittura, risvegliando il thread di I/O solo se non è già stato fatto;
+	 * • il thread di I/O scrive i messaggi in coda con scritture gathering e registra l'interesse per OP_WRITE solo in caso
+	 *   di scrittura parziale;
+	 * • il thread di I/O legge i messaggi di risposta in un unico buffer, ne deserializza i pacchetti e completa il future
+	 *   associato al requestID; i chunk delle risposte in streaming (HotelierPacketHotelListChunk) vengono accumulati e il future
+	 *   viene completato all' ultimo chunk con un unico chunk contenente tutti gli hotel (lo streaming limita la memoria e la latenza
+	 *   del server, non quella del client: per elaborare una lista incrementalmente vanno richieste le pagine con limit e cursore);
+	 * • i messaggi senza requestID (push dei rank locali sottoscritti) vengono passati al pushListener, se presente;
+	 * In caso di errore o di chiusura della connessione tutti i future in volo vengono completati eccezionalmente con una IOException,
+	 * così come quelli delle richieste inviate successivamente: la connessione chiusa non viene riaperta (isClosed), è compito
+	 * di chi la utilizza crearne una nuova. await() attende la risposta per al più requestTimeout millisecondi: allo scadere
+	 * la richiesta viene rimossa da quelle in volo e il future cancellato, così che la risposta eventualmente ricevuta
+	 * in seguito venga ignorata.
+	 * Un pacchetto di risposta più grande di maxFrameSize byte, indicato nell' header o ottenuto dalla decompressione, chiude
+	 * la connessione senza allocarne il payload.
+	 * I future vengono completati dal thread di I/O: le operazioni concatenate non devono bloccare (o vanno eseguite con i metodi *Async).
+	 *
+	 * Se richiesta dal costruttore, subito dopo la connessione viene concordata con il server la compressione dei pacchetti
+	 * (HotelierPacketCapabilities), con le stesse modalità del client bloccante.
+	 */
+
+	// dimensione del buffer di lettura delle risposte
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	// numero massimo di buffer scritti con un' unica scrittura gathering
+	private static final int MAX_GATHER_BUFFERS = 64;
+
+	// canale della connessione, selettore e relativa chiave
+	private final SocketChannel channel;
+	private final Selector selector;
+	private final SelectionKey key;
+	// formato di serializzazione dei pacchetti
+	private final HotelierPacketCodec codec;
+	// requestID da assegnare alla prossima richiesta
+	private final AtomicInteger nextRequestID;
+	// future delle richieste in volo con chiave: requestID
+	private final ConcurrentHashMap<Integer, CompletableFuture<HotelierPacket>> pendingRequests;
+	// messaggi di richiesta da scrivere, inseriti dai thread che invocano send()
+	private final Queue<ByteBuffer> writeQueue;
+	// booleano che indica se il thread di I/O è già stato risvegliato per scrivere
+	private final AtomicBoolean writeScheduled;
+	// messaggi di richiesta prelevati dalla coda e non ancora scritti completamente (acceduti solo dal thread di I/O)
+	private final ArrayDeque<ByteBuffer> writingRequests;
+	private final ByteBuffer[] gatherBuffers;
+	// buffer di lettura delle risposte e stato del messaggio di risposta in lettura (acceduti solo dal thread di I/O)
+	private final ByteBuffer readBuffer;
+	private int responseField, responseRequestID, responsePosition;
+	private byte[] responsePayload;
+	// hotel dei chunk già ricevuti delle risposte in streaming con chiave: requestID (acceduti solo dal thread di I/O)
+	private final Map<Integer, List<HotelierHotel>> streamedHotels;
+	// listener dei pacchetti inviati dal server senza richiesta, null se assente
+	private volatile Consumer<HotelierPacket> pushListener;
+	// compressori per l'invio (condiviso dai thread che invocano send()) e per la ricezione, null se compressione non richiesta
+	private final HotelierPacketCompressor sendCompressor, receiveCompressor;
+	// soglia di compressione indicata dal server, -1 se compressione non concordata
+	private volatile int compressionThreshold;
+	// millisecondi di attesa di una risposta in await()
+	private final long requestTimeout;
+	// dimensione massima in byte di un pacchetto di risposta, anche decompresso
+	private final int maxFrameSize;
+	// booleano che indica se la connessione è stata chiusa
+	private volatile boolean closed;
+	// thread di I/O
+	private final Thread thread;
+
+	public HotelierClientTcpTransport(String serverAddress, int tcpPort, HotelierPacketCodec codec, boolean compressionEnabled,
+			long requestTimeout, int maxFrameSize) throws IOException {
+		// setto il formato, l'attesa massima e la dimensione massima delle risposte a quelli passati
+		this.codec = codec;
+		this.requestTimeout = requestTimeout;
+		this.maxFrameSize = maxFrameSize;
+		// inizializzo requestID, mappa delle richieste in volo e code di scrittura
+		nextRequestID = new AtomicInteger();
+		pendingRequests = new ConcurrentHashMap<>();
+		writeQueue = new ConcurrentLinkedQueue<>();
+		writeScheduled = new AtomicBoolean();
+		writingRequests = new ArrayDeque<>();
+		gatherBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+		// inizializzo buffer di lettura e mappa delle risposte in streaming
+		readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		streamedHotels = new HashMap<>();
+		// creo i compressori se la compressione è richiesta
+		sendCompressor = compressionEnabled ? new HotelierPacketCompressor() : null;
+		receiveCompressor = compressionEnabled ? new HotelierPacketCompressor() : null;
+		compressionThreshold = -1;
+
+		// apro la connessione in modo bloccante, poi configuro il canale non bloccante e lo registro sul selettore
+		channel = SocketChannel.open(new InetSocketAddress(serverAddress, tcpPort));
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		key = channel.register(selector, SelectionKey.OP_READ);
+
+		// avvio il thread di I/O
+		thread = new Thread(this, "HotelierClientTcpTransport");
+		thread.setDaemon(true);
+		thread.start();
+
+		// concordo la compressione con il server se richiesta, chiudendo la connessione in caso di errore
+		if (compressionEnabled) {
+			try {
+				negotiateCompression();
+			} catch (IOException exception) {
+				close();
+				throw exception;
+			}
+		}
+	}
+
+	// concorda con il server la compressione dei pacchetti tramite handshake delle funzionalità
+	private void negotiateCompression() throws IOException {
+
+		// invio il pacchetto capabilities richiedendo la compressione e attendo il pacchetto di risposta
+		HotelierPacket responsePacket = await(send(new HotelierPacketCapabilities(HotelierPacketCapabilities.CAPABILITY_COMPRESSION)));
+
+		// controllo se il server ha abilitato la compressione e setto la soglia a quella indicata dal server
+		if (responsePacket instanceof HotelierPacketCapabilitiesResponse capabilitiesResponse
+				&& capabilitiesResponse.hasCapability(HotelierPacketCapabilities.CAPABILITY_COMPRESSION)) {
+			compressionThreshold = capabilitiesResponse.getCompressionThreshold();
+		}
+	}
+
+	// invia il pacchetto passato e restituisce il future completato con il pacchetto di risposta
+	public CompletableFuture<HotelierPacket> send(HotelierPacket packet) {
+
+		// controllo che il pacchetto sia supportato
+		int packetID = HotelierPacketRegistry.getIDFromPacket(packet);
+		if (packetID == -1) {
+			return CompletableFuture.failedFuture(new IllegalArgumentException("pacchetto non supportato"));
+		}
+
+		// ottengo il requestID e registro il future (che lo contiene) tra le richieste in volo
+		int requestID = nextRequestID.getAndIncrement() & Integer.MAX_VALUE;
+		var future = new HotelierClientTcpRequest(requestID);
+		pendingRequests.put(requestID, future);
+		// se nel frattempo la connessione è stata chiusa completo il future eccezionalmente
+		if (closed) {
+			pendingRequests.remove(requestID);
+			future.completeExceptionally(new IOException("connessione chiusa"));
+			return future;
+		}
+
+		// serializzo il messaggio, completando il future eccezionalmente se la connessione viene chiusa nel frattempo
+		ByteBuffer message;
+		try {
+			message = serializeMessage(packet, packetID, requestID);
+		} catch (IOException exception) {
+			pendingRequests.remove(requestID);
+			future.completeExceptionally(exception);
+			return future;
+		}
+		// inserisco il messaggio nella coda di scrittura e risveglio il thread di I/O se non è già stato fatto
+		writeQueue.add(message);
+		if (writeScheduled.compareAndSet(false, true)) {
+			selector.wakeup();
+		}
+		return future;
+	}
+
+	// setta il listener dei pacchetti inviati dal server senza richiesta, eseguito dal thread di I/O
+	public void setPushListener(Consumer<HotelierPacket> pushListener) {
+		this.pushListener = pushListener;
+	}
+
+	// restituisce il numero di richieste in volo
+	public int getPendingRequests() {
+		return pendingRequests.size();
+	}
+
+	// restituisce true se la connessione è stata chiusa (dal client, dal server o a seguito di un errore), false altrimenti
+	public boolean isClosed() {
+		return closed;
+	}
+
+	// restituisce il pacchetto con cui viene completato il future passato entro requestTimeout millisecondi,
+	// convertendo le eccezioni in IOException (SocketTimeoutException se la risposta non arriva in tempo)
+	public HotelierPacket await(CompletableFuture<HotelierPacket> future) throws IOException {
+
+		try {
+			return future.get(requestTimeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException exception) {
+			// rimuovo la richiesta da quelle in volo e cancello il future, la risposta ricevuta in seguito viene ignorata
+			if (future instanceof HotelierClientTcpRequest request) {
+				pendingRequests.remove(request.requestID, request);
+			}
+			future.cancel(false);
+			throw new SocketTimeoutException("nessuna risposta entro " + requestTimeout + " ms");
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("attesa della risposta interrotta", exception);
+		} catch (ExecutionException exception) {
+			// propago la IOException che ha causato il fallimento
+			if (exception.getCause() instanceof IOException ioException) {
+				throw ioException;
+			}
+			throw new IOException(exception.getCause());
+		}
+	}
+
+	// restituisce il ByteBuffer (in lettura) contenente il messaggio relativo al pacchetto e al requestID passati
+	private ByteBuffer serializeMessage(HotelierPacket packet, int packetID, int requestID) throws IOException {
+
+		// serializzo il pacchetto nel formato dei config e ne ottengo i bytes
+		byte[] packetBytes = codec.encode(packet);
+		// ottengo i flag del formato, con il flag requestID
+		int flags = codec.getFlag() | HotelierPacketHeader.FLAG_REQUEST_ID;
+
+		// controllo se la compressione è stata concordata e il pacchetto supera la soglia
+		int threshold = compressionThreshold;
+		if (threshold >= 0 && packetBytes.length >= threshold) {
+			// comprimo il pacchetto e lo invio compresso solo se ne riduce la dimensione (il compressore è condiviso dai thread
+			// e viene chiuso da shutdown() con la stessa lock, dopo aver segnalato la chiusura della connessione)
+			byte[] compressedBytes;
+			synchronized (sendCompressor) {
+				if (closed) {
+					throw new IOException("connessione chiusa");
+				}
+				compressedBytes = sendCompressor.compress(packetBytes);
+			}
+			if (compressedBytes != null) {
+				packetBytes = compressedBytes;
+				flags |= HotelierPacketHeader.FLAG_COMPRESSED;
+			}
+		}
+
+		// inserisco lunghezza, id con i flag, requestID e pacchetto serializzato nel buffer
+		ByteBuffer buffer = ByteBuffer.allocate(HotelierPacketHeader.MAX_HEADER_SIZE + packetBytes.length);
+		buffer.putInt(packetBytes.length);
+		buffer.putInt(HotelierPacketHeader.getPacketField(packetID, flags));
+		buffer.putInt(requestID);
+		buffer.put(packetBytes);
+		// preparo il buffer in lettura
+		return buffer.flip();
+	}
+
+	@Override
+	public void run() {
+
+		IOException failure = null;
+		try {
+			// itero finchè la connessione non viene chiusa
+			while (!closed) {
+
+				// attendo che il canale sia pronto o che il thread venga risvegliato per scrivere
+				selector.select();
+				selector.selectedKeys().clear();
+				if (closed) {
+					break;
+				}
+
+				// leggo le risposte se il canale è pronto in lettura
+				if (key.isValid() && key.isReadable()) {
+					readResponses();
+				}
+				// scrivo le richieste in coda
+				writeRequests();
+			}
+		} catch (IOException exception) {
+			failure = exception;
+		} catch (RuntimeException exception) {
+			failure = new IOException(exception);
+		} finally {
+			// chiudo la connessione completando eccezionalmente le richieste in volo
+			shutdown(failure != null ? failure : new IOException("connessione chiusa"));
+		}
+	}
+
+	// scrive le richieste in coda con scritture gathering finchè il canale le accetta
+	private void writeRequests() throws IOException {
+
+		// consento ai thread che invocano send() di risvegliare nuovamente il thread di I/O
+		writeScheduled.set(false);
+		// prelevo le richieste dalla coda
+		ByteBuffer request;
+		while ((request = writeQueue.poll()) != null) {
+			writingRequests.add(request);
+		}
+
+		// scrivo le richieste finchè ce ne sono
+		while (!writingRequests.isEmpty()) {
+
+			// preparo al più MAX_GATHER_BUFFERS buffer ed eseguo un' unica scrittura gathering
+			int count = 0;
+			for (ByteBuffer buffer : writingRequests) {
+				if (count == MAX_GATHER_BUFFERS) {
+					break;
+				}
+				gatherBuffers[count++] = buffer;
+			}
+			channel.write(gatherBuffers, 0, count);
+			// controllo se il canale ha accettato tutti i buffer preparati
+			boolean partialWrite = gatherBuffers[count - 1].hasRemaining();
+			Arrays.fill(gatherBuffers, 0, count, null);
+
+			// rimuovo le richieste scritte completamente
+			while (!writingRequests.isEmpty() && !writingRequests.peek().hasRemaining()) {
+				writingRequests.poll();
+			}
+			// se la scrittura è stata parziale attendo che il canale sia pronto in scrittura
+			if (partialWrite) {
+				break;
+			}
+		}
+
+		// registro l'interesse per la scrittura solo se rimangono richieste da scrivere
+		int interestOps = writingRequests.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+		if (key.interestOps() != interestOps) {
+			key.interestOps(interestOps);
+		}
+	}
+
+	// legge i messaggi di risposta disponibili sul canale e completa le relative richieste
+	private void readResponses() throws IOException {
+
+		// leggo i byte disponibili nel buffer
+		if (channel.read(readBuffer) == -1) {
+			throw new EOFException("connessione chiusa dal server");
+		}
+		readBuffer.flip();
+
+		// estraggo dal buffer i messaggi di risposta completi
+		while (true) {
+
+			// controllo se deve essere letto l'header di un nuovo messaggio
+			if (responsePayload == null) {
+				// controllo che l'header (con il requestID se presente) sia completo
+				if (readBuffer.remaining() < HotelierPacketHeader.HEADER_SIZE) {
+					break;
+				}
+				int packetField = readBuffer.getInt(readBuffer.position() + 4);
+				boolean hasRequestID = HotelierPacketHeader.hasFlag(packetField, HotelierPacketHeader.FLAG_REQUEST_ID);
+				if (readBuffer.remaining() < (hasRequestID ? HotelierPacketHeader.MAX_HEADER_SIZE : HotelierPacketHeader.HEADER_SIZE)) {
+					break;
+				}
+				// leggo lunghezza del pacchetto, id con i flag e requestID
+				int payloadSize = readBuffer.getInt();
+				if (payloadSize < 0 || payloadSize > maxFrameSize) {
+					throw new IOException("lunghezza del pacchetto di risposta non valida: " + payloadSize);
+				}
+				responseField = readBuffer.getInt();
+				responseRequestID = hasRequestID ? readBuffer.getInt() : HotelierPacketHeader.NO_REQUEST_ID;
+				responsePayload = new byte[payloadSize];
+				responsePosition = 0;
+			}
+
+			// copio nel pacchetto di risposta i byte disponibili
+			int length = Math.min(readBuffer.remaining(), responsePayload.length - responsePosition);
+			readBuffer.get(responsePayload, responsePosition, length);
+			responsePosition += length;
+			// controllo che il pacchetto di risposta sia completo
+			if (responsePosition < responsePayload.length) {
+				break;
+			}
+
+			// gestisco il messaggio di risposta completo
+			byte[] payload = responsePayload;
+			responsePayload = null;
+			handleResponse(responseField, responseRequestID, payload);
+		}
+
+		// sposto i byte rimanenti all' inizio del buffer
+		readBuffer.compact();
+	}
+
+	// deserializza il messaggio di risposta passato e completa la relativa richiesta
+	private void handleResponse(int packetField, int requestID, byte[] payload) throws IOException {
+
+		// controllo se il pacchetto di risposta è compresso
+		if (HotelierPacketHeader.hasFlag(packetField, HotelierPacketHeader.FLAG_COMPRESSED)) {
+			// controllo che la compressione sia stata richiesta
+			if (receiveCompressor == null) {
+				throw new IOException("pacchetto compresso non concordato");
+			}
+			// decomprimo il pacchetto di risposta (al più maxFrameSize byte)
+			payload = receiveCompressor.decompress(List.of(ByteBuffer.wrap(payload)), maxFrameSize);
+		}
+		// deserializzo il pacchetto di risposta nel formato indicato dall' header
+		HotelierPacketCodec responseCodec = HotelierPacketCodec.fromPacketField(packetField);
+		HotelierPacket packet = responseCodec.decode(HotelierPacketHeader.getPacketID(packetField), ByteBuffer.wrap(payload));
+
+		// i pacchetti senza requestID sono inviati dal server senza richiesta
+		if (requestID == HotelierPacketHeader.NO_REQUEST_ID) {
+			var listener = pushListener;
+			if (listener != null && packet != null) {
+				listener.accept(packet);
+			}
+			return;
+		}
+
+		// accumulo gli hotel dei chunk delle risposte in streaming fino all' ultimo chunk
+		if (packet instanceof HotelierPacketHotelListChunk chunk) {
+			List<HotelierHotel> hotels = streamedHotels.computeIfAbsent(requestID, id -> new ArrayList<>());
+			if (chunk.getHotels() != null) {
+				hotels.addAll(chunk.getHotels());
+			}
+			if (!chunk.isLast()) {
+				return;
+			}
+			streamedHotels.remove(requestID);
+			packet = new HotelierPacketHotelListChunk(hotels, true);
+		}
+
+		// completo il future della richiesta
+		CompletableFuture<HotelierPacket> future = pendingRequests.remove(requestID);
+		if (future != null) {
+			if (packet != null) {
+				future.complete(packet);
+			} else {
+				future.completeExceptionally(new IOException("pacchetto di risposta non supportato"));
+			}
+		}
+	}
+
+	// chiude la connessione e completa eccezionalmente le richieste in volo con l'eccezione passata, eseguito dal thread di I/O
+	private void shutdown(IOException failure) {
+
+		closed = true;
+		// completo eccezionalmente le richieste in volo
+		for (Integer requestID : pendingRequests.keySet()) {
+			CompletableFuture<HotelierPacket> future = pendingRequests.remove(requestID);
+			if (future != null) {
+				future.completeExceptionally(failure);
+			}
+		}
+
+		try {
+			selector.close();
+			channel.close();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+		// rilascio la memoria nativa dei compressori
+		if (sendCompressor != null) {
+			synchronized (sendCompressor) {
+				sendCompressor.close();
+			}
+			receiveCompressor.close();
+		}
+	}
+
+	// chiude la connessione, le richieste in volo vengono completate eccezionalmente
+	public void close() {
+
+		// segnalo la chiusura e risveglio il thread di I/O, attendendone la terminazione
+		closed = true;
+		selector.wakeup();
+		if (Thread.currentThread() != thread) {
+			try {
+				thread.join();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// future di una richiesta in volo, contiene il requestID con cui è registrato tra le richieste in volo
+	private static class HotelierClientTcpRequest extends CompletableFuture<HotelierPacket> {
+
+		private final int requestID;
+
+		private HotelierClientTcpRequest(int requestID) {
+			this.requestID = requestID;
+		}
+	}
+
+}
@@ -0,0 +1,316 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
+import unipi.aprile.filippo.hotelier.common.entities.HotelierUser.HotelierBadge;
+import unipi.aprile.filippo.hotelier.common.entities.rating.HotelierHotelRating;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotel;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketInputStream;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketType;
+
+public class HotelierPacketBinaryCodec {
+
+	/**
+	 * HotelierPacketBinaryCodec è una classe statica che serializza e deserializza i pacchetti di Hotelier in un formato
+	 * binario compatto, alternativo al formato JSON. Lo schema di ogni pacchetto è fisso e registrato insieme al tipo
+	 * del pacchetto in HotelierPacketRegistry; i campi vengono scritti nell' ordine in cui sono dichiarati, senza nomi dei campi:
+	 * • id 0 login: username, password;
+	 * • id 1, 3, 9, 12 risposte testuali: response;
+	 * • id 2 logout, id 10 badge: nessun campo;
+	 * • id 4 hotel: hotelName, city;
+	 * • id 5 risposta hotel: hotel;
+	 * • id 6 hotelList: city, seguito solo in caso di paginazione o streaming da limit, cursor e byte di streaming;
+	 * • id 7 risposta hotelList: byte di presenza della lista (0 per null), numero di hotel, hotel;
+	 * • id 8 review: hotelName, city, rate, rating;
+	 * • id 11 risposta badge: badge (0 per null altrimenti ordinale + 1);
+	 * • id 13 capabilities: capabilities;
+	 * • id 14 risposta capabilities: capabilities, compressionThreshold;
+	 * • id 15 hotel multipli: byte di presenza della lista (0 per null), numero di ricerche, hotelName e city di ogni ricerca;
+	 * • id 16 risposta hotel multipli: come id 7, gli hotel non trovati vengono scritti con byte di presenza 0;
+	 * • id 17 pagina hotelList: hotel come id 7, nextCursor, total;
+	 * • id 18 chunk hotelList: hotel come id 7, byte di ultimo chunk;
+	 * • id 19 sottoscrizione, id 20 annullamento sottoscrizione: byte di presenza della lista (0 per null), numero di città, città;
+	 * • id 21 risposta sottoscrizione: response, subscribedCities;
+	 * • id 22 rank locale: byte di presenza (0 per null), city, hotel come id 7;
+	 * Un hotel è formato da un byte di presenza (0 per null) seguito da: id, name, description, city, phone,
+	 * numero di servizi e servizi, rate, rating, reviewCount, rank e localRank.
+	 * Un rating è formato da un byte di presenza (0 per null) seguito dai quattro score come float a 4 byte.
+	 * Gli interi sono codificati come varint zigzag, le stringhe come lunghezza + UTF-8 (vedi HotelierPacketBinaryWriter).
+	 * La classe espone la scrittura e lettura dei tipi composti (hotel, rating, badge) utilizzati dagli schemi dei pacchetti.
+	 */
+
+	// restituisce il pacchetto serializzato in formato binario, null se pacchetto non supportato
+	public static byte[] encode(HotelierPacket packet) {
+
+		// ottengo il tipo del pacchetto dal registry
+		HotelierPacketType<?> packetType = HotelierPacketRegistry.getPacketType(packet);
+		// controllo che il pacchetto sia supportato
+		if (packetType == null) {
+			return null;
+		}
+
+		// scrivo i campi del pacchetto secondo lo schema del tipo e restituisco i byte del pacchetto serializzato
+		var writer = new HotelierPacketBinaryWriter();
+		packetType.writeBinary(writer, packet);
+		return writer.toByteArray();
+	}
+
+	// restituisce il pacchetto deserializzato dallo stream passato rispetto a id pacchetto passato, null se pacchetto non supportato
+	public static HotelierPacket decode(int packetID, HotelierPacketInputStream packetStream) throws IOException {
+
+		// ottengo il tipo del pacchetto relativo a id pacchetto dal registry
+		HotelierPacketType<?> packetType = HotelierPacketRegistry.getPacketType(packetID);
+		// controllo che il pacchetto sia supportato
+		if (packetType == null) {
+			return null;
+		}
+
+		// leggo i campi del pacchetto secondo lo schema del tipo
+		return packetType.readBinary(new HotelierPacketBinaryReader(packetStream));
+	}
+
+	// scrive la lista di stringhe passata
+	public static void writeStrings(HotelierPacketBinaryWriter writer, List<String> values) {
+
+		// scrivo il byte di presenza
+		writer.writeByte(values == null ? 0 : 1);
+		if (values == null) {
+			return;
+		}
+
+		// scrivo il numero di stringhe e ogni stringa
+		writer.writeVarInt(values.size());
+		for (String value : values) {
+			writer.writeString(value);
+		}
+	}
+
+	// legge una lista di stringhe, null se assente
+	public static List<String> readStrings(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo il byte di presenza
+		if (reader.readByte() == 0) {
+			return null;
+		}
+
+		// leggo il numero di stringhe e ogni stringa
+		int count = reader.readCount();
+		List<String> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(reader.readString());
+		}
+		return values;
+	}
+
+	// scrive il rank locale passato
+	public static void writeLocalRank(HotelierPacketBinaryWriter writer, HotelierLocalRank localRank) {
+
+		// scrivo il byte di presenza
+		writer.writeByte(localRank == null ? 0 : 1);
+		if (localRank == null) {
+			return;
+		}
+
+		// scrivo città e lista di hotel ordinata
+		writer.writeString(localRank.getCity());
+		writeHotels(writer, localRank.getHotels());
+	}
+
+	// legge un rank locale, null se assente
+	public static HotelierLocalRank readLocalRank(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo il byte di presenza
+		if (reader.readByte() == 0) {
+			return null;
+		}
+
+		// leggo città e lista di hotel ordinata
+		var localRank = new HotelierLocalRank(reader.readString());
+		localRank.setHotels(readHotels(reader));
+		return localRank;
+	}
+
+	// scrive la lista di ricerche di hotel passata
+	public static void writeHotelLookups(HotelierPacketBinaryWriter writer, List<HotelierPacketHotel> lookups) {
+
+		// scrivo il byte di presenza
+		writer.writeByte(lookups == null ? 0 : 1);
+		if (lookups == null) {
+			return;
+		}
+
+		// scrivo il numero di ricerche e nome e città di ogni ricerca
+		writer.writeVarInt(lookups.size());
+		for (HotelierPacketHotel lookup : lookups) {
+			writer.writeString(lookup.getHotelName());
+			writer.writeString(lookup.getCity());
+		}
+	}
+
+	// legge una lista di ricerche di hotel
+	public static List<HotelierPacketHotel> readHotelLookups(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo il byte di presenza
+		if (reader.readByte() == 0) {
+			return null;
+		}
+
+		// leggo il numero di ricerche e ogni ricerca
+		int count = reader.readCount();
+		List<HotelierPacketHotel> lookups = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			lookups.add(new HotelierPacketHotel(reader.readString(), reader.readString()));
+		}
+		return lookups;
+	}
+
+	// scrive la lista di hotel passata
+	public static void writeHotels(HotelierPacketBinaryWriter writer, List<HotelierHotel> hotels) {
+
+		// scrivo il byte di presenza
+		writer.writeByte(hotels == null ? 0 : 1);
+		if (hotels == null) {
+			return;
+		}
+
+		// scrivo il numero di hotel e ogni hotel
+		writer.writeVarInt(hotels.size());
+		for (HotelierHotel hotel : hotels) {
+			writeHotel(writer, hotel);
+		}
+	}
+
+	// legge una lista di hotel
+	public static List<HotelierHotel> readHotels(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo il byte di presenza
+		if (reader.readByte() == 0) {
+			return null;
+		}
+
+		// leggo il numero di hotel e ogni hotel
+		int count = reader.readCount();
+		List<HotelierHotel> hotels = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			hotels.add(readHotel(reader));
+		}
+		return hotels;
+	}
+
+	// scrive l'hotel passato
+	public static void writeHotel(HotelierPacketBinaryWriter writer, HotelierHotel hotel) {
+
+		// scrivo il byte di presenza
+		writer.writeByte(hotel == null ? 0 : 1);
+		if (hotel == null) {
+			return;
+		}
+
+		// scrivo i campi immutabili dell' hotel
+		writer.writeSignedVarInt(hotel.getID());
+		writer.writeString(hotel.getName());
+		writer.writeString(hotel.getDescription());
+		writer.writeString(hotel.getCity());
+		writer.writeString(hotel.getPhone());
+		// scrivo il numero di servizi e i servizi (una lista null viene scritta vuota)
+		List<String> services = hotel.getServices() != null ? hotel.getServices() : List.of();
+		writer.writeVarInt(services.size());
+		for (String service : services) {
+			writer.writeString(service);
+		}
+		// scrivo i campi mutabili dell' hotel
+		writer.writeFloat(hotel.getRate());
+		writeRating(writer, hotel.getRating());
+		writer.writeSignedVarInt(hotel.getReviewCount());
+		writer.writeDouble(hotel.getRank());
+		writer.writeSignedVarInt(hotel.getLocalRank());
+	}
+
+	// legge un hotel
+	public static HotelierHotel readHotel(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo il byte di presenza
+		if (reader.readByte() == 0) {
+			return null;
+		}
+
+		// leggo i campi immutabili dell' hotel
+		int id = reader.readSignedVarInt();
+		String name = reader.readString();
+		String description = reader.readString();
+		String city = reader.readString();
+		String phone = reader.readString();
+		// leggo i servizi
+		int servicesCount = reader.readCount();
+		List<String> services = new ArrayList<>(servicesCount);
+		for (int i = 0; i < servicesCount; i++) {
+			services.add(reader.readString());
+		}
+		// leggo rate e rating
+		float rate = reader.readFloat();
+		HotelierHotelRating rating = readRating(reader);
+
+		// creo l'hotel (il costruttore richiede un rating non null) e setto i campi mutabili
+		var hotel = new HotelierHotel(id, name, description, city, phone, services, 0, rating != null ? rating : new HotelierHotelRating(0, 0, 0, 0));
+		hotel.setRate(rate);
+		hotel.setRating(rating);
+		hotel.setReviewCount(reader.readSignedVarInt());
+		hotel.setRank(reader.readDouble());
+		hotel.setLocalRank(reader.readSignedVarInt());
+		return hotel;
+	}
+
+	// scrive il rating passato
+	public static void writeRating(HotelierPacketBinaryWriter writer, HotelierHotelRating rating) {
+
+		// scrivo il byte di presenza
+		writer.writeByte(rating == null ? 0 : 1);
+		if (rating == null) {
+			return;
+		}
+
+		// scrivo i quattro score
+		writer.writeFloat(rating.getCleaning());
+		writer.writeFloat(rating.getPosition());
+		writer.writeFloat(rating.getServices());
+		writer.writeFloat(rating.getQuality());
+	}
+
+	// legge un rating
+	public static HotelierHotelRating readRating(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo il byte di presenza
+		if (reader.readByte() == 0) {
+			return null;
+		}
+
+		// leggo i quattro score
+		return new HotelierHotelRating(reader.readFloat(), reader.readFloat(), reader.readFloat(), reader.readFloat());
+	}
+
+	// scrive il badge passato
+	public static void writeBadge(HotelierPacketBinaryWriter writer, HotelierBadge badge) {
+
+		// scrivo l'ordinale del badge + 1 (0 indica null)
+		writer.writeVarInt(badge == null ? 0 : badge.ordinal() + 1);
+	}
+
+	// legge un badge
+	public static HotelierBadge readBadge(HotelierPacketBinaryReader reader) throws IOException {
+
+		// leggo l'ordinale del badge + 1 (0 indica null)
+		int badge = reader.readVarInt();
+		HotelierBadge[] badges = HotelierBadge.values();
+		if (badge < 0 || badge > badges.length) {
+			throw new IOException("badge non valido: " + badge);
+		}
+		return badge == 0 ? null : badges[badge - 1];
+	}
+
+}
@@ -0,0 +1,18 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.IOException;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+
+@FunctionalInterface
+public interface HotelierPacketBinaryDecoder<P extends HotelierPacket> {
+
+	/**
+	 * L'interfaccia HotelierPacketBinaryDecoder rappresenta lo schema di lettura in formato binario di un tipo di pacchetto,
+	 * registrato insieme al tipo in HotelierPacketRegistry (vedi HotelierPacketType).
+	 */
+
+	// restituisce il pacchetto letto tramite il reader passato
+	P read(HotelierPacketBinaryReader reader) throws IOException;
+
+}
@@ -0,0 +1,16 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+
+@FunctionalInterface
+public interface HotelierPacketBinaryEncoder<P extends HotelierPacket> {
+
+	/**
+	 * L'interfaccia HotelierPacketBinaryEncoder rappresenta lo schema di scrittura in formato binario di un tipo di pacchetto,
+	 * registrato insieme al tipo in HotelierPacketRegistry (vedi HotelierPacketType).
+	 */
+
+	// scrive i campi del pacchetto passato tramite il writer passato
+	void write(HotelierPacketBinaryWriter writer, P packet);
+
+}
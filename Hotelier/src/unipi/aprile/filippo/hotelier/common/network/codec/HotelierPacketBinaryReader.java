@@ -0,0 +1,124 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketInputStream;
+
+public class HotelierPacketBinaryReader {
+
+	/**
+	 * La classe HotelierPacketBinaryReader legge i campi di un pacchetto nel formato binario di Hotelier
+	 * (vedi HotelierPacketBinaryWriter) da un HotelierPacketInputStream.
+	 * Le lunghezze lette vengono validate rispetto ai byte disponibili nello stream prima di allocare qualsiasi array,
+	 * così che un pacchetto malformato o ostile non possa causare allocazioni maggiori del pacchetto stesso;
+	 * in caso di pacchetto malformato viene lanciata una IOException.
+	 */
+
+	// stream da cui leggere il pacchetto
+	private final HotelierPacketInputStream inputStream;
+
+	public HotelierPacketBinaryReader(HotelierPacketInputStream inputStream) {
+		this.inputStream = inputStream;
+	}
+
+	// legge un byte
+	public int readByte() throws IOException {
+
+		int value = inputStream.read();
+		// controllo di non aver raggiunto la fine del pacchetto
+		if (value == -1) {
+			throw new EOFException("pacchetto binario troncato");
+		}
+		return value;
+	}
+
+	// restituisce true se ci sono ancora byte del pacchetto da leggere, false altrimenti
+	public boolean hasRemaining() {
+		return inputStream.available() > 0;
+	}
+
+	// legge un intero senza segno codificato varint
+	public int readVarInt() throws IOException {
+
+		int value = 0;
+		// leggo 7 bit alla volta per al più 5 byte
+		for (int shift = 0; shift < 32; shift += 7) {
+			int readByte = readByte();
+			value |= (readByte & 0x7F) << shift;
+			// controllo se il byte letto è l'ultimo
+			if ((readByte & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("varint malformato");
+	}
+
+	// legge un intero con segno codificato varint zigzag
+	public int readSignedVarInt() throws IOException {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	// legge una stringa (anche null) codificata come lunghezza + byte UTF-8
+	public String readString() throws IOException {
+
+		// leggo la lunghezza + 1 (0 indica null)
+		int length = readVarInt();
+		if (length == 0) {
+			return null;
+		}
+
+		// leggo i byte UTF-8 della stringa
+		byte[] bytes = new byte[checkLength(length - 1)];
+		readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// legge un numero di elementi, validandolo rispetto ai byte disponibili (ogni elemento occupa almeno un byte)
+	public int readCount() throws IOException {
+		return checkLength(readVarInt());
+	}
+
+	// legge un float a 4 byte
+	public float readFloat() throws IOException {
+		return Float.intBitsToFloat(readFixedInt());
+	}
+
+	// legge un double a 8 byte
+	public double readDouble() throws IOException {
+		long high = readFixedInt();
+		long low = readFixedInt() & 0xFFFFFFFFL;
+		return Double.longBitsToDouble((high << 32) | low);
+	}
+
+	// legge un intero a 4 byte big endian
+	private int readFixedInt() throws IOException {
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+	}
+
+	// legge esattamente i byte necessari a riempire l'array passato
+	private void readFully(byte[] bytes) throws IOException {
+
+		int totalBytesRead = 0;
+		// itero finchè non ho letto tutti i byte
+		while (totalBytesRead < bytes.length) {
+			int bytesRead = inputStream.read(bytes, totalBytesRead, bytes.length - totalBytesRead);
+			if (bytesRead == -1) {
+				throw new EOFException("pacchetto binario troncato");
+			}
+			totalBytesRead += bytesRead;
+		}
+	}
+
+	// restituisce la lunghezza passata se non supera i byte disponibili nello stream, altrimenti lancia IOException
+	private int checkLength(int length) throws IOException {
+
+		if (length < 0 || length > inputStream.available()) {
+			throw new IOException("lunghezza non valida: " + length);
+		}
+		return length;
+	}
+
+}
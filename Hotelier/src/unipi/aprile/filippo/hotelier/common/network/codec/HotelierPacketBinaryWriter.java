@@ -0,0 +1,103 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class HotelierPacketBinaryWriter {
+
+	/**
+	 * La classe HotelierPacketBinaryWriter scrive i campi di un pacchetto nel formato binario di Hotelier
+	 * all' interno di un array di byte che viene ingrandito quando necessario.
+	 * I tipi supportati sono:
+	 * • varint, interi senza segno in 1-5 byte (7 bit per byte, il bit più significativo indica se segue un altro byte);
+	 * • signed varint, interi con segno codificati zigzag (i valori negativi piccoli occupano pochi byte);
+	 * • string, lunghezza in byte (varint, 0 per null altrimenti lunghezza + 1) seguita dai byte UTF-8;
+	 * • float e double a dimensione fissa (4 e 8 byte, big endian);
+	 */
+
+	// dimensione iniziale dell' array di byte
+	private static final int INITIAL_CAPACITY = 256;
+
+	// array di byte scritti
+	private byte[] buffer;
+	// numero di byte scritti
+	private int size;
+
+	public HotelierPacketBinaryWriter() {
+		buffer = new byte[INITIAL_CAPACITY];
+	}
+
+	// scrive un byte
+	public void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[size++] = (byte) value;
+	}
+
+	// scrive un intero senza segno come varint
+	public void writeVarInt(int value) {
+
+		ensureCapacity(5);
+		// scrivo 7 bit alla volta finchè il valore non entra in un byte
+		while ((value & ~0x7F) != 0) {
+			buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[size++] = (byte) value;
+	}
+
+	// scrive un intero con segno come varint codificato zigzag
+	public void writeSignedVarInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	// scrive una stringa (anche null) come lunghezza + byte UTF-8
+	public void writeString(String value) {
+
+		// controllo se la stringa è null
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+
+		// ottengo i byte UTF-8 della stringa e li scrivo preceduti dalla lunghezza + 1
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length + 1);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, size, bytes.length);
+		size += bytes.length;
+	}
+
+	// scrive un float a 4 byte
+	public void writeFloat(float value) {
+		writeFixedInt(Float.floatToIntBits(value));
+	}
+
+	// scrive un double a 8 byte
+	public void writeDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		writeFixedInt((int) (bits >>> 32));
+		writeFixedInt((int) bits);
+	}
+
+	// restituisce i byte scritti
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+
+	// scrive un intero a 4 byte big endian
+	private void writeFixedInt(int value) {
+		ensureCapacity(4);
+		buffer[size++] = (byte) (value >>> 24);
+		buffer[size++] = (byte) (value >>> 16);
+		buffer[size++] = (byte) (value >>> 8);
+		buffer[size++] = (byte) value;
+	}
+
+	// ingrandisce l'array di byte se non può contenere altri length byte
+	private void ensureCapacity(int length) {
+		if (size + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+		}
+	}
+
+}
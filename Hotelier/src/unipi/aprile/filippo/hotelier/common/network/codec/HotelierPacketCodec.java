@@ -0,0 +1,71 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHeader;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketInputStream;
+
+public enum HotelierPacketCodec {
+
+	/**
+	 * HotelierPacketCodec rappresenta il formato con cui vengono serializzati i pacchetti sulla connessione TCP:
+	 * • JSON, formato originale tramite Gson (HotelierPacketJsonCodec), utilizzato dai client che non indicano alcun formato;
+	 * • BINARY, formato binario compatto (HotelierPacketBinaryCodec), indicato dal flag FLAG_BINARY nell' header del messaggio;
+	 * Il client sceglie il formato tramite i propri config al momento della connessione e lo indica in ogni messaggio,
+	 * il server risponde ad ogni richiesta con lo stesso formato della richiesta.
+	 */
+
+	JSON(0),
+	BINARY(HotelierPacketHeader.FLAG_BINARY);
+
+	// flag dell' header relativo al formato
+	private final int flag;
+
+	HotelierPacketCodec(int flag) {
+		this.flag = flag;
+	}
+
+	// restituisce il flag dell' header relativo al formato
+	public int getFlag() {
+		return flag;
+	}
+
+	// restituisce il formato indicato dal packetField passato
+	public static HotelierPacketCodec fromPacketField(int packetField) {
+		return HotelierPacketHeader.hasFlag(packetField, HotelierPacketHeader.FLAG_BINARY) ? BINARY : JSON;
+	}
+
+	// restituisce il pacchetto serializzato nel formato, null se pacchetto non supportato
+	public byte[] encode(HotelierPacket packet) {
+
+		// filtro rispetto al formato
+		return switch (this) {
+			case BINARY -> HotelierPacketBinaryCodec.encode(packet);
+			default -> HotelierPacketJsonCodec.encode(packet);
+		};
+	}
+
+	// restituisce il pacchetto deserializzato dal byteBuffer passato rispetto a id pacchetto passato, null se pacchetto non supportato
+	public HotelierPacket decode(int packetID, ByteBuffer packetPayload) throws IOException {
+
+		// filtro rispetto al formato
+		return switch (this) {
+			case BINARY -> HotelierPacketBinaryCodec.decode(packetID, new HotelierPacketInputStream(List.of(packetPayload)));
+			default -> HotelierPacketJsonCodec.decode(packetID, packetPayload);
+		};
+	}
+
+	// restituisce il pacchetto deserializzato incrementalmente dai chunk passati rispetto a id pacchetto passato, null se pacchetto non supportato
+	public HotelierPacket decode(int packetID, List<ByteBuffer> packetChunks) throws IOException {
+
+		// filtro rispetto al formato
+		return switch (this) {
+			case BINARY -> HotelierPacketBinaryCodec.decode(packetID, new HotelierPacketInputStream(packetChunks));
+			default -> HotelierPacketJsonCodec.decode(packetID, packetChunks);
+		};
+	}
+
+}
@@ -0,0 +1,125 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketInputStream;
+
+public class HotelierPacketCompressor {
+
+	/**
+	 * La classe HotelierPacketCompressor comprime e decomprime i pacchetti serializzati (in qualsiasi formato) tramite
+	 * un Deflater e un Inflater riutilizzati tra i pacchetti, evitando di allocarne di nuovi (e la relativa memoria nativa)
+	 * ad ogni messaggio. Non è thread safe: il server ne mantiene un pool per ogni selettore worker, il client uno per connessione.
+	 *
+	 * Un pacchetto compresso, indicato dal flag FLAG_COMPRESSED nell' header del messaggio, è formato da:
+	 * • originalSize (int): lunghezza del pacchetto serializzato non compresso;
+	 * • pacchetto serializzato compresso con deflate.
+	 * La lunghezza originale permette di allocare esattamente il pacchetto decompresso e di rifiutare, prima di decomprimere,
+	 * i pacchetti che una volta decompressi supererebbero la dimensione massima consentita.
+	 */
+
+	// dimensione della lunghezza originale che precede il pacchetto compresso
+	private static final int ORIGINAL_SIZE_BYTES = 4;
+
+	// compressore e decompressore riutilizzati
+	private final Deflater deflater;
+	private final Inflater inflater;
+
+	public HotelierPacketCompressor() {
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		inflater = new Inflater();
+	}
+
+	// restituisce il pacchetto serializzato passato compresso, null se la compressione non ne riduce la dimensione
+	public byte[] compress(byte[] payload) {
+
+		// controllo che il pacchetto sia più grande della lunghezza originale da inserire
+		if (payload.length <= ORIGINAL_SIZE_BYTES) {
+			return null;
+		}
+		// alloco il pacchetto compresso con la stessa dimensione dell' originale (se non vi rientra non conviene comprimere)
+		byte[] compressedPayload = new byte[payload.length];
+		// inserisco la lunghezza originale
+		ByteBuffer.wrap(compressedPayload).putInt(payload.length);
+
+		try {
+			// comprimo il pacchetto nei byte rimanenti
+			deflater.setInput(payload);
+			deflater.finish();
+			int compressedSize = ORIGINAL_SIZE_BYTES + deflater.deflate(compressedPayload, ORIGINAL_SIZE_BYTES, compressedPayload.length - ORIGINAL_SIZE_BYTES);
+			// controllo che la compressione sia terminata nei byte disponibili, altrimenti il pacchetto compresso non è più piccolo
+			if (!deflater.finished()) {
+				return null;
+			}
+			// restituisco il pacchetto compresso
+			return Arrays.copyOf(compressedPayload, compressedSize);
+		} finally {
+			// resetto il compressore per il prossimo pacchetto
+			deflater.reset();
+		}
+	}
+
+	// restituisce il pacchetto serializzato decompresso dai chunk passati, ne rifiuta la decompressione se supera maxSize byte
+	public byte[] decompress(List<ByteBuffer> compressedChunks, int maxSize) throws IOException {
+
+		// leggo la lunghezza originale del pacchetto
+		var chunksStream = new HotelierPacketInputStream(compressedChunks);
+		int originalSize = 0;
+		for (int i = 0; i < ORIGINAL_SIZE_BYTES; i++) {
+			int next = chunksStream.read();
+			if (next == -1) {
+				throw new IOException("pacchetto compresso troncato");
+			}
+			originalSize = (originalSize << 8) | next;
+		}
+		// controllo che la lunghezza originale sia valida e non superi la dimensione massima
+		if (originalSize < 0 || originalSize > maxSize) {
+			throw new IOException("pacchetto decompresso troppo grande: " + originalSize);
+		}
+
+		// alloco il pacchetto decompresso
+		byte[] payload = new byte[originalSize];
+		int payloadSize = 0;
+
+		try {
+			// decomprimo i byte rimanenti di ogni chunk
+			for (ByteBuffer chunk : compressedChunks) {
+				inflater.setInput(chunk);
+				// decomprimo finchè il chunk non è stato consumato
+				while (!inflater.needsInput() && !inflater.finished()) {
+					int inflatedBytes = inflater.inflate(payload, payloadSize, payload.length - payloadSize);
+					// controllo che il pacchetto decompresso non superi la lunghezza originale dichiarata e non richieda un dizionario
+					if (inflatedBytes == 0 && (payloadSize == payload.length || inflater.needsDictionary())) {
+						throw new IOException("pacchetto compresso malformato");
+					}
+					payloadSize += inflatedBytes;
+				}
+			}
+			// controllo che il pacchetto sia stato decompresso completamente e abbia la lunghezza dichiarata
+			if (!inflater.finished() || payloadSize != originalSize) {
+				throw new IOException("pacchetto compresso malformato");
+			}
+		} catch (DataFormatException exception) {
+			throw new IOException("pacchetto compresso malformato", exception);
+		} finally {
+			// resetto il decompressore per il prossimo pacchetto
+			inflater.reset();
+		}
+
+		// restituisco il pacchetto decompresso
+		return payload;
+	}
+
+	// rilascia la memoria nativa di compressore e decompressore
+	public void close() {
+		deflater.end();
+		inflater.end();
+	}
+
+}
@@ -0,0 +1,68 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketInputStream;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+
+public class HotelierPacketJsonCodec {
+
+	/**
+	 * HotelierPacketJsonCodec è una classe statica che serializza e deserializza in JSON i pacchetti di Hotelier
+	 * e gli oggetti scambiati tramite callback RMI.
+	 * Utilizza un' unica instanza di Gson condivisa (thread safe) invece di crearne una ad ogni utilizzo, e i pacchetti
+	 * vengono scritti e letti in streaming tramite HotelierPacketUtf8Writer e HotelierPacketUtf8Reader direttamente
+	 * da/verso i byte del messaggio, senza stringhe intermedie.
+	 */
+
+	// gson condiviso per la serializzazione/deserializzazione
+	private static final Gson gson;
+
+	static {
+		gson = new GsonBuilder().serializeNulls().create();
+	}
+
+	// restituisce i byte UTF-8 del pacchetto serializzato in JSON
+	public static byte[] encode(HotelierPacket packet) {
+
+		// serializzo il pacchetto direttamente in byte UTF-8
+		var writer = new HotelierPacketUtf8Writer();
+		gson.toJson(packet, writer);
+		return writer.toByteArray();
+	}
+
+	// restuisce il pacchetto deserializzato dal byteBuffer passato rispetto a id pacchetto passato, null se pacchetto non supportato
+	public static HotelierPacket decode(int packetID, ByteBuffer packetPayload) {
+		return decode(packetID, List.of(packetPayload));
+	}
+
+	// restuisce il pacchetto deserializzato incrementalmente dai chunk passati rispetto a id pacchetto passato, null se pacchetto non supportato
+	public static HotelierPacket decode(int packetID, List<ByteBuffer> packetChunks) {
+
+		// ottengo la classe del pacchetto relativa a id pacchetto
+		Class<? extends HotelierPacket> packetClass = HotelierPacketRegistry.getPacketClass(packetID);
+		// controllo che il pacchetto sia supportato
+		if (packetClass == null) {
+			return null;
+		}
+
+		// deserializzo il pacchetto decodificando i byte UTF-8 dei chunk man mano che vengono letti
+		return gson.fromJson(new HotelierPacketUtf8Reader(new HotelierPacketInputStream(packetChunks)), packetClass);
+	}
+
+	// restituisce l'oggetto passato serializzato in JSON
+	public static String toJson(Object object) {
+		return gson.toJson(object);
+	}
+
+	// restituisce l'oggetto della classe passata deserializzato dalla stringa JSON passata
+	public static <T> T fromJson(String json, Class<T> objectClass) {
+		return gson.fromJson(json, objectClass);
+	}
+
+}
@@ -0,0 +1,126 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.Reader;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketInputStream;
+
+public class HotelierPacketUtf8Reader extends Reader {
+
+	/**
+	 * La classe HotelierPacketUtf8Reader è un Reader che decodifica in UTF-8 i byte di un pacchetto serializzato
+	 * letti da un HotelierPacketInputStream, ovvero direttamente dai ByteBuffer (chunk) in cui è stato letto il pacchetto.
+	 * Permette di deserializzare un pacchetto JSON senza copiarne i byte in una stringa intermedia
+	 * e senza i buffer di decodifica allocati da InputStreamReader ad ogni utilizzo.
+	 * Le sequenze UTF-8 malformate vengono decodificate come carattere di sostituzione U+FFFD, come avviene per new String().
+	 */
+
+	// carattere di sostituzione per le sequenze malformate
+	private static final char REPLACEMENT_CHARACTER = '�';
+
+	// stream da cui leggere i byte del pacchetto
+	private final HotelierPacketInputStream inputStream;
+	// surrogato basso in attesa di essere restituito, 0 se assente
+	private char lowSurrogate;
+	// byte letto in anticipo durante la decodifica di una sequenza malformata, -2 se assente
+	private int pendingByte;
+
+	public HotelierPacketUtf8Reader(HotelierPacketInputStream inputStream) {
+		this.inputStream = inputStream;
+		pendingByte = -2;
+	}
+
+	@Override
+	public int read(char[] characters, int offset, int length) {
+
+		// numero di caratteri decodificati
+		int count = 0;
+		// itero finchè non ho decodificato i caratteri richiesti
+		while (count < length) {
+
+			// decodifico il prossimo carattere
+			int character = readChar();
+			// controllo se ho raggiunto la fine del pacchetto
+			if (character == -1) {
+				return count == 0 ? -1 : count;
+			}
+			characters[offset + count++] = (char) character;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	// restituisce il prossimo carattere decodificato, -1 a fine pacchetto
+	private int readChar() {
+
+		// controllo se è in attesa il surrogato basso di una coppia
+		if (lowSurrogate != 0) {
+			char character = lowSurrogate;
+			lowSurrogate = 0;
+			return character;
+		}
+
+		// leggo il primo byte della sequenza
+		int first = nextByte();
+		if (first < 0x80) {
+			// fine pacchetto o carattere ASCII
+			return first;
+		}
+
+		// ottengo il numero di byte di continuazione e i bit del primo byte
+		int continuation;
+		int codePoint;
+		if ((first & 0xE0) == 0xC0) {
+			continuation = 1;
+			codePoint = first & 0x1F;
+		} else if ((first & 0xF0) == 0xE0) {
+			continuation = 2;
+			codePoint = first & 0x0F;
+		} else if ((first & 0xF8) == 0xF0) {
+			continuation = 3;
+			codePoint = first & 0x07;
+		} else {
+			// primo byte non valido
+			return REPLACEMENT_CHARACTER;
+		}
+
+		// leggo i byte di continuazione
+		for (int i = 0; i < continuation; i++) {
+			int next = nextByte();
+			// controllo che sia un byte di continuazione, altrimenti lo conservo per il prossimo carattere
+			if (next == -1 || (next & 0xC0) != 0x80) {
+				pendingByte = next;
+				return REPLACEMENT_CHARACTER;
+			}
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+
+		// controllo che il code point sia valido e codificato nella forma più breve
+		if (codePoint > Character.MAX_CODE_POINT || (continuation == 1 && codePoint < 0x80) || (continuation == 2 && codePoint < 0x800)
+				|| (continuation == 3 && codePoint < 0x10000) || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+			return REPLACEMENT_CHARACTER;
+		}
+
+		// controllo se il code point richiede una coppia di surrogati
+		if (codePoint >= 0x10000) {
+			lowSurrogate = Character.lowSurrogate(codePoint);
+			return Character.highSurrogate(codePoint);
+		}
+		return codePoint;
+	}
+
+	// restituisce il prossimo byte del pacchetto, -1 a fine pacchetto
+	private int nextByte() {
+
+		// controllo se è presente un byte letto in anticipo
+		if (pendingByte != -2) {
+			int next = pendingByte;
+			pendingByte = -2;
+			return next;
+		}
+		return inputStream.read();
+	}
+
+}
@@ -0,0 +1,126 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+public class HotelierPacketUtf8Writer extends Writer {
+
+	/**
+	 * La classe HotelierPacketUtf8Writer è un Writer che codifica in UTF-8 i caratteri scritti direttamente
+	 * all' interno di un array di byte ingrandito quando necessario.
+	 * Permette di serializzare un pacchetto in JSON ottenendone i byte senza creare una stringa intermedia
+	 * e senza i buffer di codifica allocati da OutputStreamWriter ad ogni utilizzo.
+	 * I caratteri surrogati non accoppiati vengono codificati come '?', come avviene per String.getBytes().
+	 */
+
+	// dimensione iniziale dell' array di byte
+	private static final int INITIAL_CAPACITY = 256;
+
+	// array di byte scritti
+	private byte[] buffer;
+	// numero di byte scritti
+	private int size;
+	// surrogato alto in attesa del relativo surrogato basso, 0 se assente
+	private char highSurrogate;
+
+	public HotelierPacketUtf8Writer() {
+		buffer = new byte[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public void write(int character) {
+		writeChar((char) character);
+	}
+
+	@Override
+	public void write(char[] characters, int offset, int length) {
+
+		// mi assicuro di poter contenere i caratteri nel caso peggiore (3 byte per carattere)
+		ensureCapacity(length * 3);
+		for (int i = offset; i < offset + length; i++) {
+			writeChar(characters[i]);
+		}
+	}
+
+	@Override
+	public void write(String string, int offset, int length) {
+
+		// mi assicuro di poter contenere i caratteri nel caso peggiore (3 byte per carattere)
+		ensureCapacity(length * 3);
+		for (int i = offset; i < offset + length; i++) {
+			writeChar(string.charAt(i));
+		}
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+		// codifico l'eventuale surrogato alto rimasto non accoppiato
+		flushHighSurrogate();
+	}
+
+	// restituisce i byte scritti
+	public byte[] toByteArray() {
+		flushHighSurrogate();
+		return Arrays.copyOf(buffer, size);
+	}
+
+	// codifica in UTF-8 il carattere passato
+	private void writeChar(char character) {
+
+		ensureCapacity(4);
+
+		// controllo se è in attesa un surrogato alto
+		if (highSurrogate != 0) {
+			// controllo se il carattere completa la coppia di surrogati
+			if (Character.isLowSurrogate(character)) {
+				// codifico il code point su 4 byte
+				int codePoint = Character.toCodePoint(highSurrogate, character);
+				highSurrogate = 0;
+				buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+				return;
+			}
+			// surrogato alto non accoppiato
+			flushHighSurrogate();
+		}
+
+		// filtro rispetto all' intervallo del carattere
+		if (character < 0x80) {
+			buffer[size++] = (byte) character;
+		} else if (character < 0x800) {
+			buffer[size++] = (byte) (0xC0 | (character >> 6));
+			buffer[size++] = (byte) (0x80 | (character & 0x3F));
+		} else if (Character.isHighSurrogate(character)) {
+			highSurrogate = character;
+		} else if (Character.isLowSurrogate(character)) {
+			buffer[size++] = '?';
+		} else {
+			buffer[size++] = (byte) (0xE0 | (character >> 12));
+			buffer[size++] = (byte) (0x80 | ((character >> 6) & 0x3F));
+			buffer[size++] = (byte) (0x80 | (character & 0x3F));
+		}
+	}
+
+	// codifica come '?' l'eventuale surrogato alto non accoppiato
+	private void flushHighSurrogate() {
+		if (highSurrogate != 0) {
+			highSurrogate = 0;
+			ensureCapacity(1);
+			buffer[size++] = '?';
+		}
+	}
+
+	// ingrandisce l'array di byte se non può contenere altri length byte
+	private void ensureCapacity(int length) {
+		if (size + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package unipi.aprile.filippo.hotelier.common.network.multicast;
+
+import java.nio.charset.StandardCharsets;
+
+public class HotelierMulticastNotification {
+
+	/**
+	 * La classe HotelierMulticastNotification rappresenta la notifica multicast del cambiamento della prima posizione
+	 * del rank locale di una città, inviata dal server (HotelierServerMulticastSender) e ricevuta dai client
+	 * (HotelierClientMulticastReciever).
+	 * Il pacchetto UDP contiene città e nome del nuovo hotel in prima posizione codificati in UTF-8 e separati da SEPARATOR:
+	 * • il client ottiene la città senza dipendere dal testo del messaggio stampato all' utente;
+	 * • il testo del messaggio (getMessage) è definito solo in questa classe.
+	 */
+
+	// separatore tra città e nome hotel, non presente in nomi di città e hotel
+	private static final char SEPARATOR = '\0';
+
+	// città il cui rank locale ha cambiato prima posizione
+	private final String city;
+	// nome del nuovo hotel in prima posizione
+	private final String hotelName;
+
+	public HotelierMulticastNotification(String city, String hotelName) {
+		this.city = city;
+		this.hotelName = hotelName;
+	}
+
+	// restituisce la notifica contenuta nei primi length byte passati, null se il pacchetto non è una notifica valida
+	public static HotelierMulticastNotification decode(byte[] data, int length) {
+
+		// converto i byte ricevuti in stringa
+		String payload = new String(data, 0, length, StandardCharsets.UTF_8);
+		// cerco il separatore tra città e nome hotel
+		int separatorIndex = payload.indexOf(SEPARATOR);
+		if (separatorIndex < 0) {
+			return null;
+		}
+		return new HotelierMulticastNotification(payload.substring(0, separatorIndex), payload.substring(separatorIndex + 1));
+	}
+
+	// restituisce i byte del pacchetto UDP della notifica
+	public byte[] encode() {
+		return (city + SEPARATOR + hotelName).getBytes(StandardCharsets.UTF_8);
+	}
+
+	public String getCity() {
+		return city;
+	}
+
+	public String getHotelName() {
+		return hotelName;
+	}
+
+	// restituisce il messaggio della notifica da mostrare all' utente
+	public String getMessage() {
+		return "Prima posizione cambiata per la città " + city + " : " + hotelName;
+	}
+
+}
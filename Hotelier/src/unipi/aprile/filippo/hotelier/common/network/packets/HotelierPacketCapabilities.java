@@ -0,0 +1,29 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+public class HotelierPacketCapabilities extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketCapabilities rappresenta il pacchetto di richiesta inviato dal client subito dopo la connessione
+	 * per concordare con il server le funzionalità opzionali del protocollo (handshake).
+	 * Contiene:
+	 * • capabilities : maschera delle funzionalità supportate dal client (CAPABILITY_COMPRESSION ...);
+	 */
+	
+	// funzionalità di compressione dei pacchetti di grandi dimensioni (vedi HotelierPacketCompressor)
+	public static final int CAPABILITY_COMPRESSION = 1;
+
+	private final int capabilities;
+	
+	public HotelierPacketCapabilities(int capabilities) {
+		this.capabilities = capabilities;
+	}
+
+	public int getCapabilities() {
+		return capabilities;
+	}
+	
+	// restituisce true se la maschera contiene la funzionalità passata, false altrimenti
+	public boolean hasCapability(int capability) {
+		return (capabilities & capability) != 0;
+	}
+}
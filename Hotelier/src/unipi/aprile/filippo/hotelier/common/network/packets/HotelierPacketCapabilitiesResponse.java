@@ -0,0 +1,32 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+public class HotelierPacketCapabilitiesResponse extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketCapabilitiesResponse rappresenta il pacchetto di risposta relativo all' handshake delle funzionalità.
+	 * Contiene:
+	 * • capabilities : maschera delle funzionalità richieste dal client e abilitate dal server per la connessione;
+	 * • compressionThreshold : dimensione in byte oltre la quale i pacchetti vengono compressi, se la compressione è abilitata;
+	 */
+	
+	private final int capabilities;
+	private final int compressionThreshold;
+	
+	public HotelierPacketCapabilitiesResponse(int capabilities, int compressionThreshold) {
+		this.capabilities = capabilities;
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	public int getCapabilities() {
+		return capabilities;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+	
+	// restituisce true se la maschera contiene la funzionalità passata, false altrimenti
+	public boolean hasCapability(int capability) {
+		return (capabilities & capability) != 0;
+	}
+}
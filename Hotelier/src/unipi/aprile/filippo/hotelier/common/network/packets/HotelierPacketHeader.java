@@ -0,0 +1,60 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+public class HotelierPacketHeader {
+
+	/**
+	 * HotelierPacketHeader è una classe statica che descrive l'header dei messaggi del protocollo TCP di Hotelier.
+	 * Ogni messaggio è formato da:
+	 * 	• payloadSize (int): lunghezza del pacchetto serializzato;
+	 * 	• packetField (int): i 16 bit meno significativi contengono id del pacchetto, i 16 bit più significativi i flag del messaggio;
+	 * 	• requestID (int, opzionale): identificatore della richiesta, presente solo se è settato il flag FLAG_REQUEST_ID;
+	 * 	• pacchetto serializzato.
+	 * I messaggi privi di flag hanno quindi lo stesso formato del protocollo originale [payloadSize][id][pacchetto].
+	 * Il flag FLAG_BINARY indica che il pacchetto è serializzato nel formato binario compatto invece che in JSON
+	 * (vedi HotelierPacketCodec), mentre il flag FLAG_COMPRESSED indica che il pacchetto serializzato è compresso
+	 * (vedi HotelierPacketCompressor), ed è utilizzabile solo dopo averlo concordato tramite HotelierPacketCapabilities.
+	 *
+	 * Il requestID permette al client di inviare più richieste consecutive senza attendere le rispettive risposte (pipelining):
+	 * il server restituisce ogni risposta con lo stesso requestID della richiesta a cui si riferisce.
+	 */
+
+	// dimensione dell' header senza requestID: payloadSize + packetField
+	public static final int HEADER_SIZE = 8;
+	// dimensione del requestID
+	public static final int REQUEST_ID_SIZE = 4;
+	// dimensione massima dell' header
+	public static final int MAX_HEADER_SIZE = HEADER_SIZE + REQUEST_ID_SIZE;
+
+	// maschera per ottenere id del pacchetto dal packetField
+	public static final int PACKET_ID_MASK = 0xFFFF;
+	// flag che indica la presenza del requestID nell' header
+	public static final int FLAG_REQUEST_ID = 1 << 16;
+	// flag che indica che il pacchetto è serializzato in formato binario
+	public static final int FLAG_BINARY = 1 << 17;
+	// flag che indica che il pacchetto serializzato è compresso
+	public static final int FLAG_COMPRESSED = 1 << 18;
+
+	// valore del requestID per messaggi senza requestID
+	public static final int NO_REQUEST_ID = -1;
+
+	// restituisce id del pacchetto contenuto nel packetField passato
+	public static int getPacketID(int packetField) {
+		return packetField & PACKET_ID_MASK;
+	}
+
+	// restituisce true se il packetField passato contiene il flag passato, false altrimenti
+	public static boolean hasFlag(int packetField, int flag) {
+		return (packetField & flag) != 0;
+	}
+
+	// restituisce il packetField formato da id del pacchetto e flag passati
+	public static int getPacketField(int packetID, int flags) {
+		return (packetID & PACKET_ID_MASK) | flags;
+	}
+
+	// restituisce la dimensione dell' header per il requestID passato
+	public static int getHeaderSize(int requestID) {
+		return requestID == NO_REQUEST_ID ? HEADER_SIZE : MAX_HEADER_SIZE;
+	}
+
+}
@@ -0,0 +1,22 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.util.List;
+
+public class HotelierPacketHotelBatch extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketHotelBatch rappresenta il pacchetto di richiesta di più hotel con un' unica richiesta,
+	 * equivalente a più pacchetti HotelierPacketHotel consecutivi.
+	 * Contiene la lista delle ricerche (HotelierPacketHotel, nome e città dell' hotel), al più maxBatchSize (vedi config server).
+	 */
+
+	private final List<HotelierPacketHotel> hotels;
+	
+	public HotelierPacketHotelBatch(List<HotelierPacketHotel> hotels) {
+		this.hotels = hotels;
+	}
+
+	public List<HotelierPacketHotel> getHotels() {
+		return hotels;
+	}
+}
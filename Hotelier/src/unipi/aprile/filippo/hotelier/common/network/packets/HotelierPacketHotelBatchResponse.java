@@ -0,0 +1,24 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.util.List;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+
+public class HotelierPacketHotelBatchResponse extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketHotelBatchResponse rappresenta il pacchetto di risposta relativo a HotelierPacketHotelBatch.
+	 * Contiene la lista degli hotel richiesti nello stesso ordine delle ricerche, con null al posto degli hotel non trovati.
+	 * Inviato se la richiesta viene gestita con successo.
+	 */
+
+	private final List<HotelierHotel> hotels;
+	
+	public HotelierPacketHotelBatchResponse(List<HotelierHotel> hotels) {
+		this.hotels = hotels;
+	}
+
+	public List<HotelierHotel> getHotels() {
+		return hotels;
+	}
+}
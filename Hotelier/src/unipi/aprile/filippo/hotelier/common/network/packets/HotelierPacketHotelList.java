@@ -6,15 +6,50 @@ public class HotelierPacketHotelList extends HotelierPacket{
 	 * La classe HotelierPacketHotelList rappresenta il pacchetto di richiesta inviato a seguito del comando "searchAllHotels".
 	 * Contiene:
 	 * • city : città hotels richiesti; 
+	 * • limit : numero massimo di hotel restituiti (0 = tutti), o numero di hotel per chunk in modalità streaming; 
+	 * • cursor : cursore opaco restituito dalla pagina precedente (HotelierPacketHotelListPage), null per partire dal primo hotel; 
+	 * • stream : true se la lista deve essere inviata come serie di chunk (HotelierPacketHotelListChunk); 
+	 * Senza limit, cursor e stream il server risponde con l'intera lista (HotelierPacketHotelListResponse),
+	 * con limit o cursor risponde con una pagina (HotelierPacketHotelListPage).
 	 */
 	
 	private final String city;
 	
+	private final int limit;
+	
+	private final String cursor;
+	
+	private final boolean stream;
+	
 	public HotelierPacketHotelList(String city) {
+		this(city, 0, null, false);
+	}
+	
+	public HotelierPacketHotelList(String city, int limit, String cursor, boolean stream) {
 		this.city = city;
+		this.limit = limit;
+		this.cursor = cursor;
+		this.stream = stream;
 	}
 	
 	public String getCity() {
 		return city;
 	} 
+	
+	public int getLimit() {
+		return limit;
+	}
+	
+	public String getCursor() {
+		return cursor;
+	}
+	
+	public boolean isStream() {
+		return stream;
+	}
+	
+	// restituisce true se la richiesta è relativa all' intera lista (nessuna paginazione nè streaming)
+	public boolean isFullList() {
+		return limit == 0 && cursor == null && !stream;
+	}
 }
@@ -0,0 +1,34 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.util.List;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+
+public class HotelierPacketHotelListChunk extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketHotelListChunk rappresenta un chunk della risposta relativa al comando "searchAllHotels"
+	 * in modalità streaming (HotelierPacketHotelList con stream). Il server invia la lista come serie di chunk consecutivi,
+	 * ognuno con lo stesso requestID della richiesta, così che il client possa mostrare i primi hotel prima di ricevere l'intera lista.
+	 * Contiene:
+	 * • hotels : hotel del chunk, ordinati per rank locale; 
+	 * • last : true se il chunk è l'ultimo della lista; 
+	 */
+
+	private final List<HotelierHotel> hotels;
+	
+	private final boolean last;
+	
+	public HotelierPacketHotelListChunk(List<HotelierHotel> hotels, boolean last) {
+		this.hotels = hotels;
+		this.last = last;
+	}
+
+	public List<HotelierHotel> getHotels() {
+		return hotels;
+	}
+	
+	public boolean isLast() {
+		return last;
+	}
+}
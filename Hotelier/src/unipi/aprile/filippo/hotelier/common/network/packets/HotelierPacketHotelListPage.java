@@ -0,0 +1,43 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.util.List;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+
+public class HotelierPacketHotelListPage extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketHotelListPage rappresenta il pacchetto di risposta relativo al comando "searchAllHotels"
+	 * con paginazione (HotelierPacketHotelList con limit o cursor).
+	 * Contiene:
+	 * • hotels : hotel della pagina, ordinati per rank locale; 
+	 * • nextCursor : cursore da inviare per ottenere la pagina successiva, null se la pagina è l'ultima; 
+	 * • total : numero totale di hotel della città; 
+	 * Il cursore è legato all' ordinamento degli hotel al momento della richiesta: se i rank cambiano l'ordinamento
+	 * il server rifiuta il cursore e la ricerca deve ripartire dalla prima pagina.
+	 */
+
+	private final List<HotelierHotel> hotels;
+	
+	private final String nextCursor;
+	
+	private final int total;
+	
+	public HotelierPacketHotelListPage(List<HotelierHotel> hotels, String nextCursor, int total) {
+		this.hotels = hotels;
+		this.nextCursor = nextCursor;
+		this.total = total;
+	}
+
+	public List<HotelierHotel> getHotels() {
+		return hotels;
+	}
+	
+	public String getNextCursor() {
+		return nextCursor;
+	}
+	
+	public int getTotal() {
+		return total;
+	}
+}
@@ -0,0 +1,77 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class HotelierPacketInputStream extends InputStream {
+
+	/**
+	 * La classe HotelierPacketInputStream espone come InputStream una sequenza di ByteBuffer contenenti,
+	 * nell' ordine, le parti (chunk) di un pacchetto serializzato.
+	 * Permette di deserializzare incrementalmente pacchetti di grandi dimensioni letti in più buffer del pool
+	 * senza doverli prima copiare in un unico array o buffer contiguo.
+	 * I buffer devono essere pronti in lettura, vengono consumati dallo stream e non vengono modificati altrimenti.
+	 */
+
+	// chunk del pacchetto serializzato
+	private final List<ByteBuffer> chunks;
+	// indice del chunk corrente
+	private int chunkIndex;
+
+	public HotelierPacketInputStream(List<ByteBuffer> chunks) {
+		this.chunks = chunks;
+	}
+
+	@Override
+	public int read() {
+
+		// ottengo il primo chunk con byte rimanenti
+		ByteBuffer chunk = nextChunk();
+		// se non ci sono più byte restituisco -1 (fine dello stream)
+		return chunk != null ? chunk.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+
+		// controllo se non è richiesto alcun byte
+		if (length == 0) {
+			return 0;
+		}
+
+		// ottengo il primo chunk con byte rimanenti
+		ByteBuffer chunk = nextChunk();
+		// se non ci sono più byte restituisco -1 (fine dello stream)
+		if (chunk == null) {
+			return -1;
+		}
+
+		// copio al più i byte rimanenti del chunk corrente
+		int readBytes = Math.min(length, chunk.remaining());
+		chunk.get(bytes, offset, readBytes);
+		return readBytes;
+	}
+
+	@Override
+	public int available() {
+
+		// sommo i byte rimanenti dei chunk non ancora consumati
+		int availableBytes = 0;
+		for (int i = chunkIndex; i < chunks.size(); i++) {
+			availableBytes += chunks.get(i).remaining();
+		}
+		return availableBytes;
+	}
+
+	// restituisce il primo chunk con byte rimanenti, null se tutti i chunk sono stati consumati
+	private ByteBuffer nextChunk() {
+
+		// avanzo finchè il chunk corrente è stato consumato
+		while (chunkIndex < chunks.size() && !chunks.get(chunkIndex).hasRemaining()) {
+			chunkIndex++;
+		}
+		return chunkIndex < chunks.size() ? chunks.get(chunkIndex) : null;
+	}
+
+}
@@ -0,0 +1,23 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
+
+public class HotelierPacketLocalRank extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketLocalRank rappresenta il pacchetto inviato dal server, senza alcuna richiesta del client,
+	 * alle connessioni che hanno sottoscritto la città del rank locale (HotelierPacketSubscribe) quando questo cambia.
+	 * Non avendo una richiesta associata viene inviato senza requestID.
+	 * Contiene il rank locale aggiornato: città e lista di hotel ordinata per rank locale.
+	 */
+
+	private final HotelierLocalRank localRank;
+	
+	public HotelierPacketLocalRank(HotelierLocalRank localRank) {
+		this.localRank = localRank;
+	}
+
+	public HotelierLocalRank getLocalRank() {
+		return localRank;
+	}
+}
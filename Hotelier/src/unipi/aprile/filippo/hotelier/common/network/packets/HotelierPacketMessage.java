@@ -0,0 +1,41 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+
+public class HotelierPacketMessage {
+
+	/**
+	 * La classe HotelierPacketMessage rappresenta un messaggio inviato o ricevuto sulla connessione TCP di Hotelier.
+	 * Contiene:
+	 * • packet : pacchetto di richiesta o di risposta;
+	 * • requestID : identificatore della richiesta a cui si riferisce il pacchetto, NO_REQUEST_ID se assente;
+	 * • codec : formato con cui è stato serializzato il pacchetto;
+	 */
+
+	private final HotelierPacket packet;
+	private final int requestID;
+	private final HotelierPacketCodec codec;
+
+	public HotelierPacketMessage(HotelierPacket packet, int requestID) {
+		this(packet, requestID, HotelierPacketCodec.JSON);
+	}
+
+	public HotelierPacketMessage(HotelierPacket packet, int requestID, HotelierPacketCodec codec) {
+		this.packet = packet;
+		this.requestID = requestID;
+		this.codec = codec;
+	}
+
+	public HotelierPacket getPacket() {
+		return packet;
+	}
+
+	public int getRequestID() {
+		return requestID;
+	}
+
+	public HotelierPacketCodec getCodec() {
+		return codec;
+	}
+
+}
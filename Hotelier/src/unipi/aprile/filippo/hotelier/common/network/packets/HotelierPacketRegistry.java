@@ -1,77 +1,208 @@
 package unipi.aprile.filippo.hotelier.common.network.packets;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readBadge;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readHotel;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readHotelLookups;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readHotels;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readLocalRank;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readRating;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.readStrings;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeBadge;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeHotel;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeHotelLookups;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeHotels;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeLocalRank;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeRating;
+import static unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryCodec.writeStrings;
 
-import com.google.gson.GsonBuilder;
+import java.util.Arrays;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryDecoder;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryEncoder;
 
 public class HotelierPacketRegistry {
 	
 	/**
-	 * HotelierPacketRegistry è una classe statica che gestisce la deserilizzazione e l'identificazione dei pacchetti di rete
+	 * HotelierPacketRegistry è una classe statica che gestisce l'identificazione dei pacchetti di rete
 	 * utilizzati nella comunicazione Tcp all' interno di Hotelier. 
+	 * La serializzazione/deserializzazione dei pacchetti è delegata ai codec (HotelierPacketCodec),
+	 * i quali ottengono dal registry il tipo del pacchetto (HotelierPacketType) relativo all' id ricevuto.
+	 * 
+	 * Ogni tipo di pacchetto viene registrato una sola volta all' inizializzazione della classe con id, classe e schema
+	 * binario: aggiungere un pacchetto richiede quindi una sola registrazione (più l'eventuale gestione sul server).
+	 * Le ricerche avvengono in tempo costante in entrambe le direzioni:
+	 * • da id a tipo tramite un array indicizzato per id;
+	 * • da classe a tipo tramite un ClassValue, il quale associa il tipo alla classe alla prima ricerca;
 	 */
 	
+	// tipi di pacchetto indicizzati per id (dimensione pari all' id massimo registrato + 1), null se id non supportato
+	private static HotelierPacketType<?>[] packetTypes;
+	// tipi di pacchetto associati alle classi dei pacchetti, null se classe non supportata
+	private static final ClassValue<HotelierPacketType<?>> packetTypesByClass;
 	
-	// restuisce il pacchetto deserializzato rispetto a id pacchetto passato, null se pacchetto non supportato
-	public static HotelierPacket getPacketFromID(int packetID, ByteBuffer packetPayload) {
+	static {
+		packetTypes = new HotelierPacketType<?>[0];
 		
-		// istanzio un gson per deserializzare il pacchetto
-		var gson = new GsonBuilder().serializeNulls().create();
-		// converto byteBuffer passto a stringa
-		String serializedPacket = new String(packetPayload.array(), StandardCharsets.UTF_8);
+		// id 0: pacchetto di login
+		register(0, HotelierPacketLogin.class, (writer, packet) -> {
+			writer.writeString(packet.getUsername());
+			writer.writeString(packet.getPassword());
+		}, reader -> new HotelierPacketLogin(reader.readString(), reader.readString()));
+		// id 1: pacchetto di risposta login
+		register(1, HotelierPacketLoginResponse.class, (writer, packet) -> writer.writeString(packet.getResponse()),
+				reader -> new HotelierPacketLoginResponse(reader.readString()));
+		// id 2: pacchetto di logout
+		register(2, HotelierPacketLogout.class, (writer, packet) -> {
+		}, reader -> new HotelierPacketLogout());
+		// id 3: pacchetto di risposta logout
+		register(3, HotelierPacketLogoutResponse.class, (writer, packet) -> writer.writeString(packet.getResponse()),
+				reader -> new HotelierPacketLogoutResponse(reader.readString()));
+		// id 4: pacchetto hotel
+		register(4, HotelierPacketHotel.class, (writer, packet) -> {
+			writer.writeString(packet.getHotelName());
+			writer.writeString(packet.getCity());
+		}, reader -> new HotelierPacketHotel(reader.readString(), reader.readString()));
+		// id 5: pacchetto di risposta hotel
+		register(5, HotelierPacketHotelResponse.class, (writer, packet) -> writeHotel(writer, packet.getHotel()),
+				reader -> new HotelierPacketHotelResponse(readHotel(reader)));
+		// id 6: pacchetto di hotelList
+		register(6, HotelierPacketHotelList.class, (writer, packet) -> {
+			writer.writeString(packet.getCity());
+			// i campi di paginazione e streaming vengono scritti solo se presenti
+			if (!packet.isFullList()) {
+				writer.writeVarInt(packet.getLimit());
+				writer.writeString(packet.getCursor());
+				writer.writeByte(packet.isStream() ? 1 : 0);
+			}
+		}, reader -> {
+			String city = reader.readString();
+			if (!reader.hasRemaining()) {
+				return new HotelierPacketHotelList(city);
+			}
+			return new HotelierPacketHotelList(city, reader.readVarInt(), reader.readString(), reader.readByte() != 0);
+		});
+		// id 7: pacchetto di risposta hotelList
+		register(7, HotelierPacketHotelListResponse.class, (writer, packet) -> writeHotels(writer, packet.getHotels()),
+				reader -> new HotelierPacketHotelListResponse(readHotels(reader)));
+		// id 8: pacchetto di review
+		register(8, HotelierPacketReview.class, (writer, packet) -> {
+			writer.writeString(packet.getHotelName());
+			writer.writeString(packet.getCity());
+			writer.writeSignedVarInt(packet.getRate());
+			writeRating(writer, packet.getRatings());
+		}, reader -> new HotelierPacketReview(reader.readString(), reader.readString(), reader.readSignedVarInt(), readRating(reader)));
+		// id 9: pacchetto di risposta review
+		register(9, HotelierPacketReviewResponse.class, (writer, packet) -> writer.writeString(packet.getResponse()),
+				reader -> new HotelierPacketReviewResponse(reader.readString()));
+		// id 10: pacchetto di badge
+		register(10, HotelierPacketBadge.class, (writer, packet) -> {
+		}, reader -> new HotelierPacketBadge());
+		// id 11: pacchetto di risposta badge
+		register(11, HotelierPacketBadgeResponse.class, (writer, packet) -> writeBadge(writer, packet.getBadge()),
+				reader -> new HotelierPacketBadgeResponse(readBadge(reader)));
+		// id 12: pacchetto di risposta errore
+		register(12, HotelierPacketErrorResponse.class, (writer, packet) -> writer.writeString(packet.getResponse()),
+				reader -> new HotelierPacketErrorResponse(reader.readString()));
+		// id 13: pacchetto di capabilities
+		register(13, HotelierPacketCapabilities.class, (writer, packet) -> writer.writeVarInt(packet.getCapabilities()),
+				reader -> new HotelierPacketCapabilities(reader.readVarInt()));
+		// id 14: pacchetto di risposta capabilities
+		register(14, HotelierPacketCapabilitiesResponse.class, (writer, packet) -> {
+			writer.writeVarInt(packet.getCapabilities());
+			writer.writeVarInt(packet.getCompressionThreshold());
+		}, reader -> new HotelierPacketCapabilitiesResponse(reader.readVarInt(), reader.readVarInt()));
+		// id 15: pacchetto di hotel multipli
+		register(15, HotelierPacketHotelBatch.class, (writer, packet) -> writeHotelLookups(writer, packet.getHotels()),
+				reader -> new HotelierPacketHotelBatch(readHotelLookups(reader)));
+		// id 16: pacchetto di risposta hotel multipli
+		register(16, HotelierPacketHotelBatchResponse.class, (writer, packet) -> writeHotels(writer, packet.getHotels()),
+				reader -> new HotelierPacketHotelBatchResponse(readHotels(reader)));
+		// id 17: pacchetto di risposta hotelList paginata
+		register(17, HotelierPacketHotelListPage.class, (writer, packet) -> {
+			writeHotels(writer, packet.getHotels());
+			writer.writeString(packet.getNextCursor());
+			writer.writeVarInt(packet.getTotal());
+		}, reader -> new HotelierPacketHotelListPage(readHotels(reader), reader.readString(), reader.readVarInt()));
+		// id 18: chunk della risposta hotelList in streaming
+		register(18, HotelierPacketHotelListChunk.class, (writer, packet) -> {
+			writeHotels(writer, packet.getHotels());
+			writer.writeByte(packet.isLast() ? 1 : 0);
+		}, reader -> new HotelierPacketHotelListChunk(readHotels(reader), reader.readByte() != 0));
+		// id 19: pacchetto di sottoscrizione ai rank locali
+		register(19, HotelierPacketSubscribe.class, (writer, packet) -> writeStrings(writer, packet.getCities()),
+				reader -> new HotelierPacketSubscribe(readStrings(reader)));
+		// id 20: pacchetto di annullamento della sottoscrizione ai rank locali
+		register(20, HotelierPacketUnsubscribe.class, (writer, packet) -> writeStrings(writer, packet.getCities()),
+				reader -> new HotelierPacketUnsubscribe(readStrings(reader)));
+		// id 21: pacchetto di risposta sottoscrizione
+		register(21, HotelierPacketSubscriptionResponse.class, (writer, packet) -> {
+			writer.writeString(packet.getResponse());
+			writer.writeVarInt(packet.getSubscribedCities());
+		}, reader -> new HotelierPacketSubscriptionResponse(reader.readString(), reader.readVarInt()));
+		// id 22: pacchetto di notifica rank locale (inviato dal server senza richiesta)
+		register(22, HotelierPacketLocalRank.class, (writer, packet) -> writeLocalRank(writer, packet.getLocalRank()),
+				reader -> new HotelierPacketLocalRank(readLocalRank(reader)));
 		
-		// filtro rispetto a id pacchetto
-		return switch (packetID) {
-			// id 0: pacchetto di login
-			case 0 -> gson.fromJson(serializedPacket, HotelierPacketLogin.class); 
-			// id 1: pacchetto di risposta login
-			case 1 -> gson.fromJson(serializedPacket, HotelierPacketLoginResponse.class);
-			// id 2: pacchetto di logout
-			case 2 -> gson.fromJson(serializedPacket, HotelierPacketLogout.class);
-			// id 3: pacchetto di risposta logout
-			case 3 -> gson.fromJson(serializedPacket, HotelierPacketLogoutResponse.class);
-			// id 4: pacchetto hotel
-			case 4 -> gson.fromJson(serializedPacket, HotelierPacketHotel.class);
-			// id 5: pacchetto di risposta hotel
-			case 5 -> gson.fromJson(serializedPacket, HotelierPacketHotelResponse.class);
-			// id 6: pacchetto di hotelList
-			case 6 -> gson.fromJson(serializedPacket, HotelierPacketHotelList.class);
-			// id 7: pacchetto di risposta hotelList
-			case 7 -> gson.fromJson(serializedPacket, HotelierPacketHotelListResponse.class);
-			// id 8: pacchetto di review
-			case 8 -> gson.fromJson(serializedPacket, HotelierPacketReview.class);
-			// id 9: pacchetto di risposta review
-			case 9 -> gson.fromJson(serializedPacket, HotelierPacketReviewResponse.class);
-			// id 10: pacchetto di badge
-			case 10 -> gson.fromJson(serializedPacket, HotelierPacketBadge.class);
-			// id 11: pacchetto di risposta badge
-			case 11 -> gson.fromJson(serializedPacket, HotelierPacketBadgeResponse.class);
-			// id 12: pacchetto di risposta erroe
-			case 12 -> gson.fromJson(serializedPacket, HotelierPacketErrorResponse.class);
-			// default: pacchetto non supportato
-			default -> null;
+		// associo ad ogni classe il tipo registrato con la stessa classe (o con una sua superclasse)
+		packetTypesByClass = new ClassValue<>() {
+			@Override
+			protected HotelierPacketType<?> computeValue(Class<?> type) {
+				return Arrays.stream(packetTypes)
+						.filter(packetType -> packetType != null && packetType.getPacketClass().isAssignableFrom(type))
+						.findFirst()
+						.orElse(null);
+			}
 		};
 	}
 	
+	// registra il tipo di pacchetto con id, classe e schema binario passati
+	private static <P extends HotelierPacket> void register(int packetID, Class<P> packetClass, HotelierPacketBinaryEncoder<P> binaryEncoder,
+			HotelierPacketBinaryDecoder<P> binaryDecoder) {
+		
+		// controllo che l'id sia rappresentabile nell' header
+		if (packetID < 0 || packetID > HotelierPacketHeader.PACKET_ID_MASK) {
+			throw new IllegalArgumentException("id pacchetto non valido: " + packetID);
+		}
+		// ingrandisco l'array dei tipi se necessario
+		if (packetID >= packetTypes.length) {
+			packetTypes = Arrays.copyOf(packetTypes, packetID + 1);
+		}
+		// controllo che l'id non sia già registrato
+		if (packetTypes[packetID] != null) {
+			throw new IllegalStateException("id pacchetto già registrato: " + packetID);
+		}
+		packetTypes[packetID] = new HotelierPacketType<>(packetID, packetClass, binaryEncoder, binaryDecoder);
+	}
+	
+	// restituisce il tipo di pacchetto relativo a id pacchetto passato, null se pacchetto non supportato
+	public static HotelierPacketType<?> getPacketType(int packetID) {
+		return packetID >= 0 && packetID < packetTypes.length ? packetTypes[packetID] : null;
+	}
+	
+	// restituisce il tipo di pacchetto relativo al pacchetto passato, null se pacchetto non supportato
+	public static HotelierPacketType<?> getPacketType(HotelierPacket packet) {
+		return packetTypesByClass.get(packet.getClass());
+	}
+	
+	// restituisce il tipo di pacchetto relativo alla classe passata, null se classe non supportata
+	public static HotelierPacketType<?> getPacketType(Class<? extends HotelierPacket> packetClass) {
+		return packetTypesByClass.get(packetClass);
+	}
+	
+	// restituisce il numero di id registrabili, ovvero l'id massimo registrato + 1
+	public static int getPacketTypeCount() {
+		return packetTypes.length;
+	}
+	
+	// restituisce la classe del pacchetto relativa a id pacchetto passato, null se pacchetto non supportato
+	public static Class<? extends HotelierPacket> getPacketClass(int packetID) {
+		HotelierPacketType<?> packetType = getPacketType(packetID);
+		return packetType != null ? packetType.getPacketClass() : null;
+	}
+	
 	// restuisce id pacchetto relativo al pacchetto passato, -1 se pacchetto non supportato
 	public static int getIDFromPacket(HotelierPacket packet) {
-		// filtro rispetto a istanza del pacchetto
-		return switch (packet) {
-			case HotelierPacketLogin loginPacket -> 0;
-			case HotelierPacketLoginResponse loginResponsePacket -> 1;
-			case HotelierPacketLogout logoutPacket -> 2;
-			case HotelierPacketLogoutResponse logoutResponsePacket -> 3;
-			case HotelierPacketHotel hotelPacket -> 4;
-			case HotelierPacketHotelResponse hotelResponsePacket -> 5;
-			case HotelierPacketHotelList hotelListPacket -> 6;
-			case HotelierPacketHotelListResponse hotelListResponsePacket -> 7;
-			case HotelierPacketReview reviewPacket -> 8;
-			case HotelierPacketReviewResponse reviewResponsePacket -> 9;
-			case HotelierPacketBadge badgePacket -> 10;
-			case HotelierPacketBadgeResponse badgeResponsePacket -> 11;
-			case HotelierPacketErrorResponse errorResponseRequest -> 12;
-			default -> -1;
-		};
+		HotelierPacketType<?> packetType = getPacketType(packet);
+		return packetType != null ? packetType.getPacketID() : -1;
 	}
 }
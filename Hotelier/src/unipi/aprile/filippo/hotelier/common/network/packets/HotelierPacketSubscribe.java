@@ -0,0 +1,24 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.util.List;
+
+public class HotelierPacketSubscribe extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketSubscribe rappresenta il pacchetto di richiesta di sottoscrizione ai cambiamenti del rank locale
+	 * delle città passate, alternativo alla registrazione delle callback RMI.
+	 * Dopo la sottoscrizione il server invia sulla stessa connessione Tcp un pacchetto HotelierPacketLocalRank (senza requestID)
+	 * ad ogni cambiamento del rank locale di una delle città, nel formato dell' ultima richiesta ricevuta dal client.
+	 * Contiene la lista delle città di interesse, le quali si aggiungono a quelle sottoscritte in precedenza.
+	 */
+
+	private final List<String> cities;
+	
+	public HotelierPacketSubscribe(List<String> cities) {
+		this.cities = cities;
+	}
+
+	public List<String> getCities() {
+		return cities;
+	}
+}
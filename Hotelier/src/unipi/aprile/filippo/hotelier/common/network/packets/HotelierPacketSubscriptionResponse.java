@@ -0,0 +1,27 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+public class HotelierPacketSubscriptionResponse extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketSubscriptionResponse rappresenta il pacchetto di risposta relativo ai pacchetti
+	 * HotelierPacketSubscribe e HotelierPacketUnsubscribe.
+	 * Contiene risposta (esito) della richiesta e il numero di città sottoscritte dalla connessione dopo la richiesta.
+	 */
+	
+	private final String response;
+	
+	private final int subscribedCities;
+	
+	public HotelierPacketSubscriptionResponse(String response, int subscribedCities) {
+		this.response = response;
+		this.subscribedCities = subscribedCities;
+	}
+
+	public String getResponse() {
+		return response;
+	}
+	
+	public int getSubscribedCities() {
+		return subscribedCities;
+	}
+}
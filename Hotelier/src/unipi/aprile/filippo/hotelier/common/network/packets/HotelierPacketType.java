@@ -0,0 +1,53 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.io.IOException;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryDecoder;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryEncoder;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryReader;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketBinaryWriter;
+
+public final class HotelierPacketType<P extends HotelierPacket> {
+
+	/**
+	 * La classe HotelierPacketType descrive un tipo di pacchetto registrato in HotelierPacketRegistry:
+	 * • id del pacchetto, scritto nell' header di ogni messaggio (HotelierPacketHeader);
+	 * • classe del pacchetto, utilizzata dal formato JSON per la deserializzazione tramite Gson;
+	 * • schema di scrittura e lettura nel formato binario (HotelierPacketBinaryEncoder, HotelierPacketBinaryDecoder);
+	 * I descrittori vengono creati una sola volta all' inizializzazione del registry e sono immutabili.
+	 */
+
+	// id del pacchetto
+	private final int packetID;
+	// classe del pacchetto
+	private final Class<P> packetClass;
+	// schema di scrittura e lettura nel formato binario
+	private final HotelierPacketBinaryEncoder<P> binaryEncoder;
+	private final HotelierPacketBinaryDecoder<P> binaryDecoder;
+
+	HotelierPacketType(int packetID, Class<P> packetClass, HotelierPacketBinaryEncoder<P> binaryEncoder, HotelierPacketBinaryDecoder<P> binaryDecoder) {
+		this.packetID = packetID;
+		this.packetClass = packetClass;
+		this.binaryEncoder = binaryEncoder;
+		this.binaryDecoder = binaryDecoder;
+	}
+
+	public int getPacketID() {
+		return packetID;
+	}
+
+	public Class<P> getPacketClass() {
+		return packetClass;
+	}
+
+	// scrive in formato binario i campi del pacchetto passato (istanza della classe del tipo) tramite il writer passato
+	public void writeBinary(HotelierPacketBinaryWriter writer, HotelierPacket packet) {
+		binaryEncoder.write(writer, packetClass.cast(packet));
+	}
+
+	// restituisce il pacchetto letto in formato binario tramite il reader passato
+	public P readBinary(HotelierPacketBinaryReader reader) throws IOException {
+		return binaryDecoder.read(reader);
+	}
+
+}
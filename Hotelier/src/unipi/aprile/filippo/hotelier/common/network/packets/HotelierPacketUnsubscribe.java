@@ -0,0 +1,23 @@
+package unipi.aprile.filippo.hotelier.common.network.packets;
+
+import java.util.List;
+
+public class HotelierPacketUnsubscribe extends HotelierPacket {
+	
+	/**
+	 * La classe HotelierPacketUnsubscribe rappresenta il pacchetto di richiesta di annullamento della sottoscrizione
+	 * ai cambiamenti del rank locale (HotelierPacketSubscribe).
+	 * Contiene la lista delle città da rimuovere, null o vuota per annullare la sottoscrizione a tutte le città.
+	 * Le sottoscrizioni vengono annullate anche alla disconnessione del client.
+	 */
+
+	private final List<String> cities;
+	
+	public HotelierPacketUnsubscribe(List<String> cities) {
+		this.cities = cities;
+	}
+
+	public List<String> getCities() {
+		return cities;
+	}
+}
@@ -5,6 +5,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -15,6 +19,8 @@ public class HotelierCommonUtils {
 	 * La classe `HotelierCommonUtils` fornisce metodi di utilità per la serializzazione, 
 	 * deserializzazione, lettura e scrittura di file su disco (config e strutture da persistere).
 	 * I file vegono serializzati e deserializzati in Json con prety printing.
+	 * La scrittura avviene su un file temporaneo nella stessa cartella, il quale viene poi rinominato atomicamente
+	 * sul file di destinazione: un' interruzione durante la scrittura non lascia mai il file troncato.
 	 */
 
 	private static final Gson gson;
@@ -39,9 +45,18 @@ public class HotelierCommonUtils {
 	}
 
 	public static void writeFile(String text, File file) throws IOException {
-		try (FileWriter writer = new FileWriter(file)) {
+
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileWriter writer = new FileWriter(temp.toFile())) {
 			writer.write(text);
 		}
+
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException exception) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
 	}
 
 	public static String serialize(Object obj) {
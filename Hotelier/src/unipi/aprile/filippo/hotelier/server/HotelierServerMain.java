@@ -4,14 +4,25 @@ import static unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils.APP
 import static unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils.HOTELS_PATH_JSON;
 import static unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils.REVIEWS_PATH_JSON;
 import static unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils.SERVER_CONFIG_PATH_JSON;
+import static unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils.SNAPSHOTS_PATH;
 import static unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils.USERS_PATH_JSON;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import unipi.aprile.filippo.hotelier.common.utils.HotelierCommonUtils;
 import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerAdmin;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetricsReporter;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerAsync;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerEngine;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerHotelListCache;
 import unipi.aprile.filippo.hotelier.server.network.HotelierServerNIO;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerSnapshot;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerSubscriptions;
 import unipi.aprile.filippo.hotelier.server.network.mulitcast.HotelierServerMulticastSender;
 import unipi.aprile.filippo.hotelier.server.network.rmi.HotelierServerRmi;
 import unipi.aprile.filippo.hotelier.server.ranking.HotelierServerRanking;
@@ -99,6 +110,17 @@ public class HotelierServerMain {
 		userRegister.deserialize();
 		// deserializzo la lista di recensioni da disco all' interno del registro
 		reviewRegister.deserialize();
+		
+		// creo la cartella degli snapshot delle risposte hotelList (se non esiste) ed elimino quelli di esecuzioni precedenti
+		Path snapshotsFolder = Files.createDirectories(Path.of(SNAPSHOTS_PATH));
+		HotelierServerSnapshot.deleteSnapshots(snapshotsFolder);
+		
+		// creo l'istanza della cache delle risposte hotelList prima dell' avvio del server, così che sia unica tra i thread
+		HotelierServerHotelListCache.getInstance();
+		// creo l'istanza delle metriche prima dell' avvio del server, così che sia unica tra i thread
+		HotelierServerMetrics.getInstance();
+		// creo l'istanza delle sottoscrizioni ai rank locali prima dell' avvio del server, così che sia unica tra i thread
+		HotelierServerSubscriptions.getInstance();
 	}
 	
 	
@@ -109,8 +131,32 @@ public class HotelierServerMain {
 		var serverConfig = HotelierServerConfigManager.getServerConfig();
 		
 		
-		// inizializzo serverNIO per la gestione delle comunicazioni Tcp passandogli indirizzo e porta per la socket Tcp
-		new HotelierServerNIO(serverConfig.getServerAddress(), serverConfig.getTcpPort());
+		// filtro rispetto al motore di rete configurato per la gestione delle comunicazioni Tcp
+		HotelierServerEngine serverEngine = switch (serverConfig.getServerEngine()) {
+			// inizializzo il server asincrono passandogli indirizzo e porta per la socket Tcp, numero di thread del
+			// gruppo di canali asincroni (selectorThreads) e modalità di esecuzione dei pacchetti
+			case ASYNC -> new HotelierServerAsync(serverConfig.getServerAddress(), serverConfig.getTcpPort(), serverConfig.getSelectorThreads(),
+					serverConfig.getRequestExecutionMode(), serverConfig.getRequestPoolSize());
+			// inizializzo serverNIO passandogli indirizzo e porta per la socket Tcp, numero di acceptor e di selettori worker,
+			// politica di bilanciamento delle connessioni sui worker e modalità di esecuzione dei pacchetti
+			default -> new HotelierServerNIO(serverConfig.getServerAddress(), serverConfig.getTcpPort(), serverConfig.getAcceptorThreads(),
+					serverConfig.getSelectorThreads(), serverConfig.getSelectorBalancing(), serverConfig.getRequestExecutionMode(),
+					serverConfig.getRequestPoolSize());
+		};
+		// registro il motore di rete nelle metriche del server
+		HotelierServerMetrics.getInstance().setEngine(serverEngine);
+
+		// avvio la stampa periodica delle metriche se attive
+		HotelierServerMetricsReporter metricsReporter = null;
+		if (serverConfig.isTracingEnabled() && serverConfig.getMetricsInterval() > 0) {
+			metricsReporter = new HotelierServerMetricsReporter(serverConfig.getMetricsInterval());
+		}
+
+		// avvio l'endpoint HTTP di amministrazione se configurato
+		HotelierServerAdmin serverAdmin = null;
+		if (serverConfig.getAdminPort() > 0) {
+			serverAdmin = new HotelierServerAdmin(serverConfig.getServerAddress(), serverConfig.getAdminPort());
+		}
 		
 		// inizializzo serverRmi passandogli remoteReference per esportarzione dello stub e porta per il registro Rmi
 		var hotelierServerRmi = new HotelierServerRmi(serverConfig.getRmiRemoteReference(), serverConfig.getRmiPort());
@@ -121,7 +167,56 @@ public class HotelierServerMain {
 		
 		// inizializzo serverRanking passadongli rankingInterval (secondi che intercorrono tra le sue esecuzioni), serverRmi
 		// e multicasT 
-		new HotelierServerRanking(serverConfig.getRankingInterval(), hotelierServerRmi, hotelierServerMulticast);
+		var hotelierServerRanking = new HotelierServerRanking(serverConfig.getRankingInterval(), hotelierServerRmi, hotelierServerMulticast);
+		
+		// registro lo spegnimento controllato del server alla terminazione della JVM (SIGTERM, SIGINT o System.exit)
+		long shutdownTimeout = serverConfig.getShutdownTimeout() * 1000L;
+		var reporter = metricsReporter;
+		var admin = serverAdmin;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdownServer(serverEngine, hotelierServerRmi, hotelierServerRanking,
+				hotelierServerMulticast, reporter, admin, shutdownTimeout)));
+	}
+	
+	// spegne il server gestendo le richieste in volo e persistendo i registri su disco, con un' unica scadenza di
+	// shutdownTimeout millisecondi condivisa da tutte le fasi; metricsReporter e serverAdmin sono null se non avviati
+	private static void shutdownServer(HotelierServerEngine serverEngine, HotelierServerRmi serverRmi, HotelierServerRanking serverRanking,
+			HotelierServerMulticastSender multicastSender, HotelierServerMetricsReporter metricsReporter, HotelierServerAdmin serverAdmin,
+			long shutdownTimeout) {
+		
+		System.out.println("[OK] Spegnimento HotelierServer ...");
+		// calcolo la scadenza dello spegnimento, ogni fase attende al più il tempo rimanente
+		long deadline = System.nanoTime() + shutdownTimeout * 1_000_000;
+		try {
+			// smetto di accettare registrazioni Rmi, attendendo quelle in corso
+			serverRmi.stop(remainingMillis(deadline));
+			// smetto di accettare connessioni e attendo la gestione delle richieste in volo e la scrittura delle risposte
+			serverEngine.shutdown(remainingMillis(deadline));
+			// arresto il calcolo dei rank tra un ciclo e il successivo
+			serverRanking.stop(remainingMillis(deadline));
+			// chiudo la socket multicast
+			multicastSender.close();
+			// arresto la stampa periodica delle metriche
+			if (metricsReporter != null) {
+				metricsReporter.stop(remainingMillis(deadline));
+			}
+			// arresto l'endpoint HTTP di amministrazione
+			if (serverAdmin != null) {
+				serverAdmin.stop(remainingMillis(deadline));
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		
+		// persisto un' ultima volta i tre registri su disco, ora che nè le connessioni nè le registrazioni Rmi li modificano
+		HotelierServerRegisterHotels.getInstance().serialize();
+		HotelierServerRegisterUsers.getInstance().serialize();
+		HotelierServerRegisterReviews.getInstance().serialize();
+		System.out.println("[OK] HotelierServer terminato");
+	}
+	
+	// restituisce i millisecondi rimanenti fino alla scadenza passata, almeno 1 (un' attesa di 0 millisecondi è illimitata per join)
+	private static long remainingMillis(long deadline) {
+		return Math.max(1, (deadline - System.nanoTime()) / 1_000_000);
 	}
 
 }
@@ -11,6 +11,27 @@ public class HotelierServerConfig {
 	 * • serverAddress, indirizzo socket Tcp/Rmi
 	 * • rmiRemoteReference, nome per reperire stub server dal registro rmi
 	 * • mcastAddress, indirizzo ip socket multicast
+	 * • selectorThreads, numero di selettori worker del serverNIO (0 = un selettore per core)
+	 * • selectorBalancing, politica di assegnamento delle nuove connessioni ai selettori worker
+	 * • directBuffers, utilizzo di buffer diretti per il pool di buffer dei selettori worker
+	 * • maxWriteBytesPerRound, byte massimi serializzati per ogni scrittura verso un client
+	 * • requestExecutionMode, modalità di esecuzione della gestione dei pacchetti (CACHED, VIRTUAL, BOUNDED)
+	 * • requestPoolSize, numero di thread della threadpool in modalità BOUNDED (0 = due thread per core)
+	 * • maxInFlightRequests, numero massimo di richieste di un client lette e non ancora risposte, oltre il quale viene sospesa la lettura
+	 * • maxQueuedResponseBytes, byte massimi di risposte in coda per client, oltre i quali viene sospesa la lettura
+	 * • maxFrameSize, dimensione massima in byte di un pacchetto di richiesta, oltre la quale il client viene disconnesso
+	 * • idleTimeout, secondi di inattività dopo i quali la connessione di un client viene chiusa (0 = disattivato)
+	 * • compressionThreshold, dimensione in byte oltre la quale i pacchetti di risposta vengono compressi per i client che lo richiedono (0 = disattivato)
+	 * • serverEngine, motore di rete per le connessioni TCP (NIO reactor multi-selettore, ASYNC proactor con AsynchronousChannelGroup)
+	 * • tracingEnabled, registrazione delle metriche di latenza e dei contatori per tipo di pacchetto
+	 * • metricsInterval, secondi tra le stampe periodiche del report delle metriche (0 = disattivato)
+	 * • adminPort, porta dell' endpoint HTTP di amministrazione con le metriche in formato Prometheus (0 = disattivato)
+	 * • shutdownTimeout, secondi entro i quali, allo spegnimento, devono terminare le richieste in volo prima della chiusura delle connessioni
+	 *   (unica scadenza condivisa da tutte le fasi dello spegnimento)
+	 * • acceptorThreads, numero di thread acceptor del serverNIO, ognuno con il proprio canale in ascolto sulla stessa porta Tcp tramite SO_REUSEPORT (1 = un solo canale se assente o 0, più acceptor solo se indicati esplicitamente)
+	 * • snapshotThreshold, dimensione in byte oltre la quale le risposte hotelList di una città vengono salvate su file dopo ogni calcolo dei rank e inviate dal serverNIO tramite transferTo (0 = disattivato)
+	 * • maxBatchSize, numero massimo di ricerche di hotel in un pacchetto di richiesta di hotel multipli (HotelierPacketHotelBatch)
+	 * • hotelListChunkSize, numero di hotel per chunk delle risposte hotelList in streaming se non indicato dal client
 	 */
 
 	private final int tcpPort;
@@ -20,8 +41,32 @@ public class HotelierServerConfig {
 	private final String serverAddress;
 	private final String rmiRemoteReference;
 	private final String mcastAddress;
+	private final int selectorThreads;
+	private final BalancingPolicy selectorBalancing;
+	private final boolean directBuffers;
+	private final int maxWriteBytesPerRound;
+	private final ExecutionMode requestExecutionMode;
+	private final int requestPoolSize;
+	private final int maxInFlightRequests;
+	private final int maxQueuedResponseBytes;
+	private final int maxFrameSize;
+	private final int idleTimeout;
+	private final int compressionThreshold;
+	private final ServerEngine serverEngine;
+	private final boolean tracingEnabled;
+	private final int metricsInterval;
+	private final int adminPort;
+	private final int shutdownTimeout;
+	private final int acceptorThreads;
+	private final int snapshotThreshold;
+	private final int maxBatchSize;
+	private final int hotelListChunkSize;
 
-	public HotelierServerConfig(int tcpPort, int rmiPort, int mcastPort, int rankingInterval, String serverAddress, String rmiRemoteReference, String mcastAddress) {
+	public HotelierServerConfig(int tcpPort, int rmiPort, int mcastPort, int rankingInterval, String serverAddress, String rmiRemoteReference, String mcastAddress,
+			int selectorThreads, BalancingPolicy selectorBalancing, boolean directBuffers,
+			int maxWriteBytesPerRound, ExecutionMode requestExecutionMode, int requestPoolSize, int maxInFlightRequests, int maxQueuedResponseBytes,
+			int maxFrameSize, int idleTimeout, int compressionThreshold, ServerEngine serverEngine, boolean tracingEnabled, int metricsInterval,
+			int adminPort, int shutdownTimeout, int acceptorThreads, int snapshotThreshold, int maxBatchSize, int hotelListChunkSize) {
 		this.tcpPort = tcpPort;
 		this.rmiPort = rmiPort;
 		this.mcastPort = mcastPort;
@@ -29,6 +74,26 @@ public class HotelierServerConfig {
 		this.serverAddress = serverAddress;
 		this.rmiRemoteReference = rmiRemoteReference;
 		this.mcastAddress = mcastAddress;
+		this.selectorThreads = selectorThreads;
+		this.selectorBalancing = selectorBalancing;
+		this.directBuffers = directBuffers;
+		this.maxWriteBytesPerRound = maxWriteBytesPerRound;
+		this.requestExecutionMode = requestExecutionMode;
+		this.requestPoolSize = requestPoolSize;
+		this.maxInFlightRequests = maxInFlightRequests;
+		this.maxQueuedResponseBytes = maxQueuedResponseBytes;
+		this.maxFrameSize = maxFrameSize;
+		this.idleTimeout = idleTimeout;
+		this.compressionThreshold = compressionThreshold;
+		this.serverEngine = serverEngine;
+		this.tracingEnabled = tracingEnabled;
+		this.metricsInterval = metricsInterval;
+		this.adminPort = adminPort;
+		this.shutdownTimeout = shutdownTimeout;
+		this.acceptorThreads = acceptorThreads;
+		this.snapshotThreshold = snapshotThreshold;
+		this.maxBatchSize = maxBatchSize;
+		this.hotelListChunkSize = hotelListChunkSize;
 	}
 
 	public int getTcpPort() {
@@ -59,4 +124,111 @@ public class HotelierServerConfig {
 		return mcastAddress;
 	}
 
+	// restituisce il numero di selettori worker, se non specificato (0) un selettore per ogni core disponibile
+	public int getSelectorThreads() {
+		return selectorThreads > 0 ? selectorThreads : Runtime.getRuntime().availableProcessors();
+	}
+
+	// restituisce la politica di bilanciamento, se non specificata round robin
+	public BalancingPolicy getSelectorBalancing() {
+		return selectorBalancing != null ? selectorBalancing : BalancingPolicy.ROUND_ROBIN;
+	}
+
+	public boolean isDirectBuffers() {
+		return directBuffers;
+	}
+
+	// restituisce i byte massimi per scrittura, se non specificati 256 KB
+	public int getMaxWriteBytesPerRound() {
+		return maxWriteBytesPerRound > 0 ? maxWriteBytesPerRound : 256 * 1024;
+	}
+
+	// restituisce la modalità di esecuzione dei pacchetti, se non specificata threadpool cached
+	public ExecutionMode getRequestExecutionMode() {
+		return requestExecutionMode != null ? requestExecutionMode : ExecutionMode.CACHED;
+	}
+
+	// restituisce il numero di thread della threadpool in modalità BOUNDED, se non specificato due thread per core
+	public int getRequestPoolSize() {
+		return requestPoolSize > 0 ? requestPoolSize : 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	// restituisce il numero massimo di richieste in volo per client, se non specificato 64
+	public int getMaxInFlightRequests() {
+		return maxInFlightRequests > 0 ? maxInFlightRequests : 64;
+	}
+
+	// restituisce i byte massimi di risposte in coda per client, se non specificati 4 MB
+	public int getMaxQueuedResponseBytes() {
+		return maxQueuedResponseBytes > 0 ? maxQueuedResponseBytes : 4 * 1024 * 1024;
+	}
+
+	// restituisce la dimensione massima di un pacchetto di richiesta, se non specificata 1 MB
+	public int getMaxFrameSize() {
+		return maxFrameSize > 0 ? maxFrameSize : 1024 * 1024;
+	}
+
+	public int getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	// restituisce il motore di rete TCP, se non specificato serverNIO
+	public ServerEngine getServerEngine() {
+		return serverEngine != null ? serverEngine : ServerEngine.NIO;
+	}
+
+	public boolean isTracingEnabled() {
+		return tracingEnabled;
+	}
+
+	public int getMetricsInterval() {
+		return metricsInterval;
+	}
+
+	public int getAdminPort() {
+		return adminPort;
+	}
+
+	public int getShutdownTimeout() {
+		return shutdownTimeout;
+	}
+
+	public int getAcceptorThreads() {
+		return acceptorThreads > 0 ? acceptorThreads : 1;
+	}
+
+	public int getSnapshotThreshold() {
+		return snapshotThreshold;
+	}
+
+	// restituisce il numero massimo di ricerche per pacchetto, default 100 se non valido
+	public int getMaxBatchSize() {
+		return maxBatchSize > 0 ? maxBatchSize : 100;
+	}
+
+	// restituisce il numero di hotel per chunk in streaming, default 50 se non valido
+	public int getHotelListChunkSize() {
+		return hotelListChunkSize > 0 ? hotelListChunkSize : 50;
+	}
+
+	public enum BalancingPolicy {
+		ROUND_ROBIN,
+		LEAST_LOAD
+	}
+
+	public enum ExecutionMode {
+		CACHED,
+		VIRTUAL,
+		BOUNDED
+	}
+
+	public enum ServerEngine {
+		NIO,
+		ASYNC
+	}
+
 }
@@ -6,6 +6,9 @@ import java.io.File;
 import java.io.IOException;
 
 import unipi.aprile.filippo.hotelier.common.utils.HotelierCommonUtils;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfig.BalancingPolicy;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfig.ExecutionMode;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfig.ServerEngine;
 
 public class HotelierServerConfigManager {
 
@@ -14,7 +17,7 @@ public class HotelierServerConfigManager {
 	// crea un file json config server di default e lo serializza su disco 
 	public static void createDefaultConfig() {
 		try {
-			serverConfiguration = new HotelierServerConfig(4316, 1099, 49152, 10, "localhost", "HOTELIER-SERVICE", "230.0.0.0");
+			serverConfiguration = new HotelierServerConfig(4316, 1099, 49152, 10, "localhost", "HOTELIER-SERVICE", "230.0.0.0", 0, BalancingPolicy.ROUND_ROBIN, false, 262144, ExecutionMode.CACHED, 0, 64, 4194304, 1048576, 0, 1024, ServerEngine.NIO, false, 60, 0, 10, 1, 16384, 100, 50);
 			var configJSON = HotelierCommonUtils.serialize(serverConfiguration);
 			HotelierCommonUtils.writeFile(configJSON, new File(SERVER_CONFIG_PATH_JSON));
 		} catch (IOException exception) {
@@ -0,0 +1,221 @@
+package unipi.aprile.filippo.hotelier.server.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Stage;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
+import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterHotels;
+import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterReviews;
+import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterUsers;
+
+public class HotelierServerAdmin {
+
+	/**
+	 * La classe HotelierServerAdmin avvia un endpoint HTTP di amministrazione, opzionale e su una porta separata (adminPort),
+	 * tramite il server HTTP incluso nel JDK (com.sun.net.httpserver). L'endpoint /metrics espone in formato testuale Prometheus:
+	 * • contatori del motore di rete TCP: connessioni, client sospesi, richieste in attesa nelle code dei client, pacchetti rifiutati,
+	 *   connessioni chiuse per inattività e compressione (HotelierServerEngine);
+	 * • dimensione dei registri di hotel, utenti e recensioni;
+	 * • latenze delle operazioni del server: iterazione del ciclo di selezione dei worker NIO (se tracingEnabled),
+	 *   calcolo dei rank, notifica RMI e persistenza;
+	 * • contatori e latenze per fase di ogni tipo di pacchetto di richiesta (se tracingEnabled);
+	 * Le latenze vengono esposte come summary (percentili 0.5, 0.9, 0.99, somma e conteggio) in secondi.
+	 *
+	 * Le richieste HTTP vengono gestite da un thread dedicato, così che le interrogazioni non rallentino mai
+	 * i selettori o la threadpool delle richieste TCP; la lettura delle metriche non acquisisce alcuna lock
+	 * ad eccezione di quelle dei registri, acquisite solo per leggerne la dimensione.
+	 * Allo spegnimento del server vengono arrestati il server HTTP e il suo thread (stop).
+	 */
+
+	// percentili esposti per ogni istogramma
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+	// metriche del server
+	private final HotelierServerMetrics metrics;
+	// server HTTP dell' endpoint
+	private final HttpServer httpServer;
+	// executor del thread che gestisce le richieste HTTP
+	private final ExecutorService executor;
+
+	public HotelierServerAdmin(String adminAddress, int adminPort) throws IOException {
+		// ottengo istanza delle metriche (singletone)
+		metrics = HotelierServerMetrics.getInstance();
+
+		// creo il server HTTP all' indirizzo e porta passati
+		httpServer = HttpServer.create(new InetSocketAddress(adminAddress, adminPort), 0);
+		// registro l'endpoint delle metriche
+		httpServer.createContext("/metrics", this::handleMetrics);
+		// gestisco le richieste HTTP su un thread dedicato
+		executor = Executors.newSingleThreadExecutor();
+		httpServer.setExecutor(executor);
+		// avvio il server HTTP
+		httpServer.start();
+	}
+
+	// arresta il server HTTP e ne attende il thread per al più timeoutMillis
+	public void stop(long timeoutMillis) throws InterruptedException {
+		// chiudo subito il server HTTP: la stop con ritardo attende l'intero ritardo anche senza richieste in corso,
+		// mentre la risposta alle richieste delle metriche è breve e viene completata dal thread prima della terminazione
+		httpServer.stop(0);
+		executor.shutdown();
+		executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+	}
+
+	// risponde alla richiesta HTTP passata con le metriche in formato Prometheus
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+
+		try (exchange) {
+
+			// accetto solo richieste GET
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			// serializzo le metriche e invio la risposta
+			byte[] body = getPrometheusReport().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+				responseBody.write(body);
+			}
+		}
+	}
+
+	// restituisce le metriche attuali in formato testuale Prometheus
+	private String getPrometheusReport() {
+
+		var report = new StringBuilder();
+		gauge(report, "hotelier_uptime_seconds", "Secondi trascorsi dall' avvio del server", metrics.getUptimeSeconds());
+
+		// contatori del motore di rete
+		var engine = metrics.getEngine();
+		if (engine != null) {
+			gauge(report, "hotelier_connections", "Connessioni TCP attive", engine.getConnectionCount());
+			gauge(report, "hotelier_paused_connections", "Client con lettura sospesa per backpressure", engine.getPausedConnections());
+			gauge(report, "hotelier_connection_queued_requests", "Richieste lette in attesa nelle code dei client", engine.getQueuedRequests());
+			counter(report, "hotelier_read_pauses_total", "Sospensioni della lettura per backpressure", engine.getReadPauses());
+			counter(report, "hotelier_rejected_frames_total", "Pacchetti di richiesta rifiutati perchè troppo grandi", engine.getRejectedFrames());
+			counter(report, "hotelier_reaped_connections_total", "Connessioni chiuse per inattività", engine.getReapedConnections());
+			gauge(report, "hotelier_compression_hit_rate", "Frazione di risposte compresse", engine.getCompressionHitRate());
+			gauge(report, "hotelier_compression_ratio", "Rapporto tra byte dopo e prima della compressione", engine.getCompressionRatio());
+		}
+
+		// dimensione dei registri
+		header(report, "hotelier_register_size", "Elementi presenti nei registri", "gauge");
+		sample(report, "hotelier_register_size", "register=\"hotels\"", HotelierServerRegisterHotels.getInstance().getHotelCount());
+		sample(report, "hotelier_register_size", "register=\"users\"", HotelierServerRegisterUsers.getInstance().getUserCount());
+		sample(report, "hotelier_register_size", "register=\"reviews\"", HotelierServerRegisterReviews.getInstance().getReviewCount());
+
+		// latenze delle operazioni del server
+		summary(report, "hotelier_selector_loop_seconds", "Durata di un' iterazione del ciclo di selezione (solo se tracingEnabled)", "", metrics.getTimer(Timer.SELECTOR_LOOP));
+		summary(report, "hotelier_ranking_cycle_seconds", "Durata di un calcolo dei rank", "", metrics.getTimer(Timer.RANKING_CYCLE));
+		summary(report, "hotelier_rmi_fanout_seconds", "Durata della notifica RMI di un rank locale", "", metrics.getTimer(Timer.RMI_FANOUT));
+		summary(report, "hotelier_push_fanout_seconds", "Durata della notifica push Tcp di un rank locale", "", metrics.getTimer(Timer.PUSH_FANOUT));
+		header(report, "hotelier_persistence_seconds", "Durata della persistenza su disco di un registro", "summary");
+		summarySamples(report, "hotelier_persistence_seconds", "register=\"hotels\"", metrics.getTimer(Timer.PERSIST_HOTELS));
+		summarySamples(report, "hotelier_persistence_seconds", "register=\"users\"", metrics.getTimer(Timer.PERSIST_USERS));
+		summarySamples(report, "hotelier_persistence_seconds", "register=\"reviews\"", metrics.getTimer(Timer.PERSIST_REVIEWS));
+
+		// contatori e latenze per tipo di pacchetto di richiesta
+		var packetMetrics = metrics.getActivePacketMetrics();
+		header(report, "hotelier_requests_total", "Richieste ricevute per tipo di pacchetto", "counter");
+		for (HotelierServerPacketMetrics packet : packetMetrics) {
+			sample(report, "hotelier_requests_total", packetLabel(packet), packet.getRequests());
+		}
+		header(report, "hotelier_request_bytes_total", "Byte di richiesta ricevuti per tipo di pacchetto", "counter");
+		for (HotelierServerPacketMetrics packet : packetMetrics) {
+			sample(report, "hotelier_request_bytes_total", packetLabel(packet), packet.getRequestBytes());
+		}
+		header(report, "hotelier_responses_total", "Risposte scritte per tipo di pacchetto di richiesta", "counter");
+		for (HotelierServerPacketMetrics packet : packetMetrics) {
+			sample(report, "hotelier_responses_total", packetLabel(packet), packet.getResponses());
+		}
+		header(report, "hotelier_response_bytes_total", "Byte di risposta scritti per tipo di pacchetto di richiesta", "counter");
+		for (HotelierServerPacketMetrics packet : packetMetrics) {
+			sample(report, "hotelier_response_bytes_total", packetLabel(packet), packet.getResponseBytes());
+		}
+		header(report, "hotelier_errors_total", "Risposte di errore per tipo di pacchetto di richiesta", "counter");
+		for (HotelierServerPacketMetrics packet : packetMetrics) {
+			sample(report, "hotelier_errors_total", packetLabel(packet), packet.getErrors());
+		}
+		header(report, "hotelier_request_stage_seconds", "Durata di ogni fase della gestione di una richiesta", "summary");
+		for (HotelierServerPacketMetrics packet : packetMetrics) {
+			for (Stage stage : Stage.values()) {
+				summarySamples(report, "hotelier_request_stage_seconds",
+						packetLabel(packet) + ",stage=\"" + stage.name().toLowerCase(Locale.ROOT) + "\"", packet.getStage(stage));
+			}
+		}
+
+		return report.toString();
+	}
+
+	// aggiunge al report un gauge senza etichette
+	private static void gauge(StringBuilder report, String name, String help, double value) {
+		header(report, name, help, "gauge");
+		sample(report, name, "", value);
+	}
+
+	// aggiunge al report un counter senza etichette
+	private static void counter(StringBuilder report, String name, String help, double value) {
+		header(report, name, help, "counter");
+		sample(report, name, "", value);
+	}
+
+	// aggiunge al report un summary con le etichette passate
+	private static void summary(StringBuilder report, String name, String help, String labels, HotelierServerHistogram histogram) {
+		header(report, name, help, "summary");
+		summarySamples(report, name, labels, histogram);
+	}
+
+	// aggiunge al report i campioni (percentili, somma e conteggio in secondi) dell' istogramma passato
+	private static void summarySamples(StringBuilder report, String name, String labels, HotelierServerHistogram histogram) {
+		String separator = labels.isEmpty() ? "" : ",";
+		for (double quantile : QUANTILES) {
+			sample(report, name, labels + separator + "quantile=\"" + quantile + "\"", toSeconds(histogram.getPercentile(quantile)));
+		}
+		sample(report, name + "_sum", labels, toSeconds(histogram.getSum()));
+		sample(report, name + "_count", labels, histogram.getCount());
+	}
+
+	// aggiunge al report le righe HELP e TYPE della metrica passata
+	private static void header(StringBuilder report, String name, String help, String type) {
+		report.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		report.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	// aggiunge al report un campione della metrica passata con le etichette passate
+	private static void sample(StringBuilder report, String name, String labels, double value) {
+		report.append(name);
+		if (!labels.isEmpty()) {
+			report.append('{').append(labels).append('}');
+		}
+		// i valori interi vengono scritti senza parte decimale
+		if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			report.append(' ').append((long) value).append('\n');
+		} else {
+			report.append(' ').append(value).append('\n');
+		}
+	}
+
+	// restituisce l'etichetta del tipo di pacchetto passato
+	private static String packetLabel(HotelierServerPacketMetrics packet) {
+		return "packet=\"" + packet.getName() + "\"";
+	}
+
+	// restituisce i nanosecondi passati in secondi
+	private static double toSeconds(long nanos) {
+		return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+	}
+
+}
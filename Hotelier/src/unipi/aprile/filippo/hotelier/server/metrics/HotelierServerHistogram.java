@@ -0,0 +1,117 @@
+package unipi.aprile.filippo.hotelier.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HotelierServerHistogram {
+
+	/**
+	 * La classe HotelierServerHistogram implementa un istogramma di latenze (in nanosecondi) con bucket logaritmici:
+	 * ogni potenza di 2 è suddivisa in SUB_BUCKETS bucket lineari, così che l'errore relativo di un percentile
+	 * sia al più 1/SUB_BUCKETS indipendentemente dall' ordine di grandezza (da nanosecondi a secondi).
+	 * La registrazione di un valore non acquisisce alcuna lock (AtomicLongArray e LongAdder) e richiede O(1),
+	 * così che l'istogramma possa essere aggiornato concorrentemente dai thread della pool e dei selettori.
+	 * I percentili restituiti sono il limite superiore del bucket in cui cade il percentile, limitato al massimo registrato.
+	 */
+
+	// bit e numero di bucket lineari per ogni potenza di 2
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// numero di bucket per coprire tutti i valori long positivi
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	// numero di valori per bucket
+	private final AtomicLongArray buckets;
+	// numero e somma dei valori registrati
+	private final LongAdder count, sum;
+	// valore massimo registrato
+	private final AtomicLong max;
+
+	public HotelierServerHistogram() {
+		// inizializzo i bucket e i contatori
+		buckets = new AtomicLongArray(BUCKETS);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+
+	// registra il valore passato
+	public void record(long value) {
+
+		// i valori negativi (orologio non monotono tra thread) vengono registrati come 0
+		value = Math.max(0, value);
+		buckets.incrementAndGet(getBucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	// restituisce il bucket del valore passato
+	private static int getBucket(long value) {
+
+		// i valori più piccoli di SUB_BUCKETS hanno un bucket ciascuno
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		// ottengo l'esponente della potenza di 2 e i bit successivi al più significativo
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	// restituisce il limite superiore del bucket passato
+	private static long getBucketUpperBound(int bucket) {
+
+		// i bucket dei valori più piccoli di SUB_BUCKETS contengono un solo valore
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	// restituisce il valore sotto il quale cade la frazione passata (0-1) dei valori registrati, 0 se vuoto
+	public long getPercentile(double quantile) {
+
+		// calcolo la posizione del percentile tra i valori registrati
+		long total = count.sum();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+
+		// itero i bucket sommando i valori finchè non raggiungo la posizione
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulative += buckets.get(i);
+			if (cumulative >= rank) {
+				return Math.min(getBucketUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	// restituisce il numero di valori registrati
+	public long getCount() {
+		return count.sum();
+	}
+
+	// restituisce la somma dei valori registrati
+	public long getSum() {
+		return sum.sum();
+	}
+
+	// restituisce la media dei valori registrati, 0 se vuoto
+	public long getMean() {
+		long total = count.sum();
+		return total == 0 ? 0 : sum.sum() / total;
+	}
+
+	// restituisce il valore massimo registrato
+	public long getMax() {
+		return max.get();
+	}
+
+}
@@ -0,0 +1,217 @@
+package unipi.aprile.filippo.hotelier.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerEngine;
+
+public class HotelierServerMetrics {
+
+	/**
+	 * La classe singletone HotelierServerMetrics mantiene le metriche delle richieste TCP per ogni tipo di pacchetto
+	 * di richiesta (HotelierServerPacketMetrics), indicizzate per id del pacchetto. Per ogni richiesta vengono misurate le fasi:
+	 * • QUEUE_WAIT, attesa tra la lettura della richiesta e l'inizio della sua gestione su un thread della pool;
+	 * • DECODE, deserializzazione (ed eventuale decompressione) del pacchetto di richiesta;
+	 * • HANDLE, gestione del pacchetto da parte di HotelierServerPacketHandler;
+	 * • ENCODE, serializzazione (ed eventuale compressione) del pacchetto di risposta;
+	 * • WRITE, attesa in coda e scrittura sul socket della risposta, fino alla scrittura completa del messaggio;
+	 *
+	 * Le metriche vengono registrate solo se tracingEnabled è attivo nei config: in caso contrario i punti di misura
+	 * si limitano al controllo di un booleano, senza leggere l'orologio nè aggiornare contatori.
+	 *
+	 * Mantiene inoltre gli istogrammi (Timer) delle operazioni del server esterne alle richieste: iterazione del ciclo
+	 * di selezione dei worker (solo se tracingEnabled), calcolo dei rank, notifica tramite callback RMI e tramite push Tcp dei rank locali
+	 * e persistenza su disco di ogni registro; questi ultimi avvengono al più una volta per ciclo di ranking o per
+	 * modifica di un registro e vengono quindi registrati sempre.
+	 * Le metriche sono disponibili in qualsiasi momento tramite getReport() e vengono stampate periodicamente
+	 * da HotelierServerMetricsReporter; il report include i contatori del motore di rete TCP in esecuzione.
+	 *
+	 * L'istanza deve essere creata prima dell' avvio del server, così che sia unica tra i thread.
+	 */
+
+	private static HotelierServerMetrics instance = null;
+
+	public static HotelierServerMetrics getInstance() {
+		if (instance == null) {
+			instance = new HotelierServerMetrics();
+		}
+		return instance;
+	}
+
+	// fasi della gestione di una richiesta
+	public enum Stage {
+		QUEUE_WAIT,
+		DECODE,
+		HANDLE,
+		ENCODE,
+		WRITE
+	}
+
+	// operazioni del server misurate al di fuori delle richieste
+	public enum Timer {
+		SELECTOR_LOOP,
+		RANKING_CYCLE,
+		RMI_FANOUT,
+		PUSH_FANOUT,
+		PERSIST_HOTELS,
+		PERSIST_USERS,
+		PERSIST_REVIEWS
+	}
+
+	// booleano che indica se le metriche vengono registrate
+	private final boolean tracingEnabled;
+	// istogrammi delle operazioni del server
+	private final HotelierServerHistogram[] timers;
+	// metriche per id del pacchetto, null se pacchetto non supportato
+	private final HotelierServerPacketMetrics[] packetMetrics;
+	// motore di rete TCP in esecuzione
+	private volatile HotelierServerEngine engine;
+	// istante di avvio in nanosecondi
+	private final long startTime;
+
+	private HotelierServerMetrics() {
+		// ottengo dai config se registrare le metriche
+		tracingEnabled = HotelierServerConfigManager.getServerConfig().isTracingEnabled();
+		// creo le metriche per ogni pacchetto supportato dal registry
+		packetMetrics = new HotelierServerPacketMetrics[HotelierPacketRegistry.getPacketTypeCount()];
+		for (int packetID = 0; packetID < packetMetrics.length; packetID++) {
+			var packetClass = HotelierPacketRegistry.getPacketClass(packetID);
+			if (packetClass != null) {
+				packetMetrics[packetID] = new HotelierServerPacketMetrics(packetClass.getSimpleName());
+			}
+		}
+		// creo un istogramma per ogni operazione del server
+		timers = new HotelierServerHistogram[Timer.values().length];
+		for (int i = 0; i < timers.length; i++) {
+			timers[i] = new HotelierServerHistogram();
+		}
+		// setto l'istante di avvio a quello attuale
+		startTime = System.nanoTime();
+	}
+
+	// restituisce true se le metriche vengono registrate, false altrimenti
+	public boolean isTracingEnabled() {
+		return tracingEnabled;
+	}
+
+	// restituisce le metriche del pacchetto passato, null se pacchetto non supportato
+	public HotelierServerPacketMetrics getPacketMetrics(int packetID) {
+		return packetID >= 0 && packetID < packetMetrics.length ? packetMetrics[packetID] : null;
+	}
+
+	// restituisce le metriche dei pacchetti che hanno ricevuto almeno una richiesta
+	public List<HotelierServerPacketMetrics> getActivePacketMetrics() {
+
+		List<HotelierServerPacketMetrics> activePacketMetrics = new ArrayList<>();
+		for (HotelierServerPacketMetrics metrics : packetMetrics) {
+			if (metrics != null && metrics.getRequests() > 0) {
+				activePacketMetrics.add(metrics);
+			}
+		}
+		return activePacketMetrics;
+	}
+
+	// registra la durata in nanosecondi passata per la fase e il pacchetto passati
+	public void record(int packetID, Stage stage, long nanos) {
+		var metrics = getPacketMetrics(packetID);
+		if (metrics != null) {
+			metrics.getStage(stage).record(nanos);
+		}
+	}
+
+	// aggiorna i contatori del pacchetto passato alla ricezione di una richiesta di requestSize byte
+	public void requestReceived(int packetID, int requestSize) {
+		var metrics = getPacketMetrics(packetID);
+		if (metrics != null) {
+			metrics.requestReceived(requestSize);
+		}
+	}
+
+	// aggiorna i contatori del pacchetto passato alla scrittura di una risposta di responseSize byte
+	public void responseWritten(int packetID, int responseSize) {
+		var metrics = getPacketMetrics(packetID);
+		if (metrics != null) {
+			metrics.responseWritten(responseSize);
+		}
+	}
+
+	// aggiorna il contatore degli errori del pacchetto passato
+	public void errorResponded(int packetID) {
+		var metrics = getPacketMetrics(packetID);
+		if (metrics != null) {
+			metrics.errorResponded();
+		}
+	}
+
+	// registra la durata in nanosecondi passata per l'operazione del server passata
+	public void recordTimer(Timer timer, long nanos) {
+		timers[timer.ordinal()].record(nanos);
+	}
+
+	// restituisce l'istogramma dell' operazione del server passata
+	public HotelierServerHistogram getTimer(Timer timer) {
+		return timers[timer.ordinal()];
+	}
+
+	// setta il motore di rete TCP in esecuzione
+	public void setEngine(HotelierServerEngine engine) {
+		this.engine = engine;
+	}
+
+	// restituisce il motore di rete TCP in esecuzione, null se non ancora avviato
+	public HotelierServerEngine getEngine() {
+		return engine;
+	}
+
+	// restituisce i secondi trascorsi dall' avvio
+	public long getUptimeSeconds() {
+		return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+	}
+
+	// restituisce il report testuale delle metriche attuali
+	public String getReport() {
+
+		var report = new StringBuilder();
+		report.append(String.format("[METRICS] uptime %d s, tracing %s%n", getUptimeSeconds(), tracingEnabled ? "on" : "off"));
+
+		// aggiungo i contatori del motore di rete
+		if (engine != null) {
+			report.append(String.format("  engine connections=%d pausedConnections=%d readPauses=%d rejectedFrames=%d reapedConnections=%d"
+					+ " queuedRequests=%d compressionHitRate=%.3f compressionRatio=%.3f%n", engine.getConnectionCount(), engine.getPausedConnections(),
+					engine.getReadPauses(), engine.getRejectedFrames(), engine.getReapedConnections(), engine.getQueuedRequests(),
+					engine.getCompressionHitRate(), engine.getCompressionRatio()));
+		}
+
+		// aggiungo le latenze (in microsecondi) delle operazioni del server eseguite almeno una volta
+		for (Timer timer : Timer.values()) {
+			var histogram = getTimer(timer);
+			if (histogram.getCount() > 0) {
+				report.append(String.format("  %-15s count=%d mean=%dus p50=%dus p99=%dus max=%dus%n", timer, histogram.getCount(),
+						toMicros(histogram.getMean()), toMicros(histogram.getPercentile(0.5)), toMicros(histogram.getPercentile(0.99)),
+						toMicros(histogram.getMax())));
+			}
+		}
+
+		// aggiungo contatori e latenze (in microsecondi) di ogni pacchetto che ha ricevuto richieste
+		for (HotelierServerPacketMetrics metrics : getActivePacketMetrics()) {
+			report.append(String.format("  %s requests=%d errors=%d requestBytes=%d responses=%d responseBytes=%d%n", metrics.getName(),
+					metrics.getRequests(), metrics.getErrors(), metrics.getRequestBytes(), metrics.getResponses(), metrics.getResponseBytes()));
+			for (Stage stage : Stage.values()) {
+				var histogram = metrics.getStage(stage);
+				report.append(String.format("    %-10s count=%d mean=%dus p50=%dus p99=%dus max=%dus%n", stage, histogram.getCount(),
+						toMicros(histogram.getMean()), toMicros(histogram.getPercentile(0.5)), toMicros(histogram.getPercentile(0.99)),
+						toMicros(histogram.getMax())));
+			}
+		}
+		return report.toString();
+	}
+
+	// restituisce i nanosecondi passati in microsecondi
+	private static long toMicros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+}
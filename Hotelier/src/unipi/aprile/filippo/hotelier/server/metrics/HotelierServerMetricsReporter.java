@@ -0,0 +1,64 @@
+package unipi.aprile.filippo.hotelier.server.metrics;
+
+public class HotelierServerMetricsReporter implements Runnable {
+
+	/**
+	 * La classe HotelierServerMetricsReporter avvia un thread che ogni metricsInterval secondi stampa il report
+	 * delle metriche del server (HotelierServerMetrics) insieme al throughput delle richieste nell' ultimo intervallo.
+	 * Il thread viene interrotto allo spegnimento del server (stop).
+	 */
+
+	// intervallo in secondi tra le stampe del report
+	private final int metricsInterval;
+	// metriche del server
+	private final HotelierServerMetrics metrics;
+	// numero totale di richieste alla stampa precedente
+	private long lastRequests;
+	// thread della stampa periodica
+	private final Thread thread;
+
+	public HotelierServerMetricsReporter(int metricsInterval) {
+		// setto metricsInterval a quello passato
+		this.metricsInterval = metricsInterval;
+		// ottengo istanza delle metriche (singletone)
+		metrics = HotelierServerMetrics.getInstance();
+
+		// avvio il thread
+		thread = new Thread(this);
+		thread.start();
+	}
+
+	// interrompe il thread della stampa periodica e ne attende la terminazione per al più timeoutMillis
+	public void stop(long timeoutMillis) throws InterruptedException {
+		thread.interrupt();
+		thread.join(timeoutMillis);
+	}
+
+	@Override
+	public void run() {
+
+		// itero finchè il thread non viene interrotto
+		while (!Thread.interrupted()) {
+
+			// aspetto metricsInterval secondi
+			try {
+				Thread.sleep(metricsInterval * 1000L);
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			// calcolo il numero totale di richieste e il throughput nell' ultimo intervallo
+			long requests = 0;
+			for (HotelierServerPacketMetrics packetMetrics : metrics.getActivePacketMetrics()) {
+				requests += packetMetrics.getRequests();
+			}
+			double throughput = (double) (requests - lastRequests) / metricsInterval;
+			lastRequests = requests;
+
+			// stampo il report delle metriche
+			System.out.print(metrics.getReport());
+			System.out.printf("  throughput %.1f req/s (last %d s)%n", throughput, metricsInterval);
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+package unipi.aprile.filippo.hotelier.server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class HotelierServerPacketMetrics {
+
+	/**
+	 * La classe HotelierServerPacketMetrics contiene le metriche relative ad un tipo di pacchetto di richiesta:
+	 * • un istogramma di latenza per ogni fase (HotelierServerMetrics.Stage) della gestione della richiesta;
+	 * • numero di richieste ricevute e relativi byte;
+	 * • numero di risposte scritte e relativi byte;
+	 * • numero di errori, ovvero richieste a cui è stato risposto con un pacchetto di errore;
+	 * Tutte le metriche possono essere aggiornate concorrentemente senza acquisire alcuna lock.
+	 */
+
+	// nome del tipo di pacchetto
+	private final String name;
+	// istogrammi di latenza per ogni fase
+	private final HotelierServerHistogram[] stages;
+	// numero di richieste e byte ricevuti
+	private final LongAdder requests, requestBytes;
+	// numero di risposte e byte scritti
+	private final LongAdder responses, responseBytes;
+	// numero di errori
+	private final LongAdder errors;
+
+	public HotelierServerPacketMetrics(String name) {
+		// setto name a quello passato
+		this.name = name;
+		// creo un istogramma per ogni fase
+		stages = new HotelierServerHistogram[HotelierServerMetrics.Stage.values().length];
+		for (int i = 0; i < stages.length; i++) {
+			stages[i] = new HotelierServerHistogram();
+		}
+		// inizializzo i contatori
+		requests = new LongAdder();
+		requestBytes = new LongAdder();
+		responses = new LongAdder();
+		responseBytes = new LongAdder();
+		errors = new LongAdder();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	// restituisce l'istogramma della fase passata
+	public HotelierServerHistogram getStage(HotelierServerMetrics.Stage stage) {
+		return stages[stage.ordinal()];
+	}
+
+	// aggiorna i contatori alla ricezione di una richiesta di requestSize byte
+	public void requestReceived(int requestSize) {
+		requests.increment();
+		requestBytes.add(requestSize);
+	}
+
+	// aggiorna i contatori alla scrittura di una risposta di responseSize byte
+	public void responseWritten(int responseSize) {
+		responses.increment();
+		responseBytes.add(responseSize);
+	}
+
+	// aggiorna il contatore degli errori
+	public void errorResponded() {
+		errors.increment();
+	}
+
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	public long getRequestBytes() {
+		return requestBytes.sum();
+	}
+
+	public long getResponses() {
+		return responses.sum();
+	}
+
+	public long getResponseBytes() {
+		return responseBytes.sum();
+	}
+
+	public long getErrors() {
+		return errors.sum();
+	}
+
+}
@@ -0,0 +1,297 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfig.ExecutionMode;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+
+public class HotelierServerAsync implements CompletionHandler<AsynchronousSocketChannel, Void>, HotelierServerEngine {
+
+	/**
+	 * La classe HotelierServerAsync gestisce le richieste TCP tramite canali asincroni (NIO.2), in alternativa al serverNIO.
+	 * La connessione tra il client e il server è persistente e il protocollo è lo stesso del serverNIO (HotelierServerProtocol).
+	 *
+	 * Il server asincrono segue un modello proactor: invece di attendere che un canale sia pronto (reactor) vengono avviate
+	 * operazioni di accept, lettura e scrittura la cui terminazione viene notificata tramite CompletionHandler eseguiti
+	 * dai thread di un AsynchronousChannelGroup dedicato con un numero fissato di thread (selectorThreads).
+	 * Il server è formato da:
+	 * • un AsynchronousServerSocketChannel, il quale accetta le nuove connessioni avviando un' accept alla volta;
+	 * • un HotelierServerAsyncClientHandler per ogni client accettato, il quale concatena le letture delle richieste
+	 *   e le scritture delle risposte delegando la gestione dei pacchetti alla thread pool condivisa;
+	 *
+	 * La gestione dei pacchetti avviene con le stesse modalità di esecuzione del serverNIO (CACHED, VIRTUAL, BOUNDED).
+	 * Il server mantiene un pool di compressori condiviso dai client e gli stessi contatori dei worker del serverNIO
+	 * (connessioni, sospensioni della lettura, pacchetti rifiutati, connessioni chiuse per inattività).
+	 * Non essendo necessario un thread dedicato, l'accept viene avviata direttamente dal costruttore.
+	 * Se idleTimeout è attivo, un thread dedicato (idleReaper) chiude ogni secondo i client che non leggono nè scrivono
+	 * da almeno idleTimeout secondi e non sono occupati (isBusy). Le letture non hanno timeout: una lettura asincrona
+	 * terminata per timeout non può essere riavviata, quindi non permetterebbe di mantenere aperti i client occupati.
+	 *
+	 * Allo spegnimento del server (shutdown) il canale di accept viene chiuso e ogni DRAIN_POLL_MILLIS vengono chiusi i client
+	 * inattivi (senza richieste in volo nè lette parzialmente e senza letture o scritture negli ultimi DRAIN_POLL_MILLIS); quando non rimangono client, o al più allo scadere del timeout,
+	 * vengono chiuse le connessioni rimanenti, la threadpool e il gruppo di canali.
+	 */
+
+	// gruppo di canali asincroni i cui thread eseguono i completion handler
+	private final AsynchronousChannelGroup channelGroup;
+	// canale per l'accettazione delle connessioni
+	private final AsynchronousServerSocketChannel serverSocketChannel;
+	// threadpool per la gestione dei pacchetti
+	private final ExecutorService requestPool;
+	// pool di compressori utilizzati dai clientHandler
+	private final HotelierServerCompressorPool compressorPool;
+	// numero di connessioni attive
+	private final AtomicInteger connectionCount;
+	// numero di client con lettura sospesa e numero totale di sospensioni della lettura
+	private final AtomicInteger pausedConnections;
+	private final LongAdder readPauses;
+	// numero di pacchetti di richiesta rifiutati perchè più grandi della dimensione massima
+	private final LongAdder rejectedFrames;
+	// numero di connessioni chiuse per inattività
+	private final LongAdder reapedConnections;
+	// numero di richieste in attesa di essere gestite da un thread della pool
+	private final AtomicInteger queuedRequests;
+	// set dei clientHandler dei client connessi
+	private final Set<HotelierServerAsyncClientHandler> clientHandlers;
+	// nanosecondi di inattività dopo i quali viene chiusa la connessione di un client (0 = disattivato)
+	private final long idleTimeoutNanos;
+	// thread che chiude periodicamente i client inattivi, null se idleTimeout non è attivo
+	private final ScheduledExecutorService idleReaper;
+	// millisecondi tra i controlli delle richieste in volo durante lo svuotamento
+	private static final long DRAIN_POLL_MILLIS = 50;
+	// booleano che indica se il server è in svuotamento
+	private volatile boolean isDraining;
+
+	public HotelierServerAsync(String serverAddress, int tcpPort, int groupThreads, ExecutionMode executionMode, int requestPoolSize) throws IOException {
+		// creo la threadpool per la gestion dei pacchetti in base alla modalità di esecuzione
+		requestPool = HotelierServerNIO.createRequestPool(executionMode, requestPoolSize);
+		// creo il pool di compressori e inizializzo i contatori
+		compressorPool = new HotelierServerCompressorPool();
+		connectionCount = new AtomicInteger();
+		pausedConnections = new AtomicInteger();
+		readPauses = new LongAdder();
+		rejectedFrames = new LongAdder();
+		reapedConnections = new LongAdder();
+		queuedRequests = new AtomicInteger();
+		// inizializzo il set concorrente dei clientHandler
+		clientHandlers = ConcurrentHashMap.newKeySet();
+
+		// creo il gruppo di canali asincroni con il numero di thread passato
+		channelGroup = AsynchronousChannelGroup.withFixedThreadPool(groupThreads, Executors.defaultThreadFactory());
+		// apro il canale per l'accettazione delle connessioni nel gruppo e ne effettuo il binding all' indirizzo passato
+		serverSocketChannel = AsynchronousServerSocketChannel.open(channelGroup);
+		serverSocketChannel.bind(new InetSocketAddress(serverAddress, tcpPort));
+
+		// avvio la chiusura periodica dei client inattivi se attiva
+		idleTimeoutNanos = TimeUnit.SECONDS.toNanos(HotelierServerConfigManager.getServerConfig().getIdleTimeout());
+		if (idleTimeoutNanos > 0) {
+			idleReaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "HotelierServerAsyncIdleReaper");
+				thread.setDaemon(true);
+				return thread;
+			});
+			idleReaper.scheduleAtFixedRate(this::closeInactiveClients, 1, 1, TimeUnit.SECONDS);
+		} else {
+			idleReaper = null;
+		}
+
+		// avvio l'accettazione della prima connessione
+		serverSocketChannel.accept(null, this);
+	}
+
+	// chiude i client che non leggono nè scrivono da almeno idleTimeout e non sono occupati, eseguito da idleReaper
+	private void closeInactiveClients() {
+
+		long idleSince = System.nanoTime() - idleTimeoutNanos;
+		for (HotelierServerAsyncClientHandler clientHandler : clientHandlers) {
+			if (clientHandler.getLastActivity() < idleSince && !clientHandler.isBusy()) {
+				// incremento il numero di connessioni chiuse per inattività e chiudo il client
+				reapedConnections.increment();
+				clientHandler.close();
+			}
+		}
+	}
+
+	@Override
+	public void completed(AsynchronousSocketChannel client, Void attachment) {
+
+		// avvio l'accettazione della connessione successiva
+		serverSocketChannel.accept(null, this);
+
+		// disabilito l'algoritmo di Nagle come nel serverNIO: le risposte scritte in più scritture (chunk degli stream,
+		// pipelining) non devono attendere l'ack ritardato della scrittura precedente
+		try {
+			client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+
+		// incremento il numero di connessioni e creo il clientHandler del client
+		connectionCount.incrementAndGet();
+		var clientHandler = new HotelierServerAsyncClientHandler(client, this);
+		clientHandlers.add(clientHandler);
+
+		// se il server è in svuotamento chiudo subito la connessione, altrimenti avvio la lettura delle richieste
+		if (isDraining) {
+			clientHandler.close();
+		} else {
+			clientHandler.start();
+		}
+	}
+
+	@Override
+	public void failed(Throwable exception, Void attachment) {
+
+		// se il canale è stato chiuso termino l'accettazione delle connessioni
+		if (!serverSocketChannel.isOpen()) {
+			return;
+		}
+		// altrimenti stampo l'eccezione e riavvio l'accettazione
+		exception.printStackTrace();
+		serverSocketChannel.accept(null, this);
+	}
+
+	// restituisce la threadpool per la gestione dei pacchetti
+	public ExecutorService getRequestPool() {
+		return requestPool;
+	}
+
+	// restituisce il pool di compressori
+	public HotelierServerCompressorPool getCompressorPool() {
+		return compressorPool;
+	}
+
+	// aggiorna il contatore e il set dei clientHandler alla chiusura di un client
+	public void connectionClosed(HotelierServerAsyncClientHandler clientHandler) {
+		clientHandlers.remove(clientHandler);
+		connectionCount.decrementAndGet();
+	}
+
+	@Override
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	// aggiorna i contatori alla sospensione della lettura di un client
+	public void readPaused() {
+		pausedConnections.incrementAndGet();
+		readPauses.increment();
+	}
+
+	// aggiorna i contatori al ripristino della lettura di un client
+	public void readResumed() {
+		pausedConnections.decrementAndGet();
+	}
+
+	@Override
+	public int getPausedConnections() {
+		return pausedConnections.get();
+	}
+
+	@Override
+	public long getReadPauses() {
+		return readPauses.sum();
+	}
+
+	// aggiorna il contatore al rifiuto di un pacchetto di richiesta troppo grande
+	public void frameRejected() {
+		rejectedFrames.increment();
+	}
+
+	@Override
+	public long getRejectedFrames() {
+		return rejectedFrames.sum();
+	}
+
+	@Override
+	public long getReapedConnections() {
+		return reapedConnections.sum();
+	}
+
+	// aggiorna il contatore all' inserimento di una richiesta nella coda di un client
+	public void requestQueued() {
+		queuedRequests.incrementAndGet();
+	}
+
+	// aggiorna il contatore al prelievo di una richiesta dalla coda di un client
+	public void requestDequeued() {
+		queuedRequests.decrementAndGet();
+	}
+
+	@Override
+	public int getQueuedRequests() {
+		return queuedRequests.get();
+	}
+
+	@Override
+	public void shutdown(long timeoutMillis) throws InterruptedException {
+
+		// istante entro il quale devono terminare le richieste in volo
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		// avvio lo svuotamento, termino la chiusura dei client inattivi e chiudo il canale di accept
+		isDraining = true;
+		if (idleReaper != null) {
+			idleReaper.shutdownNow();
+		}
+		try {
+			serverSocketChannel.close();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+
+		// chiudo i client inattivi negli ultimi DRAIN_POLL_MILLIS finchè ne rimangono, fino alla scadenza
+		while (!closeIdleClients(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(DRAIN_POLL_MILLIS)) && System.nanoTime() < deadline) {
+			Thread.sleep(DRAIN_POLL_MILLIS);
+		}
+		// chiudo le connessioni dei client rimanenti
+		for (HotelierServerAsyncClientHandler clientHandler : clientHandlers) {
+			clientHandler.close();
+		}
+
+		// termino la threadpool per la gestione dei pacchetti e il gruppo di canali
+		HotelierServerNIO.shutdownRequestPool(requestPool, deadline - System.nanoTime());
+		try {
+			channelGroup.shutdownNow();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	// chiude i client inattivi dall' istante passato, restituisce true se non rimangono client, false altrimenti
+	private boolean closeIdleClients(long idleSince) {
+
+		for (HotelierServerAsyncClientHandler clientHandler : clientHandlers) {
+			if (clientHandler.isIdle(idleSince)) {
+				clientHandler.close();
+			}
+		}
+		return clientHandlers.isEmpty();
+	}
+
+	@Override
+	public double getCompressionHitRate() {
+		long candidates = compressorPool.getCompressionCandidates();
+		return candidates == 0 ? 0 : (double) compressorPool.getCompressedResponses() / candidates;
+	}
+
+	@Override
+	public double getCompressionRatio() {
+		long uncompressed = compressorPool.getUncompressedBytes();
+		return uncompressed == 0 ? 1 : (double) compressorPool.getCompressedBytes() / uncompressed;
+	}
+
+}
@@ -0,0 +1,560 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.JsonParseException;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHeader;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+
+public class HotelierServerAsyncClientHandler {
+
+	/**
+	 * La classe HotelierServerAsyncClientHandler gestisce la comunicazione TCP tra il server asincrono (HotelierServerAsync)
+	 * e un singolo client, con lo stesso protocollo e le stesse garanzie di HotelierServerClientHandler:
+	 * 	• le richieste vengono lette una alla volta concatenando letture asincrone (header, requestID se presente, chunk del payload),
+	 * 	  ognuna avviata dal completion handler della precedente; la lunghezza del pacchetto viene validata prima di leggerne il payload;
+	 * 	• le richieste vengono gestite dalla threadpool una alla volta e nell' ordine di arrivo (pipelining); ogni richiesta riceve
+	 * 	  una risposta anche se non supportata o se la gestione fallisce (HotelierServerProtocol), mentre se non è possibile avviare
+	 * 	  la scrittura delle risposte la connessione viene chiusa, così che la coda delle richieste non resti mai bloccata;
+	 * 	• i chunk delle risposte in streaming vengono serializzati solo finchè i byte di risposta in coda restano sotto la finestra
+	 * 	  dello stream, altrimenti la gestione delle richieste viene sospesa e ripresa alla terminazione delle scritture;
+	 * 	• le risposte serializzate vengono accodate e scritte con al più una scrittura gathering asincrona in corso alla volta,
+	 * 	  di al più maxWriteBytesPerRound byte, avviando la successiva alla terminazione della precedente finchè la coda non è vuota;
+	 * 	• se vengono superati i limiti maxInFlightRequests o maxQueuedResponseBytes la lettura successiva non viene avviata (backpressure)
+	 * 	  e viene avviata nuovamente quando entrambi i valori scendono sotto la metà dei rispettivi limiti;
+	 * 	• i pacchetti inviati senza richiesta (push dei rank locali sottoscritti) vengono accodati come le risposte,
+	 * 	  ma vengono scartati se i byte di risposta in coda superano maxQueuedResponseBytes;
+	 * 	• se il client non legge nè scrive per idleTimeout secondi e non è occupato (isBusy) la connessione viene chiusa dal server;
+	 * Validazione, (de)serializzazione, compressione e scrittura dei messaggi sono delegate a HotelierServerProtocol.
+	 * Allo spegnimento del server il client viene chiuso dal server solo quando è inattivo (isIdle), ovvero quando non ha
+	 * richieste in volo nè una richiesta letta parzialmente e non ha effettuato letture o scritture dall' istante indicato.
+	 *
+	 * Le letture di uno stesso client sono sequenziali, così come le scritture, ma letture e scritture possono terminare
+	 * contemporaneamente su thread diversi del gruppo: per questo il clientHandler utilizza due pool di buffer distinti,
+	 * uno per le letture delle richieste e uno per le scritture delle risposte, ognuno utilizzato da un solo thread alla volta.
+	 */
+
+	// completion handler delle letture e delle scritture, condivisi da tutti i client (il client viene passato come attachment)
+	private static final CompletionHandler<Integer, HotelierServerAsyncClientHandler> READ_HANDLER = new ReadHandler();
+	private static final CompletionHandler<Long, HotelierServerAsyncClientHandler> WRITE_HANDLER = new WriteHandler();
+
+	// numero massimo di buffer scritti con un' unica scrittura gathering
+	private static final int MAX_GATHER_BUFFERS = 64;
+
+	// canale associato al client
+	private final AsynchronousSocketChannel client;
+	// server asincrono che gestisce il client
+	private final HotelierServerAsync server;
+	// protocollo della connessione (gestione e serializzazione dei pacchetti)
+	private final HotelierServerProtocol protocol;
+	// pool di buffer per la lettura delle richieste e per la scrittura delle risposte
+	private final HotelierServerBufferPool readBufferPool, writeBufferPool;
+	// coda delle richieste in attesa di essere gestite
+	private final Queue<HotelierServerRequest> requestQueue;
+	// booleano che indica se le richieste del client sono in gestione su un thread della pool
+	private boolean isProcessing;
+	// booleano che indica se la gestione delle richieste è sospesa in attesa della scrittura dei chunk in coda (acceduto con la lock sulla coda delle richieste)
+	private boolean isStreamSuspended;
+	// byte di risposta in coda oltre i quali non vengono serializzati altri chunk delle risposte in streaming
+	private final int streamWindowBytes;
+	// coda delle risposte serializzate
+	private final Queue<HotelierServerResponse> responseQueue;
+	// booleano che indica se è in corso una scrittura sul canale
+	private boolean isWriting;
+	// numero massimo di byte preparati per ogni scrittura
+	private final int maxWriteBytesPerRound;
+
+	// numero di richieste lette e non ancora risposte e byte di risposta in coda non ancora scritti
+	private final AtomicInteger inFlightRequests, queuedResponseBytes;
+	// limiti oltre i quali viene sospesa la lettura delle richieste
+	private final int maxInFlightRequests, maxQueuedResponseBytes;
+	// booleano che indica se la lettura delle richieste è sospesa (acceduto con la lock sul clientHandler)
+	private boolean isReadPaused;
+
+	// byte buffer per lettura della richiesta
+	private ByteBuffer requestHeader;
+	private final List<ByteBuffer> requestChunks;
+	// booleano che indica se è in corso la lettura del payload
+	private boolean isReadingPayload;
+	// booleano che indica se è stata letta una parte della richiesta successiva, letto dal server allo spegnimento
+	private volatile boolean isReadingRequest;
+	// istante dell' ultima lettura o scrittura completata in nanosecondi, letto dal server allo spegnimento
+	private volatile long lastActivity;
+	// byte del pacchetto di richiesta ancora da leggere
+	private int remainingPayloadBytes;
+	// buffer della scrittura in corso, relative risposte serializzate e numero di buffer
+	private final ByteBuffer[] responseBuffers;
+	private final HotelierServerResponse[] responseMessages;
+	private int responseBufferCount;
+
+	// booleano per chiudere le risorse del client una sola volta
+	private final AtomicBoolean isClosed;
+
+	public HotelierServerAsyncClientHandler(AsynchronousSocketChannel client, HotelierServerAsync server) {
+		// setto client e server a quelli passati per parametro
+		this.client = client;
+		this.server = server;
+		// creo il protocollo della connessione con il pool di compressori del server
+		protocol = new HotelierServerProtocol(server.getCompressorPool(), false, this::pushResponse);
+		// ottengo i config del server
+		var serverConfig = HotelierServerConfigManager.getServerConfig();
+		// creo i pool di buffer di lettura e scrittura (diretti o su heap in base alla configurazione)
+		readBufferPool = new HotelierServerBufferPool(serverConfig.isDirectBuffers());
+		writeBufferPool = new HotelierServerBufferPool(serverConfig.isDirectBuffers());
+		// inizializzo le code delle richieste e delle risposte a ArrayDeque
+		requestQueue = new ArrayDeque<>();
+		responseQueue = new ArrayDeque<>();
+		// ottengo il numero massimo di byte per scrittura dai config e inizializzo i buffer di risposta
+		maxWriteBytesPerRound = serverConfig.getMaxWriteBytesPerRound();
+		responseBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+		responseMessages = new HotelierServerResponse[MAX_GATHER_BUFFERS];
+		// inizializzo i contatori di backpressure e ottengo i relativi limiti dai config
+		inFlightRequests = new AtomicInteger();
+		queuedResponseBytes = new AtomicInteger();
+		maxInFlightRequests = serverConfig.getMaxInFlightRequests();
+		maxQueuedResponseBytes = serverConfig.getMaxQueuedResponseBytes();
+		// ottengo la finestra degli stream senza superare il limite dei byte in coda
+		streamWindowBytes = Math.min(HotelierServerClientHandler.STREAM_WINDOW_BYTES, maxQueuedResponseBytes);
+		// inizializzo i chunk del payload
+		requestChunks = new ArrayList<>();
+		// inizializzo a false la chiusura del client
+		isClosed = new AtomicBoolean();
+	}
+
+	// avvia la lettura della prima richiesta del client
+	public void start() {
+		readHeader();
+	}
+
+	// avvia la lettura dell' header di una nuova richiesta
+	private void readHeader() {
+
+		// acquisisco byteBuffer per contenere header del messaggio di richiesta, lunghezza pacchetta + id
+		requestHeader = readBufferPool.acquire(HotelierPacketHeader.HEADER_SIZE);
+		isReadingPayload = false;
+		read(requestHeader);
+	}
+
+	// avvia una lettura asincrona nel buffer passato (le connessioni inattive vengono chiuse dal server)
+	private void read(ByteBuffer buffer) {
+		client.read(buffer, this, READ_HANDLER);
+	}
+
+	// gestisce la terminazione di una lettura di readBytes byte, eseguito da un thread del gruppo
+	private void readCompleted(int readBytes) {
+
+		// se lettura restituisce -1 il client si è disconnesso
+		if (readBytes == -1) {
+			close();
+			return;
+		}
+		// ho letto parte di una richiesta
+		isReadingRequest = true;
+		lastActivity = System.nanoTime();
+
+		try {
+			// controllo se è in corso la lettura degli header
+			if (!isReadingPayload) {
+
+				// se la lettura dell' header non è completa leggo i byte rimanenti
+				if (requestHeader.hasRemaining()) {
+					read(requestHeader);
+					return;
+				}
+
+				// controllo se completata lettura dell' header senza requestID e se il messaggio contiene il requestID
+				if (requestHeader.limit() == HotelierPacketHeader.HEADER_SIZE
+						&& HotelierPacketHeader.hasFlag(requestHeader.getInt(4), HotelierPacketHeader.FLAG_REQUEST_ID)) {
+
+					// estendo il byteBuffer degli header per contenere anche il requestID e leggo i byte rimanenti
+					requestHeader.limit(HotelierPacketHeader.MAX_HEADER_SIZE);
+					read(requestHeader);
+					return;
+				}
+
+				// ottengo la lunghezza del pacchetto di richiesta dal byteBuffer
+				int payloadSize = requestHeader.getInt(0);
+				// controllo che la lunghezza sia valida e non superi la dimensione massima consentita
+				if (!protocol.isValidPayloadSize(payloadSize)) {
+					// pacchetto malformato o ostile, disconnetto il client senza allocare il payload
+					server.frameRejected();
+					close();
+					return;
+				}
+				// setto i byte del payload da leggere
+				isReadingPayload = true;
+				remainingPayloadBytes = payloadSize;
+			} else {
+				// sottraggo i byte letti nell' ultimo chunk
+				remainingPayloadBytes -= readBytes;
+			}
+
+			// controllo se ci sono byte del payload da leggere
+			if (remainingPayloadBytes > 0) {
+
+				// ottengo l'ultimo chunk acquisito
+				ByteBuffer chunk = requestChunks.isEmpty() ? null : requestChunks.get(requestChunks.size() - 1);
+				// controllo se non ho ancora acquisito chunk o se l'ultimo è pieno
+				if (chunk == null || !chunk.hasRemaining()) {
+					// acquisisco un nuovo chunk per contenere al più PAYLOAD_CHUNK_SIZE byte rimanenti
+					chunk = readBufferPool.acquire(Math.min(remainingPayloadBytes, HotelierServerClientHandler.PAYLOAD_CHUNK_SIZE));
+					requestChunks.add(chunk);
+				}
+				// leggo i byte nel chunk
+				read(chunk);
+				return;
+			}
+
+			// deserializzo il messaggio di richiesta (decomprimendolo se compresso)
+			HotelierServerRequest request = protocol.readRequest(requestHeader, requestChunks);
+			// rilascio e resetto headers e payload per preparmi per una nuova lettura
+			releaseRequestBuffers();
+
+			// delego la gestion del pacchetto alla threadpool mantenendo l'ordine delle richieste del client
+			// (anche se non supportato, verrà risposto con un pacchetto di errore)
+			submitRequest(request);
+			// se il client ha superato i limiti di backpressure sospendo la lettura
+			if (pauseReadIfOverloaded()) {
+				isReadingRequest = false;
+				return;
+			}
+
+			// la richiesta è stata letta completamente ed è in volo
+			isReadingRequest = false;
+			// avvio la lettura della richiesta successiva
+			readHeader();
+
+		} catch (IOException | JsonParseException exception) {
+
+			// in caso di eccezzione (anche pacchetto non deserializzabile) chiudo la connessione
+			close();
+		}
+	}
+
+	// gestisce il fallimento di una lettura, eseguito da un thread del gruppo
+	private void readFailed(Throwable exception) {
+		close();
+	}
+
+	// accoda la richiesta passata e ne avvia la gestione sulla threadpool se non sono già in gestione altre richieste del client
+	private void submitRequest(HotelierServerRequest request) {
+
+		// incremento il numero di richieste in volo e in attesa del server
+		inFlightRequests.incrementAndGet();
+		server.requestQueued();
+
+		// acquisisco la lock sulla coda delle richieste
+		synchronized (requestQueue) {
+			// aggiungo la richiesta alla coda
+			requestQueue.add(request);
+			// se le richieste sono già in gestione la richiesta verrà gestita dopo le precedenti
+			if (isProcessing) {
+				return;
+			}
+			isProcessing = true;
+		}
+
+		// delego la gestione delle richieste alla threadpool
+		server.getRequestPool().submit(this::processRequests);
+	}
+
+	// riprende sulla threadpool la gestione delle richieste sospesa da una risposta in streaming se i byte in coda
+	// sono scesi sotto la finestra, eseguito da un thread del gruppo
+	private void resumeStreamIfDrained() {
+
+		// acquisisco la lock sulla coda delle richieste
+		synchronized (requestQueue) {
+			// controllo che la gestione sia sospesa e che i byte in coda siano sotto la finestra
+			if (!isStreamSuspended || queuedResponseBytes.get() >= streamWindowBytes) {
+				return;
+			}
+			isStreamSuspended = false;
+		}
+
+		// delego la ripresa della gestione delle richieste alla threadpool
+		server.getRequestPool().submit(this::processRequests);
+	}
+
+	// gestisce le richieste del client, eseguito da un thread della pool
+	private void processRequests() {
+
+		try {
+			processQueuedRequests();
+		} catch (RuntimeException exception) {
+			// l' avvio della scrittura delle risposte è fallito (ad esempio gruppo di canali terminato): la connessione non può
+			// più rispondere, quindi termino la gestione e la chiudo, così che le sue richieste in volo non blocchino il server
+			synchronized (requestQueue) {
+				isProcessing = false;
+				isStreamSuspended = false;
+			}
+			close();
+		}
+	}
+
+	// gestisce in ordine le richieste presenti nella coda delle richieste finchè non è vuota
+	// (serializzando prima i chunk rimanenti della risposta in streaming in corso)
+	private void processQueuedRequests() {
+
+		// itero finchè ci sono richieste da gestire
+		while (true) {
+
+			// controllo se è in corso una risposta in streaming
+			if (protocol.isStreaming()) {
+				// acquisisco la lock sulla coda delle richieste
+				synchronized (requestQueue) {
+					// se i byte in coda hanno raggiunto la finestra sospendo la gestione, verrà ripresa da writeCompleted()
+					if (queuedResponseBytes.get() >= streamWindowBytes) {
+						isStreamSuspended = true;
+						return;
+					}
+				}
+				// serializzo e accodo il prossimo chunk
+				protocol.streamNextChunk(this::queueResponse);
+				continue;
+			}
+
+			HotelierServerRequest request;
+			// acquisisco la lock sulla coda delle richieste
+			synchronized (requestQueue) {
+				// prelevo la prossima richiesta
+				request = requestQueue.poll();
+				// se la coda è vuota termino la gestione delle richieste
+				if (request == null) {
+					isProcessing = false;
+					return;
+				}
+			}
+			// decremento il numero di richieste in attesa del server
+			server.requestDequeued();
+
+			// gestisco la richiesta e accodo le risposte serializzate con il requestID della richiesta (un pacchetto di errore
+			// se la gestione fallisce, così che la richiesta non resti in volo e la coda non si blocchi)
+			protocol.handleRequest(request, this::queueResponse);
+		}
+	}
+
+	// accoda la risposta serializzata passata e ne avvia la scrittura se non già in corso
+	private void queueResponse(HotelierServerResponse response) {
+
+		// incremento i byte di risposta in coda
+		queuedResponseBytes.addAndGet(response.getFrameSize());
+		// acquisisco la lock sulla coda delle risposte
+		synchronized (responseQueue) {
+			// aggiungo la risposta alla coda
+			responseQueue.add(response);
+			// se è già in corso una scrittura la risposta verrà scritta alla sua terminazione
+			if (isWriting) {
+				return;
+			}
+			isWriting = true;
+		}
+
+		// avvio la scrittura delle risposte
+		writeResponses();
+	}
+
+	// accoda il pacchetto inviato senza richiesta passato, scartandolo se il client non smaltisce le risposte già in coda
+	private void pushResponse(HotelierServerResponse response) {
+
+		// controllo che i byte di risposta in coda non superino il limite
+		if (queuedResponseBytes.get() >= maxQueuedResponseBytes) {
+			return;
+		}
+		queueResponse(response);
+	}
+
+	// avvia la scrittura gathering delle risposte in coda fino a maxWriteBytesPerRound byte, invocato solo con isWriting a true
+	private void writeResponses() {
+
+		int responseCount = 0, preparedBytes = 0;
+		// acquisisco la lock sulla coda delle risposte
+		synchronized (responseQueue) {
+			// prelevo le risposte finchè ci sono risposte, buffer disponibili e non ho superato il limite di byte
+			while (!responseQueue.isEmpty() && responseCount < MAX_GATHER_BUFFERS && preparedBytes < maxWriteBytesPerRound) {
+				HotelierServerResponse response = responseQueue.poll();
+				responseMessages[responseCount++] = response;
+				preparedBytes += response.getFrameSize();
+			}
+			// se non ci sono risposte da scrivere termino la scrittura
+			if (responseCount == 0) {
+				isWriting = false;
+				return;
+			}
+		}
+
+		// copio i messaggi di risposta nei buffer di risposta
+		for (int i = 0; i < responseCount; i++) {
+			responseBuffers[i] = HotelierServerProtocol.writeResponse(responseMessages[i], writeBufferPool);
+		}
+		responseBufferCount = responseCount;
+
+		// scrivo i messaggi di risposta sul canale con un' unica scrittura gathering
+		client.write(responseBuffers, 0, responseBufferCount, 0, TimeUnit.SECONDS, this, WRITE_HANDLER);
+	}
+
+	// gestisce la terminazione di una scrittura, eseguito da un thread del gruppo
+	private void writeCompleted() {
+
+		// aggiorno l'ultima attività del client
+		lastActivity = System.nanoTime();
+
+		// controllo se la scrittura è stata parziale
+		int responseBufferIndex = 0;
+		while (responseBufferIndex < responseBufferCount && !responseBuffers[responseBufferIndex].hasRemaining()) {
+			responseBufferIndex++;
+		}
+		if (responseBufferIndex < responseBufferCount) {
+			// scrivo i byte rimanenti a partire dal primo buffer non scritto completamente
+			client.write(responseBuffers, responseBufferIndex, responseBufferCount - responseBufferIndex, 0, TimeUnit.SECONDS, this, WRITE_HANDLER);
+			return;
+		}
+
+		// le risposte sono state scritte, rilascio i buffer e decremento i byte in coda e le richieste in volo
+		for (int i = 0; i < responseBufferCount; i++) {
+			queuedResponseBytes.addAndGet(-responseBuffers[i].limit());
+			// la richiesta non è più in volo solo dopo la scrittura della sua ultima risposta
+			if (responseMessages[i].isLastFrame()) {
+				inFlightRequests.decrementAndGet();
+			}
+			writeBufferPool.release(responseBuffers[i]);
+			responseBuffers[i] = null;
+			// notifico al protocollo la scrittura completa della risposta
+			protocol.responseWritten(responseMessages[i]);
+			responseMessages[i] = null;
+		}
+		responseBufferCount = 0;
+
+		// ripristino la lettura se era stata sospesa e le risposte sono state smaltite
+		resumeReadIfDrained();
+		// riprendo la risposta in streaming se era stata sospesa e i chunk in coda sono stati scritti
+		resumeStreamIfDrained();
+		// avvio la scrittura delle risposte accodate nel frattempo
+		writeResponses();
+	}
+
+	// sospende la lettura delle richieste se è stato superato uno dei limiti di backpressure, restituisce true se sospesa
+	private synchronized boolean pauseReadIfOverloaded() {
+
+		// controllo che sia stato superato uno dei limiti
+		if (inFlightRequests.get() >= maxInFlightRequests || queuedResponseBytes.get() >= maxQueuedResponseBytes) {
+			// non avvio la lettura successiva e aggiorno i contatori delle sospensioni del server
+			isReadPaused = true;
+			server.readPaused();
+			return true;
+		}
+		return false;
+	}
+
+	// ripristina la lettura delle richieste se le richieste in volo e le risposte in coda sono scese sotto la metà dei limiti
+	private void resumeReadIfDrained() {
+
+		// acquisisco la lock sul clientHandler
+		synchronized (this) {
+			// controllo che la lettura sia sospesa e che entrambi i valori siano sotto la metà dei limiti (evito sospensioni continue)
+			if (!isReadPaused || inFlightRequests.get() > maxInFlightRequests / 2 || queuedResponseBytes.get() > maxQueuedResponseBytes / 2) {
+				return;
+			}
+			isReadPaused = false;
+			server.readResumed();
+		}
+
+		// avvio la lettura della richiesta successiva se il client è ancora connesso
+		if (!isClosed.get()) {
+			readHeader();
+		}
+	}
+
+	// rilascia i buffer di lettura della richiesta e li resetta
+	private void releaseRequestBuffers() {
+		readBufferPool.release(requestHeader);
+		for (ByteBuffer chunk : requestChunks) {
+			readBufferPool.release(chunk);
+		}
+		requestHeader = null;
+		requestChunks.clear();
+	}
+
+	// restituisce true se il client non ha richieste in volo nè una richiesta letta parzialmente e non ha letto o scritto
+	// dall' istante passato, false altrimenti
+	public boolean isIdle(long idleSince) {
+		return inFlightRequests.get() == 0 && !isReadingRequest && lastActivity < idleSince;
+	}
+
+	// restituisce true se il client ha richieste in volo o sottoscrizioni ai rank locali (in attesa dei push),
+	// nel qual caso non viene chiuso per inattività
+	public boolean isBusy() {
+		return inFlightRequests.get() > 0 || protocol.hasSubscriptions();
+	}
+
+	// restituisce l'istante dell' ultima lettura o scrittura sul canale del client
+	public long getLastActivity() {
+		return lastActivity;
+	}
+
+	// chiude le risorse associate al client una sola volta
+	void close() {
+
+		// controllo che il client non sia già stato chiuso
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+
+		protocol.handleClientDisconnect();
+		try {
+			client.close();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+
+		// aggiorno i contatori del server
+		server.connectionClosed(this);
+		synchronized (this) {
+			// se la lettura del client era sospesa aggiorno il numero di client sospesi
+			if (isReadPaused) {
+				isReadPaused = false;
+				server.readResumed();
+			}
+		}
+	}
+
+	// completion handler delle letture
+	private static class ReadHandler implements CompletionHandler<Integer, HotelierServerAsyncClientHandler> {
+
+		@Override
+		public void completed(Integer readBytes, HotelierServerAsyncClientHandler clientHandler) {
+			clientHandler.readCompleted(readBytes);
+		}
+
+		@Override
+		public void failed(Throwable exception, HotelierServerAsyncClientHandler clientHandler) {
+			clientHandler.readFailed(exception);
+		}
+	}
+
+	// completion handler delle scritture
+	private static class WriteHandler implements CompletionHandler<Long, HotelierServerAsyncClientHandler> {
+
+		@Override
+		public void completed(Long writtenBytes, HotelierServerAsyncClientHandler clientHandler) {
+			clientHandler.writeCompleted();
+		}
+
+		@Override
+		public void failed(Throwable exception, HotelierServerAsyncClientHandler clientHandler) {
+			// in caso di eccezione a seguito della write il client si è disconnesso
+			clientHandler.close();
+		}
+	}
+
+}
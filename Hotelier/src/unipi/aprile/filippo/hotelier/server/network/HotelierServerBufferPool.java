@@ -0,0 +1,152 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HotelierServerBufferPool {
+
+	/**
+	 * La classe HotelierServerBufferPool gestisce un insieme di ByteBuffer riutilizzabili suddivisi per classi di dimensione
+	 * (potenze di 2 comprese tra MIN_BUFFER_SIZE e MAX_BUFFER_SIZE), utilizzati per la lettura degli header e dei payload
+	 * delle richieste e per la scrittura delle risposte.
+	 * Ogni selettore worker possiede il proprio pool, il quale viene utilizzato esclusivamente dal thread del worker
+	 * e non necessita quindi di sincronizzazione. Nel server asincrono ogni client possiede un pool per le letture e uno
+	 * per le scritture, ognuno utilizzato da un solo thread del gruppo alla volta.
+	 *
+	 * Alla richiesta di un buffer viene restituito un buffer libero della classe di dimensione più piccola in grado di
+	 * contenere la dimensione richiesta (hit), se non presente ne viene allocato uno nuovo (miss).
+	 * I buffer più grandi di MAX_BUFFER_SIZE vengono allocati su misura e non vengono reinseriti nel pool al rilascio.
+	 * I buffer possono essere allocati sull' heap o come buffer diretti in base alla configurazione del server.
+	 *
+	 * Il pool tiene traccia del numero di hit, miss e buffer attualmente in uso (outstanding), leggibili anche da altri thread.
+	 */
+
+	// dimensione minima di un buffer del pool
+	private static final int MIN_BUFFER_SIZE = 64;
+	// dimensione massima di un buffer del pool
+	private static final int MAX_BUFFER_SIZE = 64 * 1024;
+	// numero massimo di buffer liberi mantenuti per ogni classe di dimensione
+	private static final int MAX_FREE_BUFFERS = 64;
+
+	// buffer liberi per ogni classe di dimensione
+	private final ArrayDeque<ByteBuffer>[] freeBuffers;
+	// booleano per allocare buffer diretti
+	private final boolean direct;
+
+	// contatori di hit, miss e buffer in uso
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder outstanding;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public HotelierServerBufferPool(boolean direct) {
+		// setto direct a quello passato
+		this.direct = direct;
+		// calcolo il numero di classi di dimensione
+		int sizeClasses = sizeClassOf(MAX_BUFFER_SIZE) + 1;
+		// inizializzo le code dei buffer liberi per ogni classe
+		freeBuffers = new ArrayDeque[sizeClasses];
+		for (int i = 0; i < sizeClasses; i++) {
+			freeBuffers[i] = new ArrayDeque<>();
+		}
+		// inizializzo i contatori
+		hits = new LongAdder();
+		misses = new LongAdder();
+		outstanding = new LongAdder();
+	}
+
+	// restituisce un buffer pronto in scrittura con limit pari alla dimensione richiesta
+	public ByteBuffer acquire(int size) {
+
+		// incremento i buffer in uso
+		outstanding.increment();
+
+		// controllo se la dimensione richiesta supera la dimensione massima dei buffer del pool
+		if (size > MAX_BUFFER_SIZE) {
+			// alloco un buffer su misura
+			misses.increment();
+			return allocate(size);
+		}
+
+		// ottengo la classe di dimensione relativa alla dimensione richiesta
+		int sizeClass = sizeClassOf(size);
+		// recupero un buffer libero della classe
+		ByteBuffer buffer = freeBuffers[sizeClass].poll();
+
+		// controllo se non era presente nessun buffer libero
+		if (buffer == null) {
+			// alloco un nuovo buffer della dimensione della classe
+			misses.increment();
+			buffer = allocate(MIN_BUFFER_SIZE << sizeClass);
+		} else {
+			hits.increment();
+		}
+
+		// limito il buffer alla dimensione richiesta
+		buffer.limit(size);
+		return buffer;
+	}
+
+	// rilascia il buffer passato reinserendolo nel pool se possibile
+	public void release(ByteBuffer buffer) {
+
+		// controllo che il buffer sia stato effettivamente acquisito
+		if (buffer == null) {
+			return;
+		}
+
+		// decremento i buffer in uso
+		outstanding.decrement();
+
+		// ottengo la capacità del buffer
+		int capacity = buffer.capacity();
+		// controllo se il buffer appartiene ad una classe di dimensione del pool
+		if (capacity <= MAX_BUFFER_SIZE && Integer.bitCount(capacity) == 1 && capacity >= MIN_BUFFER_SIZE) {
+
+			var sizeClassBuffers = freeBuffers[sizeClassOf(capacity)];
+			// reinserisco il buffer solo se la classe non ha già raggiunto il numero massimo di buffer liberi
+			if (sizeClassBuffers.size() < MAX_FREE_BUFFERS) {
+				buffer.clear();
+				sizeClassBuffers.push(buffer);
+			}
+		}
+	}
+
+	// restituisce il numero di richieste soddisfatte da un buffer libero
+	public long getHits() {
+		return hits.sum();
+	}
+
+	// restituisce il numero di richieste che hanno richiesto una nuova allocazione
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	// restituisce il numero di buffer acquisiti e non ancora rilasciati
+	public long getOutstanding() {
+		return outstanding.sum();
+	}
+
+	// alloca un nuovo buffer della dimensione passata
+	private ByteBuffer allocate(int size) {
+		return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+
+	// restituisce l'indice della classe di dimensione più piccola in grado di contenere size byte
+	private static int sizeClassOf(int size) {
+
+		// controllo se la dimensione è minore della dimensione minima
+		if (size <= MIN_BUFFER_SIZE) {
+			return 0;
+		}
+		// calcolo la potenza di 2 successiva rispetto alla dimensione minima
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", outstanding=" + getOutstanding();
+	}
+
+}
@@ -2,14 +2,20 @@ package unipi.aprile.filippo.hotelier.server.network;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
-import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
-import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHeader;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
 
 public class HotelierServerClientHandler {
 
@@ -21,54 +27,192 @@ public class HotelierServerClientHandler {
 	 * 	• serializzare e scrivere i pacchetti di risposta al client; 
 	 * 	• gestire la disconnessione del client e chiudere la connessione;
 	 * 
-	 * I pacchetti di risposta restituiti da HotelierServerPacketHandler vengono
-	 * salvati in una coda sincronizzata. Quando il canale associato al client è
-	 * pronto per la scrittura viene recuperato il pacchetto di risposta dalla
-	 * coda (LinkedList mantiene ordine di inserimento), serializzato e scritto
-	 * sul canale.
+	 * Le richieste di uno stesso client vengono gestite dalla threadpool una alla volta e nell' ordine
+	 * di arrivo, così che le risposte vengano inviate nello stesso ordine delle richieste anche quando il client
+	 * invia più richieste consecutive senza attendere le risposte (pipelining). Se la richiesta contiene un
+	 * requestID (vedi HotelierPacketHeader) la relativa risposta viene inviata con lo stesso requestID.
+	 * Allo stesso modo ogni risposta viene serializzata nello stesso formato (JSON o binario, vedi HotelierPacketCodec)
+	 * della richiesta a cui si riferisce.
 	 * 
-	 * I campi requestHeader, requestPayload e responseBuffer vengono utilizzati
+	 * I pacchetti di risposta restituiti da HotelierServerPacketHandler vengono serializzati
+	 * dal thread della pool e salvati in una coda sincronizzata (HotelierServerResponse).
+	 * Quando il canale associato al client è pronto per la scrittura vengono recuperate tutte le risposte
+	 * presenti nella coda con un' unica acquisizione della lock (ArrayDeque mantiene
+	 * ordine di inserimento), copiate in un array di buffer e scritte sul canale
+	 * con un' unica scrittura gathering. Per garantire equità tra i client ogni
+	 * scrittura prepara al più maxWriteBytesPerRound byte, le risposte rimanenti
+	 * vengono scritte agli eventi di scrittura successivi.
+	 * 
+	 * Per evitare che un client che invia richieste più velocemente di quanto legga le risposte esaurisca la memoria
+	 * del server, il clientHandler tiene traccia del numero di richieste lette e non ancora risposte (in volo) e dei byte
+	 * di risposta in coda non ancora scritti. Se viene superato uno dei limiti maxInFlightRequests o maxQueuedResponseBytes
+	 * viene rimosso l'interesse per la lettura dalla chiave del client (backpressure), il quale viene ripristinato da handleWrite()
+	 * quando entrambi i valori scendono sotto la metà dei rispettivi limiti. Sospensione e ripristino vengono decisi solo
+	 * dal thread del worker: i thread della pool si limitano a richiedere la scrittura al worker. Il numero di sospensioni della lettura
+	 * viene mantenuto per ogni client e per ogni worker così da individuare i client che abusano del server.
+	 * I pacchetti inviati senza richiesta (push dei rank locali sottoscritti) vengono accodati come le risposte,
+	 * ma vengono scartati se i byte di risposta in coda superano maxQueuedResponseBytes.
+	 * I chunk delle risposte in streaming vengono serializzati dal thread della pool solo finchè i byte di risposta in coda
+	 * restano sotto la finestra dello stream (STREAM_WINDOW_BYTES, limitata da maxQueuedResponseBytes): superata la finestra
+	 * la gestione delle richieste del client viene sospesa (isStreamSuspended) e ripresa sulla threadpool da handleWrite()
+	 * quando le scritture riportano i byte in coda sotto la finestra, così che le risposte successive restino in ordine.
+	 * 
+	 * L'interesse per le operazioni di scrittura viene registrato sul selettore solo quando è presente almeno una risposta
+	 * da scrivere: queueResponse(), eseguito dal thread della pool, richiede al worker di abilitare OP_WRITE sulla chiave del client
+	 * (risvegliandone il selettore), mentre handleWrite() lo rimuove una volta svuotata la coda delle risposte.
+	 * In questo modo il selettore non viene risvegliato per i client inattivi.
+	 * 
+	 * I campi requestHeader, requestChunks e responseBuffers vengono utilizzati
 	 * rispettivamente da handleRead() e handleWrite() per gestire correttamente
 	 * letture/scritture parziali che possono avvenire quando si lavora con NIO.
+	 * Tali buffer vengono acquisiti dal pool di buffer del worker e vi vengono
+	 * restituiti una volta terminata la lettura della richiesta o la scrittura
+	 * della risposta.
+	 * 
+	 * La lunghezza del pacchetto di richiesta indicata nell' header viene validata prima di acquisire qualsiasi buffer:
+	 * se supera maxFrameSize il client viene disconnesso immediatamente. Il pacchetto viene letto in chunk di al più
+	 * PAYLOAD_CHUNK_SIZE byte acquisiti dal pool man mano che i byte arrivano, e i pacchetti formati da più chunk vengono
+	 * deserializzati incrementalmente senza copiarli in un unico buffer contiguo: la memoria utilizzata per la lettura
+	 * di ogni client è quindi limitata da maxFrameSize indipendentemente dai byte ricevuti.
+	 * 
+	 * Se il client ha abilitato la compressione tramite handshake (HotelierPacketCapabilities) le risposte di almeno
+	 * compressionThreshold byte vengono compresse dal thread della pool con un compressore del pool del worker,
+	 * prima di essere accodate (la dimensione in coda è quindi quella effettivamente scritta), e inviate con il flag
+	 * FLAG_COMPRESSED solo se la compressione ne riduce la dimensione; le risposte più piccole non subiscono alcun costo aggiuntivo.
+	 * Le richieste con il flag FLAG_COMPRESSED vengono decompresse dal thread del worker rifiutando quelle che
+	 * una volta decompresse supererebbero maxFrameSize.
+	 * Le risposte con il pacchetto serializzato su file (snapshot delle liste di hotel, vedi HotelierServerSnapshot) vengono
+	 * scritte in due parti: l'header viene accodato ai buffer di risposta come le altre risposte, mentre il pacchetto viene
+	 * trasferito dal file al canale tramite transferTo (sendfile) una volta scritti tutti i buffer precedenti, senza essere
+	 * copiato in un buffer del pool. Le risposte successive vengono preparate solo al termine del trasferimento.
+	 * Il riferimento allo snapshot acquisito dalla risposta viene rilasciato al termine del trasferimento o alla chiusura del client.
+	 * Allo spegnimento del server il worker chiude il client solo quando è inattivo (isIdle), ovvero quando non ha richieste
+	 * in volo nè una richiesta letta parzialmente, così che la connessione venga chiusa tra una richiesta e la successiva.
+	 * La validazione della lunghezza, la (de)serializzazione, la compressione e la scrittura del messaggio di risposta
+	 * sono implementate da HotelierServerProtocol, condiviso con il server asincrono (HotelierServerAsyncClientHandler).
 	 */
 
 	// canale associato al client
 	private final SocketChannel client;
-	// handler dei pacchetti
-	private final HotelierServerPacketHandler hotelierPacketHandler;
-	// coda pacchetti di risposta
-	private final Queue<HotelierPacket> responsePacketQueue;
+	// chiave del client registrata sul selettore del worker
+	private final SelectionKey clientKey;
+	// worker che gestisce il client
+	private final HotelierServerNIOWorker worker;
+	// pool di buffer del worker
+	private final HotelierServerBufferPool bufferPool;
+	// booleano per evitare richieste di scrittura duplicate al worker
+	private final AtomicBoolean writeRequested;
+	// protocollo della connessione (gestione e serializzazione dei pacchetti)
+	private final HotelierServerProtocol protocol;
+	// coda delle richieste in attesa di essere gestite
+	private final Queue<HotelierServerRequest> requestQueue;
+	// booleano che indica se le richieste del client sono in gestione su un thread della pool
+	private boolean isProcessing;
+	// booleano che indica se la gestione delle richieste è sospesa in attesa della scrittura dei chunk in coda (acceduto con la lock sulla coda delle richieste)
+	private boolean isStreamSuspended;
+	// byte di risposta in coda oltre i quali non vengono serializzati altri chunk delle risposte in streaming
+	private final int streamWindowBytes;
+	// coda delle risposte serializzate
+	private final Queue<HotelierServerResponse> responseQueue;
+
+	// numero massimo di buffer scritti con un' unica scrittura gathering
+	private static final int MAX_GATHER_BUFFERS = 64;
+	
+	// risposte prelevate dalla coda e non ancora copiate nei buffer di risposta (acceduta solo dal thread del worker)
+	private final Queue<HotelierServerResponse> drainedResponseQueue;
+	// numero massimo di byte preparati per ogni scrittura
+	private final int maxWriteBytesPerRound;
+
+	// numero di richieste lette e non ancora risposte e byte di risposta in coda non ancora scritti
+	private final AtomicInteger inFlightRequests, queuedResponseBytes;
+	// limiti oltre i quali viene sospesa la lettura delle richieste
+	private final int maxInFlightRequests, maxQueuedResponseBytes;
+	// booleano che indica se la lettura delle richieste è sospesa
+	private volatile boolean isReadPaused;
+	// numero di sospensioni della lettura del client
+	private volatile long readPauseCount;
+
+	// dimensione massima di un chunk del pacchetto di richiesta
+	static final int PAYLOAD_CHUNK_SIZE = 16 * 1024;
+	// byte di risposta in coda oltre i quali non vengono serializzati altri chunk delle risposte in streaming
+	// (pochi chunk in anticipo, così che il primo venga scritto senza attendere la serializzazione dei successivi)
+	static final int STREAM_WINDOW_BYTES = 32 * 1024;
+	// byte del pacchetto di richiesta ancora da leggere, -1 se la lettura dell' header non è completa
+	private int remainingPayloadBytes;
 
 	// byte buffer per lettura delle richiesta e scrittura delle risposte
-	private ByteBuffer requestHeader, requestPayload;
-	private ByteBuffer responseBuffer;
+	private ByteBuffer requestHeader;
+	private final List<ByteBuffer> requestChunks;
+	private final ByteBuffer[] responseBuffers;
+	// risposte serializzate relative ai buffer di risposta
+	private final HotelierServerResponse[] responseMessages;
+	// indice del primo buffer di risposta non ancora scritto completamente e numero di buffer di risposta
+	private int responseBufferIndex, responseBufferCount;
+	// risposta con il pacchetto su file in trasferimento (null se assente) e byte del pacchetto già trasferiti
+	private HotelierServerResponse fileResponse;
+	private long fileResponsePosition;
 
 	// booleano per gestire la connessione del client
 	private boolean isConnected;
-
-	public HotelierServerClientHandler(SocketChannel client) {
-		// setto client a quello passato per parametro
-		this.client = client;
-		// creo una nuova instanza dell' handler dei pacchetti
-		hotelierPacketHandler = new HotelierServerPacketHandler();
-		// inizializzo la coda dei pacchetti di risposta a una LinkedList
-		responsePacketQueue = new LinkedList<>();
+	// istante dell' ultima lettura o scrittura sul canale del client in nanosecondi (acceduto solo dal thread del worker)
+	private long lastActivity;
+
+	public HotelierServerClientHandler(SelectionKey clientKey, HotelierServerNIOWorker worker) {
+		// setto clientKey a quella passata per parametro
+		this.clientKey = clientKey;
+		// setto worker a quello passato per parametro
+		this.worker = worker;
+		// ottengo il canale associato alla chiave del client
+		this.client = (SocketChannel) clientKey.channel();
+		// ottengo il pool di buffer del worker
+		bufferPool = worker.getBufferPool();
+		// inizializzo a false la richiesta di scrittura
+		writeRequested = new AtomicBoolean();
+		// creo il protocollo della connessione con il pool di compressori del worker
+		protocol = new HotelierServerProtocol(worker.getCompressorPool(), true, this::pushResponse);
+		// inizializzo la coda delle richieste a una ArrayDeque
+		requestQueue = new ArrayDeque<>();
+		// inizializzo la coda delle risposte a una ArrayDeque
+		responseQueue = new ArrayDeque<>();
+		// inizializzo la coda delle risposte prelevate a una ArrayDeque
+		drainedResponseQueue = new ArrayDeque<>();
+		// inizializzo l'array dei buffer di risposta
+		responseBuffers = new ByteBuffer[MAX_GATHER_BUFFERS];
+		responseMessages = new HotelierServerResponse[MAX_GATHER_BUFFERS];
+		// ottengo il numero massimo di byte per scrittura dai config
+		var serverConfig = HotelierServerConfigManager.getServerConfig();
+		maxWriteBytesPerRound = serverConfig.getMaxWriteBytesPerRound();
+		// inizializzo i contatori di backpressure e ottengo i relativi limiti dai config
+		inFlightRequests = new AtomicInteger();
+		queuedResponseBytes = new AtomicInteger();
+		maxInFlightRequests = serverConfig.getMaxInFlightRequests();
+		maxQueuedResponseBytes = serverConfig.getMaxQueuedResponseBytes();
+		// ottengo la finestra degli stream senza superare il limite dei byte in coda
+		streamWindowBytes = Math.min(STREAM_WINDOW_BYTES, maxQueuedResponseBytes);
+		// inizializzo i chunk del payload
+		requestChunks = new ArrayList<>();
+		remainingPayloadBytes = -1;
 		// setto boolean a true (client connesso)
 		isConnected = true;
+		// setto l'ultima attività del client all' istante attuale
+		lastActivity = System.nanoTime();
 	}
 
-	// restituisce il pacchetto di richiesta inviato dal client
-	public HotelierPacket handleRead() {
+	// restituisce il messaggio di richiesta inviato dal client
+	public HotelierServerRequest handleRead() {
 
 		// controllo che il client sia connesso
 		if (isConnected) {
 
+			// aggiorno l'ultima attività del client
+			lastActivity = System.nanoTime();
+
 			try {
 				// controllo che sia stato ancora letto nulla
 				if (requestHeader == null) {
 
-					// alloco byteBuffer per contenere header del messaggio di richiesta, lunghezza pacchetta + id
-					requestHeader = ByteBuffer.allocate(8);
+					// acquisisco byteBuffer per contenere header del messaggio di richiesta, lunghezza pacchetta + id
+					requestHeader = bufferPool.acquire(HotelierPacketHeader.HEADER_SIZE);
 				}
 
 				// controllo se non è stata ancora completata la lettura degli header
@@ -82,48 +226,48 @@ public class HotelierServerClientHandler {
 					}
 				}
 
-				// controllo se completato lettura degli header e non ho ancora inzializzato byteBuffere per il payaload, ovvero il pacchetto di richiesta
-				if (!requestHeader.hasRemaining() && requestPayload == null) {
+				// controllo se completato lettura dell' header senza requestID e se il messaggio contiene il requestID
+				if (!requestHeader.hasRemaining() && requestHeader.limit() == HotelierPacketHeader.HEADER_SIZE
+						&& HotelierPacketHeader.hasFlag(requestHeader.getInt(4), HotelierPacketHeader.FLAG_REQUEST_ID)) {
 
-					// flippo il byteBuffer contenente headers per prepararlo in lettura
-					requestHeader.flip();
-					// ottengo la lunghezza del pacchetto di richiesta dal byteBuffer
-					int payloadSize = requestHeader.getInt();
-					// alloco byteBuffer per contenere pacchetto di richiesta serializzato
-					requestPayload = ByteBuffer.allocate(payloadSize);
+					// estendo il byteBuffer degli header per contenere anche il requestID e leggo i byte rimanenti
+					requestHeader.limit(HotelierPacketHeader.MAX_HEADER_SIZE);
+					if (client.read(requestHeader) == -1) {
+						// se lettura restituisce -1 throwo eccezzione per settare client connesso a false
+						throw new IOException();
+					}
 				}
 
-				// controllo se ho inizializzato il byteBuffer per il payload e non ho completato la lettura del pacchetto di richiesta serializzato
-				if (requestPayload != null && requestPayload.hasRemaining()) {
+				// controllo se completato lettura degli header e non ho ancora ottenuto la lunghezza del pacchetto di richiesta
+				if (!requestHeader.hasRemaining() && remainingPayloadBytes == -1) {
 
-					// leggo i byte rimanenti
-					if (client.read(requestPayload) == -1) {
-						// se lettura restituisce -1 throwo eccezzione per settare client connesso a false
+					// ottengo la lunghezza del pacchetto di richiesta dal byteBuffer
+					int payloadSize = requestHeader.getInt(0);
+					// controllo che la lunghezza sia valida e non superi la dimensione massima consentita
+					if (!protocol.isValidPayloadSize(payloadSize)) {
+						// pacchetto malformato o ostile, throwo eccezzione per disconnettere il client senza allocare il payload
+						worker.frameRejected();
 						throw new IOException();
 					}
+					// setto i byte del payload da leggere
+					remainingPayloadBytes = payloadSize;
 				}
 
-				// controllo se ho terminato la lettura degli header e del payload
-				if (requestPayload != null && !requestPayload.hasRemaining()) {
+				// controllo se ho ottenuto la lunghezza del payload e se ho terminato la lettura del pacchetto di richiesta serializzato
+				if (remainingPayloadBytes != -1 && readPayloadChunks()) {
 
-					// ottengo id del pacchetto di richiesta dal byteBuffer
-					int packetID = requestHeader.getInt();
-					// flippo il byteBuffer contenente payload per prepararlo in lettura
-					requestPayload.flip();
+					// deserializzo il messaggio di richiesta (decomprimendolo se compresso)
+					HotelierServerRequest request = protocol.readRequest(requestHeader, requestChunks);
 
-					// deserializzo il pacchetto di richiesta
-					HotelierPacket packet = deserializeRequest(packetID, requestPayload);
+					// rilascio e resetto headers e payload per preparmi per una nuova lettura
+					releaseRequestBuffers();
 
-					// resetto headers e payload per preparmi per una nuova lettura
-					requestHeader = null;
-					requestPayload = null;
-
-					// restituisco il pacchetto di risposta
-					return packet;
+					// restituisco il messaggio di richiesta (anche se non supportato, verrà risposto con un pacchetto di errore)
+					return request;
 				}
-			} catch (IOException exception) {
+			} catch (IOException | JsonParseException exception) {
 
-				// in caso di eccezzione setto isConnected a false in quanto il client si è disconesso
+				// in caso di eccezzione (anche pacchetto non deserializzabile) setto isConnected a false in quanto il client si è disconesso
 				isConnected = false;
 			}
 		}
@@ -132,61 +276,238 @@ public class HotelierServerClientHandler {
 
 	}
 	
-	// restituisce pacchetto di risposta relativo al pacchetto di richiesta passato
-	public void handlePacket(HotelierPacket packet) {
+	// legge i byte del pacchetto di richiesta in chunk acquisiti dal pool man mano che arrivano, restituisce true se la lettura è completa
+	private boolean readPayloadChunks() throws IOException {
 		
-		// restituiscO pacchetto di risposta relativo al pacchetto di richiesta passato
-		HotelierPacket responsePacket = hotelierPacketHandler.handlePacket(packet);
+		// itero finchè ci sono byte del payload da leggere
+		while (remainingPayloadBytes > 0) {
+			
+			// ottengo l'ultimo chunk acquisito
+			ByteBuffer chunk = requestChunks.isEmpty() ? null : requestChunks.get(requestChunks.size() - 1);
+			// controllo se non ho ancora acquisito chunk o se l'ultimo è pieno
+			if (chunk == null || !chunk.hasRemaining()) {
+				// acquisisco un nuovo chunk per contenere al più PAYLOAD_CHUNK_SIZE byte rimanenti
+				chunk = bufferPool.acquire(Math.min(remainingPayloadBytes, PAYLOAD_CHUNK_SIZE));
+				requestChunks.add(chunk);
+			}
+			
+			// leggo i byte disponibili nel chunk
+			int readBytes = client.read(chunk);
+			if (readBytes == -1) {
+				// se lettura restituisce -1 throwo eccezzione per settare client connesso a false
+				throw new IOException();
+			}
+			// se non sono disponibili altri byte attendo il prossimo evento di lettura
+			if (readBytes == 0) {
+				return false;
+			}
+			remainingPayloadBytes -= readBytes;
+		}
 		
-		// controllo che il pacchetto di richiesta fosse supportato
-		if (responsePacket != null) {
-			//acquisisco la lock sulla coda dei pacchetti di risposta
-			synchronized (responsePacketQueue) {
-				// aggiungo il pacchetto di risposta alla coda
-				responsePacketQueue.add(responsePacket);
+		return true;
+	}
+	
+	// accoda la richiesta passata e ne avvia la gestione sulla threadpool se non sono già in gestione altre richieste del client
+	public void submitRequest(HotelierServerRequest request, ExecutorService requestPool) {
+		
+		// incremento il numero di richieste in volo e in attesa del worker
+		inFlightRequests.incrementAndGet();
+		worker.requestQueued();
+
+		// acquisisco la lock sulla coda delle richieste
+		synchronized (requestQueue) {
+			// aggiungo la richiesta alla coda
+			requestQueue.add(request);
+			// se le richieste sono già in gestione la richiesta verrà gestita dopo le precedenti
+			if (isProcessing) {
+				return;
 			}
+			isProcessing = true;
+		}
+		
+		// delego la gestione delle richieste alla threadpool
+		requestPool.submit(this::processRequests);
+	}
+
+	// sospende la lettura delle richieste se è stato superato uno dei limiti di backpressure, invocato dal thread del worker
+	public void pauseReadIfOverloaded() {
+
+		// controllo che la lettura non sia già sospesa e che sia stato superato uno dei limiti
+		if (!isReadPaused && (inFlightRequests.get() >= maxInFlightRequests || queuedResponseBytes.get() >= maxQueuedResponseBytes)) {
+
+			// rimuovo l'interesse per la lettura
+			clientKey.interestOps(clientKey.interestOps() & ~SelectionKey.OP_READ);
+			isReadPaused = true;
+			// aggiorno i contatori delle sospensioni del client e del worker
+			readPauseCount++;
+			worker.readPaused();
 		}
+	}
+
+	// ripristina la lettura delle richieste se le richieste in volo e le risposte in coda sono scese sotto la metà dei limiti
+	private void resumeReadIfDrained() {
 
+		// controllo che la lettura sia sospesa e che entrambi i valori siano sotto la metà dei limiti (evito sospensioni continue)
+		if (isReadPaused && inFlightRequests.get() <= maxInFlightRequests / 2 && queuedResponseBytes.get() <= maxQueuedResponseBytes / 2) {
+
+			// aggiungo l'interesse per la lettura
+			clientKey.interestOps(clientKey.interestOps() | SelectionKey.OP_READ);
+			isReadPaused = false;
+			worker.readResumed();
+		}
+	}
+	
+	// riprende sulla threadpool la gestione delle richieste sospesa da una risposta in streaming se i byte in coda
+	// sono scesi sotto la finestra, invocato dal thread del worker
+	private void resumeStreamIfDrained() {
+		
+		// acquisisco la lock sulla coda delle richieste
+		synchronized (requestQueue) {
+			// controllo che la gestione sia sospesa e che i byte in coda siano sotto la finestra
+			if (!isStreamSuspended || queuedResponseBytes.get() >= streamWindowBytes) {
+				return;
+			}
+			isStreamSuspended = false;
+		}
+		
+		// delego la ripresa della gestione delle richieste alla threadpool
+		worker.getRequestPool().submit(this::processRequests);
+	}
+	
+	// gestisce in ordine le richieste presenti nella coda delle richieste finchè non è vuota, eseguito da un thread della pool
+	// (serializzando prima i chunk rimanenti della risposta in streaming in corso)
+	private void processRequests() {
+		
+		// itero finchè ci sono richieste da gestire
+		while (true) {
+			
+			// controllo se è in corso una risposta in streaming
+			if (protocol.isStreaming()) {
+				// acquisisco la lock sulla coda delle richieste
+				synchronized (requestQueue) {
+					// se i byte in coda hanno raggiunto la finestra sospendo la gestione, verrà ripresa da handleWrite()
+					if (queuedResponseBytes.get() >= streamWindowBytes) {
+						isStreamSuspended = true;
+						return;
+					}
+				}
+				// serializzo e accodo il prossimo chunk
+				protocol.streamNextChunk(this::queueResponse);
+				continue;
+			}
+			
+			HotelierServerRequest request;
+			// acquisisco la lock sulla coda delle richieste
+			synchronized (requestQueue) {
+				// prelevo la prossima richiesta
+				request = requestQueue.poll();
+				// se la coda è vuota termino la gestione delle richieste
+				if (request == null) {
+					isProcessing = false;
+					return;
+				}
+			}
+			// decremento il numero di richieste in attesa del worker
+			worker.requestDequeued();
+			
+			// gestisco la richiesta e accodo le risposte serializzate con il requestID della richiesta (un pacchetto di errore
+			// se la gestione fallisce, così che la richiesta non resti in volo e la coda non si blocchi)
+			protocol.handleRequest(request, this::queueResponse);
+		}
+	}
+	
+	// accoda la risposta serializzata passata e richiede la scrittura al worker
+	private void queueResponse(HotelierServerResponse response) {
+		
+		// incremento i byte di risposta in coda
+		queuedResponseBytes.addAndGet(response.getFrameSize());
+		//acquisisco la lock sulla coda delle risposte
+		synchronized (responseQueue) {
+			// aggiungo la risposta alla coda
+			responseQueue.add(response);
+		}
+		// richiedo la scrittura al worker
+		requestWrite();
+	}
+	
+	// accoda il pacchetto inviato senza richiesta passato, scartandolo se il client non smaltisce le risposte già in coda
+	private void pushResponse(HotelierServerResponse response) {
+		
+		// controllo che i byte di risposta in coda non superino il limite
+		if (queuedResponseBytes.get() >= maxQueuedResponseBytes) {
+			return;
+		}
+		queueResponse(response);
+	}
+	
+	// richiede al worker di abilitare la scrittura se non è già stato richiesto
+	private void requestWrite() {
+		if (writeRequested.compareAndSet(false, true)) {
+			worker.requestWrite(this);
+		}
 	}
 	
-	// scrive il messaggio di risposta sul canale associato al client
+	// scrive i messaggi di risposta sul canale associato al client
 	public void handleWrite() {
 		
 		// controllo che il client sia connesso
 		if (isConnected) {
+			
+			// aggiorno l'ultima attività del client
+			lastActivity = System.nanoTime();
+			
 			try {
-				// controllo che non sia stato ancora scritto nulla
-				if (responseBuffer == null) {
-					// acquisisco la lock sulla coda dei pacchetti di risposta
-					synchronized (responsePacketQueue) {
-						// controllo se ci sono pacchetti da scrivere
-						HotelierPacket responsePacket = responsePacketQueue.peek();
-						
-						if (responsePacket != null) {
-							// ottengo il messaggio di risposta serializzato formato da: lunghezza pacchetto + id + pacchetto di risposta e lo assegno a response buffer
-							responseBuffer = serializeResponse(responsePacket);
-						}
-					}
+				// controllo che non ci siano buffer di risposta nè pacchetti su file ancora da scrivere
+				if (responseBufferIndex == responseBufferCount && fileResponse == null) {
+					// serializzo i pacchetti di risposta pronti nei buffer di risposta
+					fillResponseBuffers();
 				}
 				
-				// controllo se è presente un messaggio di risposta da scivere
-				if (responseBuffer != null) {
-					// scrivo il messaggio di risposta sul canale associato al client
-					client.write(responseBuffer);
+				// controllo se sono presenti messaggi di risposta da scivere
+				if (responseBufferIndex < responseBufferCount) {
+					// scrivo i messaggi di risposta sul canale associato al client con un' unica scrittura gathering
+					client.write(responseBuffers, responseBufferIndex, responseBufferCount - responseBufferIndex);
 					
+					// rilascio i buffer scritti completamente (potrebbero avvenire scritture parziali)
+					while (responseBufferIndex < responseBufferCount && !responseBuffers[responseBufferIndex].hasRemaining()) {
+						bufferPool.release(responseBuffers[responseBufferIndex]);
+						responseBuffers[responseBufferIndex] = null;
+						// la risposta è stata scritta, a meno che il suo pacchetto sia ancora da trasferire dal file
+						if (responseMessages[responseBufferIndex] != fileResponse) {
+							responseWritten(responseMessages[responseBufferIndex]);
+						}
+						responseMessages[responseBufferIndex] = null;
+						responseBufferIndex++;
+					}
 					
-					// controllo di aver finito di scrivere il messaggio di risposta (potrebbero avvenire scritture parziali)
-					if (!responseBuffer.hasRemaining()) {
-						//acquisisco la lock sulla coda dei pacchetti di risposta 
-						synchronized (responsePacketQueue) {
-							// rimuovo il primo pacchetto di risposta
-							responsePacketQueue.poll();
+					// controllo di aver finito di scrivere tutti i messaggi di risposta
+					if (responseBufferIndex == responseBufferCount) {
+						// resetto gli indici per preparmi per una nuova scrittura
+						responseBufferIndex = 0;
+						responseBufferCount = 0;
+					}
+				}
+				
+				// controllo se, scritti tutti i buffer, c'è un pacchetto di risposta da trasferire dal file
+				if (responseBufferCount == 0 && fileResponse != null) {
+					transferFileResponse();
+				}
+				
+				// controllo di non avere una scrittura parziale in corso e di non avere risposte prelevate da scrivere
+				if (responseBufferCount == 0 && fileResponse == null && drainedResponseQueue.isEmpty()) {
+					// acquisisco la lock sulla coda delle risposte
+					synchronized (responseQueue) {
+						// se non ci sono altre risposte da scrivere rimuovo l'interesse per la scrittura
+						if (responseQueue.isEmpty()) {
+							clientKey.interestOps(clientKey.interestOps() & ~SelectionKey.OP_WRITE);
 						}
-						
-						// resetto responseBuffer per preparmi per una nuova scrittura
-						responseBuffer = null; // Reset the buffer for the next packet
 					}
 				}
+				
+				// ripristino la lettura se era stata sospesa e le risposte sono state smaltite
+				resumeReadIfDrained();
+				// riprendo la risposta in streaming se era stata sospesa e i chunk in coda sono stati scritti
+				resumeStreamIfDrained();
 
 			} catch (IOException exception) {
 				
@@ -196,44 +517,81 @@ public class HotelierServerClientHandler {
 		}
 	}
 	
-	// restitusce il byteBuffer contente il messaggio di risposta relativo al pacchetto di risposta passato
-	private ByteBuffer serializeResponse(HotelierPacket packet) {
-		
-		// instanzio un gson per la serializzazione del pachetto di risposta
-		var gson = new GsonBuilder().serializeNulls().create();
-		
-		// serializzo il pacchetto di risposta
-		String serializedPacket = gson.toJson(packet);
-		// ottengo id del pacchetto di risposta
-		int packetID = HotelierPacketRegistry.getIDFromPacket(packet);
-		// controllo che il pacchetto sia supportato
-		if (packetID != -1) {
-			// ottengo la lunghezza del pacchetto di risposta serializzato
-			int payloadSize = serializedPacket.getBytes().length;
-			// alloco byteBuffer per contenere: lunghezza pacchetto di risposta + id + pacchetto di risposta serializzato
-			var serializedResponse = ByteBuffer.allocate(4 + 4 + payloadSize);
-			// inserisco nel byteBuffer lunghezza del pacchetto di risposta
-			serializedResponse.putInt(payloadSize);
-			// inserisco nel byteBuffer id del pacchetto di risposta
-			serializedResponse.putInt(packetID);
-			// inserisco nel byteBuffer pacchetto di risposta serializzato
-			serializedResponse.put(serializedPacket.getBytes());
-			// preparo il buffer in lettura
-			serializedResponse.flip();
-			
-			// restituisco il messaggio di risposta
-			return serializedResponse;
+	// trasferisce dal file al canale del client al più maxWriteBytesPerRound byte del pacchetto della risposta su file
+	private void transferFileResponse() throws IOException {
+		
+		// ottengo i byte del pacchetto ancora da trasferire
+		long remainingBytes = fileResponse.getPayloadSize() - fileResponsePosition;
+		// trasferisco i byte dal file al canale (potrebbero avvenire trasferimenti parziali)
+		fileResponsePosition += fileResponse.getSnapshot().transferTo(fileResponse.getSnapshotCodec(), fileResponsePosition,
+				Math.min(remainingBytes, maxWriteBytesPerRound), client);
+		
+		// controllo di aver trasferito l'intero pacchetto
+		if (fileResponsePosition == fileResponse.getPayloadSize()) {
+			fileResponse.getSnapshot().release();
+			responseWritten(fileResponse);
+			fileResponse = null;
+			fileResponsePosition = 0;
+		}
+	}
+	
+	// aggiorna i contatori a seguito della scrittura completa della risposta passata
+	private void responseWritten(HotelierServerResponse response) {
+		// decremento i byte in coda e le richieste in volo
+		queuedResponseBytes.addAndGet(-response.getFrameSize());
+		// la richiesta non è più in volo solo dopo la scrittura della sua ultima risposta
+		if (response.isLastFrame()) {
+			inFlightRequests.decrementAndGet();
 		}
+		// notifico al protocollo la scrittura completa della risposta
+		protocol.responseWritten(response);
+	}
+	
+	// copia nei buffer di risposta le risposte pronte fino a maxWriteBytesPerRound byte
+	// (fino alla prima risposta con il pacchetto su file, della quale viene copiato solo l'header)
+	private void fillResponseBuffers() {
 		
-		// pacchetto non supportato restituisco null
-		return null;
-
+		// controllo se ho già copiato tutte le risposte prelevate in precedenza
+		if (drainedResponseQueue.isEmpty()) {
+			// acquisisco la lock sulla coda delle risposte
+			synchronized (responseQueue) {
+				// prelevo tutte le risposte presenti nella coda
+				drainedResponseQueue.addAll(responseQueue);
+				responseQueue.clear();
+			}
+		}
+		
+		// numero di byte preparati
+		int preparedBytes = 0;
+		// itero finchè ci sono risposte da copiare, buffer disponibili e non ho superato il limite di byte
+		while (!drainedResponseQueue.isEmpty() && responseBufferCount < MAX_GATHER_BUFFERS && preparedBytes < maxWriteBytesPerRound) {
+			
+			// ottengo il messaggio di risposta formato da: lunghezza pacchetto + id + requestID (se presente) + pacchetto di risposta
+			HotelierServerResponse response = drainedResponseQueue.poll();
+			ByteBuffer responseBuffer = HotelierServerProtocol.writeResponse(response, bufferPool);
+			// aggiungo il messaggio ai buffer di risposta
+			responseMessages[responseBufferCount] = response;
+			responseBuffers[responseBufferCount++] = responseBuffer;
+			preparedBytes += responseBuffer.remaining();
+			
+			// se il pacchetto è su file verrà trasferito dopo l'header, le risposte successive attendono il trasferimento
+			if (response.isFileBacked()) {
+				fileResponse = response;
+				break;
+			}
+		}
 	}
 	
-	// restituisce il pacchetto di richiesta deserializzato
-	private HotelierPacket deserializeRequest(int packetID, ByteBuffer requestPayload) {
-
-		return HotelierPacketRegistry.getPacketFromID(packetID, requestPayload);
+	// abilita l'interesse per la scrittura sulla chiave del client, invocato dal thread del worker
+	public void enableWrite() {
+		
+		// resetto la richiesta di scrittura per permettere nuove richieste
+		writeRequested.set(false);
+		// controllo che la chiave sia ancora valida (client non disconnesso)
+		if (clientKey.isValid()) {
+			// aggiungo l'interesse per la scrittura
+			clientKey.interestOps(clientKey.interestOps() | SelectionKey.OP_WRITE);
+		}
 	}
 	
 	// restituisce true se il client è connesso, false altrimenti
@@ -241,9 +599,86 @@ public class HotelierServerClientHandler {
 		return isConnected;
 	}
 	
+	// restituisce l'istante dell' ultima lettura o scrittura sul canale del client
+	public long getLastActivity() {
+		return lastActivity;
+	}
+	
+	// restituisce la chiave del client registrata sul selettore del worker
+	public SelectionKey getClientKey() {
+		return clientKey;
+	}
+	
+	// restituisce true se la lettura delle richieste del client è sospesa, false altrimenti
+	public boolean isReadPaused() {
+		return isReadPaused;
+	}
+	
+	// restituisce il numero di sospensioni della lettura del client
+	public long getReadPauseCount() {
+		return readPauseCount;
+	}
+	
+	// restituisce il numero di richieste lette e non ancora risposte
+	public int getInFlightRequests() {
+		return inFlightRequests.get();
+	}
+	
+	// restituisce i byte di risposta in coda non ancora scritti
+	public int getQueuedResponseBytes() {
+		return queuedResponseBytes.get();
+	}
+	
+	// restituisce true se il client ha richieste in volo o sottoscrizioni ai rank locali (in attesa dei push),
+	// nel qual caso non viene chiuso per inattività
+	public boolean isBusy() {
+		return inFlightRequests.get() > 0 || protocol.hasSubscriptions();
+	}
+	
+	// restituisce true se il client non ha richieste in volo nè una richiesta letta parzialmente, invocato dal thread del worker
+	public boolean isIdle() {
+		return inFlightRequests.get() == 0 && (requestHeader == null || requestHeader.position() == 0);
+	}
+	
+	// rilascia i buffer di lettura della richiesta e li resetta
+	private void releaseRequestBuffers() {
+		bufferPool.release(requestHeader);
+		for (ByteBuffer chunk : requestChunks) {
+			bufferPool.release(chunk);
+		}
+		requestHeader = null;
+		requestChunks.clear();
+		remainingPayloadBytes = -1;
+	}
+	
+	// rilascia gli snapshot delle risposte su file presenti nella coda passata e la svuota
+	private static void releaseSnapshots(Queue<HotelierServerResponse> responses) {
+		for (HotelierServerResponse response : responses) {
+			if (response.isFileBacked()) {
+				response.getSnapshot().release();
+			}
+		}
+		responses.clear();
+	}
+	
 	// chiude le risorse associate al client e setta isConnecte a false 
 	public void close() throws IOException {
-		hotelierPacketHandler.handleClientDisconnect();
+		protocol.handleClientDisconnect();
+		// restituisco al pool i buffer ancora in uso
+		releaseRequestBuffers();
+		for (int i = responseBufferIndex; i < responseBufferCount; i++) {
+			bufferPool.release(responseBuffers[i]);
+			responseBuffers[i] = null;
+		}
+		// rilascio gli snapshot delle risposte su file non ancora scritte
+		if (fileResponse != null) {
+			fileResponse.getSnapshot().release();
+			fileResponse = null;
+		}
+		releaseSnapshots(drainedResponseQueue);
+		synchronized (responseQueue) {
+			releaseSnapshots(responseQueue);
+		}
 		client.close();
 
 	}
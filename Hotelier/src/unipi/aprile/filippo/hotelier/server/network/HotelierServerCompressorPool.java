@@ -0,0 +1,78 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCompressor;
+
+public class HotelierServerCompressorPool {
+
+	/**
+	 * La classe HotelierServerCompressorPool mantiene un pool di compressori (HotelierPacketCompressor) condiviso dai client
+	 * di uno stesso motore di rete (selettore worker o server asincrono), così che Deflater e Inflater vengano riutilizzati
+	 * tra i messaggi invece di essere allocati ad ognuno. I compressori vengono acquisiti dai thread che serializzano le risposte
+	 * e deserializzano le richieste, e il loro numero è limitato dal numero di thread che li utilizzano contemporaneamente.
+	 *
+	 * Per le risposte dei client che hanno abilitato la compressione vengono mantenuti il numero di risposte compresse (hit rate)
+	 * e i byte prima e dopo la compressione (ratio).
+	 */
+
+	// compressori liberi
+	private final Queue<HotelierPacketCompressor> compressors;
+	// numero di risposte per client con compressione abilitata e numero di risposte compresse
+	private final LongAdder compressionCandidates, compressedResponses;
+	// byte delle risposte compresse prima e dopo la compressione
+	private final LongAdder uncompressedBytes, compressedBytes;
+
+	public HotelierServerCompressorPool() {
+		// inizializzo il pool di compressori e i contatori di compressione
+		compressors = new ConcurrentLinkedQueue<>();
+		compressionCandidates = new LongAdder();
+		compressedResponses = new LongAdder();
+		uncompressedBytes = new LongAdder();
+		compressedBytes = new LongAdder();
+	}
+
+	// restituisce un compressore del pool, creandone uno nuovo se il pool è vuoto
+	public HotelierPacketCompressor acquire() {
+		HotelierPacketCompressor compressor = compressors.poll();
+		return compressor != null ? compressor : new HotelierPacketCompressor();
+	}
+
+	// restituisce il compressore passato al pool
+	public void release(HotelierPacketCompressor compressor) {
+		compressors.add(compressor);
+	}
+
+	// aggiorna i contatori di compressione per una risposta di un client con compressione abilitata, compressedSize -1 se non compressa
+	public void responseCompressionChecked(int payloadSize, int compressedSize) {
+		compressionCandidates.increment();
+		if (compressedSize != -1) {
+			compressedResponses.increment();
+			uncompressedBytes.add(payloadSize);
+			compressedBytes.add(compressedSize);
+		}
+	}
+
+	// restituisce il numero di risposte per client con compressione abilitata
+	public long getCompressionCandidates() {
+		return compressionCandidates.sum();
+	}
+
+	// restituisce il numero di risposte compresse
+	public long getCompressedResponses() {
+		return compressedResponses.sum();
+	}
+
+	// restituisce i byte delle risposte compresse prima della compressione
+	public long getUncompressedBytes() {
+		return uncompressedBytes.sum();
+	}
+
+	// restituisce i byte delle risposte compresse dopo la compressione
+	public long getCompressedBytes() {
+		return compressedBytes.sum();
+	}
+
+}
@@ -0,0 +1,91 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCompressor;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+
+public class HotelierServerEncodedPacket extends HotelierPacket {
+
+	/**
+	 * La classe HotelierServerEncodedPacket rappresenta un pacchetto di risposta condiviso tra più richieste
+	 * (ad esempio dalla cache delle liste di hotel) che mantiene il proprio payload già serializzato per ogni formato.
+	 * Il payload di un formato viene serializzato alla prima richiesta in quel formato e riutilizzato dalle successive,
+	 * le quali lo ottengono senza alcuna lock e lo copiano direttamente nel messaggio di risposta.
+	 * Allo stesso modo viene mantenuto il payload compresso di ogni formato per i client con compressione abilitata.
+	 * Ai pacchetti più grandi può essere associato uno snapshot su file dei payload (HotelierServerSnapshot),
+	 * dal quale il serverNIO li invia tramite transferTo ai client senza compressione.
+	 * Viene utilizzato esclusivamente dal server e non viene mai inviato come pacchetto a sè stante.
+	 */
+
+	// id del pacchetto di risposta
+	private final int packetID;
+	// pacchetto di risposta
+	private final HotelierPacket packet;
+	// payload serializzati indicizzati per formato (ordinal), null se non ancora serializzati
+	private final AtomicReferenceArray<byte[]> payloads;
+	// payload compressi indicizzati per formato (ordinal), null se non ancora compressi
+	private final AtomicReferenceArray<byte[]> compressedPayloads;
+	// payload compresso dei formati in cui la compressione non ne riduce la dimensione
+	private static final byte[] NOT_COMPRESSIBLE = new byte[0];
+	// snapshot su file dei payload, null se non creato
+	private volatile HotelierServerSnapshot snapshot;
+
+	public HotelierServerEncodedPacket(HotelierPacket packet) {
+		// ottengo id del pacchetto di risposta
+		packetID = HotelierPacketRegistry.getIDFromPacket(packet);
+		// setto packet a quello passato
+		this.packet = packet;
+		// inizializzo i payload per tutti i formati
+		payloads = new AtomicReferenceArray<>(HotelierPacketCodec.values().length);
+		compressedPayloads = new AtomicReferenceArray<>(HotelierPacketCodec.values().length);
+	}
+
+	public int getPacketID() {
+		return packetID;
+	}
+
+	public HotelierPacket getPacket() {
+		return packet;
+	}
+
+	public HotelierServerSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public void setSnapshot(HotelierServerSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	// restituisce il payload serializzato nel formato passato, serializzandolo solo alla prima richiesta
+	public byte[] getPayload(HotelierPacketCodec codec) {
+
+		// ottengo il payload già serializzato nel formato
+		byte[] payload = payloads.get(codec.ordinal());
+		// controllo se il payload non è ancora stato serializzato
+		if (payload == null) {
+			// serializzo il pacchetto nel formato (richieste concorrenti serializzano al più più volte lo stesso payload)
+			payload = codec.encode(packet);
+			payloads.set(codec.ordinal(), payload);
+		}
+		return payload;
+	}
+
+	// restituisce il payload serializzato nel formato passato e compresso con il compressore passato, comprimendolo solo alla prima richiesta,
+	// null se la compressione non ne riduce la dimensione
+	public byte[] getCompressedPayload(HotelierPacketCodec codec, HotelierPacketCompressor compressor) {
+
+		// ottengo il payload già compresso nel formato
+		byte[] compressedPayload = compressedPayloads.get(codec.ordinal());
+		// controllo se il payload non è ancora stato compresso
+		if (compressedPayload == null) {
+			// comprimo il payload nel formato
+			compressedPayload = compressor.compress(getPayload(codec));
+			compressedPayloads.set(codec.ordinal(), compressedPayload != null ? compressedPayload : NOT_COMPRESSIBLE);
+		}
+		return compressedPayload != NOT_COMPRESSIBLE ? compressedPayload : null;
+	}
+
+}
@@ -0,0 +1,39 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+public interface HotelierServerEngine {
+
+	/**
+	 * L'interfaccia HotelierServerEngine rappresenta un motore di rete TCP del server (HotelierServerNIO o HotelierServerAsync)
+	 * ed espone i contatori comuni ai motori, letti dalle metriche del server (HotelierServerMetrics), e lo spegnimento
+	 * controllato del motore invocato alla terminazione del server.
+	 */
+
+	// restituisce il numero di connessioni attive
+	int getConnectionCount();
+
+	// restituisce il numero di client con lettura sospesa
+	int getPausedConnections();
+
+	// restituisce il numero totale di sospensioni della lettura
+	long getReadPauses();
+
+	// restituisce il numero di pacchetti di richiesta rifiutati
+	long getRejectedFrames();
+
+	// restituisce il numero di connessioni chiuse per inattività
+	long getReapedConnections();
+
+	// restituisce il numero di richieste lette e in attesa nelle code dei client (non la coda della threadpool, che contiene al più un task per client)
+	int getQueuedRequests();
+
+	// restituisce la frazione di risposte compresse tra quelle dei client con compressione abilitata
+	double getCompressionHitRate();
+
+	// restituisce il rapporto tra byte dopo e prima della compressione delle risposte compresse
+	double getCompressionRatio();
+
+	// smette di accettare connessioni e chiude i client man mano che, gestite le richieste e scritte le risposte, diventano inattivi;
+	// allo scadere di timeoutMillis chiude le connessioni rimanenti e termina la threadpool per la gestione dei pacchetti
+	void shutdown(long timeoutMillis) throws InterruptedException;
+
+}
@@ -0,0 +1,202 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListResponse;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterHotels;
+import unipi.aprile.filippo.hotelier.server.utils.HotelierServerUtils;
+
+public class HotelierServerHotelListCache {
+
+	/**
+	 * La classe singletone HotelierServerHotelListCache mantiene, per ogni città, il pacchetto di risposta hotelList
+	 * con la lista degli hotel già ordinata per rank locale e serializzata (HotelierServerEncodedPacket).
+	 * Le voci hanno come chiave la città normalizzata (minuscola) e vengono costruite alla prima richiesta
+	 * per quella città, evitando ad ogni richiesta la scansione del registro, l'ordinamento e la serializzazione.
+	 * La lettura delle voci non acquisisce alcuna lock (ConcurrentHashMap).
+	 *
+	 * Le voci vengono invalidate:
+	 * • tutte al termine di ogni calcolo dei rank (HotelierServerRanking), il quale aggiorna rank e ordinamento;
+	 * • quella della città dell' hotel a seguito di una nuova recensione, la quale aggiorna rate e punteggi;
+	 * Ogni invalidazione incrementa la generazione della cache: una voce costruita concorrentemente ad un' invalidazione
+	 * non viene inserita, così che la cache non contenga mai dati precedenti all' ultima invalidazione.
+	 *
+	 * Dopo ogni calcolo dei rank (createSnapshots) le risposte delle città il cui payload supera snapshotThreshold
+	 * vengono ricostruite e ne viene creato uno snapshot su file (HotelierServerSnapshot), associato al pacchetto in cache:
+	 * l'invalidazione di una voce rimuove quindi anche il relativo snapshot, e le richieste successive utilizzano
+	 * il pacchetto in memoria fino al calcolo dei rank successivo. La cache possiede l'ultimo snapshot di ogni città:
+	 * se il contenuto della risposta non è cambiato lo snapshot viene riutilizzato, altrimenti viene sostituito
+	 * da uno nuovo e il precedente rilasciato (eliminato al termine dei trasferimenti in corso).
+	 */
+
+	private static HotelierServerHotelListCache instance = null;
+
+	public static HotelierServerHotelListCache getInstance() {
+		if (instance == null) {
+			instance = new HotelierServerHotelListCache();
+		}
+		return instance;
+	}
+
+	// mappa delle risposte con chiave: città normalizzata e valore: pacchetto di risposta hotelList serializzato
+	private final ConcurrentHashMap<String, HotelierServerEncodedPacket> hotelLists;
+	// generazione della cache, incrementata ad ogni invalidazione
+	private final AtomicLong generation;
+	// registro degli hotel
+	private final HotelierServerRegisterHotels hotelRegister;
+	// dimensione in byte oltre la quale viene creato lo snapshot su file di una risposta (0 = disattivato)
+	private final int snapshotThreshold;
+	// cartella degli snapshot
+	private final Path snapshotDirectory;
+	// mappa degli ultimi snapshot con chiave: città normalizzata (acceduta solo dal thread del calcolo dei rank)
+	private final Map<String, HotelierServerSnapshot> snapshots;
+
+	private HotelierServerHotelListCache() {
+		// inizializzo la mappa delle risposte
+		hotelLists = new ConcurrentHashMap<>();
+		// inizializzo la generazione
+		generation = new AtomicLong();
+		// recupero istanza registro degli hotel
+		hotelRegister = HotelierServerRegisterHotels.getInstance();
+		// ottengo la soglia degli snapshot dai config
+		snapshotThreshold = HotelierServerConfigManager.getServerConfig().getSnapshotThreshold();
+		snapshotDirectory = Path.of(HotelierServerUtils.SNAPSHOTS_PATH);
+		snapshots = new HashMap<>();
+	}
+
+	// restituisce il pacchetto di risposta hotelList relativo alla città passata, null se nessun hotel trovato
+	public HotelierServerEncodedPacket getHotelListResponse(String city) {
+
+		// controllo che la città sia presente
+		if (city == null) {
+			return null;
+		}
+
+		// ottengo la chiave relativa alla città
+		String cityKey = normalizeCity(city);
+		// ottengo la risposta dalla cache
+		HotelierServerEncodedPacket hotelListResponse = hotelLists.get(cityKey);
+		// controllo se la risposta è presente
+		if (hotelListResponse != null) {
+			return hotelListResponse;
+		}
+
+		// risposta non presente, ottengo la generazione prima di leggere il registro
+		long buildGeneration = generation.get();
+		// ottengo lista di hotel aventi città passata
+		var hotels = hotelRegister.getHotelsByCity(city);
+		// controllo se nessun hotel trovato (le città senza hotel non vengono inserite nella cache)
+		if (hotels.isEmpty()) {
+			return null;
+		}
+		// ordino lista di hotel in modo crescente rispetto al rank locale
+		Collections.sort(hotels, Comparator.comparingInt(HotelierHotel::getLocalRank));
+		// creo la risposta contenente la lista di hotel ordinata
+		HotelierServerEncodedPacket builtResponse = new HotelierServerEncodedPacket(new HotelierPacketHotelListResponse(hotels));
+
+		// inserisco la risposta solo se nel frattempo non è avvenuta alcuna invalidazione
+		hotelLists.compute(cityKey, (key, cachedResponse) -> generation.get() == buildGeneration ? builtResponse : cachedResponse);
+		return builtResponse;
+	}
+
+	// restituisce la lista di hotel relativa alla città passata ordinata per rank locale (non modificabile), null se nessun hotel trovato
+	public List<HotelierHotel> getHotelList(String city) {
+
+		// ottengo la risposta dalla cache (costruendola se assente) e ne restituisco la lista di hotel
+		HotelierServerEncodedPacket hotelListResponse = getHotelListResponse(city);
+		if (hotelListResponse == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(((HotelierPacketHotelListResponse) hotelListResponse.getPacket()).getHotels());
+	}
+
+	// restituisce la versione dell' ordinamento della lista di hotel passata, che cambia solo se cambia l'ordine degli hotel
+	public static long getListVersion(List<HotelierHotel> hotels) {
+
+		// combino gli id degli hotel nell' ordine della lista
+		long version = 1;
+		for (HotelierHotel hotel : hotels) {
+			version = 31 * version + hotel.getID();
+		}
+		return version;
+	}
+
+	// crea lo snapshot su file delle risposte delle città passate che superano la soglia, invocato dopo ogni calcolo dei rank
+	public void createSnapshots(List<String> cities) {
+
+		// controllo che gli snapshot siano attivi
+		if (snapshotThreshold <= 0) {
+			return;
+		}
+
+		// itero le città
+		for (String city : cities) {
+
+			// ottengo (costruendola) la risposta della città e l'ultimo snapshot della città
+			String cityKey = normalizeCity(city);
+			HotelierServerEncodedPacket hotelListResponse = getHotelListResponse(city);
+			HotelierServerSnapshot previousSnapshot = snapshots.get(cityKey);
+
+			// controllo che la risposta superi la soglia, altrimenti rilascio l'ultimo snapshot della città
+			if (hotelListResponse == null || hotelListResponse.getPayload(HotelierPacketCodec.JSON).length < snapshotThreshold) {
+				if (previousSnapshot != null) {
+					snapshots.remove(cityKey);
+					previousSnapshot.release();
+				}
+				continue;
+			}
+			// controllo che la risposta non abbia già uno snapshot
+			if (hotelListResponse.getSnapshot() != null) {
+				continue;
+			}
+
+			try {
+				// se il contenuto non è cambiato riutilizzo l'ultimo snapshot della città
+				if (previousSnapshot != null && previousSnapshot.contentEquals(hotelListResponse)) {
+					hotelListResponse.setSnapshot(previousSnapshot);
+					continue;
+				}
+				// altrimenti creo un nuovo snapshot, lo associo alla risposta e rilascio il precedente
+				var snapshot = HotelierServerSnapshot.create(snapshotDirectory, hotelListResponse);
+				hotelListResponse.setSnapshot(snapshot);
+				snapshots.put(cityKey, snapshot);
+				if (previousSnapshot != null) {
+					previousSnapshot.release();
+				}
+			} catch (IOException exception) {
+				// in caso di errore la risposta viene inviata dalla memoria
+				exception.printStackTrace();
+			}
+		}
+	}
+
+	// invalida la risposta relativa alla città passata
+	public void invalidate(String city) {
+		generation.incrementAndGet();
+		hotelLists.remove(normalizeCity(city));
+	}
+
+	// invalida le risposte di tutte le città
+	public void invalidateAll() {
+		generation.incrementAndGet();
+		hotelLists.clear();
+	}
+
+	// restituisce la chiave della cache relativa alla città passata
+	private String normalizeCity(String city) {
+		return city.toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -2,6 +2,7 @@ package unipi.aprile.filippo.hotelier.server.network;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
@@ -10,146 +11,338 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfig.BalancingPolicy;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfig.ExecutionMode;
+
+public class HotelierServerNIO implements Runnable, HotelierServerEngine {
 
-public class HotelierServerNIO implements Runnable {
-	
 	/**
 	 * La classe HotelierServerNIO gestisce le richieste TCP tramite multiplexing dei canali in NIO.
 	 * La connessione tra il client e il server è persistente.
-	 * 
-	 * Il serverNIO si occupa di:
-	 * • accettare nuove connessioni client e registrarle al selettore per la gestione degli eventi di lettura e scrittura;
-	 * • gestire i pacchetti ricevuti dai client delegandoli ad una thread pool per elaborarne le richieste in modo concorrente;
-	 * • gestire la disconnessione dei client, chiudendeone le risorse associate e rimuovendone la chiave dal selettore;
-	 * 
-	 * Quando viene accettata un nuova connessiona da un client gli viene asseganata un nuova instanza di HotelierServerClientHandler tramite 
-	 * attachment della chiave la quale espone i metodi per la lettura e gestione del paccheto di richiesta, scrittura del paccheto di risposta
+	 *
+	 * Il serverNIO segue un modello multi-reactor ed è formato da:
+	 * • uno o più thread acceptor (acceptorThreads), ognuno dei quali accetta le nuove connessioni client tramite il proprio
+	 *   canale in ascolto e il proprio selettore;
+	 * • un insieme configurabile di selettori worker (HotelierServerNIOWorker), ognuno con il proprio thread, i quali gestiscono
+	 *   gli eventi di lettura e scrittura dei client assegnati delegando la gestione dei pacchetti ad una thread pool condivisa;
+	 *
+	 * La gestione dei pacchetti può essere eseguita, in base alla configurazione, da:
+	 * • CACHED, una cached threadpool di platform thread;
+	 * • VIRTUAL, un virtual thread per ogni gestione, adatta a un numero elevato di connessioni concorrenti;
+	 * • BOUNDED, una threadpool con un numero fissato di platform thread;
+	 *
+	 * Quando viene accettata un nuova connessiona da un client il canale viene assegnato ad un worker secondo la politica
+	 * di bilanciamento configurata:
+	 * • ROUND_ROBIN, i canali vengono assegnati ai worker a turno;
+	 * • LEAST_LOAD, i canali vengono assegnati al worker con il minor numero di connessioni attive;
+	 * Con più acceptor ogni canale viene aperto con SO_REUSEPORT sulla stessa porta, così che sia il kernel a distribuire
+	 * le nuove connessioni tra le code di accept dei canali: durante picchi di connessioni (ad esempio la riconnessione di tutti
+	 * i client dopo un riavvio) l'accept non è più limitata da un' unica coda e da un unico thread. Se il sistema operativo
+	 * non supporta SO_REUSEPORT viene avviato un solo acceptor.
+	 * Il worker assegna al client un nuova instanza di HotelierServerClientHandler tramite attachment della chiave
+	 * la quale espone i metodi per la lettura e gestione del paccheto di richiesta, scrittura del paccheto di risposta
 	 * e gestione della disconessione del client.
+	 *
+	 * Allo spegnimento del server (shutdown) i thread acceptor vengono interrotti e i canali di accept chiusi, quindi
+	 * ogni worker chiude i propri client man mano che diventano inattivi (senza richieste in volo nè lette parzialmente),
+	 * dopo averne gestito le richieste e scritto le risposte. Allo scadere del timeout le connessioni rimanenti vengono chiuse
+	 * e la threadpool terminata.
 	 */
-	
+
 	// indirizzo socket TCP
 	private final String serverAddress;
 	// porta socket TCP
 	private final int tcpPort;
+	// politica di bilanciamento delle connessioni sui worker
+	private final BalancingPolicy balancingPolicy;
 	// threadpool per la gestione dei pacchetti
 	private ExecutorService requestPool;
+	// selettori worker
+	private final HotelierServerNIOWorker[] workers;
+	// indice del prossimo worker per la politica round robin (condiviso dai thread acceptor)
+	private final AtomicInteger nextWorker;
+	// thread acceptor
+	private final Thread[] acceptors;
 
-	public HotelierServerNIO(String serverAddress, int tcpPort) {
+	public HotelierServerNIO(String serverAddress, int tcpPort, int acceptorThreads, int selectorThreads, BalancingPolicy balancingPolicy,
+			ExecutionMode executionMode, int requestPoolSize) throws IOException {
 		// setto serverAddress a quello passato
 		this.serverAddress = serverAddress;
 		// setto tcpPort a quella passato
 		this.tcpPort = tcpPort;
-		// creo cached threadpool per la gestion dei pacchetti
-		requestPool = Executors.newCachedThreadPool();
-		
-		// avvio il thread
-		Thread thread = new Thread(this);
-		thread.start();
+		// setto balancingPolicy a quella passata
+		this.balancingPolicy = balancingPolicy;
+		// inizializzo l'indice del prossimo worker
+		nextWorker = new AtomicInteger();
+		// creo la threadpool per la gestion dei pacchetti in base alla modalità di esecuzione
+		requestPool = createRequestPool(executionMode, requestPoolSize);
+
+		// creo e avvio i selettori worker
+		workers = new HotelierServerNIOWorker[selectorThreads];
+		for (int i = 0; i < selectorThreads; i++) {
+			workers[i] = new HotelierServerNIOWorker(requestPool);
+		}
+
+		// controllo che più acceptor possano condividere la porta tramite SO_REUSEPORT
+		if (acceptorThreads > 1 && !isReusePortSupported()) {
+			System.out.println("[ERRORE] SO_REUSEPORT non supportato dal sistema operativo, avvio un solo acceptor");
+			acceptorThreads = 1;
+		}
+
+		// avvio i thread acceptor
+		acceptors = new Thread[acceptorThreads];
+		for (int i = 0; i < acceptorThreads; i++) {
+			acceptors[i] = new Thread(this);
+			acceptors[i].start();
+		}
 	}
 
 	@Override
 	public void run() {
 
 		try {
-			
+
 			// ottengo serverSocketAddress tramite parametri passati
 			var serverScoketAddress = new InetSocketAddress(serverAddress, tcpPort);
 			// apro una ServerSocketChannel e la configuro per non bloccante
 			ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
 			serverSocketChannel.configureBlocking(false);
+			// con più acceptor condivido la porta con gli altri canali, le connessioni vengono distribuite dal kernel
+			if (acceptors.length > 1) {
+				serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+			}
 			// effettuo il binding del ServerSocketChannel al serverScoketAddress
 			serverSocketChannel.bind(serverScoketAddress);
 			// apro un selettore per la gestione dei canali non bloccanti
 			Selector serverSelector = Selector.open();
-			// registro la serverSocketChannel sul selettore per operazioni di accept 
+			// registro la serverSocketChannel sul selettore per operazioni di accept
 			serverSocketChannel.register(serverSelector, SelectionKey.OP_ACCEPT);
-			
+
 			// itero finchè il thread non viene interotto
 			while (!Thread.interrupted()) {
-				
-				// mi blocco in attesa di chiavi di canali pronti per IO
+
+				// mi blocco in attesa di nuove richieste di connessione
 				serverSelector.select();
-				
+
 				// ottengo il set delle chiavi dei canali pronti
 				Set<SelectionKey> selectedKeys = serverSelector.selectedKeys();
 				// creo un iterato per il set di chiavi dei canali pronti
 				Iterator<SelectionKey> selectedKeysIterator = selectedKeys.iterator();
-				
+
 				// itero il set delle chiavi
 				while (selectedKeysIterator.hasNext()) {
-					
+
 					// prendo la chiave dall' iteratore
 					SelectionKey selectedKey = selectedKeysIterator.next();
-					
+
 					// Se la chiave è predisposta alle operazioni di accecpt ed è arrivata una nuova richiesta di connessione
 					if (selectedKey.isAcceptable()) {
-						
-						// ottengo il canale  associato al client accettato e la configuro non bloccante
+
+						// ottengo il canale  associato al client accettato
 						SocketChannel client = serverSocketChannel.accept();
-						client.configureBlocking(false);
-						
-						// registro il client sul selettore per operazione di scrittura e lettura
-						SelectionKey clientKey = client.register(serverSelector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-						
-						// allego un clientHandler alla chiave del client per gestirne le operazioni
-						clientKey.attach(new HotelierServerClientHandler(client));
 
-					}
-					
-					// Se la chiave è valida, predisposta alle operazioni di lettura ed è possibile leggere dal canale associato
-					if (selectedKey.isValid() && selectedKey.isReadable()) {
-						
-						// ottengo il clienthandler associato alla chiave del client
-						HotelierServerClientHandler clientHandler = (HotelierServerClientHandler) selectedKey.attachment();
-						// eseguo la lettura della richiesta del client e ottengo il pacchetto di richiesta
-						HotelierPacket packet = clientHandler.handleRead();
-						
-						// controllo di aver terminato correttamente la lettura del pacchetto di richiesta e che sia supportato
-						if (packet != null) {
-							
-							// delego la gestion del pacchetto alla threadpool
-							requestPool.submit(() -> {
-								clientHandler.handlePacket(packet);
-							});
-						}
-						
-						// controllo se il client si è disconesso
-						if (!clientHandler.isConnected()) {
-							
-							// chiudo le risosre associate alla comunicazione con  il client
-							clientHandler.close();
-							// richiedo la rimozione della chiave associata al client dal selettore
-							selectedKey.cancel();
-						}
-					}
-					
-					// Se la chiave è valida, predisposta alle operazioni di scrittura ed è possibile scrivere sul canale associato
-					if (selectedKey.isValid() && selectedKey.isWritable()) {
-						
-						// ottengo il clienthandler associato alla chiave del client
-						HotelierServerClientHandler clientHandler = (HotelierServerClientHandler) selectedKey.attachment();
-						// eseguo la scrittura del pacchetto di risposta per il client
-						clientHandler.handleWrite();
-						
-						// controllo se il client si è disconesso
-						if (!clientHandler.isConnected()) {
-							
-							// chiudo le risosre associate alla comunicazione con  il client
-							clientHandler.close();
-							// richiedo la rimozione della chiave associata al client dal selettore
-							selectedKey.cancel();
+						// controllo che la connessione sia ancora in attesa di essere accettata
+						if (client != null) {
+							// configuro il canale non bloccante
+							client.configureBlocking(false);
+							// disabilito l'algoritmo di Nagle: le risposte su file vengono scritte con due operazioni (header e transferTo)
+							// e il segmento finale del pacchetto non deve attendere l'ack ritardato dell' header
+							client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+							// assegno il canale al worker scelto dalla politica di bilanciamento
+							selectWorker().addClient(client);
 						}
 					}
-					
-					// rimuovo la chiave dal set delle chiavi pronte 
+
+					// rimuovo la chiave dal set delle chiavi pronte
 					selectedKeysIterator.remove();
 				}
 			}
+
+			// thread interrotto, chiudo il canale di accept e il selettore smettendo di accettare connessioni
+			serverSocketChannel.close();
+			serverSelector.close();
 		} catch (IOException exception) {
 			exception.printStackTrace();
 		}
 	}
 
+	@Override
+	public int getConnectionCount() {
+
+		// sommo le connessioni di tutti i worker
+		int connections = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			connections += worker.getConnectionCount();
+		}
+		return connections;
+	}
+
+	@Override
+	public int getPausedConnections() {
+
+		// sommo i client sospesi di tutti i worker
+		int pausedConnections = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			pausedConnections += worker.getPausedConnections();
+		}
+		return pausedConnections;
+	}
+
+	@Override
+	public long getReadPauses() {
+
+		// sommo le sospensioni di tutti i worker
+		long readPauses = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			readPauses += worker.getReadPauses();
+		}
+		return readPauses;
+	}
+
+	@Override
+	public long getRejectedFrames() {
+
+		// sommo i pacchetti rifiutati di tutti i worker
+		long rejectedFrames = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			rejectedFrames += worker.getRejectedFrames();
+		}
+		return rejectedFrames;
+	}
+
+	@Override
+	public long getReapedConnections() {
+
+		// sommo le connessioni chiuse per inattività di tutti i worker
+		long reapedConnections = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			reapedConnections += worker.getReapedConnections();
+		}
+		return reapedConnections;
+	}
+
+	@Override
+	public int getQueuedRequests() {
+
+		// sommo le richieste in attesa di tutti i worker
+		int queuedRequests = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			queuedRequests += worker.getQueuedRequests();
+		}
+		return queuedRequests;
+	}
+
+	@Override
+	public double getCompressionHitRate() {
+
+		// sommo i contatori di tutti i worker
+		long candidates = 0, compressed = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			candidates += worker.getCompressorPool().getCompressionCandidates();
+			compressed += worker.getCompressorPool().getCompressedResponses();
+		}
+		return candidates == 0 ? 0 : (double) compressed / candidates;
+	}
+
+	@Override
+	public double getCompressionRatio() {
+
+		// sommo i contatori di tutti i worker
+		long uncompressed = 0, compressed = 0;
+		for (HotelierServerNIOWorker worker : workers) {
+			uncompressed += worker.getCompressorPool().getUncompressedBytes();
+			compressed += worker.getCompressorPool().getCompressedBytes();
+		}
+		return uncompressed == 0 ? 1 : (double) compressed / uncompressed;
+	}
+
+	@Override
+	public void shutdown(long timeoutMillis) throws InterruptedException {
+
+		// istante entro il quale devono terminare le richieste in volo
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		// interrompo i thread acceptor e ne attendo la terminazione, così da non assegnare nuovi client ai worker
+		for (Thread acceptor : acceptors) {
+			acceptor.interrupt();
+		}
+		for (Thread acceptor : acceptors) {
+			acceptor.join(timeoutMillis);
+		}
+
+		// avvio lo svuotamento di tutti i worker
+		for (HotelierServerNIOWorker worker : workers) {
+			worker.drain();
+		}
+		// attendo che ogni worker abbia chiuso i propri client fino alla scadenza
+		for (HotelierServerNIOWorker worker : workers) {
+			worker.awaitDrained(deadline - System.nanoTime());
+		}
+		// chiudo le connessioni rimanenti e termino i thread dei worker
+		for (HotelierServerNIOWorker worker : workers) {
+			worker.stop();
+		}
+
+		// termino la threadpool per la gestione dei pacchetti
+		shutdownRequestPool(requestPool, deadline - System.nanoTime());
+	}
+
+	// restituisce la threadpool per la gestione dei pacchetti relativa alla modalità di esecuzione passata
+	static ExecutorService createRequestPool(ExecutionMode executionMode, int requestPoolSize) {
+
+		// filtro rispetto alla modalità di esecuzione
+		return switch (executionMode) {
+			case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+			case BOUNDED -> Executors.newFixedThreadPool(requestPoolSize);
+			default -> Executors.newCachedThreadPool();
+		};
+	}
+
+	// termina la threadpool passata attendendo al più timeoutNanos la fine delle gestioni in corso, poi le interrompe
+	static void shutdownRequestPool(ExecutorService requestPool, long timeoutNanos) throws InterruptedException {
+
+		requestPool.shutdown();
+		if (!requestPool.awaitTermination(timeoutNanos, TimeUnit.NANOSECONDS)) {
+			requestPool.shutdownNow();
+		}
+	}
+
+	// restituisce il worker a cui assegnare la prossima connessione secondo la politica di bilanciamento
+	private HotelierServerNIOWorker selectWorker() {
+
+		// filtro rispetto alla politica di bilanciamento
+		return switch (balancingPolicy) {
+			case LEAST_LOAD -> selectLeastLoadedWorker();
+			default -> selectNextWorker();
+		};
+	}
+
+	// restituisce il prossimo worker secondo la politica round robin
+	private HotelierServerNIOWorker selectNextWorker() {
+		return workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+	}
+
+	// restituisce true se il sistema operativo supporta SO_REUSEPORT per i canali di accept, false altrimenti
+	private static boolean isReusePortSupported() throws IOException {
+
+		try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
+			return serverSocketChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+		}
+	}
+
+	// restituisce il worker con il minor numero di connessioni attive
+	private HotelierServerNIOWorker selectLeastLoadedWorker() {
+
+		var leastLoaded = workers[0];
+		// itero i worker mantenendo quello con meno connessioni
+		for (HotelierServerNIOWorker worker : workers) {
+			if (worker.getConnectionCount() < leastLoaded.getConnectionCount()) {
+				leastLoaded = worker;
+			}
+		}
+		return leastLoaded;
+	}
+
 }
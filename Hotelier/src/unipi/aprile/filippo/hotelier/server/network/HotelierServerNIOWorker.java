@@ -0,0 +1,475 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
+
+public class HotelierServerNIOWorker implements Runnable {
+
+	/**
+	 * La classe HotelierServerNIOWorker rappresenta uno dei selettori worker del serverNIO.
+	 * Ogni worker possiede un proprio selettore e un proprio thread e gestisce le operazioni di lettura e scrittura
+	 * dei soli client che gli sono stati assegnati dal serverNIO (acceptor).
+	 *
+	 * Il worker si occupa di:
+	 * • registrare sul proprio selettore i canali dei client accettati dal serverNIO;
+	 * • gestire i pacchetti ricevuti dai client delegandoli alla thread pool condivisa del serverNIO;
+	 * • gestire la disconnessione dei client, chiudendeone le risorse associate e rimuovendone la chiave dal selettore;
+	 *
+	 * Il worker tiene traccia del numero di client con lettura sospesa per backpressure e del numero totale di sospensioni
+	 * (vedi HotelierServerClientHandler).
+	 *
+	 * Le connessioni inattive vengono chiuse dopo idleTimeout secondi tramite un hashed timing wheel
+	 * (HotelierServerTimingWheel) fatto avanzare ad ogni iterazione del ciclo di selezione: ogni clientHandler viene inserito
+	 * nella ruota con scadenza pari alla sua ultima attività più il timeout e, alla scadenza, se nel frattempo il client
+	 * è stato attivo o è occupato (isBusy, con richieste in volo o sottoscrizioni ai rank locali) viene reinserito con la nuova scadenza, altrimenti
+	 * viene chiuso tramite il normale percorso di disconnessione (close() e handleClientDisconnect()). Quando la ruota non è vuota il selettore si risveglia almeno una volta per tick.
+	 *
+	 * Il worker mantiene inoltre un pool di compressori (HotelierServerCompressorPool) condiviso dai propri client:
+	 * i compressori vengono acquisiti dai thread della pool per comprimere le risposte e dal thread del worker per decomprimere le richieste.
+	 *
+	 * I canali dei client accettati vengono passati al worker tramite una coda concorrente, in quanto la registrazione
+	 * sul selettore deve avvenire dal thread del worker: dopo l'inserimento nella coda il selettore viene risvegliato
+	 * così da effettuare la registrazione alla successiva iterazione.
+	 *
+	 * Allo spegnimento del server il worker viene svuotato (drain): continua a gestire i client assegnati e ad ogni iterazione
+	 * (almeno ogni DRAIN_POLL_MILLIS) chiude i client inattivi, ovvero senza richieste in volo nè richieste lette parzialmente
+	 * e senza letture o scritture negli ultimi DRAIN_POLL_MILLIS, così che le richieste già inviate (anche in pipelining e non ancora lette
+	 * dal canale) ricevano risposta e le connessioni vengano chiuse tra una richiesta e la successiva.
+	 * Quando non rimangono client il worker risulta svuotato; alla terminazione del thread (stop) vengono chiuse
+	 * le connessioni rimanenti e il selettore.
+	 */
+
+	// selettore del worker
+	private final Selector selector;
+	// threadpool condivisa per la gestione dei pacchetti
+	private final ExecutorService requestPool;
+	// coda dei canali accettati in attesa di registrazione sul selettore
+	private final Queue<SocketChannel> pendingClients;
+	// coda dei clientHandler che hanno richiesto l'abilitazione della scrittura
+	private final Queue<HotelierServerClientHandler> pendingWrites;
+	// set dei clientHandler gestiti dal worker (acceduto solo dal thread del worker)
+	private final Set<HotelierServerClientHandler> clientHandlers;
+	// numero di connessioni gestite dal worker, utilizzato dal serverNIO per il bilanciamento
+	private final AtomicInteger connectionCount;
+	// pool di buffer utilizzato dai clientHandler del worker
+	private final HotelierServerBufferPool bufferPool;
+	// numero di client con lettura sospesa e numero totale di sospensioni della lettura
+	private final AtomicInteger pausedConnections;
+	private final LongAdder readPauses;
+	// numero di pacchetti di richiesta rifiutati perchè più grandi della dimensione massima
+	private final LongAdder rejectedFrames;
+	// numero di slot del timing wheel delle connessioni inattive
+	private static final int IDLE_WHEEL_SLOTS = 64;
+	// timing wheel delle connessioni inattive, null se la chiusura delle connessioni inattive è disattivata
+	private final HotelierServerTimingWheel<HotelierServerClientHandler> idleWheel;
+	// secondi di inattività dopo i quali viene chiusa una connessione in nanosecondi
+	private final long idleTimeoutNanos;
+	// numero di connessioni chiuse per inattività
+	private final LongAdder reapedConnections;
+	// pool di compressori utilizzati dai clientHandler del worker
+	private final HotelierServerCompressorPool compressorPool;
+	// numero di richieste dei client del worker in attesa di essere gestite da un thread della pool
+	private final AtomicInteger queuedRequests;
+	// metriche del server e booleano che indica se vengono registrate
+	private final HotelierServerMetrics metrics;
+	private final boolean tracing;
+	// millisecondi massimi di attesa sul selettore durante lo svuotamento
+	private static final long DRAIN_POLL_MILLIS = 50;
+	// booleano che indica se il worker è in svuotamento e latch rilasciato quando non rimangono client
+	private volatile boolean isDraining;
+	private final CountDownLatch drained;
+	// thread del worker
+	private final Thread thread;
+
+	public HotelierServerNIOWorker(ExecutorService requestPool) throws IOException {
+		// setto requestPool a quella passata
+		this.requestPool = requestPool;
+		// apro il selettore del worker
+		selector = Selector.open();
+		// inizializzo la coda dei canali da registrare
+		pendingClients = new ConcurrentLinkedQueue<>();
+		// inizializzo la coda delle richieste di scrittura
+		pendingWrites = new ConcurrentLinkedQueue<>();
+		// inizializzo il set dei clientHandler
+		clientHandlers = new HashSet<>();
+		// inizializzo il numero di connessioni a 0
+		connectionCount = new AtomicInteger();
+		// ottengo i config del server
+		var serverConfig = HotelierServerConfigManager.getServerConfig();
+		// creo il pool di buffer del worker (diretti o su heap in base alla configurazione)
+		bufferPool = new HotelierServerBufferPool(serverConfig.isDirectBuffers());
+		// inizializzo i contatori di backpressure
+		pausedConnections = new AtomicInteger();
+		readPauses = new LongAdder();
+		// inizializzo il contatore dei pacchetti rifiutati
+		rejectedFrames = new LongAdder();
+		// ottengo il timeout di inattività dai config e creo il timing wheel con un tick di un secondo (se il timeout è attivo)
+		idleTimeoutNanos = TimeUnit.SECONDS.toNanos(serverConfig.getIdleTimeout());
+		idleWheel = idleTimeoutNanos > 0 ? new HotelierServerTimingWheel<>(IDLE_WHEEL_SLOTS, TimeUnit.SECONDS.toNanos(1)) : null;
+		reapedConnections = new LongAdder();
+		// creo il pool di compressori del worker
+		compressorPool = new HotelierServerCompressorPool();
+		// inizializzo il numero di richieste in attesa
+		queuedRequests = new AtomicInteger();
+		// ottengo istanza delle metriche (singletone)
+		metrics = HotelierServerMetrics.getInstance();
+		tracing = metrics.isTracingEnabled();
+		// inizializzo il latch dello svuotamento
+		drained = new CountDownLatch(1);
+
+		// avvio il thread
+		thread = new Thread(this);
+		thread.start();
+	}
+
+	// assegna al worker il canale di un client appena accettato
+	public void addClient(SocketChannel client) {
+
+		// incremento il numero di connessioni gestite
+		connectionCount.incrementAndGet();
+		// inserisco il canale nella coda dei canali da registrare
+		pendingClients.add(client);
+		// risveglio il selettore per effettuare la registrazione
+		selector.wakeup();
+	}
+
+	// richiede l'abilitazione della scrittura per il clientHandler passato, invocato dai thread della pool
+	public void requestWrite(HotelierServerClientHandler clientHandler) {
+
+		// inserisco il clientHandler nella coda delle richieste di scrittura
+		pendingWrites.add(clientHandler);
+		// risveglio il selettore per abilitare la scrittura
+		selector.wakeup();
+	}
+
+	// restituisce il numero di connessioni gestite dal worker
+	public int getConnectionCount() {
+		return connectionCount.get();
+	}
+
+	// restituisce la threadpool che gestisce le richieste dei client
+	public ExecutorService getRequestPool() {
+		return requestPool;
+	}
+
+	// restituisce il pool di buffer del worker
+	public HotelierServerBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	// aggiorna i contatori alla sospensione della lettura di un client
+	public void readPaused() {
+		pausedConnections.incrementAndGet();
+		readPauses.increment();
+	}
+
+	// aggiorna i contatori al ripristino della lettura di un client
+	public void readResumed() {
+		pausedConnections.decrementAndGet();
+	}
+
+	// restituisce il numero di client con lettura sospesa
+	public int getPausedConnections() {
+		return pausedConnections.get();
+	}
+
+	// restituisce il numero totale di sospensioni della lettura
+	public long getReadPauses() {
+		return readPauses.sum();
+	}
+
+	// aggiorna il contatore al rifiuto di un pacchetto di richiesta troppo grande
+	public void frameRejected() {
+		rejectedFrames.increment();
+	}
+
+	// restituisce il numero di pacchetti di richiesta rifiutati
+	public long getRejectedFrames() {
+		return rejectedFrames.sum();
+	}
+
+	// restituisce il numero di connessioni chiuse per inattività
+	public long getReapedConnections() {
+		return reapedConnections.sum();
+	}
+
+	// restituisce il pool di compressori del worker
+	public HotelierServerCompressorPool getCompressorPool() {
+		return compressorPool;
+	}
+
+	// aggiorna il contatore all' inserimento di una richiesta nella coda di un client
+	public void requestQueued() {
+		queuedRequests.incrementAndGet();
+	}
+
+	// aggiorna il contatore al prelievo di una richiesta dalla coda di un client
+	public void requestDequeued() {
+		queuedRequests.decrementAndGet();
+	}
+
+	// restituisce il numero di richieste in attesa di essere gestite
+	public int getQueuedRequests() {
+		return queuedRequests.get();
+	}
+
+	// avvia lo svuotamento del worker, invocato allo spegnimento del server
+	public void drain() {
+
+		isDraining = true;
+		// risveglio il selettore per interrompere la lettura dei client
+		selector.wakeup();
+	}
+
+	// attende al più timeoutNanos che tutti i client del worker siano stati chiusi
+	public void awaitDrained(long timeoutNanos) throws InterruptedException {
+		drained.await(timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// interrompe il thread del worker, il quale chiude tutte le connessioni e il selettore, e ne attende la terminazione
+	public void stop() throws InterruptedException {
+		thread.interrupt();
+		thread.join();
+	}
+
+	@Override
+	public void run() {
+
+		try {
+
+			// itero finchè il thread non viene interotto
+			while (!Thread.interrupted()) {
+
+				// mi blocco in attesa di chiavi di canali pronti per IO (al più un tick se ci sono connessioni da controllare)
+				selector.select(isDraining ? DRAIN_POLL_MILLIS : idleWheel == null || idleWheel.isEmpty() ? 0 : idleWheel.getTickMillis());
+				// istante di inizio dell' iterazione (esclusa l'attesa sul selettore)
+				long iterationStart = tracing ? System.nanoTime() : 0;
+
+				// registro sul selettore i canali assegnati al worker
+				registerPendingClients();
+				// abilito la scrittura per i client che hanno risposte da inviare
+				enablePendingWrites();
+
+				// creo un iterato per il set di chiavi dei canali pronti
+				Iterator<SelectionKey> selectedKeysIterator = selector.selectedKeys().iterator();
+
+				// itero il set delle chiavi
+				while (selectedKeysIterator.hasNext()) {
+
+					// prendo la chiave dall' iteratore
+					SelectionKey selectedKey = selectedKeysIterator.next();
+					// rimuovo la chiave dal set delle chiavi pronte
+					selectedKeysIterator.remove();
+
+					// ottengo il clienthandler associato alla chiave del client
+					HotelierServerClientHandler clientHandler = (HotelierServerClientHandler) selectedKey.attachment();
+
+					// Se la chiave è valida, predisposta alle operazioni di lettura ed è possibile leggere dal canale associato
+					if (selectedKey.isValid() && selectedKey.isReadable()) {
+
+						// eseguo la lettura della richiesta del client e ottengo il messaggio di richiesta
+						HotelierServerRequest request = clientHandler.handleRead();
+
+						// controllo di aver terminato correttamente la lettura del pacchetto di richiesta
+						if (request != null) {
+
+							// delego la gestion del pacchetto alla threadpool mantenendo l'ordine delle richieste del client
+							clientHandler.submitRequest(request, requestPool);
+							// sospendo la lettura se il client ha superato i limiti di backpressure
+							clientHandler.pauseReadIfOverloaded();
+						}
+
+						// controllo se il client si è disconesso
+						if (!clientHandler.isConnected()) {
+							closeClient(selectedKey, clientHandler);
+						}
+					}
+
+					// Se la chiave è valida, predisposta alle operazioni di scrittura ed è possibile scrivere sul canale associato
+					if (selectedKey.isValid() && selectedKey.isWritable()) {
+
+						// eseguo la scrittura del pacchetto di risposta per il client
+						clientHandler.handleWrite();
+
+						// controllo se il client si è disconesso
+						if (!clientHandler.isConnected()) {
+							closeClient(selectedKey, clientHandler);
+						}
+					}
+				}
+
+				// chiudo le connessioni inattive
+				expireIdleClients();
+				// se il worker è in svuotamento chiudo i client inattivi
+				if (isDraining) {
+					closeIdleClients(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(DRAIN_POLL_MILLIS));
+				}
+
+				// registro la durata dell' iterazione
+				if (tracing) {
+					metrics.recordTimer(Timer.SELECTOR_LOOP, System.nanoTime() - iterationStart);
+				}
+			}
+
+			// thread interrotto, chiudo tutte le connessioni e il selettore
+			for (HotelierServerClientHandler clientHandler : new ArrayList<>(clientHandlers)) {
+				closeClient(clientHandler.getClientKey(), clientHandler);
+			}
+			// chiudo anche i canali accettati ma non ancora registrati sul selettore
+			closePendingClients();
+			selector.close();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	// registra sul selettore tutti i canali presenti nella coda dei canali da registrare
+	private void registerPendingClients() {
+
+		SocketChannel client;
+		// itero finchè la coda non è vuota
+		while ((client = pendingClients.poll()) != null) {
+
+			try {
+				// registro il client sul selettore per operazioni di lettura (la scrittura viene abilitata solo quando necessario)
+				SelectionKey clientKey = client.register(selector, SelectionKey.OP_READ);
+				// creo un clientHandler per gestirne le operazioni
+				var clientHandler = new HotelierServerClientHandler(clientKey, this);
+				// allego il clientHandler alla chiave del client
+				clientKey.attach(clientHandler);
+				// aggiungo il clientHandler al set dei clientHandler del worker
+				clientHandlers.add(clientHandler);
+				// inserisco il clientHandler nel timing wheel delle connessioni inattive
+				if (idleWheel != null) {
+					idleWheel.schedule(clientHandler, clientHandler.getLastActivity() + idleTimeoutNanos);
+				}
+
+			} catch (IOException exception) {
+
+				// registrazione fallita, chiudo il canale e decremento il numero di connessioni
+				closeChannel(client);
+				connectionCount.decrementAndGet();
+			}
+		}
+	}
+
+	// chiude tutti i canali presenti nella coda dei canali da registrare
+	private void closePendingClients() {
+
+		SocketChannel client;
+		// itero finchè la coda non è vuota
+		while ((client = pendingClients.poll()) != null) {
+			// chiudo il canale e decremento il numero di connessioni
+			closeChannel(client);
+			connectionCount.decrementAndGet();
+		}
+	}
+
+	// abilita la scrittura per tutti i clientHandler presenti nella coda delle richieste di scrittura
+	private void enablePendingWrites() {
+
+		HotelierServerClientHandler clientHandler;
+		// itero finchè la coda non è vuota
+		while ((clientHandler = pendingWrites.poll()) != null) {
+			clientHandler.enableWrite();
+		}
+	}
+
+	// chiude i client del worker inattivi dall' istante passato e rilascia il latch dello svuotamento se non rimangono client
+	private void closeIdleClients(long idleSince) {
+
+		// itero una copia del set dei client, in quanto la chiusura li rimuove dal set
+		for (HotelierServerClientHandler clientHandler : new ArrayList<>(clientHandlers)) {
+			if (clientHandler.isIdle() && clientHandler.getLastActivity() < idleSince) {
+				closeClient(clientHandler.getClientKey(), clientHandler);
+			}
+		}
+		if (clientHandlers.isEmpty() && pendingClients.isEmpty()) {
+			drained.countDown();
+		}
+	}
+
+	// fa avanzare il timing wheel delle connessioni inattive fino all' istante attuale
+	private void expireIdleClients() {
+
+		// controllo che la chiusura delle connessioni inattive sia attiva
+		if (idleWheel != null) {
+			long now = System.nanoTime();
+			idleWheel.advance(now, clientHandler -> checkIdleClient(clientHandler, now));
+		}
+	}
+
+	// chiude il client passato se inattivo da almeno idleTimeout e non occupato, altrimenti lo reinserisce nel timing wheel
+	private void checkIdleClient(HotelierServerClientHandler clientHandler, long now) {
+
+		// controllo che il client non sia già stato chiuso
+		if (!clientHandlers.contains(clientHandler)) {
+			return;
+		}
+
+		// calcolo la scadenza rispetto all' ultima attività del client
+		long deadline = clientHandler.getLastActivity() + idleTimeoutNanos;
+		// il client occupato non viene chiuso, lo reinserisco con scadenza a partire dall' istante attuale
+		if (deadline <= now && clientHandler.isBusy()) {
+			idleWheel.schedule(clientHandler, now + idleTimeoutNanos);
+		// controllo se il client è rimasto inattivo fino alla scadenza
+		} else if (deadline <= now) {
+			// chiudo il client e incremento il numero di connessioni chiuse per inattività
+			reapedConnections.increment();
+			closeClient(clientHandler.getClientKey(), clientHandler);
+		} else {
+			// il client è stato attivo, lo reinserisco con la nuova scadenza
+			idleWheel.schedule(clientHandler, deadline);
+		}
+	}
+
+	// chiude le risorse associate al client e ne rimuove la chiave dal selettore
+	private void closeClient(SelectionKey selectedKey, HotelierServerClientHandler clientHandler) {
+
+		try {
+			// chiudo le risosre associate alla comunicazione con  il client
+			clientHandler.close();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+
+		// richiedo la rimozione della chiave associata al client dal selettore
+		selectedKey.cancel();
+		// rimuovo il clientHandler dal set e decremento il numero di connessioni
+		if (clientHandlers.remove(clientHandler)) {
+			connectionCount.decrementAndGet();
+			// se la lettura del client era sospesa aggiorno il numero di client sospesi
+			if (clientHandler.isReadPaused()) {
+				readResumed();
+			}
+		}
+	}
+
+	// chiude il canale passato ignorando eventuali eccezioni
+	private void closeChannel(SocketChannel client) {
+
+		try {
+			client.close();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+}
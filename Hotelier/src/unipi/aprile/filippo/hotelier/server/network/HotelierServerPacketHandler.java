@@ -1,7 +1,12 @@
 package unipi.aprile.filippo.hotelier.server.network;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierReview;
@@ -9,17 +14,29 @@ import unipi.aprile.filippo.hotelier.common.entities.HotelierUser;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketBadge;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketBadgeResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketCapabilities;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketCapabilitiesResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketErrorResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotel;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelBatch;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelBatchResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelList;
-import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListChunk;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListPage;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogin;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLoginResponse;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogout;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogoutResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketReview;
 import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketReviewResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketSubscribe;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketSubscriptionResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketUnsubscribe;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Stage;
 import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterHotels;
 import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterReviews;
 import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterUsers;
@@ -31,8 +48,54 @@ public class HotelierServerPacketHandler {
 	 * e li smista ai metodi appropriati per la loro elaborazione.
 	 * La classe utilizza i registri per utenti, hotel e recensioni per mantenere e aggiornare 
 	 * le informazioni necessarie e il loginHandler per gestire le sessioni di login degli utenti.
+	 * Mantiene inoltre le funzionalità opzionali del protocollo concordate con il client tramite HotelierPacketCapabilities.
+	 * Se le metriche sono attive registra per ogni tipo di pacchetto la durata della gestione (HANDLE) e le risposte di errore.
+	 * 
+	 * I metodi di gestione sono registrati una sola volta in una tabella indicizzata per id del pacchetto (HotelierPacketRegistry):
+	 * lo smistamento di un pacchetto consiste quindi in una ricerca del tipo tramite ClassValue e un accesso all' array,
+	 * e aggiungere un pacchetto di richiesta richiede solo la registrazione del relativo metodo di gestione.
+	 * 
+	 * Le richieste hotelList possono essere paginate o in streaming (HotelierPacketHotelList): le pagine e i chunk sono viste
+	 * (subList) della lista ordinata in cache, quindi non viene copiato alcun hotel. Il cursore restituito con ogni pagina è opaco
+	 * per il client e contiene la versione dell' ordinamento della lista e la posizione del primo hotel della pagina successiva:
+	 * se nel frattempo il calcolo dei rank ha cambiato l'ordine degli hotel il cursore non è più valido e la ricerca va ripetuta,
+	 * così che il client non riceva mai hotel duplicati o mancanti tra una pagina e l'altra.
+	 * 
+	 * Le sottoscrizioni ai rank locali (HotelierPacketSubscribe) registrano la connessione (HotelierServerProtocol) in
+	 * HotelierServerSubscriptions per le sole città presenti nel registro; le città sottoscritte vengono mantenute dall' handler
+	 * così che alla disconnessione del client tutte le sottoscrizioni vengano annullate. Sottoscrizioni, annullamenti e disconnessione
+	 * avvengono con la lock sulle città sottoscritte: una sottoscrizione gestita dopo la disconnessione (isDisconnected) viene
+	 * rifiutata, così che la connessione chiusa non resti mai registrata in HotelierServerSubscriptions.
 	 */
 	
+	// metodo di gestione di un tipo di pacchetto di richiesta
+	@FunctionalInterface
+	private interface PacketHandler<P extends HotelierPacket> {
+		HotelierPacket handle(HotelierServerPacketHandler packetHandler, P packet);
+	}
+	
+	// metodi di gestione indicizzati per id del pacchetto di richiesta, null se pacchetto non gestito
+	private static final PacketHandler<?>[] packetHandlers;
+	
+	static {
+		packetHandlers = new PacketHandler<?>[HotelierPacketRegistry.getPacketTypeCount()];
+		register(HotelierPacketLogin.class, HotelierServerPacketHandler::handleLoginPacket);
+		register(HotelierPacketLogout.class, HotelierServerPacketHandler::handleLogoutPacket);
+		register(HotelierPacketHotel.class, HotelierServerPacketHandler::handleHotelPacket);
+		register(HotelierPacketHotelList.class, HotelierServerPacketHandler::handleHotelListPacket);
+		register(HotelierPacketReview.class, HotelierServerPacketHandler::handleReviewPacket);
+		register(HotelierPacketBadge.class, HotelierServerPacketHandler::handleBadgePacket);
+		register(HotelierPacketCapabilities.class, HotelierServerPacketHandler::handleCapabilitiesPacket);
+		register(HotelierPacketHotelBatch.class, HotelierServerPacketHandler::handleHotelBatchPacket);
+		register(HotelierPacketSubscribe.class, HotelierServerPacketHandler::handleSubscribePacket);
+		register(HotelierPacketUnsubscribe.class, HotelierServerPacketHandler::handleUnsubscribePacket);
+	}
+	
+	// registra il metodo di gestione passato per i pacchetti di richiesta della classe passata
+	private static <P extends HotelierPacket> void register(Class<P> packetClass, PacketHandler<P> packetHandler) {
+		packetHandlers[HotelierPacketRegistry.getPacketType(packetClass).getPacketID()] = packetHandler;
+	}
+	
 	// utente relativo alla connessione Tcp, utilizzato per controllare se loggato o meno
 	private HotelierUser userClient;
 	// registro degli hotel
@@ -43,8 +106,32 @@ public class HotelierServerPacketHandler {
 	private final HotelierServerRegisterReviews reviewRegister;
 	// handler utenti loggati
 	private final HotelierServerLoginHandler loginHandler;
+	// cache delle risposte hotelList già serializzate
+	private final HotelierServerHotelListCache hotelListCache;
+	// sottoscrizioni ai rank locali, connessione relativa all' handler e città sottoscritte (normalizzate)
+	private final HotelierServerSubscriptions subscriptions;
+	private final HotelierServerProtocol protocol;
+	private final Set<String> subscribedCities;
+	// booleano che indica se il client si è disconnesso (acceduto con la lock sulle città sottoscritte)
+	private boolean isDisconnected;
+	// dimensione in byte oltre la quale le risposte vengono compresse, 0 se compressione disattivata sul server
+	private final int compressionThreshold;
+	// numero massimo di ricerche in un pacchetto di hotel multipli
+	private final int maxBatchSize;
+	// numero di hotel per chunk delle risposte hotelList in streaming se non indicato dal client
+	private final int hotelListChunkSize;
+	// dimensione in byte del cursore delle pagine hotelList: versione della lista + posizione
+	private static final int CURSOR_SIZE = Long.BYTES + Integer.BYTES;
+	// booleano che indica se il client ha abilitato la compressione (scritto dai thread della pool, letto anche dal thread
+	// del calcolo dei rank durante i push)
+	private volatile boolean compressionEnabled;
+	// metriche del server e booleano che indica se vengono registrate
+	private final HotelierServerMetrics metrics;
+	private final boolean tracing;
 
-	public HotelierServerPacketHandler() {
+	public HotelierServerPacketHandler(HotelierServerProtocol protocol) {
+		// setto la connessione a quella passata
+		this.protocol = protocol;
 		// recupero istanza registro degli hotel
 		hotelRegister = HotelierServerRegisterHotels.getInstance();
 		// recupero istanza registro degli utenti
@@ -53,21 +140,54 @@ public class HotelierServerPacketHandler {
 		reviewRegister = HotelierServerRegisterReviews.getInstance();
 		// recupero istanza handler login
 		loginHandler = HotelierServerLoginHandler.getInstance();
+		// recupero istanza cache delle risposte hotelList
+		hotelListCache = HotelierServerHotelListCache.getInstance();
+		// recupero istanza sottoscrizioni ai rank locali e inizializzo il set delle città sottoscritte
+		subscriptions = HotelierServerSubscriptions.getInstance();
+		subscribedCities = new HashSet<>();
+		// ottengo la soglia di compressione dai config
+		compressionThreshold = HotelierServerConfigManager.getServerConfig().getCompressionThreshold();
+		// ottengo il numero massimo di ricerche per pacchetto dai config
+		maxBatchSize = HotelierServerConfigManager.getServerConfig().getMaxBatchSize();
+		// ottengo il numero di hotel per chunk dai config
+		hotelListChunkSize = HotelierServerConfigManager.getServerConfig().getHotelListChunkSize();
+		// recupero istanza delle metriche
+		metrics = HotelierServerMetrics.getInstance();
+		tracing = metrics.isTracingEnabled();
 	}
 
 	// restituisce pacchetto di risposta in base al pacchetto passato come paramentro
 	public HotelierPacket handlePacket(HotelierPacket packet) {
+
+		// ottengo id del pacchetto dal registry
+		int packetID = HotelierPacketRegistry.getIDFromPacket(packet);
+		// se le metriche non sono attive gestisco direttamente il pacchetto
+		if (!tracing) {
+			return dispatchPacket(packetID, packet);
+		}
+
+		// gestisco il pacchetto misurandone la durata
+		long handleStart = System.nanoTime();
+		HotelierPacket response = dispatchPacket(packetID, packet);
+		metrics.record(packetID, Stage.HANDLE, System.nanoTime() - handleStart);
+		// aggiorno il contatore degli errori se la risposta è un pacchetto di errore
+		if (response instanceof HotelierPacketErrorResponse) {
+			metrics.errorResponded(packetID);
+		}
+		return response;
+	}
+
+	// restituisce pacchetto di risposta smistando il pacchetto passato (con id passato) al metodo di gestione relativo
+	@SuppressWarnings("unchecked")
+	private HotelierPacket dispatchPacket(int packetID, HotelierPacket packet) {
 		
-		// filtro rispetto a instanza del pacchetto passato
-		return switch (packet) {
-			case HotelierPacketLogin loginPacket -> handleLoginPacket((HotelierPacketLogin) packet);
-			case HotelierPacketLogout logoutPacket -> handleLogoutPacket((HotelierPacketLogout) packet);
-			case HotelierPacketHotel hotelPacket -> handleHotelPacket((HotelierPacketHotel) packet);
-			case HotelierPacketHotelList hotelListPacket -> handleHotelListPacket((HotelierPacketHotelList) packet);
-			case HotelierPacketReview reviewPacket -> handleReviewPacket((HotelierPacketReview) packet);
-			case HotelierPacketBadge badgePacket -> handleBadgePacket((HotelierPacketBadge) packet);
-			default -> packetErrorResponse("Errore: Pacchetto non supportato!");
-		};
+		// ottengo il metodo di gestione relativo a id del pacchetto
+		var packetHandler = packetID >= 0 && packetID < packetHandlers.length ? (PacketHandler<HotelierPacket>) packetHandlers[packetID] : null;
+		// controllo che il pacchetto sia gestito
+		if (packetHandler == null) {
+			return packetErrorResponse("Errore: Pacchetto non supportato!");
+		}
+		return packetHandler.handle(this, packet);
 	}
 	
 	// restitusce pacchetto di risposta login in caso di successo, pacchetto di errore in caso di fallimento
@@ -153,24 +273,133 @@ public class HotelierServerPacketHandler {
 		return packetHotelResponse;
 	}
 	
+	// restitusce pacchetto di risposta hotel multipli in caso di successo, pacchetto di errore in caso di fallimento
+	private HotelierPacket handleHotelBatchPacket(HotelierPacketHotelBatch packet) {
+
+		// ottengo le ricerche del pacchetto
+		var lookups = packet.getHotels();
+		// controllo che sia presente almeno una ricerca
+		if (lookups == null || lookups.isEmpty()) {
+			return packetErrorResponse("Nessun hotel richiesto.");
+		}
+		// controllo che le ricerche non superino il limite
+		if (lookups.size() > maxBatchSize) {
+			return packetErrorResponse("Troppi hotel richiesti, massimo " + maxBatchSize + " per richiesta.");
+		}
+
+		// ottengo nomi e città degli hotel (le ricerche null non corrispondono ad alcun hotel)
+		List<String> hotelNames = new ArrayList<>(lookups.size());
+		List<String> cities = new ArrayList<>(lookups.size());
+		for (HotelierPacketHotel lookup : lookups) {
+			hotelNames.add(lookup != null ? lookup.getHotelName() : null);
+			cities.add(lookup != null ? lookup.getCity() : null);
+		}
+
+		// ottengo gli hotel con un' unica scansione del registro e restituisco un pacchetto di risposta contenente gli hotel
+		// nello stesso ordine delle ricerche (null se non trovato)
+		return new HotelierPacketHotelBatchResponse(hotelRegister.getHotelsByNameAndCity(hotelNames, cities));
+	}
+	
 	// restitusce pacchetto di risposta hotelList in caso di successo, pacchetto di errore in caso di fallimento
 	private HotelierPacket handleHotelListPacket(HotelierPacketHotelList packet) {
 
 		// ottengo città degli hotel 
 		var city = packet.getCity();
-		// ottengo lista di hotel aventi città passata
-		var hotels = hotelRegister.getHotelsByCity(city);
+		
+		// controllo se è richiesta l'intera lista
+		if (packet.isFullList()) {
+			// ottengo dalla cache il pacchetto di risposta contenente la lista di hotel aventi città passata ordinata per rank locale
+			var packetHotelListResponse = hotelListCache.getHotelListResponse(city);
+			// nessun hotel trovato
+			if (packetHotelListResponse == null) {
+				// restituisco un pacchetto di errore in cui notifico che non esiste nessun hotel per quella città
+				return packetErrorResponse("Nessun hotel trovato.");
+			}
+			// hotel trovati
+			// restituisco il pacchetto di risposta già serializzato contentente la lista di hotel ordinata
+			return packetHotelListResponse;
+		}
+		
+		// controllo che il numero di hotel richiesti sia valido
+		int limit = packet.getLimit();
+		if (limit < 0) {
+			return packetErrorResponse("Numero di hotel richiesti non valido.");
+		}
+		// ottengo dalla cache la lista di hotel aventi città passata ordinata per rank locale
+		var hotels = hotelListCache.getHotelList(city);
 		// nessun hotel trovato
-		if (hotels.isEmpty()) {
-			// restituisco un pacchetto di errore in cui notifico che non esiste nessun hotel per quella città
+		if (hotels == null) {
 			return packetErrorResponse("Nessun hotel trovato.");
 		}
-		// hotel trovati
-		// ordino lista di hotel in modo crescente rispetto al rank locale
-		Collections.sort(hotels, Comparator.comparingInt(HotelierHotel::getLocalRank));
-		// restituisco un pacchetto di risposta contentente la lista di hotel ordinata
-		HotelierPacketHotelListResponse packetHotelListResponse = new HotelierPacketHotelListResponse(hotels);
-		return packetHotelListResponse;
+		
+		// ottengo la versione dell' ordinamento della lista
+		long version = HotelierServerHotelListCache.getListVersion(hotels);
+		int offset = 0;
+		// se presente ottengo dal cursore la posizione del primo hotel da restituire
+		if (packet.getCursor() != null) {
+			offset = decodeCursor(packet.getCursor(), version, hotels.size());
+			// cursore non valido o relativo ad un ordinamento precedente
+			if (offset == -1) {
+				return packetErrorResponse("Cursore non valido o scaduto, ripetere la ricerca.");
+			}
+		}
+		
+		// controllo se è richiesto lo streaming della lista
+		if (packet.isStream()) {
+			// restituisco i chunk degli hotel a partire dalla posizione del cursore
+			return streamHotelList(hotels, offset, limit > 0 ? limit : hotelListChunkSize);
+		}
+		
+		// ottengo la posizione successiva all' ultimo hotel della pagina (tutti gli hotel rimanenti se limit è 0)
+		int end = limit == 0 ? hotels.size() : offset + Math.min(limit, hotels.size() - offset);
+		// creo il cursore della pagina successiva se rimangono hotel
+		String nextCursor = end < hotels.size() ? encodeCursor(version, end) : null;
+		// restituisco la pagina di hotel
+		return new HotelierPacketHotelListPage(hotels.subList(offset, end), nextCursor, hotels.size());
+	}
+	
+	// restituisce la risposta in streaming formata dai chunk di chunkSize hotel della lista passata a partire da offset
+	private HotelierPacket streamHotelList(List<HotelierHotel> hotels, int offset, int chunkSize) {
+		
+		List<HotelierPacket> chunks = new ArrayList<>();
+		// divido gli hotel rimanenti in chunk, l'ultimo dei quali contrassegnato come tale
+		for (int start = offset; start < hotels.size(); ) {
+			int end = start + Math.min(chunkSize, hotels.size() - start);
+			chunks.add(new HotelierPacketHotelListChunk(hotels.subList(start, end), end == hotels.size()));
+			start = end;
+		}
+		// se non rimangono hotel invio comunque l'ultimo chunk (vuoto)
+		if (chunks.isEmpty()) {
+			chunks.add(new HotelierPacketHotelListChunk(List.of(), true));
+		}
+		return new HotelierServerStreamedPacket(chunks);
+	}
+	
+	// restituisce il cursore opaco relativo alla versione della lista e alla posizione passate
+	static String encodeCursor(long version, int offset) {
+		ByteBuffer cursor = ByteBuffer.allocate(CURSOR_SIZE).putLong(version).putInt(offset);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.array());
+	}
+	
+	// restituisce la posizione contenuta nel cursore passato, -1 se il cursore non è valido o non è relativo alla versione passata
+	static int decodeCursor(String cursor, long version, int size) {
+		
+		byte[] bytes;
+		try {
+			bytes = Base64.getUrlDecoder().decode(cursor);
+		} catch (IllegalArgumentException exception) {
+			return -1;
+		}
+		// controllo dimensione, versione e posizione del cursore
+		if (bytes.length != CURSOR_SIZE) {
+			return -1;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		if (buffer.getLong() != version) {
+			return -1;
+		}
+		int offset = buffer.getInt();
+		return offset >= 0 && offset <= size ? offset : -1;
 	}
 	
 	// restitusce pacchetto di risposta review in caso di successo, pacchetto di errore in caso di fallimento
@@ -189,6 +418,12 @@ public class HotelierServerPacketHandler {
 		var rate = packet.getRate();
 		var rating = packet.getRatings();
 
+		// controllo che siano presenti tutti i campi della recensione
+		if (hotelName == null || city == null || rating == null) {
+			// restituisco un pacchetto di errore in cui notifico che la recensione è incompleta
+			return packetErrorResponse("Recensione non registata. Hotel, città e punteggi sono obbligatori.");
+		}
+
 		// ottengo hotel avente nome e città passati
 		var hotel = hotelRegister.getHotelByNameAndCity(hotelName, city);
 		// hotel non trovato
@@ -216,6 +451,8 @@ public class HotelierServerPacketHandler {
 		updateHotelRating(hotel, review);
 		// incremento il numero di recensioni relative all' hotel di 1
 		hotel.incrementReviewCount();
+		// invalido la risposta hotelList della città dell' hotel
+		hotelListCache.invalidate(hotel.getCity());
 		// Aggiorni il rate medio dell' hotel
 		// peristo la lista degli hotel del registro sul disco
 		hotelRegister.serialize();
@@ -239,6 +476,115 @@ public class HotelierServerPacketHandler {
 		return packetBadgeResponse;
 	}
 
+	// restitusce pacchetto di risposta capabilities contenente le funzionalità richieste dal client e abilitate dal server
+	private HotelierPacket handleCapabilitiesPacket(HotelierPacketCapabilities packet) {
+
+		// abilito la compressione se richiesta dal client e attiva sul server
+		compressionEnabled = packet.hasCapability(HotelierPacketCapabilities.CAPABILITY_COMPRESSION) && compressionThreshold > 0;
+		// ottengo la maschera delle funzionalità abilitate
+		int capabilities = compressionEnabled ? HotelierPacketCapabilities.CAPABILITY_COMPRESSION : 0;
+		// restituisco un pacchetto di risposta contenente le funzionalità abilitate e la soglia di compressione
+		HotelierPacketCapabilitiesResponse packetCapabilitiesResponse = new HotelierPacketCapabilitiesResponse(capabilities, compressionEnabled ? compressionThreshold : 0);
+		return packetCapabilitiesResponse;
+	}
+	
+	// restituisce true se il client ha abilitato la compressione, false altrimenti
+	public boolean isCompressionEnabled() {
+		return compressionEnabled;
+	}
+
+	// restitusce pacchetto di risposta sottoscrizione in caso di successo, pacchetto di errore in caso di fallimento
+	private HotelierPacket handleSubscribePacket(HotelierPacketSubscribe packet) {
+		
+		// ottengo le città da sottoscrivere
+		var cities = packet.getCities();
+		// controllo che sia presente almeno una città
+		if (cities == null || cities.isEmpty()) {
+			return packetErrorResponse("Nessuna città di interesse indicata.");
+		}
+		
+		// ottengo le città presenti nel registro (normalizzate)
+		Set<String> registeredCities = new HashSet<>();
+		for (String city : hotelRegister.getCities()) {
+			registeredCities.add(normalizeCity(city));
+		}
+		
+		int foundCities, subscribedCount;
+		// acquisisco la lock sulle città sottoscritte, così che la sottoscrizione non avvenga dopo l'annullamento alla disconnessione
+		synchronized (subscribedCities) {
+			
+			// controllo che il client non si sia disconnesso nel frattempo, altrimenti la connessione resterebbe sottoscritta
+			if (isDisconnected) {
+				return packetErrorResponse("Connessione chiusa.");
+			}
+			
+			foundCities = 0;
+			// sottoscrivo le città presenti nel registro non ancora sottoscritte
+			for (String city : cities) {
+				if (city == null || !registeredCities.contains(normalizeCity(city))) {
+					continue;
+				}
+				foundCities++;
+				if (subscribedCities.add(normalizeCity(city))) {
+					subscriptions.subscribe(city, protocol);
+				}
+			}
+			subscribedCount = subscribedCities.size();
+		}
+		
+		// controllo che almeno una città fosse presente nel registro
+		if (foundCities == 0) {
+			return packetErrorResponse("Nessuna città di interesse trovata.");
+		}
+		// restituisco pacchetto di risposta con il numero di città sottoscritte
+		return new HotelierPacketSubscriptionResponse("Città di interesse registrate con successo!", subscribedCount);
+	}
+	
+	// restitusce pacchetto di risposta sottoscrizione
+	private HotelierPacket handleUnsubscribePacket(HotelierPacketUnsubscribe packet) {
+		
+		// ottengo le città di cui annullare la sottoscrizione
+		var cities = packet.getCities();
+		int subscribedCount;
+		// acquisisco la lock sulle città sottoscritte
+		synchronized (subscribedCities) {
+			// se non indicate annullo la sottoscrizione di tutte le città
+			if (cities == null || cities.isEmpty()) {
+				unsubscribeAll();
+			} else {
+				for (String city : cities) {
+					if (city != null && subscribedCities.remove(normalizeCity(city))) {
+						subscriptions.unsubscribe(city, protocol);
+					}
+				}
+			}
+			subscribedCount = subscribedCities.size();
+		}
+		// restituisco pacchetto di risposta con il numero di città ancora sottoscritte
+		return new HotelierPacketSubscriptionResponse("Città di interesse rimosse con successo!", subscribedCount);
+	}
+	
+	// annulla la sottoscrizione di tutte le città sottoscritte, invocato con la lock sulle città sottoscritte
+	private void unsubscribeAll() {
+		
+		for (String city : subscribedCities) {
+			subscriptions.unsubscribe(city, protocol);
+		}
+		subscribedCities.clear();
+	}
+	
+	// restituisce true se il client è sottoscritto ad almeno una città, false altrimenti
+	public boolean hasSubscriptions() {
+		synchronized (subscribedCities) {
+			return !subscribedCities.isEmpty();
+		}
+	}
+	
+	// restituisce la città normalizzata (minuscola)
+	private static String normalizeCity(String city) {
+		return city.toLowerCase(Locale.ROOT);
+	}
+	
 	// Metodo per gestire la disconnessione del client
 	public void handleClientDisconnect() {
 		
@@ -250,6 +596,11 @@ public class HotelierServerPacketHandler {
 			// resetto userClient a null
 			userClient = null;
 		}
+		// annullo le sottoscrizioni ai rank locali e rifiuto quelle gestite successivamente
+		synchronized (subscribedCities) {
+			isDisconnected = true;
+			unsubscribeAll();
+		}
 	}
 	
 	// restituisce pacchetto di errore avente messaggio passato
@@ -0,0 +1,397 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCompressor;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketErrorResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHeader;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+import unipi.aprile.filippo.hotelier.server.config.HotelierServerConfigManager;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Stage;
+
+public class HotelierServerProtocol {
+
+	/**
+	 * La classe HotelierServerProtocol implementa, per una singola connessione, il protocollo TCP di Hotelier indipendentemente
+	 * dal motore di rete che legge e scrive i byte sul canale (HotelierServerClientHandler per il serverNIO,
+	 * HotelierServerAsyncClientHandler per il server asincrono). Si occupa di:
+	 * 	• validare la lunghezza del pacchetto di richiesta indicata nell' header rispetto a maxFrameSize;
+	 * 	• deserializzare il messaggio di richiesta dall' header e dai chunk letti, nel formato indicato dai flag (decomprimendolo se compresso);
+	 * 	• gestire il pacchetto di richiesta tramite HotelierServerPacketHandler e serializzare la risposta nello stesso formato
+	 * 	  e con lo stesso requestID della richiesta, comprimendola se il client ha abilitato la compressione e supera compressionThreshold;
+	 * 	• rispondere sempre ad ogni richiesta: un pacchetto non supportato (id sconosciuto o payload null) o un' eccezione durante
+	 * 	  la gestione o la serializzazione vengono risposti con un pacchetto di errore con il requestID della richiesta, così che
+	 * 	  la richiesta non resti in volo per sempre e che le richieste successive della connessione vengano gestite;
+	 * 	• serializzare uno alla volta e su richiesta del motore di rete (streamNextChunk) i chunk delle risposte in streaming
+	 * 	  (HotelierServerStreamedPacket): il motore di rete serializza il chunk successivo solo quando i byte di risposta in coda
+	 * 	  della connessione scendono sotto la propria finestra, così che la scrittura del primo chunk inizi prima della serializzazione
+	 * 	  dei successivi e che uno stream non accodi mai più byte di quanti il client ne stia leggendo;
+	 * 	• scrivere il messaggio di risposta (header + pacchetto serializzato) in un buffer del pool;
+	 * 	• serializzare i pacchetti inviati senza richiesta alle connessioni sottoscritte ai rank locali (push), nel formato
+	 * 	  dell' ultima richiesta ricevuta e senza requestID, passandoli al motore di rete tramite pushSink;
+	 * I compressori vengono acquisiti dal pool del motore di rete (HotelierServerCompressorPool).
+	 * Se il motore di rete supporta l'invio da file (fileTransfer, solo serverNIO) e il pacchetto di risposta già serializzato
+	 * ha uno snapshot su file, ai client senza compressione viene restituita una risposta su file (HotelierServerResponse),
+	 * della quale writeResponse() scrive solo l'header.
+	 *
+	 * Se le metriche sono attive (HotelierServerMetrics) il protocollo registra per il tipo di pacchetto di richiesta
+	 * le fasi DECODE, QUEUE_WAIT, ENCODE e WRITE e i contatori di richieste e risposte; la fase WRITE termina quando
+	 * il motore di rete notifica la scrittura completa della risposta tramite responseWritten().
+	 */
+
+	// handler dei pacchetti della connessione
+	private final HotelierServerPacketHandler packetHandler;
+	// pool di compressori del motore di rete
+	private final HotelierServerCompressorPool compressorPool;
+	// dimensione massima di un pacchetto di richiesta
+	private final int maxFrameSize;
+	// dimensione in byte oltre la quale le risposte vengono compresse
+	private final int compressionThreshold;
+	// booleano che indica se il motore di rete supporta l'invio delle risposte da file
+	private final boolean fileTransfer;
+	// destinazione dei pacchetti inviati senza richiesta e formato dell' ultima richiesta ricevuta
+	private final Consumer<HotelierServerResponse> pushSink;
+	private volatile HotelierPacketCodec pushCodec;
+	// metriche del server e booleano che indica se vengono registrate
+	private final HotelierServerMetrics metrics;
+	private final boolean tracing;
+	// chunk ancora da serializzare della risposta in streaming in corso (null se assente) e relativa richiesta,
+	// acceduti solo dal thread della pool che gestisce le richieste del client
+	private Iterator<HotelierPacket> streamChunks;
+	private HotelierServerRequest streamRequest;
+
+	public HotelierServerProtocol(HotelierServerCompressorPool compressorPool, boolean fileTransfer, Consumer<HotelierServerResponse> pushSink) {
+		// creo una nuova instanza dell' handler dei pacchetti
+		packetHandler = new HotelierServerPacketHandler(this);
+		// setto compressorPool, fileTransfer e pushSink a quelli passati
+		this.compressorPool = compressorPool;
+		this.fileTransfer = fileTransfer;
+		this.pushSink = pushSink;
+		pushCodec = HotelierPacketCodec.JSON;
+		// ottengo dimensione massima dei pacchetti di richiesta e soglia di compressione dai config
+		var serverConfig = HotelierServerConfigManager.getServerConfig();
+		maxFrameSize = serverConfig.getMaxFrameSize();
+		compressionThreshold = serverConfig.getCompressionThreshold();
+		// ottengo istanza delle metriche (singletone)
+		metrics = HotelierServerMetrics.getInstance();
+		tracing = metrics.isTracingEnabled();
+	}
+
+	// restituisce true se la lunghezza del pacchetto di richiesta passata è valida e non supera la dimensione massima, false altrimenti
+	public boolean isValidPayloadSize(int payloadSize) {
+		return payloadSize >= 0 && payloadSize <= maxFrameSize;
+	}
+
+	// restituisce il messaggio di richiesta deserializzato dall' header e dai chunk (in scrittura) passati,
+	// con pacchetto null se non supportato (verrà risposto con un pacchetto di errore)
+	public HotelierServerRequest readRequest(ByteBuffer requestHeader, List<ByteBuffer> requestChunks) throws IOException {
+
+		// ottengo id del pacchetto, formato e requestID (se presente) della richiesta dall' header
+		int packetField = requestHeader.getInt(4);
+		int packetID = HotelierPacketHeader.getPacketID(packetField);
+		HotelierPacketCodec codec = HotelierPacketCodec.fromPacketField(packetField);
+		int requestID = requestHeader.limit() == HotelierPacketHeader.MAX_HEADER_SIZE ? requestHeader.getInt(8) : HotelierPacketHeader.NO_REQUEST_ID;
+
+		// deserializzo il pacchetto di richiesta (decomprimendolo se compresso)
+		long decodeStart = tracing ? System.nanoTime() : 0;
+		HotelierPacket packet = deserializeRequest(packetID, codec, HotelierPacketHeader.hasFlag(packetField, HotelierPacketHeader.FLAG_COMPRESSED),
+				requestChunks);
+
+		long receivedTime = 0;
+		// registro durata della deserializzazione e dimensione del messaggio di richiesta
+		if (tracing) {
+			receivedTime = System.nanoTime();
+			metrics.record(packetID, Stage.DECODE, receivedTime - decodeStart);
+			metrics.requestReceived(packetID, requestHeader.limit() + requestHeader.getInt(0));
+		}
+
+		// restituisco il messaggio di richiesta
+		return new HotelierServerRequest(packet, requestID, codec, packetID, receivedTime);
+	}
+
+	// restituisce il pacchetto di richiesta deserializzato nel formato passato dai chunk letti, decomprimendolo se compressed
+	private HotelierPacket deserializeRequest(int packetID, HotelierPacketCodec codec, boolean compressed, List<ByteBuffer> requestChunks) throws IOException {
+
+		// flippo i chunk per prepararli in lettura
+		for (ByteBuffer chunk : requestChunks) {
+			chunk.flip();
+		}
+
+		// controllo se il pacchetto di richiesta è compresso
+		if (compressed) {
+
+			// acquisisco un compressore dal pool
+			HotelierPacketCompressor compressor = compressorPool.acquire();
+			try {
+				// decomprimo il pacchetto (al più maxFrameSize byte) e lo deserializzo
+				return codec.decode(packetID, ByteBuffer.wrap(compressor.decompress(requestChunks, maxFrameSize)));
+			} finally {
+				// restituisco il compressore al pool
+				compressorPool.release(compressor);
+			}
+		}
+
+		// se il pacchetto è contenuto in un unico chunk lo deserializzo direttamente, altrimenti incrementalmente
+		if (requestChunks.size() == 1) {
+			return codec.decode(packetID, requestChunks.get(0));
+		}
+		return codec.decode(packetID, requestChunks);
+	}
+
+	// passa a sink la risposta serializzata relativa al messaggio di richiesta passato (solo il primo chunk se la risposta
+	// è in streaming, i successivi vengono passati da streamNextChunk), oppure un pacchetto di errore se il pacchetto
+	// non è supportato o se la gestione fallisce: ogni richiesta riceve sempre una risposta
+	public void handleRequest(HotelierServerRequest request, Consumer<HotelierServerResponse> sink) {
+
+		// registro l'attesa della richiesta in coda
+		if (tracing) {
+			metrics.record(request.getPacketID(), Stage.QUEUE_WAIT, System.nanoTime() - request.getReceivedTime());
+		}
+		// aggiorno il formato dei pacchetti inviati senza richiesta
+		pushCodec = request.getCodec();
+
+		HotelierServerResponse response;
+		try {
+			// gestisco il pacchetto di richiesta e serializzo la risposta (il primo chunk se in streaming)
+			response = createResponse(request);
+		} catch (RuntimeException exception) {
+			// gestione fallita: termino l'eventuale stream avviato e rispondo con un pacchetto di errore
+			exception.printStackTrace();
+			streamChunks = null;
+			streamRequest = null;
+			response = encodeError(request, "Errore interno del server, richiesta non gestita.");
+		}
+		// passo la risposta a sink al di fuori della gestione, così che un errore del motore di rete non venga risposto
+		sink.accept(response);
+	}
+
+	// restituisce la risposta serializzata relativa al messaggio di richiesta passato, avviando lo stream se la risposta è in streaming
+	private HotelierServerResponse createResponse(HotelierServerRequest request) {
+
+		// controllo che il pacchetto di richiesta sia supportato
+		if (request.getPacket() == null) {
+			return encodeError(request, "Pacchetto non supportato!");
+		}
+
+		// restituisco pacchetto di risposta relativo al pacchetto di richiesta passato
+		HotelierPacket responsePacket = packetHandler.handlePacket(request.getPacket());
+
+		// controllo se la risposta è in streaming con almeno un chunk
+		if (responsePacket instanceof HotelierServerStreamedPacket streamedPacket && !streamedPacket.getChunks().isEmpty()) {
+			// avvio lo stream serializzando solo il primo chunk
+			streamChunks = streamedPacket.getChunks().iterator();
+			streamRequest = request;
+			return nextChunk();
+		}
+
+		// serializzo la risposta, controllando che il pacchetto di risposta sia supportato
+		HotelierServerResponse response = responsePacket != null ? encodeResponse(responsePacket, request) : null;
+		return response != null ? response : encodeError(request, "Pacchetto non supportato!");
+	}
+
+	// restituisce true se la risposta in streaming in corso ha ancora chunk da serializzare, false altrimenti
+	public boolean isStreaming() {
+		return streamChunks != null;
+	}
+
+	// serializza e passa a sink il prossimo chunk della risposta in streaming in corso, contrassegnando l'ultimo;
+	// se la serializzazione fallisce lo stream viene terminato con un pacchetto di errore
+	public void streamNextChunk(Consumer<HotelierServerResponse> sink) {
+
+		HotelierServerResponse response;
+		try {
+			response = nextChunk();
+		} catch (RuntimeException exception) {
+			// serializzazione fallita: termino lo stream con un pacchetto di errore
+			exception.printStackTrace();
+			response = encodeError(streamRequest, "Errore interno del server, risposta interrotta.");
+			streamChunks = null;
+			streamRequest = null;
+		}
+		sink.accept(response);
+	}
+
+	// restituisce il prossimo chunk serializzato della risposta in streaming in corso, terminando lo stream se è l'ultimo
+	private HotelierServerResponse nextChunk() {
+
+		// serializzo il chunk con il requestID della richiesta
+		HotelierServerResponse response = encodeResponse(streamChunks.next(), streamRequest);
+		if (response == null) {
+			throw new IllegalStateException("chunk non supportato");
+		}
+		// controllo se è l'ultimo chunk, nel qual caso termino lo stream
+		boolean lastFrame = !streamChunks.hasNext();
+		if (lastFrame) {
+			streamChunks = null;
+			streamRequest = null;
+		}
+		response.setLastFrame(lastFrame);
+		return response;
+	}
+
+	// restituisce il pacchetto di errore serializzato con messaggio passato relativo alla richiesta passata
+	private HotelierServerResponse encodeError(HotelierServerRequest request, String message) {
+
+		// aggiorno il contatore degli errori del pacchetto di richiesta
+		if (tracing) {
+			metrics.errorResponded(request.getPacketID());
+		}
+		return serializeResponse(new HotelierPacketErrorResponse("[ERRORE] " + message), request.getCodec(), request.getRequestID(),
+				request.getPacketID());
+	}
+
+	// restituisce la risposta serializzata relativa al pacchetto passato registrando la durata della serializzazione
+	private HotelierServerResponse encodeResponse(HotelierPacket packet, HotelierServerRequest request) {
+
+		// serializzo la risposta con il requestID della richiesta registrando la durata della serializzazione
+		long encodeStart = tracing ? System.nanoTime() : 0;
+		HotelierServerResponse response = serializeResponse(packet, request.getCodec(), request.getRequestID(), request.getPacketID());
+		if (tracing && response != null) {
+			metrics.record(request.getPacketID(), Stage.ENCODE, response.getCreatedTime() - encodeStart);
+		}
+		return response;
+	}
+
+	// invia alla connessione il pacchetto già serializzato passato senza alcuna richiesta, invocato da HotelierServerSubscriptions
+	public void push(HotelierServerEncodedPacket packet) {
+
+		// serializzo il pacchetto nel formato dell' ultima richiesta e senza requestID
+		HotelierServerResponse response = serializeResponse(packet, pushCodec, HotelierPacketHeader.NO_REQUEST_ID, packet.getPacketID());
+		// la risposta non termina alcuna richiesta in volo
+		response.setLastFrame(false);
+		pushSink.accept(response);
+	}
+
+	// restituisce la risposta serializzata nel formato e con il requestID passati relativa al pacchetto di risposta passato
+	private HotelierServerResponse serializeResponse(HotelierPacket packet, HotelierPacketCodec codec, int requestID, int requestPacketID) {
+
+		int packetID;
+		byte[] serializedPacket;
+		// controllo se il pacchetto di risposta è già serializzato
+		if (packet instanceof HotelierServerEncodedPacket encodedPacket) {
+			// ottengo id del pacchetto di risposta
+			packetID = encodedPacket.getPacketID();
+			// se possibile restituisco la risposta con il payload su file (non compresso), acquisendo un riferimento allo snapshot
+			HotelierServerSnapshot snapshot = encodedPacket.getSnapshot();
+			if (fileTransfer && snapshot != null && !packetHandler.isCompressionEnabled() && snapshot.retain()) {
+				return new HotelierServerResponse(packetID, requestID, codec.getFlag(), snapshot, codec, requestPacketID,
+						tracing ? System.nanoTime() : 0);
+			}
+			// ottengo il payload già serializzato nel formato della richiesta
+			serializedPacket = encodedPacket.getPayload(codec);
+		} else {
+			// ottengo id del pacchetto di risposta
+			packetID = HotelierPacketRegistry.getIDFromPacket(packet);
+			// controllo che il pacchetto sia supportato, altrimenti restituisco null
+			if (packetID == -1) {
+				return null;
+			}
+			// serializzo il pacchetto di risposta nel formato della richiesta
+			serializedPacket = codec.encode(packet);
+		}
+
+		// ottengo i flag del formato della richiesta
+		int flags = codec.getFlag();
+		// controllo se il client ha abilitato la compressione
+		if (packetHandler.isCompressionEnabled()) {
+
+			// comprimo il pacchetto di risposta se supera la soglia
+			byte[] compressedPacket = compressResponse(packet, serializedPacket, codec);
+			// aggiorno i contatori di compressione del pool
+			compressorPool.responseCompressionChecked(serializedPacket.length, compressedPacket != null ? compressedPacket.length : -1);
+			// controllo se il pacchetto è stato compresso
+			if (compressedPacket != null) {
+				serializedPacket = compressedPacket;
+				flags |= HotelierPacketHeader.FLAG_COMPRESSED;
+			}
+		}
+
+		// restituisco la risposta serializzata
+		return new HotelierServerResponse(packetID, requestID, flags, serializedPacket, requestPacketID, tracing ? System.nanoTime() : 0);
+	}
+
+	// restituisce il pacchetto di risposta serializzato passato compresso, null se sotto la soglia o se la compressione non ne riduce la dimensione
+	private byte[] compressResponse(HotelierPacket packet, byte[] serializedPacket, HotelierPacketCodec codec) {
+
+		// controllo che il pacchetto superi la soglia di compressione
+		if (serializedPacket.length < compressionThreshold) {
+			return null;
+		}
+
+		// acquisisco un compressore dal pool
+		HotelierPacketCompressor compressor = compressorPool.acquire();
+		try {
+			// se il pacchetto è già serializzato ne ottengo il payload compresso condiviso, altrimenti lo comprimo
+			if (packet instanceof HotelierServerEncodedPacket encodedPacket) {
+				return encodedPacket.getCompressedPayload(codec, compressor);
+			}
+			return compressor.compress(serializedPacket);
+		} finally {
+			// restituisco il compressore al pool
+			compressorPool.release(compressor);
+		}
+	}
+
+	// restitusce il byteBuffer, acquisito dal pool passato, contente il messaggio di risposta relativo alla risposta serializzata passata
+	// (solo l'header se il pacchetto di risposta serializzato è su file)
+	public static ByteBuffer writeResponse(HotelierServerResponse response, HotelierServerBufferPool bufferPool) {
+
+		// ottengo id del pacchetto di risposta, flag, requestID della richiesta e pacchetto serializzato
+		int packetID = response.getPacketID();
+		int flags = response.getFlags();
+		int requestID = response.getRequestID();
+		byte[] serializedPacket = response.getPayload();
+
+		// acquisisco byteBuffer per contenere: lunghezza pacchetto di risposta + id + requestID (se presente) + pacchetto di risposta serializzato
+		var serializedResponse = bufferPool.acquire(response.isFileBacked() ? response.getHeaderSize() : response.getFrameSize());
+		// inserisco nel byteBuffer lunghezza del pacchetto di risposta
+		serializedResponse.putInt(response.getPayloadSize());
+
+		// controllo se la richiesta conteneva il requestID
+		if (requestID == HotelierPacketHeader.NO_REQUEST_ID) {
+			// inserisco nel byteBuffer id del pacchetto di risposta con i flag
+			serializedResponse.putInt(HotelierPacketHeader.getPacketField(packetID, flags));
+		} else {
+			// inserisco nel byteBuffer id del pacchetto di risposta con i flag, flag requestID e il requestID
+			serializedResponse.putInt(HotelierPacketHeader.getPacketField(packetID, flags | HotelierPacketHeader.FLAG_REQUEST_ID));
+			serializedResponse.putInt(requestID);
+		}
+		// inserisco nel byteBuffer pacchetto di risposta serializzato se in memoria
+		if (serializedPacket != null) {
+			serializedResponse.put(serializedPacket);
+		}
+		// preparo il buffer in lettura
+		serializedResponse.flip();
+
+		// restituisco il messaggio di risposta
+		return serializedResponse;
+	}
+
+	// registra la scrittura completa della risposta passata, invocato dal motore di rete
+	public void responseWritten(HotelierServerResponse response) {
+
+		// registro durata della scrittura e dimensione del messaggio di risposta
+		if (tracing) {
+			metrics.record(response.getRequestPacketID(), Stage.WRITE, System.nanoTime() - response.getCreatedTime());
+			metrics.responseWritten(response.getRequestPacketID(), response.getFrameSize());
+		}
+	}
+
+	// restituisce true se la connessione è sottoscritta ai rank locali di almeno una città, false altrimenti
+	public boolean hasSubscriptions() {
+		return packetHandler.hasSubscriptions();
+	}
+
+	// gestisce la disconnessione del client
+	public void handleClientDisconnect() {
+		packetHandler.handleClientDisconnect();
+	}
+
+}
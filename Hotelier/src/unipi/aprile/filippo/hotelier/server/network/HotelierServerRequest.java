@@ -0,0 +1,34 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketMessage;
+
+public class HotelierServerRequest extends HotelierPacketMessage {
+
+	/**
+	 * La classe HotelierServerRequest rappresenta un messaggio di richiesta letto e deserializzato dal server,
+	 * in attesa di essere gestito da un thread della pool. Oltre al messaggio contiene l'id del pacchetto di richiesta
+	 * e l'istante di lettura, utilizzati dalle metriche per misurare l'attesa in coda (0 se metriche disattivate).
+	 */
+
+	// id del pacchetto di richiesta
+	private final int packetID;
+	// istante in nanosecondi in cui è stata completata la lettura della richiesta
+	private final long receivedTime;
+
+	public HotelierServerRequest(HotelierPacket packet, int requestID, HotelierPacketCodec codec, int packetID, long receivedTime) {
+		super(packet, requestID, codec);
+		this.packetID = packetID;
+		this.receivedTime = receivedTime;
+	}
+
+	public int getPacketID() {
+		return packetID;
+	}
+
+	public long getReceivedTime() {
+		return receivedTime;
+	}
+
+}
@@ -0,0 +1,125 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHeader;
+
+public class HotelierServerResponse {
+
+	/**
+	 * La classe HotelierServerResponse rappresenta un messaggio di risposta già serializzato dal thread della pool
+	 * e in attesa di essere scritto sul canale del client dal thread del worker.
+	 * Contiene id del pacchetto di risposta, flag del formato, requestID della richiesta a cui si riferisce e pacchetto serializzato,
+	 * così che la dimensione del messaggio sia nota già al momento dell' inserimento nella coda delle risposte.
+	 * Contiene inoltre l'id del pacchetto di richiesta e l'istante di serializzazione, utilizzati dalle metriche
+	 * per misurare la scrittura della risposta (0 se metriche disattivate).
+	 * Una risposta può avere il pacchetto serializzato su file (HotelierServerSnapshot) anzichè in memoria:
+	 * in tal caso il motore di rete scrive l'header dal buffer e il pacchetto direttamente dal file (transferTo).
+	 * Una richiesta può avere più risposte (HotelierServerStreamedPacket): solo la scrittura dell' ultima (lastFrame)
+	 * termina la richiesta in volo. I pacchetti inviati senza richiesta (push) non sono mai lastFrame.
+	 */
+
+	// id del pacchetto di risposta
+	private final int packetID;
+	// flag dell' header relativi al formato del pacchetto serializzato
+	private final int flags;
+	// requestID della richiesta a cui si riferisce la risposta
+	private final int requestID;
+	// pacchetto di risposta serializzato, null se su file
+	private final byte[] payload;
+	// snapshot contenente il pacchetto di risposta serializzato e relativo formato, null se in memoria
+	private final HotelierServerSnapshot snapshot;
+	private final HotelierPacketCodec snapshotCodec;
+	// id del pacchetto di richiesta a cui si riferisce la risposta
+	private final int requestPacketID;
+	// istante in nanosecondi in cui è stata serializzata la risposta
+	private final long createdTime;
+	// booleano che indica se è l'ultima risposta relativa alla richiesta
+	private boolean lastFrame;
+
+	public HotelierServerResponse(int packetID, int requestID, int flags, byte[] payload, int requestPacketID, long createdTime) {
+		this.packetID = packetID;
+		this.flags = flags;
+		this.requestID = requestID;
+		this.payload = payload;
+		this.requestPacketID = requestPacketID;
+		this.createdTime = createdTime;
+		snapshot = null;
+		snapshotCodec = null;
+		lastFrame = true;
+	}
+
+	public HotelierServerResponse(int packetID, int requestID, int flags, HotelierServerSnapshot snapshot, HotelierPacketCodec snapshotCodec,
+			int requestPacketID, long createdTime) {
+		this.packetID = packetID;
+		this.flags = flags;
+		this.requestID = requestID;
+		this.payload = null;
+		this.snapshot = snapshot;
+		this.snapshotCodec = snapshotCodec;
+		this.requestPacketID = requestPacketID;
+		this.createdTime = createdTime;
+		lastFrame = true;
+	}
+
+	public int getPacketID() {
+		return packetID;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public int getRequestID() {
+		return requestID;
+	}
+
+	public byte[] getPayload() {
+		return payload;
+	}
+
+	public int getRequestPacketID() {
+		return requestPacketID;
+	}
+
+	public long getCreatedTime() {
+		return createdTime;
+	}
+
+	public HotelierServerSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public HotelierPacketCodec getSnapshotCodec() {
+		return snapshotCodec;
+	}
+
+	public boolean isLastFrame() {
+		return lastFrame;
+	}
+
+	// setta se la risposta è l'ultima relativa alla richiesta, invocato prima dell' inserimento nella coda delle risposte
+	public void setLastFrame(boolean lastFrame) {
+		this.lastFrame = lastFrame;
+	}
+
+	// restituisce true se il pacchetto di risposta serializzato è su file, false se in memoria
+	public boolean isFileBacked() {
+		return snapshot != null;
+	}
+
+	// restituisce la dimensione del pacchetto di risposta serializzato
+	public int getPayloadSize() {
+		return payload != null ? payload.length : snapshot.getLength(snapshotCodec);
+	}
+
+	// restituisce la dimensione dell' header del messaggio di risposta
+	public int getHeaderSize() {
+		return HotelierPacketHeader.getHeaderSize(requestID);
+	}
+
+	// restituisce la dimensione del messaggio di risposta: header + pacchetto serializzato
+	public int getFrameSize() {
+		return getHeaderSize() + getPayloadSize();
+	}
+
+}
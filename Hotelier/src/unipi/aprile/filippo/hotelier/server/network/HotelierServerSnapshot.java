@@ -0,0 +1,168 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketCodec;
+
+public class HotelierServerSnapshot {
+
+	/**
+	 * La classe HotelierServerSnapshot rappresenta la copia su file dei payload di un pacchetto di risposta già serializzato
+	 * (HotelierServerEncodedPacket), uno per ogni formato, scritti consecutivamente nello stesso file.
+	 * I payload vengono inviati ai client direttamente dal file tramite FileChannel.transferTo, il quale su Linux utilizza
+	 * sendfile: i byte passano dalla page cache al socket senza essere copiati in alcun buffer del server.
+	 *
+	 * Ogni snapshot ha un proprio file, il quale non viene mai modificato dopo la creazione: uno snapshot più recente
+	 * viene sempre scritto su un nuovo file. Il ciclo di vita del file è gestito tramite un contatore di riferimenti:
+	 * • la cache delle risposte (HotelierServerHotelListCache) possiede il riferimento iniziale, rilasciato quando lo snapshot
+	 *   della città viene sostituito da uno più recente;
+	 * • ogni risposta da inviare dal file acquisisce un riferimento (retain), rilasciato al termine del trasferimento
+	 *   o alla disconnessione del client (release);
+	 * Quando i riferimenti si azzerano il canale viene chiuso e il file eliminato, così che un trasferimento in corso
+	 * non venga mai interrotto dalla creazione di uno snapshot più recente. Un Cleaner chiude comunque il canale ed elimina
+	 * il file degli snapshot non più raggiungibili i cui riferimenti non sono stati rilasciati.
+	 */
+
+	// cleaner condiviso che chiude i canali ed elimina i file degli snapshot non più raggiungibili
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	// canale del file dello snapshot
+	private final FileChannel channel;
+	// posizione e lunghezza nel file del payload di ogni formato (ordinal)
+	private final long[] offsets;
+	private final int[] lengths;
+	// numero di riferimenti allo snapshot
+	private final AtomicInteger references;
+	// azione di chiusura del canale ed eliminazione del file registrata sul cleaner
+	private Cleaner.Cleanable cleanable;
+
+	private HotelierServerSnapshot(FileChannel channel, long[] offsets, int[] lengths) {
+		this.channel = channel;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		// lo snapshot viene creato con il riferimento del proprietario
+		references = new AtomicInteger(1);
+	}
+
+	// crea nella cartella passata lo snapshot dei payload di tutti i formati del pacchetto passato
+	public static HotelierServerSnapshot create(Path directory, HotelierServerEncodedPacket packet) throws IOException {
+
+		// creo un nuovo file nella cartella e ne apro il canale in lettura e scrittura
+		Path file = Files.createTempFile(directory, "hotelList", ".snapshot");
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			var codecs = HotelierPacketCodec.values();
+			long[] offsets = new long[codecs.length];
+			int[] lengths = new int[codecs.length];
+			long position = 0;
+			// scrivo consecutivamente il payload di ogni formato
+			for (HotelierPacketCodec codec : codecs) {
+				byte[] payload = packet.getPayload(codec);
+				offsets[codec.ordinal()] = position;
+				lengths[codec.ordinal()] = payload.length;
+				var buffer = ByteBuffer.wrap(payload);
+				while (buffer.hasRemaining()) {
+					position += channel.write(buffer, position);
+				}
+			}
+
+			// registro la chiusura del canale e l'eliminazione del file per quando lo snapshot non sarà più raggiungibile
+			var snapshot = new HotelierServerSnapshot(channel, offsets, lengths);
+			snapshot.cleanable = CLEANER.register(snapshot, () -> deleteSnapshot(channel, file));
+			return snapshot;
+
+		} catch (IOException exception) {
+			// creazione fallita, chiudo il canale ed elimino il file
+			deleteSnapshot(channel, file);
+			throw exception;
+		}
+	}
+
+	// elimina dalla cartella passata gli snapshot rimasti da un' esecuzione precedente del server
+	public static void deleteSnapshots(Path directory) throws IOException {
+
+		try (var files = Files.newDirectoryStream(directory, "*.snapshot")) {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	// acquisisce un riferimento allo snapshot, restituisce false se lo snapshot è già stato eliminato
+	public boolean retain() {
+
+		// itero finchè non riesco ad incrementare i riferimenti o finchè non si azzerano
+		while (true) {
+			int count = references.get();
+			if (count == 0) {
+				return false;
+			}
+			if (references.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	// rilascia un riferimento allo snapshot, chiudendo il canale ed eliminando il file se era l'ultimo
+	public void release() {
+		if (references.decrementAndGet() == 0) {
+			cleanable.clean();
+		}
+	}
+
+	// restituisce true se lo snapshot contiene esattamente i payload del pacchetto passato, false altrimenti
+	public boolean contentEquals(HotelierServerEncodedPacket packet) throws IOException {
+
+		// confronto il payload di ogni formato con quello scritto nel file
+		for (HotelierPacketCodec codec : HotelierPacketCodec.values()) {
+			byte[] payload = packet.getPayload(codec);
+			if (payload.length != getLength(codec)) {
+				return false;
+			}
+			// leggo il payload dal file (dalla page cache)
+			var buffer = ByteBuffer.allocate(payload.length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offsets[codec.ordinal()] + buffer.position()) == -1) {
+					return false;
+				}
+			}
+			if (!Arrays.equals(buffer.array(), payload)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// restituisce la lunghezza del payload nel formato passato
+	public int getLength(HotelierPacketCodec codec) {
+		return lengths[codec.ordinal()];
+	}
+
+	// trasferisce sul canale passato al più count byte del payload nel formato passato a partire da position,
+	// restituisce il numero di byte trasferiti (anche 0 se il canale non bloccante non può accettarne altri)
+	public long transferTo(HotelierPacketCodec codec, long position, long count, WritableByteChannel target) throws IOException {
+		return channel.transferTo(offsets[codec.ordinal()] + position, count, target);
+	}
+
+	// chiude il canale passato ed elimina il file passato ignorando eventuali eccezioni
+	private static void deleteSnapshot(FileChannel channel, Path file) {
+
+		try {
+			channel.close();
+			Files.deleteIfExists(file);
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,29 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.util.List;
+
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+
+public class HotelierServerStreamedPacket extends HotelierPacket {
+
+	/**
+	 * La classe HotelierServerStreamedPacket rappresenta una risposta formata da più pacchetti (chunk) inviati consecutivamente
+	 * con lo stesso requestID della richiesta, ad esempio la lista di hotel in streaming (HotelierPacketHotelListChunk).
+	 * I chunk vengono serializzati e accodati uno alla volta da HotelierServerProtocol solo quando il motore di rete
+	 * ha smaltito i precedenti, così che il primo chunk venga scritto prima della serializzazione dei successivi e che
+	 * nessun buffer nè la coda delle risposte debba contenere l'intera risposta.
+	 * Viene utilizzato esclusivamente dal server e non viene mai inviato come pacchetto a sè stante.
+	 */
+
+	// chunk della risposta nell' ordine di invio
+	private final List<HotelierPacket> chunks;
+
+	public HotelierServerStreamedPacket(List<HotelierPacket> chunks) {
+		this.chunks = chunks;
+	}
+
+	public List<HotelierPacket> getChunks() {
+		return chunks;
+	}
+
+}
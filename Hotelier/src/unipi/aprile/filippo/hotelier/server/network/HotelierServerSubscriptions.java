@@ -0,0 +1,100 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLocalRank;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
+
+public class HotelierServerSubscriptions {
+
+	/**
+	 * La classe singletone HotelierServerSubscriptions mantiene, per ogni città, le connessioni Tcp (HotelierServerProtocol)
+	 * che hanno sottoscritto i cambiamenti del rank locale della città tramite HotelierPacketSubscribe,
+	 * in alternativa alle callback RMI (HotelierServerRmi).
+	 * Le voci hanno come chiave la città normalizzata (minuscola) e come valore un set concorrente di connessioni,
+	 * così che sottoscrizioni, annullamenti e notifiche avvengano senza una lock globale.
+	 *
+	 * Ad ogni cambiamento di un rank locale (publish) il pacchetto HotelierPacketLocalRank viene creato una sola volta
+	 * come pacchetto già serializzato (HotelierServerEncodedPacket): il payload viene serializzato una volta per formato
+	 * e ogni connessione sottoscritta si limita ad accodarlo nella propria coda delle risposte (push), senza alcuna
+	 * chiamata remota. La scrittura avviene poi dal motore di rete come per le risposte alle richieste.
+	 *
+	 * L'istanza deve essere creata prima dell' avvio del server, così che sia unica tra i thread.
+	 */
+
+	private static HotelierServerSubscriptions instance = null;
+
+	public static HotelierServerSubscriptions getInstance() {
+		if (instance == null) {
+			instance = new HotelierServerSubscriptions();
+		}
+		return instance;
+	}
+
+	// mappa delle sottoscrizioni con chiave: città normalizzata e valore: set delle connessioni sottoscritte
+	private final ConcurrentHashMap<String, Set<HotelierServerProtocol>> subscriptions;
+	// metriche del server
+	private final HotelierServerMetrics metrics;
+
+	private HotelierServerSubscriptions() {
+		// inizializzo la mappa delle sottoscrizioni
+		subscriptions = new ConcurrentHashMap<>();
+		// recupero istanza delle metriche
+		metrics = HotelierServerMetrics.getInstance();
+	}
+
+	// sottoscrive la connessione passata ai cambiamenti del rank locale della città passata
+	public void subscribe(String city, HotelierServerProtocol protocol) {
+
+		// aggiungo la connessione al set della città, creandolo se assente
+		subscriptions.compute(normalizeCity(city), (key, protocols) -> {
+			if (protocols == null) {
+				protocols = ConcurrentHashMap.newKeySet();
+			}
+			protocols.add(protocol);
+			return protocols;
+		});
+	}
+
+	// annulla la sottoscrizione della connessione passata ai cambiamenti del rank locale della città passata
+	public void unsubscribe(String city, HotelierServerProtocol protocol) {
+
+		// rimuovo la connessione dal set della città, rimuovendo il set se vuoto
+		subscriptions.computeIfPresent(normalizeCity(city), (key, protocols) -> {
+			protocols.remove(protocol);
+			return protocols.isEmpty() ? null : protocols;
+		});
+	}
+
+	// notifica il rank locale passato a tutte le connessioni sottoscritte alla sua città, invocato dal thread del calcolo dei rank
+	public void publish(HotelierLocalRank localRank) {
+
+		// ottengo le connessioni sottoscritte alla città del rank locale
+		var protocols = subscriptions.get(normalizeCity(localRank.getCity()));
+		// controllo che ci sia almeno una connessione sottoscritta
+		if (protocols == null) {
+			return;
+		}
+
+		// istante di inizio della notifica
+		long fanoutStart = System.nanoTime();
+		// creo il pacchetto di notifica una sola volta per tutte le connessioni
+		var localRankPacket = new HotelierServerEncodedPacket(new HotelierPacketLocalRank(localRank));
+		// accodo il pacchetto su ogni connessione sottoscritta
+		for (HotelierServerProtocol protocol : protocols) {
+			protocol.push(localRankPacket);
+		}
+		// registro la durata della notifica nelle metriche del server
+		metrics.recordTimer(Timer.PUSH_FANOUT, System.nanoTime() - fanoutStart);
+	}
+
+	// restituisce la chiave della mappa relativa alla città passata
+	private String normalizeCity(String city) {
+		return city.toLowerCase(Locale.ROOT);
+	}
+
+}
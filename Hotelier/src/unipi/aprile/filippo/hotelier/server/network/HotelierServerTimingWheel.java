@@ -0,0 +1,108 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+public class HotelierServerTimingWheel<T> {
+
+	/**
+	 * La classe HotelierServerTimingWheel implementa un hashed timing wheel, ovvero un array circolare di slot
+	 * ognuno dei quali contiene gli elementi la cui scadenza cade nel relativo tick (durata fissa).
+	 * L'inserimento di un elemento avviene in O(1) calcolando lo slot dalla scadenza, mentre l'avanzamento
+	 * del tempo visita solo gli slot dei tick trascorsi; gli elementi con scadenza oltre un giro completo
+	 * della ruota rimangono nello slot fino al giro in cui scadono.
+	 *
+	 * Il timing wheel non è thread safe e viene utilizzato esclusivamente dal thread del selettore worker
+	 * che lo possiede, il quale lo fa avanzare ad ogni iterazione del proprio ciclo di selezione.
+	 * Il tempo è espresso in nanosecondi (System.nanoTime()).
+	 */
+
+	// slot della ruota, ognuno contiene gli elementi con la relativa scadenza
+	private final ArrayDeque<Timeout<T>>[] wheel;
+	// maschera per ottenere lo slot da un tick (numero di slot potenza di 2)
+	private final int mask;
+	// durata di un tick in nanosecondi
+	private final long tickNanos;
+	// istante di creazione della ruota, a cui sono relativi i tick
+	private final long startTime;
+	// prossimo tick da visitare
+	private long currentTick;
+	// numero di elementi presenti nella ruota
+	private int size;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public HotelierServerTimingWheel(int slots, long tickNanos) {
+		// arrotondo il numero di slot alla potenza di 2 successiva
+		int wheelSize = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+		// inizializzo gli slot della ruota
+		wheel = new ArrayDeque[wheelSize];
+		for (int i = 0; i < wheelSize; i++) {
+			wheel[i] = new ArrayDeque<>();
+		}
+		mask = wheelSize - 1;
+		// setto la durata del tick a quella passata
+		this.tickNanos = tickNanos;
+		// setto l'istante di partenza a quello attuale
+		startTime = System.nanoTime();
+	}
+
+	// inserisce l'elemento passato con la scadenza passata
+	public void schedule(T element, long deadline) {
+
+		// calcolo il tick della scadenza (arrotondato per eccesso), non precedente al prossimo tick da visitare
+		long deadlineTick = Math.max(Math.ceilDiv(deadline - startTime, tickNanos), currentTick);
+		// inserisco l'elemento nello slot relativo al tick
+		wheel[(int) (deadlineTick & mask)].add(new Timeout<>(element, deadlineTick));
+		size++;
+	}
+
+	// avanza la ruota fino all' istante passato passando all' expiredConsumer ogni elemento scaduto
+	public void advance(long now, Consumer<T> expiredConsumer) {
+
+		// calcolo il tick relativo all' istante passato
+		long targetTick = (now - startTime) / tickNanos;
+		// visito al più un giro completo della ruota (ogni slot una sola volta)
+		long lastTick = Math.min(targetTick, currentTick + mask);
+
+		// itero i tick trascorsi dall' ultimo avanzamento
+		for (long tick = currentTick; tick <= lastTick; tick++) {
+
+			var slot = wheel[(int) (tick & mask)];
+			// itero gli elementi presenti nello slot al momento della visita
+			for (int i = slot.size(); i > 0; i--) {
+
+				Timeout<T> timeout = slot.poll();
+				// controllo se l'elemento è scaduto, altrimenti appartiene ad un giro successivo e lo reinserisco
+				if (timeout.deadlineTick <= targetTick) {
+					size--;
+					expiredConsumer.accept(timeout.element);
+				} else {
+					slot.add(timeout);
+				}
+			}
+		}
+
+		// aggiorno il prossimo tick da visitare
+		currentTick = Math.max(currentTick, targetTick + 1);
+	}
+
+	// restituisce true se la ruota non contiene elementi, false altrimenti
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// restituisce il numero di elementi presenti nella ruota
+	public int size() {
+		return size;
+	}
+
+	// restituisce la durata di un tick in millisecondi
+	public long getTickMillis() {
+		return Math.max(1, tickNanos / 1_000_000);
+	}
+
+	// elemento della ruota con il tick della propria scadenza
+	private record Timeout<T>(T element, long deadlineTick) {
+	}
+
+}
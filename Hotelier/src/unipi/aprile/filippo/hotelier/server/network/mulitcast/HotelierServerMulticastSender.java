@@ -6,6 +6,7 @@ import java.net.InetAddress;
 import java.net.MulticastSocket;
 
 import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+import unipi.aprile.filippo.hotelier.common.network.multicast.HotelierMulticastNotification;
 
 public class HotelierServerMulticastSender {
 	
@@ -36,10 +37,10 @@ public class HotelierServerMulticastSender {
 	public void notifyFirstPosition(HotelierHotel hotel) {
 		try {
 			
-			// setto la stringa da inviare per la notifica
-			String response = "Prima posizione cambiata per la città " + hotel.getCity() + " : " + hotel.getName();
-			// converto la stringa in bytes
-			byte[] responseBytes = response.getBytes();
+			// creo la notifica con città e nome del nuovo hotel in prima posizione
+			HotelierMulticastNotification notification = new HotelierMulticastNotification(hotel.getCity(), hotel.getName());
+			// converto la notifica in bytes
+			byte[] responseBytes = notification.encode();
 			// creo il pacchetto UDP contenente stringa serializzata in byte inserendo gruppo e porta multicast socket client
 			DatagramPacket messagePacket = new DatagramPacket(responseBytes, responseBytes.length, group, mcastPort);
 			// invio il pacchetto
@@ -51,7 +52,7 @@ public class HotelierServerMulticastSender {
 	}
 	
 	// chiude la socket se era stata creata ed era ancora aperta
-	private void close() {
+	public void close() {
 
 		if (socket != null && !socket.isClosed()) {
 			socket.close();
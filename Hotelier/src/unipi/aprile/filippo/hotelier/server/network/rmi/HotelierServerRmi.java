@@ -1,5 +1,7 @@
 package unipi.aprile.filippo.hotelier.server.network.rmi;
 
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
@@ -10,11 +12,12 @@ import java.util.Map.Entry;
 
 import org.apache.commons.lang3.StringUtils;
 
-import com.google.gson.GsonBuilder;
-
 import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
+import unipi.aprile.filippo.hotelier.common.network.codec.HotelierPacketJsonCodec;
 import unipi.aprile.filippo.hotelier.common.network.rmi.HotelierClientInterface;
 import unipi.aprile.filippo.hotelier.common.network.rmi.HotelierServerInterface;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
 
 public class HotelierServerRmi {
 
@@ -25,10 +28,16 @@ public class HotelierServerRmi {
 	 * metodi remoti sul server. Permette l' invocazione dei seguenti metodi
 	 * remoti su HotelierClientRmi: • callback notifica cambiamento prima
 	 * posizione rank locale;
+	 * Allo spegnimento del server (stop) lo stub viene rimosso dal registro e
+	 * non più esportato, così che nessuna registrazione modifichi i registri
+	 * dopo la persistenza finale.
 	 */
 
 	// instanza classe che implementa metodi interfaccia server Rmi
 	private final HotelierServerRmiImpl serverImpl;
+	// registro rmi creato dal server e nome dello stub nel registro
+	private final Registry registry;
+	private final String rmiRemoteReference;
 
 	public HotelierServerRmi(String rmiRemoteReference, int rmiPort) throws Exception {
 
@@ -37,18 +46,49 @@ public class HotelierServerRmi {
 		// esporto lo stub del server per invocazione remota metodi
 		HotelierServerInterface stub = (HotelierServerInterface) UnicastRemoteObject.exportObject(serverImpl, 0);
 		// creo registro rmi alla porta indicata
-		LocateRegistry.createRegistry(rmiPort);
-		// ottengo il registro rmi
-		Registry registry = LocateRegistry.getRegistry();
+		registry = LocateRegistry.createRegistry(rmiPort);
 		// effettuo il binding dello stub del server nel registo a rmiRemoteReference
+		this.rmiRemoteReference = rmiRemoteReference;
 		registry.bind(rmiRemoteReference, stub);
 	}
 
+	// rimuove lo stub dal registro e ne annulla l'esportazione, attendendo al più timeoutMillis millisecondi
+	// la terminazione delle invocazioni remote in corso
+	public void stop(long timeoutMillis) throws InterruptedException {
+
+		// rimuovo lo stub dal registro, così che nessun nuovo client lo ottenga
+		try {
+			registry.unbind(rmiRemoteReference);
+		} catch (Exception exception) {
+			// stub già rimosso
+		}
+
+		// annullo l'esportazione dello stub non appena non ci sono invocazioni in corso, forzandola allo scadere del timeout
+		long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+		while (!unexport(serverImpl, System.nanoTime() - deadline >= 0)) {
+			Thread.sleep(10);
+		}
+		// annullo l'esportazione del registro
+		unexport(registry, true);
+	}
+
+	// annulla l'esportazione dell' oggetto remoto passato, restituisce false se non forzata e ci sono invocazioni in corso
+	private static boolean unexport(Remote remote, boolean force) {
+		try {
+			return UnicastRemoteObject.unexportObject(remote, force);
+		} catch (NoSuchObjectException exception) {
+			// oggetto già non esportato
+			return true;
+		}
+	}
+
 	//notifica cambiamento rank locale a tutti client registrati per quella città d interesse
 	public void notifyLocalRank(HotelierLocalRank localRank) {
 
-		// instanzio un gson per la serializzazione di localRank
-		var gson = new GsonBuilder().serializeNulls().create();
+		// istante di inizio della notifica
+		long fanoutStart = System.nanoTime();
+		// serializzo local rank in Json una sola volta per tutti i client tramite il codec JSON condiviso
+		var serializedLocalRank = HotelierPacketJsonCodec.toJson(localRank);
 		// ottengo la mappa delle callback
 		var clientsCallback = serverImpl.getClientsCallback();
 
@@ -68,8 +108,6 @@ public class HotelierServerRmi {
 				if (containsCity(cities, city)) {
 
 					// interesse registrato
-					// serializzo local rank in Json
-					var serializedLocalRank = gson.toJson(localRank); //HotelierCommonUtils.serialize(localRank);
 					// ottengo stub del client
 					var clientInterface = clientCallback.getKey();
 
@@ -91,6 +129,9 @@ public class HotelierServerRmi {
 			}
 		}
 
+		// registro la durata della notifica a tutti i client interessati nelle metriche del server
+		HotelierServerMetrics.getInstance().recordTimer(Timer.RMI_FANOUT, System.nanoTime() - fanoutStart);
+
 	}
 
 	// Restituisce true se cities contiente cityToCheck (ignoreCase), false altrimenti
@@ -6,10 +6,16 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierReview;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerHotelListCache;
+import unipi.aprile.filippo.hotelier.server.network.HotelierServerSubscriptions;
 import unipi.aprile.filippo.hotelier.server.network.mulitcast.HotelierServerMulticastSender;
 import unipi.aprile.filippo.hotelier.server.network.rmi.HotelierServerRmi;
 import unipi.aprile.filippo.hotelier.server.register.HotelierServerRegisterHotels;
@@ -24,7 +30,8 @@ public class HotelierServerRanking implements Runnable {
 	 * 2. Aggiorna i rank locali degli hotel per ogni città.
 	 * 3. Serializza e persiste i rank aggioranti degli hotel su disco.
 	 * 4. In caso di cambiamento della prima posizione del rank locale di una città lo notifica tramite multicast a tutti gli utenti loggati.
-	 * 5. In caso di cambiamento di rank locale lo notifica tramite callback RMI a tutti gli utenti interessati.
+	 * 5. In caso di cambiamento di rank locale lo notifica tramite callback RMI a tutti gli utenti interessati
+	 *    e tramite push Tcp a tutte le connessioni che hanno sottoscritto la città (HotelierServerSubscriptions).
 	 * L' idea di fondo consiste nel tenere un rank globale per tutti gli hotel e utilizzare quest' ultimo per il calcolo del rank locale 
 	 * degli hotel rispetto alla loro città.
 	 * Al fine di tenere traccia di: numero, qualità e attualità delle recensioni il calcolo del rank globale di un hotel
@@ -36,6 +43,8 @@ public class HotelierServerRanking implements Runnable {
 	 * 4. Infine viene applicata una penalizzazione (1/10 del rank) se il rate hotel era minore di 2per evitare che hotel 
 	 * con numero elevato di recensioni negative abbiano un rank maggiore di hotel con recensioni positive.
 	 * Tramite questo algoritmo viene data importanza in ordine a: rate , numero recensioni e attualità.
+	 * Allo spegnimento del server il thread viene arrestato tra un calcolo e il successivo (stop): l'attesa tra i calcoli
+	 * avviene su un latch, così che un calcolo in corso venga sempre completato e l'attesa termini subito all' arresto.
 	 */
 	
 	
@@ -49,8 +58,16 @@ public class HotelierServerRanking implements Runnable {
 	private final HotelierServerRegisterHotels hotelRegister;
 	// registro recensioni 
 	private final HotelierServerRegisterReviews reviewRegister;
+	// cache delle risposte hotelList già serializzate
+	private final HotelierServerHotelListCache hotelListCache;
+	// sottoscrizioni Tcp ai rank locali
+	private final HotelierServerSubscriptions subscriptions;
 	// lista di local rank
 	private final List<HotelierLocalRank> localRanks;
+	// latch rilasciato all' arresto del thread
+	private final CountDownLatch stopLatch;
+	// thread del calcolo dei rank
+	private final Thread thread;
 	
 	public HotelierServerRanking(int rankingInterval, HotelierServerRmi serverRmi, HotelierServerMulticastSender multicastSender) {
 		// setto rankingInterval a quello passato
@@ -63,14 +80,26 @@ public class HotelierServerRanking implements Runnable {
 		hotelRegister = HotelierServerRegisterHotels.getInstance();
 		// ottengo istanza registro recensioni (singletone)
 		reviewRegister = HotelierServerRegisterReviews.getInstance();
+		// ottengo istanza cache delle risposte hotelList (singletone)
+		hotelListCache = HotelierServerHotelListCache.getInstance();
+		// ottengo istanza sottoscrizioni ai rank locali (singletone)
+		subscriptions = HotelierServerSubscriptions.getInstance();
 		// inizializzo localRanks a lista vuota
 		localRanks = new ArrayList<>();
+		// inizializzo il latch di arresto
+		stopLatch = new CountDownLatch(1);
 		
 		// avvio il thread
-		Thread thread = new Thread(this);
+		thread = new Thread(this);
 		thread.start();
 	}
 	
+	// arresta il thread al termine del calcolo in corso e ne attende la terminazione per al più timeoutMillis
+	public void stop(long timeoutMillis) throws InterruptedException {
+		stopLatch.countDown();
+		thread.join(timeoutMillis);
+	}
+	
 	
 	// inizializza la lista dei rank locali utilizzata per verificare cambiamenti
 	private void initializeLocalRanks() {
@@ -130,6 +159,8 @@ public class HotelierServerRanking implements Runnable {
 		// itero finchè il thread non viene interrotto
 		while (!Thread.interrupted()) {
 			
+			// istante di inizio del calcolo dei rank
+			long cycleStart = System.nanoTime();
 			// ottengo la lista degli hotel prenseti nel registro 
 			var hotels = hotelRegister.getHotels();
 			// itero la lista di hotel
@@ -147,6 +178,10 @@ public class HotelierServerRanking implements Runnable {
 			
 			// aggiorno i rank locali di tutti gli hotel presenti nel registro
 			udpateHotelsLocalRank();
+			// invalido le risposte hotelList di tutte le città, i cui rank e ordinamento sono cambiati
+			hotelListCache.invalidateAll();
+			// ricostruisco le risposte hotelList più grandi creandone lo snapshot su file
+			hotelListCache.createSnapshots(hotelRegister.getCities());
 			// persito la lista di hotel del registro sul disco
 			hotelRegister.serialize();
 			
@@ -190,11 +225,18 @@ public class HotelierServerRanking implements Runnable {
 					localRank.setHotels(cityHotelsCopy);
 					// notifico tramite callback Rmi prima a tutti in client interessati a local rank il cambiamento avvenuto
 					serverRmi.notifyLocalRank(localRank);
+					// notifico tramite push Tcp il cambiamento a tutte le connessioni sottoscritte alla città
+					subscriptions.publish(localRank);
 				}
 			}
 			
-			// aspetto rankingInterval secondi
-			sleep(rankingInterval);
+			// registro la durata del calcolo dei rank nelle metriche del server
+			HotelierServerMetrics.getInstance().recordTimer(Timer.RANKING_CYCLE, System.nanoTime() - cycleStart);
+			
+			// aspetto rankingInterval secondi, termino se il thread è stato arrestato
+			if (awaitStop(rankingInterval)) {
+				return;
+			}
 
 		}
 
@@ -262,11 +304,12 @@ public class HotelierServerRanking implements Runnable {
 	}
 	
 
-	private void sleep(int rankingInterval) {
+	// attende rankingInterval secondi o l'arresto del thread, restituisce true se il thread è stato arrestato
+	private boolean awaitStop(int rankingInterval) {
 		try {
-			Thread.sleep(rankingInterval * 1000L);
+			return stopLatch.await(rankingInterval, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			return true;
 		}
 	}
 
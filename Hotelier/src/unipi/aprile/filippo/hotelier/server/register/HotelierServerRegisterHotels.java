@@ -6,22 +6,29 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
 
 import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
 import unipi.aprile.filippo.hotelier.common.utils.HotelierCommonUtils;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
 
 public class HotelierServerRegisterHotels {
 	
 	/**
 	 * La classe singletone HotelierServerRegisterHotels gestisce il registro degli hotel all' interno di Hotelier.
 	 * Fornisce metodi per recuperare, aggiornare e gestire informazioni sugli hotel, inclusa la ricerca per ID, nome e città.
-	 * Utilizza una lista sincronizzata per garantire l'accesso concorrente agli hotel e offre funzionalità per la serializzazione
+	 * Utilizza una ReentrantLock per garantire l'accesso concorrente agli hotel e offre funzionalità per la serializzazione
 	 * e deserializzazione degli hotel tramite JSON per la persistenza su disco.
+	 * La ReentrantLock, a differenza di synchronized, non vincola i virtual thread al carrier durante la persistenza su disco.
 	 */
 	
 	private static HotelierServerRegisterHotels instance = null;
@@ -35,16 +42,21 @@ public class HotelierServerRegisterHotels {
 	
 	// lista degli hotel del registro
 	private List<HotelierHotel> hotels;
+	// lock per l'accesso concorrente alla lista degli hotel
+	private final ReentrantLock lock;
 
 	private HotelierServerRegisterHotels() {
 		// inzializzo la lista di hotel a ArryList
 		hotels = new ArrayList<>();
+		// inizializzo la lock
+		lock = new ReentrantLock();
 	}
 	
 	// restituisce hotel avente id passato, null se hotel non trovato
 	public HotelierHotel getHotelByID(int hotelID) {
-	// acquisisco la lock sulla lista di hotel 	
-	synchronized (hotels) {
+		// acquisisco la lock sulla lista di hotel 	
+		lock.lock();
+		try {
 			// itero la lista di tutti gli hotel del registro
 			for (var hotel : hotels) {
 				// controllo se id hotel corrisponde a quello passato
@@ -53,6 +65,8 @@ public class HotelierServerRegisterHotels {
 					return hotel;
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		// restituisco null
 		return null;
@@ -64,7 +78,8 @@ public class HotelierServerRegisterHotels {
 		// creo una nuova lista di hotel
 		List<HotelierHotel> hotelsCity = new ArrayList<>();
 		// acquisisco la lock sulla lista di hotel 	
-		synchronized (hotels) {
+		lock.lock();
+		try {
 			// itero la lista di tutti gli hotel del registro
 			for (HotelierHotel hotel : hotels) {
 				// controllo se città hotel corrisponde a quella passato (ingnoreCase)
@@ -73,6 +88,8 @@ public class HotelierServerRegisterHotels {
 					hotelsCity.add(hotel);
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		// restituisco la lista di hotel
 		return hotelsCity;
@@ -81,35 +98,83 @@ public class HotelierServerRegisterHotels {
 	// restituisce hotel avente id e città passati, null se hotel non trovato
 	public HotelierHotel getHotelByNameAndCity(String hotelName, String city) {
 		
-		// ottengo la lista di hotel aventi città passata
-		List<HotelierHotel> cityHotels = getHotelsByCity(city);
 		// acquisisco la lock sulla lista di hotel 	
-		synchronized (hotels) {
-			// itero la lista di hotel
-			for (var hotel : cityHotels) {
-				// controllo se nome hotel corrisponde a quella passato (ingnoreCase)
-				if (StringUtils.equalsIgnoreCase(hotel.getName(), hotelName)) {
+		lock.lock();
+		try {
+			// itero la lista di tutti gli hotel del registro
+			for (var hotel : hotels) {
+				// controllo se città e nome hotel corrispondono a quelli passati (ingnoreCase)
+				if (StringUtils.equalsIgnoreCase(hotel.getCity(), city) && StringUtils.equalsIgnoreCase(hotel.getName(), hotelName)) {
 					// restituisco hotel 
 					return hotel;
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		// restituisco null
 		return null;
 	}
 	
+	// restituisce gli hotel aventi nomi e città passati (nello stesso ordine), con null al posto degli hotel non trovati
+	public List<HotelierHotel> getHotelsByNameAndCity(List<String> hotelNames, List<String> cities) {
+		
+		// creo la lista dei risultati inizializzata a null
+		List<HotelierHotel> foundHotels = new ArrayList<>(hotelNames.size());
+		// mappa con chiave: città e nome normalizzati e valore: posizioni delle ricerche (una stessa ricerca può ripetersi)
+		Map<String, List<Integer>> lookups = new HashMap<>();
+		for (int i = 0; i < hotelNames.size(); i++) {
+			foundHotels.add(null);
+			// le ricerche con nome o città null non corrispondono ad alcun hotel
+			if (hotelNames.get(i) != null && cities.get(i) != null) {
+				lookups.computeIfAbsent(getLookupKey(hotelNames.get(i), cities.get(i)), key -> new ArrayList<>(1)).add(i);
+			}
+		}
+		
+		// acquisisco la lock sulla lista di hotel 	
+		lock.lock();
+		try {
+			// itero una sola volta la lista di tutti gli hotel del registro finchè ci sono ricerche non risolte
+			for (int i = 0; i < hotels.size() && !lookups.isEmpty(); i++) {
+				var hotel = hotels.get(i);
+				if (hotel.getName() == null || hotel.getCity() == null) {
+					continue;
+				}
+				// controllo se l'hotel corrisponde ad una ricerca (come in getHotelByNameAndCity vale il primo hotel trovato)
+				List<Integer> positions = lookups.remove(getLookupKey(hotel.getName(), hotel.getCity()));
+				if (positions != null) {
+					for (int position : positions) {
+						foundHotels.set(position, hotel);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		// restituisco la lista degli hotel
+		return foundHotels;
+	}
+	
+	// restituisce la chiave di ricerca relativa a nome e città passati, indipendente da maiuscole e minuscole
+	private static String getLookupKey(String hotelName, String city) {
+		return city.toLowerCase(Locale.ROOT) + '\0' + hotelName.toLowerCase(Locale.ROOT);
+	}
+	
 	// restituisce la lista di tutte le città degli hotel presenti nel registro
 	public List<String> getCities() {
 		
 		// creo un set di città per evitare duplicati
 		Set<String> cities = new HashSet<>();
 		// acquisisco la lock sulla lista di hotel 	
-		synchronized (hotels) {
+		lock.lock();
+		try {
 			// itero la lista di tutti gli hotel del registro
 			for (HotelierHotel hotel : hotels) {
 				// aggiungo hotel a hotelsCity
 				cities.add(hotel.getCity());
 			}
+		} finally {
+			lock.unlock();
 		}
 		
 		// restituisco lista delle città
@@ -122,21 +187,39 @@ public class HotelierServerRegisterHotels {
 		return hotels;
 	}
 
+	// restituisce il numero di hotel del registro
+	public int getHotelCount() {
+		lock.lock();
+		try {
+			return hotels.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	// persiste la lista di hotel del registro sul disco
 	public void serialize() {
 
+		// istante di inizio della persistenza
+		long persistStart = System.nanoTime();
 		try {
 			// acquisisco la lock sulla lista di hotel 	
-			synchronized (hotels) {
+			lock.lock();
+			try {
 				// serializzo la lista di hotel in Json
 				String hotelsJson = HotelierCommonUtils.serialize(hotels);
 				// scrivo la lista seriliazzata sul file al path HOTELS_PATH_JSON
 				HotelierCommonUtils.writeFile(hotelsJson, new File(HOTELS_PATH_JSON));
+			} finally {
+				lock.unlock();
 			}
 
 		} catch (IOException exception) {
 			exception.printStackTrace();
 		}
+
+		// registro la durata della persistenza nelle metriche del server
+		HotelierServerMetrics.getInstance().recordTimer(Timer.PERSIST_HOTELS, System.nanoTime() - persistStart);
 	}
 	
 	// deserializza la lista di hotel da disco e li aggiunge alla lista di hotel del registro
@@ -144,7 +227,8 @@ public class HotelierServerRegisterHotels {
 
 		try {
 			// acquisisco la lock sulla lista di hotel 	
-			synchronized (hotels) {
+			lock.lock();
+			try {
 				// ottengo il file contenente la lista di hotel
 				var hotelFile = new File(HOTELS_PATH_JSON);
 				// leggo la lista di hotel serializzata in Json
@@ -153,6 +237,8 @@ public class HotelierServerRegisterHotels {
 				var deserializedHotels = Arrays.asList(HotelierCommonUtils.deserialize(hotelsJSON, HotelierHotel[].class));
 				// aggiungo la lista di hotel deserializzata alla lista di hotel del registro
 				hotels.addAll(deserializedHotels);
+			} finally {
+				lock.unlock();
 			}
 
 		} catch (IOException exception) {
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -15,13 +16,15 @@ import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierReview;
 import unipi.aprile.filippo.hotelier.common.entities.HotelierUser;
 import unipi.aprile.filippo.hotelier.common.utils.HotelierCommonUtils;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
 
 public class HotelierServerRegisterReviews {
 	
 	/**
 	 * La classe HotelierServerRegisterReviews gestisce il registro delle recensioni all' interno di Hotelier.
 	 * Fornisce metodi per aggiungere recensioni, recuperare recensioni di un utente specifico e recensioni di un hotel specifico.
-	 * Utilizza una lista sincronizzata per garantire l'accesso concorrente alle recensioni e offre funzionalità per la serializzazione
+	 * Utilizza una ReentrantLock per garantire l'accesso concorrente alle recensioni e offre funzionalità per la serializzazione
 	 * e deserializzazione delle recensioni tramite JSON per la persistenza su disco.
 	 */
 
@@ -36,17 +39,24 @@ public class HotelierServerRegisterReviews {
 	
 	// lista di recensioni del registro
 	private List<HotelierReview> reviews;
+	// lock per l'accesso concorrente alla lista di recensioni
+	private final ReentrantLock lock;
 
 	private HotelierServerRegisterReviews() {
 		reviews = new ArrayList<>();
+		// inizializzo la lock
+		lock = new ReentrantLock();
 	}
 	
 	// aggiunge la recensione alla lista di recensioni del registro
 	public void addReview(HotelierReview review) {
 		// acquisisco la lock sulla lista delle recensioni 	
-		synchronized (reviews) {
+		lock.lock();
+		try {
 			// aggiungo la recensione alla lista
 			reviews.add(review);
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -56,7 +66,8 @@ public class HotelierServerRegisterReviews {
 		// creo una nuova lista di recensioni
 		List<HotelierReview> userReviews = new LinkedList<>();
 		// acquisisco la lock sulla lista delle recensioni 	
-		synchronized (reviews) {
+		lock.lock();
+		try {
 			// itero la lista di recensioni del registro
 			for (HotelierReview review : reviews) {
 				// controllo che username dell' utente passato corrisponda a quello presente nella recensione (ignoreCase)
@@ -65,6 +76,8 @@ public class HotelierServerRegisterReviews {
 					userReviews.add(review);
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		// restituisco la lista di recensioni
 		return userReviews;
@@ -76,7 +89,8 @@ public class HotelierServerRegisterReviews {
 		// creo una nuova lista di recensioni
 		List<HotelierReview> hotelReviews = new LinkedList<>();
 		// acquisisco la lock sulla lista delle recensioni 	
-		synchronized (reviews) {
+		lock.lock();
+		try {
 			// itero la lista di recensioni del registro
 			for (HotelierReview review : reviews) {
 				// controllo che id hotel passato corrisponda a quello presente nella recensione
@@ -85,25 +99,45 @@ public class HotelierServerRegisterReviews {
 					hotelReviews.add(review);
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		// restituisco la lista di recensioni
 		return hotelReviews;
 	}
 	
+	// restituisce il numero di recensioni del registro
+	public int getReviewCount() {
+		lock.lock();
+		try {
+			return reviews.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	// persiste la lista delle recensioni del registro sul disco
 	public void serialize() {
 
+		// istante di inizio della persistenza
+		long persistStart = System.nanoTime();
 		try {
 			// acquisisco la lock sulla lista delle recensioni 	
-			synchronized (reviews) {
+			lock.lock();
+			try {
 				// serializzo la lista delle recensione in Json
 				String reviewsJson = HotelierCommonUtils.serialize(reviews);
 				// scrivo la lista seriliazzata sul file al path REVIEWS_PATH_JSON
 				HotelierCommonUtils.writeFile(reviewsJson, new File(REVIEWS_PATH_JSON));
+			} finally {
+				lock.unlock();
 			}
 		} catch (IOException exception) {
 			exception.printStackTrace();
 		}
+
+		// registro la durata della persistenza nelle metriche del server
+		HotelierServerMetrics.getInstance().recordTimer(Timer.PERSIST_REVIEWS, System.nanoTime() - persistStart);
 	}
 	
 	// deserializza la lista delle recensioni da disco e li aggiunge alla lista delle recensioni del registro
@@ -111,7 +145,8 @@ public class HotelierServerRegisterReviews {
 
 		try {
 			// acquisisco la lock sulla lista delle recensioni 	
-			synchronized (reviews) {
+			lock.lock();
+			try {
 				// ottengo il file contenente la lista delle recensioni
 				var reviewFile = new File(REVIEWS_PATH_JSON);
 				// leggo la lista delle recensioni serializzata in Json
@@ -120,6 +155,8 @@ public class HotelierServerRegisterReviews {
 				var deserializedReviews = Arrays.asList(HotelierCommonUtils.deserialize(reviewsJSON, HotelierReview[].class));
 				// aggiungo la lista delle recensioni deserializzata alla lista delle recensioni del registro
 				reviews.addAll(deserializedReviews);
+			} finally {
+				lock.unlock();
 			}
 
 		} catch (IOException exception) {
@@ -7,11 +7,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.StringUtils;
 
 import unipi.aprile.filippo.hotelier.common.entities.HotelierUser;
 import unipi.aprile.filippo.hotelier.common.utils.HotelierCommonUtils;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics;
+import unipi.aprile.filippo.hotelier.server.metrics.HotelierServerMetrics.Timer;
 
 public class HotelierServerRegisterUsers {
 	
@@ -19,7 +22,7 @@ public class HotelierServerRegisterUsers {
 	 * La classe HotelierServerRegisterUsers gestisce il registro degli utenti all'interno di  Hotelier.
 	 * Fornisce metodi per l'autenticazione degli utenti, la registrazione di nuovi utenti, il recupero di utenti
 	 * per username.
-	 * Utilizza una lista sincronizzata per garantire l'accesso concorrente agli utentu e offre funzionalità per la serializzazione
+	 * Utilizza una ReentrantLock per garantire l'accesso concorrente agli utenti e offre funzionalità per la serializzazione
 	 * e deserializzazione degli utenti tramite JSON per la persistenza su disco.
 	 */
 	
@@ -35,16 +38,21 @@ public class HotelierServerRegisterUsers {
 	
 	// lista utenti del registro
 	private List<HotelierUser> users;
+	// lock per l'accesso concorrente alla lista utenti
+	private final ReentrantLock lock;
 
 	private HotelierServerRegisterUsers() {
 		users = new ArrayList<>();
+		// inizializzo la lock
+		lock = new ReentrantLock();
 	}
 	
 	
 	// restituisce utente avente username e password passati per parametro, null se utente non trovato
 	public HotelierUser auth(String username, String password) {
 		// acquisico la lock sulla lista degli utenti
-		synchronized (users) {
+		lock.lock();
+		try {
 			// itero la lista di utenti
 			for (HotelierUser user : users) {
 				// controllo se username e password user corrispondono a quelli passati (ignoreCase)
@@ -53,6 +61,8 @@ public class HotelierServerRegisterUsers {
 					return user;
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		// restituisco null
 		return null;
@@ -74,7 +84,8 @@ public class HotelierServerRegisterUsers {
 		}
 		
 		// acquisisco la lock sulla lista di utenti 
-		synchronized (users) {
+		lock.lock();
+		try {
 			// itero la lista di utenti
 			for (HotelierUser user : users) {
 				// controllo se username già registrato
@@ -88,6 +99,8 @@ public class HotelierServerRegisterUsers {
 			HotelierUser user = new HotelierUser(username, password);
 			// aggiungo l'utente alla lista di utenti del registro
 			users.add(user);
+		} finally {
+			lock.unlock();
 		}
 		
 		// persisto la lista aggiornata su disco
@@ -100,7 +113,8 @@ public class HotelierServerRegisterUsers {
 	// restituisco utente che ha come username quello passato per parametro, null se utente non trovato
 	public HotelierUser getUserByName(String username) {
 		// acquisisco la lock sulla lista di utenti 
-		synchronized (users) {
+		lock.lock();
+		try {
 			// itero la lista di utenti
 			for (HotelierUser user : users) {
 				// controllo se username user corrisponde a quello passato (ignoreCase)
@@ -109,32 +123,53 @@ public class HotelierServerRegisterUsers {
 					return user;
 				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		//restituisco null
 		return null;
 	}
 	
+	// restituisce il numero di utenti del registro
+	public int getUserCount() {
+		lock.lock();
+		try {
+			return users.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	// persiste la lista degli utenti del registro sul disco
 	public void serialize() {
 		
+		// istante di inizio della persistenza
+		long persistStart = System.nanoTime();
 		try {
 			// acquisisco la lock sulla lista di utenti 
-			synchronized (users) {
+			lock.lock();
+			try {
 				// serializzo la lista di utenti in Json
 				String usersJson = HotelierCommonUtils.serialize(users);
 				// scrivo la lista seriliazzata sul file al path USERS_PATH_JSON
 				HotelierCommonUtils.writeFile(usersJson, new File(USERS_PATH_JSON));
+			} finally {
+				lock.unlock();
 			}
 		} catch (IOException exception) {
 			exception.printStackTrace();
 		}
+
+		// registro la durata della persistenza nelle metriche del server
+		HotelierServerMetrics.getInstance().recordTimer(Timer.PERSIST_USERS, System.nanoTime() - persistStart);
 	}
 
 	public void deserialize() {
 		
 		try {
 			// acquisisco la lock sulla lista di utenti 
-			synchronized (users) {
+			lock.lock();
+			try {
 				// ottengo il file contenente la lista di utenti
 				var userFile = new File(USERS_PATH_JSON);
 				// leggo la lista di utenti serializzata in Json
@@ -143,6 +178,8 @@ public class HotelierServerRegisterUsers {
 				var deserializedUsers = Arrays.asList(HotelierCommonUtils.deserialize(usersJSON, HotelierUser[].class));
 				// aggiungo la lista di utenti deserializzata alla lista di utenti del registro
 				users.addAll(deserializedUsers);
+			} finally {
+				lock.unlock();
 			}
 
 		} catch (IOException exception) {
@@ -14,6 +14,8 @@ public class HotelierServerUtils {
 	public static final String USERS_PATH_JSON = "HotelierServer" + File.separator + "Users.json";
 	// path file json config server 
 	public static final String SERVER_CONFIG_PATH_JSON = "HotelierServer" + File.separator + "ServerConfig.json";
+	// path folder snapshot delle risposte hotelList
+	public static final String SNAPSHOTS_PATH = "HotelierServer" + File.separator + "Snapshots";
 
 
 }
@@ -0,0 +1,201 @@
+package unipi.aprile.filippo.hotelier.common.network.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import unipi.aprile.filippo.hotelier.common.entities.HotelierHotel;
+import unipi.aprile.filippo.hotelier.common.entities.HotelierLocalRank;
+import unipi.aprile.filippo.hotelier.common.entities.HotelierUser.HotelierBadge;
+import unipi.aprile.filippo.hotelier.common.entities.rating.HotelierHotelRating;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacket;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketBadge;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketBadgeResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketCapabilities;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketCapabilitiesResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketErrorResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotel;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelBatch;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelBatchResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelList;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListChunk;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListPage;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelListResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketHotelResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLocalRank;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogin;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLoginResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogout;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketLogoutResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketRegistry;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketReview;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketReviewResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketSubscribe;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketSubscriptionResponse;
+import unipi.aprile.filippo.hotelier.common.network.packets.HotelierPacketUnsubscribe;
+
+public class HotelierPacketCodecTest {
+
+	/**
+	 * Test dei formati dei pacchetti (HotelierPacketCodec):
+	 * • ogni pacchetto registrato, serializzato e deserializzato in JSON e in binario, risulta uguale all' originale
+	 *   (confrontando la serializzazione Json), anche se deserializzato da chunk di un byte;
+	 * • un pacchetto binario con lunghezze, numero di elementi o varint malformati, oppure troncato, lancia IOException
+	 *   senza allocare più dei byte ricevuti.
+	 */
+
+	// id dei pacchetti binari utilizzati nei test dei pacchetti malformati
+	private static final int LOGIN_ID = HotelierPacketRegistry.getIDFromPacket(new HotelierPacketLogin("", ""));
+	private static final int HOTEL_LIST_RESPONSE_ID = HotelierPacketRegistry.getIDFromPacket(new HotelierPacketHotelListResponse(null));
+
+	@Test
+	public void roundTripJson() throws IOException {
+		for (HotelierPacket packet : samplePackets()) {
+			assertRoundTrip(HotelierPacketCodec.JSON, packet);
+		}
+	}
+
+	@Test
+	public void roundTripBinary() throws IOException {
+		for (HotelierPacket packet : samplePackets()) {
+			assertRoundTrip(HotelierPacketCodec.BINARY, packet);
+		}
+	}
+
+	@Test
+	public void samplesCoverAllPacketTypes() {
+
+		// controllo che ogni id registrato abbia almeno un pacchetto di esempio
+		for (int packetID = 0; packetID < HotelierPacketRegistry.getPacketTypeCount(); packetID++) {
+			Class<? extends HotelierPacket> packetClass = HotelierPacketRegistry.getPacketClass(packetID);
+			if (packetClass != null) {
+				assertEquals(true, samplePackets().stream().anyMatch(packet -> packet.getClass() == packetClass), "nessun esempio per " + packetClass);
+			}
+		}
+	}
+
+	@Test
+	public void stringLengthBeyondPayload() {
+		// username con lunghezza 1000 ma solo 2 byte disponibili
+		assertMalformed(LOGIN_ID, varInt(1001), new byte[] { 'a', 'b' });
+	}
+
+	@Test
+	public void negativeStringLength() {
+		// username con lunghezza + 1 pari a -1 (varint di 5 byte)
+		assertMalformed(LOGIN_ID, varInt(-1));
+	}
+
+	@Test
+	public void countBeyondPayload() {
+		// lista presente con un milione di hotel ma nessun byte di hotel
+		assertMalformed(HOTEL_LIST_RESPONSE_ID, new byte[] { 1 }, varInt(1_000_000));
+	}
+
+	@Test
+	public void overlongVarInt() {
+		// varint con più di 5 byte di continuazione
+		assertMalformed(LOGIN_ID, new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 });
+	}
+
+	@Test
+	public void truncatedPacket() {
+
+		// serializzo un pacchetto valido e ne rimuovo l'ultimo byte
+		byte[] payload = HotelierPacketCodec.BINARY.encode(new HotelierPacketLogin("utente", "password"));
+		assertMalformed(LOGIN_ID, Arrays.copyOf(payload, payload.length - 1));
+	}
+
+	// controlla che il pacchetto passato, serializzato e deserializzato nel formato passato, sia uguale all' originale
+	private static void assertRoundTrip(HotelierPacketCodec codec, HotelierPacket packet) throws IOException {
+
+		int packetID = HotelierPacketRegistry.getIDFromPacket(packet);
+		byte[] payload = codec.encode(packet);
+		assertNotNull(payload, "pacchetto non supportato: " + packet.getClass());
+		String expected = HotelierPacketJsonCodec.toJson(packet);
+
+		// deserializzo dal payload intero
+		assertEquals(expected, HotelierPacketJsonCodec.toJson(codec.decode(packetID, ByteBuffer.wrap(payload))), packet.getClass().getSimpleName());
+
+		// deserializzo da chunk di un byte
+		List<ByteBuffer> chunks = new ArrayList<>();
+		for (byte value : payload) {
+			chunks.add(ByteBuffer.wrap(new byte[] { value }));
+		}
+		assertEquals(expected, HotelierPacketJsonCodec.toJson(codec.decode(packetID, chunks)), packet.getClass().getSimpleName());
+	}
+
+	// controlla che il payload binario formato dalle parti passate lanci IOException alla deserializzazione
+	private static void assertMalformed(int packetID, byte[]... parts) {
+
+		// concateno le parti del payload
+		var payload = ByteBuffer.allocate(Arrays.stream(parts).mapToInt(part -> part.length).sum());
+		for (byte[] part : parts) {
+			payload.put(part);
+		}
+		payload.flip();
+		assertThrows(IOException.class, () -> HotelierPacketCodec.BINARY.decode(packetID, payload));
+	}
+
+	// restituisce l'intero passato codificato varint senza segno
+	private static byte[] varInt(int value) {
+		var writer = new HotelierPacketBinaryWriter();
+		writer.writeVarInt(value);
+		return writer.toByteArray();
+	}
+
+	// restituisce un pacchetto di esempio per ogni tipo, con campi null dove ammessi
+	private static List<HotelierPacket> samplePackets() {
+
+		HotelierHotel hotel = sampleHotel(1, "Hotel Roma 1", "Roma");
+		HotelierHotel otherHotel = sampleHotel(2, "Hotel Città è", "Città");
+		HotelierLocalRank localRank = new HotelierLocalRank("Roma");
+		localRank.add(hotel);
+
+		List<HotelierPacket> packets = new ArrayList<>();
+		packets.add(new HotelierPacketLogin("utente", "pässword"));
+		packets.add(new HotelierPacketLoginResponse("Login effettuato correttamente!"));
+		packets.add(new HotelierPacketLogout());
+		packets.add(new HotelierPacketLogoutResponse("Logout effettuato"));
+		packets.add(new HotelierPacketHotel("Hotel Roma 1", "Roma"));
+		packets.add(new HotelierPacketHotelResponse(hotel));
+		packets.add(new HotelierPacketHotelResponse(null));
+		packets.add(new HotelierPacketHotelList("Roma"));
+		packets.add(new HotelierPacketHotelList("Roma", 10, "cursore", true));
+		packets.add(new HotelierPacketHotelListResponse(List.of(hotel, otherHotel)));
+		packets.add(new HotelierPacketHotelListResponse(null));
+		packets.add(new HotelierPacketReview("Hotel Roma 1", "Roma", 4, new HotelierHotelRating(1, 2.5f, 3, 4.75f)));
+		packets.add(new HotelierPacketReviewResponse("Recensione inserita"));
+		packets.add(new HotelierPacketBadge());
+		packets.add(new HotelierPacketBadgeResponse(HotelierBadge.CONTRIBUENTE_ESPERTO));
+		packets.add(new HotelierPacketBadgeResponse(null));
+		packets.add(new HotelierPacketErrorResponse("Errore"));
+		packets.add(new HotelierPacketCapabilities(3));
+		packets.add(new HotelierPacketCapabilitiesResponse(1, 4096));
+		packets.add(new HotelierPacketHotelBatch(List.of(new HotelierPacketHotel("Hotel Roma 1", "Roma"), new HotelierPacketHotel("X", null))));
+		packets.add(new HotelierPacketHotelBatchResponse(Arrays.asList(hotel, null)));
+		packets.add(new HotelierPacketHotelListPage(List.of(hotel), "cursore", 2));
+		packets.add(new HotelierPacketHotelListPage(List.of(), null, 0));
+		packets.add(new HotelierPacketHotelListChunk(List.of(otherHotel), true));
+		packets.add(new HotelierPacketSubscribe(List.of("Roma", "Milano")));
+		packets.add(new HotelierPacketUnsubscribe(null));
+		packets.add(new HotelierPacketSubscriptionResponse("Sottoscrizione effettuata", 2));
+		packets.add(new HotelierPacketLocalRank(localRank));
+		return packets;
+	}
+
+	// restituisce un hotel di esempio con id, nome e città passati
+	private static HotelierHotel sampleHotel(int id, String name, String city) {
+		return new HotelierHotel(id, name, "Descrizione di " + name, city, "000-0000000", List.of("Piscina", "Palestra"), 3,
+				new HotelierHotelRating(4, 3.5f, 2, 1.25f));
+	}
+
+}
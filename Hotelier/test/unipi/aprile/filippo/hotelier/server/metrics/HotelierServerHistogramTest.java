@@ -0,0 +1,98 @@
+package unipi.aprile.filippo.hotelier.server.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class HotelierServerHistogramTest {
+
+	/**
+	 * Test dell' istogramma delle latenze (HotelierServerHistogram):
+	 * • un percentile non è mai minore del valore esatto e lo supera al più dell' errore relativo dei bucket (1/4);
+	 * • un percentile non supera mai il massimo registrato;
+	 * • valori piccoli, negativi ed estremi vengono registrati senza errori;
+	 * • numero, somma, media e massimo corrispondono ai valori registrati.
+	 */
+
+	@Test
+	public void emptyHistogram() {
+		var histogram = new HotelierServerHistogram();
+		assertEquals(0, histogram.getPercentile(0.99));
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getCount());
+	}
+
+	@Test
+	public void exactSmallValues() {
+
+		var histogram = new HotelierServerHistogram();
+		// i valori fino a 7 hanno un bucket ciascuno
+		for (long value = 0; value < 8; value++) {
+			histogram.record(value);
+		}
+		assertEquals(0, histogram.getPercentile(0));
+		assertEquals(3, histogram.getPercentile(0.5));
+		assertEquals(7, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void percentilesWithinRelativeError() {
+
+		var histogram = new HotelierServerHistogram();
+		// registro valori casuali su più ordini di grandezza (da 1 µs a 1 s)
+		Random random = new Random(42);
+		long[] values = new long[10_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.pow(10, 3 + 6 * random.nextDouble());
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		// confronto ogni percentile con il valore esatto
+		for (double quantile : new double[] { 0.5, 0.9, 0.99, 0.999, 1 }) {
+			long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+			long percentile = histogram.getPercentile(quantile);
+			assertTrue(percentile >= exact, "p" + quantile + " " + percentile + " < " + exact);
+			assertTrue(percentile <= exact + exact / 4, "p" + quantile + " " + percentile + " > " + exact + " + 25%");
+		}
+		assertEquals(values[values.length - 1], histogram.getPercentile(1));
+	}
+
+	@Test
+	public void percentileCappedAtMax() {
+
+		var histogram = new HotelierServerHistogram();
+		// 1000 cade nel bucket [896, 1023]
+		histogram.record(1000);
+		assertEquals(1000, histogram.getPercentile(0.99));
+		assertEquals(1000, histogram.getMax());
+	}
+
+	@Test
+	public void negativeAndExtremeValues() {
+
+		var histogram = new HotelierServerHistogram();
+		histogram.record(-5);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(0, histogram.getPercentile(0.5));
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void countSumMeanMax() {
+
+		var histogram = new HotelierServerHistogram();
+		histogram.record(10);
+		histogram.record(20);
+		histogram.record(60);
+		assertEquals(3, histogram.getCount());
+		assertEquals(90, histogram.getSum());
+		assertEquals(30, histogram.getMean());
+		assertEquals(60, histogram.getMax());
+	}
+
+}
@@ -0,0 +1,93 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class HotelierServerBufferPoolTest {
+
+	/**
+	 * Test del pool di ByteBuffer dei selettori worker (HotelierServerBufferPool):
+	 * • un buffer appartiene alla classe di dimensione più piccola in grado di contenere la dimensione richiesta,
+	 *   con limit pari alla dimensione richiesta;
+	 * • un buffer rilasciato viene restituito (pulito) alla richiesta successiva della stessa classe;
+	 * • i buffer oltre la dimensione massima vengono allocati su misura e non reinseriti nel pool;
+	 * • hit, miss e buffer in uso vengono contati correttamente.
+	 */
+
+	@Test
+	public void sizeClasses() {
+
+		var pool = new HotelierServerBufferPool(false);
+		// la dimensione minima è 64 byte, le classi successive sono potenze di 2
+		assertBuffer(pool.acquire(0), 64, 0);
+		assertBuffer(pool.acquire(1), 64, 1);
+		assertBuffer(pool.acquire(64), 64, 64);
+		assertBuffer(pool.acquire(65), 128, 65);
+		assertBuffer(pool.acquire(1000), 1024, 1000);
+		assertBuffer(pool.acquire(64 * 1024), 64 * 1024, 64 * 1024);
+		// oltre la dimensione massima il buffer è su misura
+		assertBuffer(pool.acquire(64 * 1024 + 1), 64 * 1024 + 1, 64 * 1024 + 1);
+	}
+
+	@Test
+	public void reusesReleasedBuffers() {
+
+		var pool = new HotelierServerBufferPool(false);
+		ByteBuffer buffer = pool.acquire(100);
+		buffer.put((byte) 1);
+		pool.release(buffer);
+
+		// un buffer della stessa classe riutilizza quello rilasciato, pulito e limitato alla nuova dimensione
+		ByteBuffer reused = pool.acquire(120);
+		assertSame(buffer, reused);
+		assertBuffer(reused, 128, 120);
+		assertEquals(0, reused.position());
+		// un buffer di un' altra classe viene allocato
+		assertNotSame(buffer, pool.acquire(200));
+
+		assertEquals(1, pool.getHits());
+		assertEquals(2, pool.getMisses());
+		assertEquals(2, pool.getOutstanding());
+	}
+
+	@Test
+	public void doesNotPoolOversizedBuffers() {
+
+		var pool = new HotelierServerBufferPool(false);
+		ByteBuffer buffer = pool.acquire(100_000);
+		pool.release(buffer);
+
+		// il buffer su misura non viene riutilizzato
+		assertNotSame(buffer, pool.acquire(100_000));
+		assertEquals(0, pool.getHits());
+		assertEquals(2, pool.getMisses());
+		assertEquals(1, pool.getOutstanding());
+	}
+
+	@Test
+	public void directBuffers() {
+		var pool = new HotelierServerBufferPool(true);
+		assertTrue(pool.acquire(10).isDirect());
+	}
+
+	@Test
+	public void releaseNullIsIgnored() {
+		var pool = new HotelierServerBufferPool(false);
+		pool.release(null);
+		assertEquals(0, pool.getOutstanding());
+	}
+
+	// controlla capacità, limit e posizione del buffer passato
+	private static void assertBuffer(ByteBuffer buffer, int capacity, int limit) {
+		assertEquals(capacity, buffer.capacity());
+		assertEquals(limit, buffer.limit());
+		assertEquals(0, buffer.position());
+	}
+
+}
@@ -0,0 +1,61 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+public class HotelierServerPacketHandlerCursorTest {
+
+	/**
+	 * Test della validazione dei cursori delle pagine hotelList (HotelierServerPacketHandler):
+	 * • un cursore creato dal server restituisce la posizione contenuta, anche se pari alla dimensione della lista;
+	 * • un cursore di un ordinamento precedente, con posizione fuori dalla lista, di dimensione errata o non Base64
+	 *   url-safe restituisce -1.
+	 */
+
+	// versione e dimensione della lista utilizzate nei test
+	private static final long VERSION = 42;
+	private static final int SIZE = 100;
+
+	@Test
+	public void validCursor() {
+		assertEquals(0, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION, 0), VERSION, SIZE));
+		assertEquals(37, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION, 37), VERSION, SIZE));
+		assertEquals(SIZE, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION, SIZE), VERSION, SIZE));
+	}
+
+	@Test
+	public void staleVersion() {
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION - 1, 10), VERSION, SIZE));
+	}
+
+	@Test
+	public void offsetOutOfRange() {
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION, SIZE + 1), VERSION, SIZE));
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION, -1), VERSION, SIZE));
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor(HotelierServerPacketHandler.encodeCursor(VERSION, Integer.MIN_VALUE), VERSION, SIZE));
+	}
+
+	@Test
+	public void wrongLength() {
+
+		// cursore con versione e posizione seguite da un byte in più
+		byte[] bytes = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + 1).putLong(VERSION).putInt(1).array();
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), VERSION, SIZE));
+		// cursore vuoto e cursore con sola versione
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor("", VERSION, SIZE));
+		bytes = ByteBuffer.allocate(Long.BYTES).putLong(VERSION).array();
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes), VERSION, SIZE));
+	}
+
+	@Test
+	public void notBase64() {
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor("cursore non valido!", VERSION, SIZE));
+		// caratteri del Base64 standard non ammessi dal Base64 url-safe
+		assertEquals(-1, HotelierServerPacketHandler.decodeCursor("AAAAAAAAACoAAAA+", VERSION, SIZE));
+	}
+
+}
@@ -0,0 +1,97 @@
+package unipi.aprile.filippo.hotelier.server.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class HotelierServerTimingWheelTest {
+
+	/**
+	 * Test del timing wheel delle connessioni inattive (HotelierServerTimingWheel):
+	 * • un elemento non scade mai prima della propria scadenza e scade entro il tick successivo;
+	 * • un elemento con scadenza oltre un giro completo della ruota rimane nello slot fino al proprio giro;
+	 * • un avanzamento dopo più giri completi fa scadere tutti gli elementi, visitando ogni slot una sola volta;
+	 * • un elemento con scadenza già trascorsa scade al primo avanzamento.
+	 */
+
+	// durata di un tick in nanosecondi (1 ms)
+	private static final long TICK = 1_000_000;
+
+	@Test
+	public void expiresNotBeforeDeadline() {
+
+		var wheel = new HotelierServerTimingWheel<String>(8, TICK);
+		long start = System.nanoTime();
+		wheel.schedule("a", start + 5 * TICK);
+		List<String> expired = new ArrayList<>();
+
+		// prima della scadenza l'elemento rimane nella ruota
+		wheel.advance(start + 5 * TICK - 1, expired::add);
+		assertTrue(expired.isEmpty());
+		assertEquals(1, wheel.size());
+		// entro il tick successivo alla scadenza l'elemento scade
+		wheel.advance(start + 6 * TICK, expired::add);
+		assertEquals(List.of("a"), expired);
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void keepsElementsOfLaterRounds() {
+
+		// ruota di 8 slot: la scadenza a 20 tick condivide lo slot con quella a 4 tick
+		var wheel = new HotelierServerTimingWheel<String>(8, TICK);
+		long start = System.nanoTime();
+		wheel.schedule("vicino", start + 3 * TICK);
+		wheel.schedule("lontano", start + 19 * TICK);
+		List<String> expired = new ArrayList<>();
+
+		// avanzo tick per tick fino al primo giro successivo
+		for (long tick = 1; tick <= 10; tick++) {
+			wheel.advance(start + tick * TICK, expired::add);
+		}
+		assertEquals(List.of("vicino"), expired);
+		assertEquals(1, wheel.size());
+
+		// avanzo fino alla scadenza dell' elemento del giro successivo
+		for (long tick = 11; tick <= 20; tick++) {
+			wheel.advance(start + tick * TICK, expired::add);
+		}
+		assertEquals(List.of("vicino", "lontano"), expired);
+	}
+
+	@Test
+	public void expiresEverythingAfterLongGap() {
+
+		var wheel = new HotelierServerTimingWheel<Integer>(4, TICK);
+		long start = System.nanoTime();
+		// inserisco elementi su più giri della ruota
+		for (int i = 1; i <= 20; i++) {
+			wheel.schedule(i, start + i * TICK);
+		}
+		List<Integer> expired = new ArrayList<>();
+
+		// un solo avanzamento dopo 100 tick fa scadere tutti gli elementi
+		wheel.advance(start + 100 * TICK, expired::add);
+		assertEquals(20, expired.size());
+		assertTrue(wheel.isEmpty());
+	}
+
+	@Test
+	public void pastDeadlineExpiresAtNextAdvance() {
+
+		var wheel = new HotelierServerTimingWheel<String>(8, TICK);
+		long start = System.nanoTime();
+		List<String> expired = new ArrayList<>();
+		wheel.advance(start + 10 * TICK, expired::add);
+
+		// inserisco un elemento con scadenza già trascorsa
+		wheel.schedule("scaduto", start + 2 * TICK);
+		wheel.advance(start + 11 * TICK, expired::add);
+		assertEquals(List.of("scaduto"), expired);
+	}
+
+}